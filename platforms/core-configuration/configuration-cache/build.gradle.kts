@@ -49,6 +49,7 @@ dependencies {
     implementation(project(":file-collections"))
     implementation(project(":file-temp"))
     implementation(project(":file-watching"))
+    implementation(project(":files"))
     implementation(project(":functional"))
     implementation(project(":hashing"))
     implementation(project(":input-tracking"))
@@ -65,9 +65,11 @@ class ConfigurationCacheBuildOperationsIntegrationTest extends AbstractConfigura
         def storeOp = operations.only(ConfigurationCacheStoreBuildOperationType)
         with(storeOp.result) {
             cacheEntrySize > 0
+            cacheEntryUncompressedSize > 0
         }
         with(loadOp.result) {
             cacheEntrySize == storeOp.result.cacheEntrySize
+            cacheEntryUncompressedSize == storeOp.result.cacheEntryUncompressedSize
         }
         def buildInvocationId = loadOp.result.originBuildInvocationId
 
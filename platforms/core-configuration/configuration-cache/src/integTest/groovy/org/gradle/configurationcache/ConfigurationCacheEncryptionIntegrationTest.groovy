@@ -119,7 +119,8 @@ class ConfigurationCacheEncryptionIntegrationTest extends AbstractConfigurationC
         findRequiredKeystoreFile(false) == null
 
         when:
-        runWithEncryption(kind, ["useSensitive"], ["-Psensitive_property_name=sensitive_property_value"], [
+        // Disable compression, so that unencrypted values can be found in the state files
+        runWithEncryption(kind, ["useSensitive"], ["-Psensitive_property_name=sensitive_property_value", "-Dorg.gradle.configuration-cache.internal.compression=false"], [
             (ENV_PROJECT_PROPERTIES_PREFIX + 'sensitive_property_name2'): 'sensitive_property_value2',
             "SENSITIVE_ENV_VAR_NAME": 'sensitive_env_var_value'
         ])
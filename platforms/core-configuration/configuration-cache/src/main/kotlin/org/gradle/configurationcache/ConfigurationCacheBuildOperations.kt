@@ -61,8 +61,9 @@ object LoadDetails : ConfigurationCacheLoadBuildOperationType.Details
 
 
 internal
-data class LoadResult(val stateFile: File, val originInvocationId: String? = null) : ConfigurationCacheLoadBuildOperationType.Result {
+data class LoadResult(val stateFile: File, val uncompressedSize: Long, val originInvocationId: String? = null) : ConfigurationCacheLoadBuildOperationType.Result {
     override fun getCacheEntrySize(): Long = stateFile.length()
+    override fun getCacheEntryUncompressedSize(): Long = uncompressedSize
     override fun getOriginBuildInvocationId(): String? = originInvocationId
 }
 
@@ -72,6 +73,7 @@ object StoreDetails : ConfigurationCacheStoreBuildOperationType.Details
 
 
 internal
-data class StoreResult(val stateFile: File) : ConfigurationCacheStoreBuildOperationType.Result {
+data class StoreResult(val stateFile: File, val uncompressedSize: Long) : ConfigurationCacheStoreBuildOperationType.Result {
     override fun getCacheEntrySize(): Long = stateFile.length()
+    override fun getCacheEntryUncompressedSize(): Long = uncompressedSize
 }
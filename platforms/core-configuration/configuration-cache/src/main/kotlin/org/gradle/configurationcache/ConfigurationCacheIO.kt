@@ -16,6 +16,8 @@
 
 package org.gradle.configurationcache
 
+import com.google.common.io.CountingInputStream
+import com.google.common.io.CountingOutputStream
 import org.gradle.api.logging.LogLevel
 import org.gradle.cache.internal.streams.BlockAddress
 import org.gradle.cache.internal.streams.BlockAddressSerializer
@@ -27,6 +29,7 @@ import org.gradle.configurationcache.problems.ConfigurationCacheProblems
 import org.gradle.configurationcache.serialization.DefaultReadContext
 import org.gradle.configurationcache.serialization.DefaultWriteContext
 import org.gradle.configurationcache.serialization.LoggingTracer
+import org.gradle.configurationcache.serialization.StateShards
 import org.gradle.configurationcache.serialization.Tracer
 import org.gradle.configurationcache.serialization.beans.BeanStateReaderLookup
 import org.gradle.configurationcache.serialization.beans.BeanStateWriterLookup
@@ -42,6 +45,7 @@ import org.gradle.configurationcache.serialization.writeCollection
 import org.gradle.configurationcache.serialization.writeFile
 import org.gradle.internal.build.BuildStateRegistry
 import org.gradle.internal.buildtree.BuildTreeWorkGraph
+import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.operations.BuildOperationProgressEventEmitter
 import org.gradle.internal.serialize.Decoder
@@ -50,10 +54,12 @@ import org.gradle.internal.serialize.kryo.KryoBackedDecoder
 import org.gradle.internal.serialize.kryo.KryoBackedEncoder
 import org.gradle.internal.service.scopes.Scopes
 import org.gradle.internal.service.scopes.ServiceScope
+import org.gradle.internal.work.HeapLoadSource
 import org.gradle.util.Path
 import java.io.File
 import java.io.InputStream
 import java.io.OutputStream
+import java.util.concurrent.ConcurrentHashMap
 
 
 @ServiceScope(Scopes.Gradle::class)
@@ -64,7 +70,10 @@ class ConfigurationCacheIO internal constructor(
     private val scopeRegistryListener: ConfigurationCacheClassLoaderScopeRegistryListener,
     private val beanStateReaderLookup: BeanStateReaderLookup,
     private val beanStateWriterLookup: BeanStateWriterLookup,
-    private val eventEmitter: BuildOperationProgressEventEmitter
+    private val eventEmitter: BuildOperationProgressEventEmitter,
+    private val cacheKey: ConfigurationCacheKey,
+    private val retainedState: RetainedConfigurationCacheState,
+    private val heapLoadSources: List<HeapLoadSource>
 ) {
     private
     val codecs = codecs()
@@ -72,6 +81,9 @@ class ConfigurationCacheIO internal constructor(
     private
     val encryptionService by lazy { service<EncryptionService>() }
 
+    private
+    val uncompressedSizes = ConcurrentHashMap<File, Long>()
+
     internal
     fun writeCacheEntryDetailsTo(
         buildStateRegistry: BuildStateRegistry,
@@ -184,28 +196,77 @@ class ConfigurationCacheIO internal constructor(
         stateFile: ConfigurationCacheStateFile,
         action: suspend DefaultReadContext.(ConfigurationCacheState) -> T
     ): T {
-        return withReadContextFor(encryptionService.inputStream(stateFile.stateType, stateFile::inputStream)) { codecs ->
-            ConfigurationCacheState(codecs, stateFile, eventEmitter, host).run {
-                action(this)
+        val inputStream = CountingInputStream(retainedStateInputStream(stateFile))
+        return try {
+            withReadContextFor(inputStream) { codecs ->
+                ConfigurationCacheState(codecs, stateFile, eventEmitter, host, stateShards()).run {
+                    action(this)
+                }
             }
+        } catch (e: Throwable) {
+            retainedState.discard(stateFile.stateFile.file)
+            throw e
+        }.also {
+            uncompressedSizes[stateFile.stateFile.file] = inputStream.count
         }
     }
 
+    private
+    fun retainedStateInputStream(stateFile: ConfigurationCacheStateFile): InputStream {
+        val heapLoad = heapLoad
+        if (!startParameter.isRetainingState || heapLoad == null) {
+            return loadStateInputStream(stateFile)
+        }
+        return retainedState.inputStreamFor(cacheKey.string, stateFile.stateFile.file, heapLoad) {
+            loadStateInputStream(stateFile)
+        }
+    }
+
+    private
+    fun loadStateInputStream(stateFile: ConfigurationCacheStateFile): InputStream =
+        stateInputStream(encryptionService.inputStream(stateFile.stateType, stateFile::inputStream)) {
+            service<ExecutorFactory>().create("Configuration cache state decompression", decompressionThreads)
+        }
+
+    /**
+     * The load on the heap of the daemon, or `null` when not running in a daemon.
+     */
+    private
+    val heapLoad: Double?
+        get() = heapLoadSources.takeIf { it.isNotEmpty() }?.maxOf { maxOf(0.0, it.load) }
+
     private
     fun <T> writeConfigurationCacheState(
         stateFile: ConfigurationCacheStateFile,
         action: suspend DefaultWriteContext.(ConfigurationCacheState) -> T
     ): T {
-        val (context, codecs) = writerContextFor(encryptionService.outputStream(stateFile.stateType, stateFile::outputStream)) {
+        retainedState.discard(stateFile.stateFile.file)
+        val outputStream = CountingOutputStream(
+            stateOutputStream(encryptionService.outputStream(stateFile.stateType, stateFile::outputStream), startParameter.isCompressingState)
+        )
+        val (context, codecs) = writerContextFor(outputStream) {
             host.currentBuild.gradle.owner.displayName.displayName + " state"
         }
         return context.useToRun {
             runWriteOperation {
-                action(ConfigurationCacheState(codecs, stateFile, eventEmitter, host))
+                action(ConfigurationCacheState(codecs, stateFile, eventEmitter, host, stateShards().takeIf { startParameter.isShardedWorkGraph }))
             }
+        }.also {
+            uncompressedSizes[stateFile.stateFile.file] = outputStream.count
         }
     }
 
+    /**
+     * Returns the number of bytes of state last written to or read from the given [stateFile], before compression.
+     */
+    internal
+    fun uncompressedSizeOf(stateFile: ConfigurationCacheStateFile): Long =
+        uncompressedSizes[stateFile.stateFile.file] ?: stateFile.stateFile.file.length()
+
+    private
+    val decompressionThreads: Int
+        get() = minOf(4, startParameter.maxWorkerCount)
+
     internal
     fun writeModelTo(model: Any, stateFile: ConfigurationCacheStateFile) {
         writeConfigurationCacheState(stateFile) {
@@ -316,6 +377,18 @@ class ConfigurationCacheIO internal constructor(
         problems
     )
 
+    private
+    fun stateShards() = StateShards(
+        { encoder, codec, identityTables ->
+            DefaultWriteContext(codec, encoder, scopeRegistryListener, beanStateWriterLookup, logger, null, problems, identityTables)
+        },
+        { decoder, codec, identityTables ->
+            DefaultReadContext(codec, decoder, beanStateReaderLookup, logger, problems, identityTables)
+        },
+        service(),
+        startParameter.maxWorkerCount
+    )
+
     private
     fun codecs(): Codecs =
         Codecs(
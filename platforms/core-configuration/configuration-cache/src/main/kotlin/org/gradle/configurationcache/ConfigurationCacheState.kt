@@ -39,6 +39,7 @@ import org.gradle.configurationcache.serialization.DefaultReadContext
 import org.gradle.configurationcache.serialization.DefaultWriteContext
 import org.gradle.configurationcache.serialization.IsolateOwner
 import org.gradle.configurationcache.serialization.ReadContext
+import org.gradle.configurationcache.serialization.StateShards
 import org.gradle.configurationcache.serialization.WriteContext
 import org.gradle.configurationcache.serialization.codecs.Codecs
 import org.gradle.configurationcache.serialization.logNotImplemented
@@ -137,7 +138,8 @@ class ConfigurationCacheState(
     private val codecs: Codecs,
     private val stateFile: ConfigurationCacheStateFile,
     private val eventEmitter: BuildOperationProgressEventEmitter,
-    private val host: DefaultConfigurationCache.Host
+    private val host: DefaultConfigurationCache.Host,
+    private val stateShards: StateShards?
 ) {
     /**
      * Writes the state for the whole build starting from the given root [build] and returns the set
@@ -514,7 +516,7 @@ class ConfigurationCacheState(
 
     private
     fun workNodeCodec(gradle: GradleInternal) =
-        codecs.workNodeCodecFor(gradle)
+        codecs.workNodeCodecFor(gradle, stateShards)
 
     private
     suspend fun DefaultWriteContext.writeRequiredBuildServicesOf(build: BuildState, buildTreeState: StoredBuildTreeState) {
@@ -25,7 +25,9 @@ import org.gradle.api.logging.Logging
 import org.gradle.configurationcache.cacheentry.EntryDetails
 import org.gradle.configurationcache.extensions.toDefaultLowerCase
 import org.gradle.configurationcache.extensions.uncheckedCast
+import org.gradle.configurationcache.fingerprint.ConfigurationCacheFingerprintChecker
 import org.gradle.configurationcache.fingerprint.ConfigurationCacheFingerprintController
+import org.gradle.configurationcache.fingerprint.FingerprintCheckCancellation
 import org.gradle.configurationcache.initialization.ConfigurationCacheStartParameter
 import org.gradle.configurationcache.metadata.ProjectMetadataController
 import org.gradle.configurationcache.models.IntermediateModelController
@@ -42,15 +44,21 @@ import org.gradle.internal.buildtree.BuildTreeWorkGraph
 import org.gradle.internal.component.local.model.LocalComponentGraphResolveState
 import org.gradle.internal.component.local.model.LocalComponentGraphResolveStateFactory
 import org.gradle.internal.concurrent.CompositeStoppable
+import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.concurrent.Stoppable
 import org.gradle.internal.configuration.inputs.InstrumentedInputs
 import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.operations.CurrentBuildOperationRef
 import org.gradle.internal.vfs.FileSystemAccess
 import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem
 import org.gradle.tooling.provider.model.internal.ToolingModelParameterCarrier
 import org.gradle.util.Path
 import java.io.File
 import java.io.OutputStream
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.FutureTask
 
 
 class DefaultConfigurationCache internal constructor(
@@ -354,7 +362,7 @@ class DefaultConfigurationCache internal constructor(
                 try {
                     val stateFile = layout.fileFor(stateType)
                     action(stateFile)
-                    StoreResult(stateFile.stateFile.file)
+                    StoreResult(stateFile.stateFile.file, cacheIO.uncompressedSizeOf(stateFile))
                 } catch (error: ConfigurationCacheError) {
                     // Invalidate state on serialization errors
                     problems.failingBuildDueToSerializationError()
@@ -369,7 +377,8 @@ class DefaultConfigurationCache internal constructor(
     private
     fun loadModel(): Any {
         return loadFromCache(StateType.Model) { stateFile ->
-            LoadResult(stateFile.stateFile.file) to cacheIO.readModelFrom(stateFile)
+            val model = cacheIO.readModelFrom(stateFile)
+            LoadResult(stateFile.stateFile.file, cacheIO.uncompressedSizeOf(stateFile)) to model
         }
     }
 
@@ -377,7 +386,7 @@ class DefaultConfigurationCache internal constructor(
     fun loadWorkGraph(graph: BuildTreeWorkGraph, graphBuilder: BuildTreeWorkGraphBuilder?, loadAfterStore: Boolean): BuildTreeWorkGraph.FinalizedGraph {
         return loadFromCache(StateType.Work) { stateFile ->
             val (buildInvocationId, workGraph) = cacheIO.readRootBuildStateFrom(stateFile, loadAfterStore, graph, graphBuilder)
-            LoadResult(stateFile.stateFile.file, buildInvocationId) to workGraph
+            LoadResult(stateFile.stateFile.file, cacheIO.uncompressedSizeOf(stateFile), buildInvocationId) to workGraph
         }
     }
 
@@ -479,36 +488,73 @@ class DefaultConfigurationCache internal constructor(
 
     private
     fun checkFingerprintAgainstLoadedProperties(entryDetails: EntryDetails, layout: ConfigurationCacheRepository.Layout): CheckedFingerprint {
-        val result = checkBuildScopedFingerprint(layout.fileFor(StateType.BuildFingerprint))
-        if (result !is CheckedFingerprint.Valid) {
-            return result
+        val executorFactory = host.service<ExecutorFactory>()
+        val checkExecutor = executorFactory.create("Configuration cache fingerprint check", startParameter.maxWorkerCount)
+        val projectFingerprintExecutor = executorFactory.create("Configuration cache project fingerprint check")
+        val cancellation = FingerprintCheckCancellation()
+        // The checks run on behalf of the current operation
+        val parentOperation = CurrentBuildOperationRef.instance().get()
+        val checks = Executor { check ->
+            checkExecutor.execute { CurrentBuildOperationRef.instance().with(parentOperation, check) }
         }
+        try {
+            // Read and check project specific inputs while build inputs are being checked.
+            // The result is only used when the build inputs are up-to-date, and the project specific checks stop as soon as they are not.
+            val projectCheck = FutureTask(
+                Callable {
+                    CurrentBuildOperationRef.instance().with(
+                        parentOperation,
+                        CurrentBuildOperationRef.Callable<ConfigurationCacheFingerprintChecker.ProjectScopedCheck, RuntimeException> {
+                            readProjectScopedFingerprint(layout.fileFor(StateType.ProjectFingerprint), checks, cancellation)
+                        }
+                    )
+                }
+            )
+            projectFingerprintExecutor.execute(projectCheck)
 
-        // Build inputs are up-to-date, check project specific inputs
+            val result = checkBuildScopedFingerprint(layout.fileFor(StateType.BuildFingerprint), checks, cancellation)
+            if (result !is CheckedFingerprint.Valid) {
+                projectCheck.cancel(false)
+                return result
+            }
 
-        val projectResult = checkProjectScopedFingerprint(layout.fileFor(StateType.ProjectFingerprint))
-        if (projectResult is CheckedFingerprint.ProjectsInvalid) {
-            intermediateModels.value.restoreFromCacheEntry(entryDetails.intermediateModels, projectResult)
-            projectMetadata.value.restoreFromCacheEntry(entryDetails.projectMetadata, projectResult)
-        }
+            // Build inputs are up-to-date, use the result of the project specific inputs.
+            // Project specific value sources run build logic, so they are obtained here, on the build thread
 
-        return projectResult
+            val projectScopedCheck = try {
+                projectCheck.get()
+            } catch (e: ExecutionException) {
+                throw e.cause ?: e
+            }
+            val projectResult = projectScopedCheck.complete()
+            if (projectResult is CheckedFingerprint.ProjectsInvalid) {
+                intermediateModels.value.restoreFromCacheEntry(entryDetails.intermediateModels, projectResult)
+                projectMetadata.value.restoreFromCacheEntry(entryDetails.projectMetadata, projectResult)
+            }
+
+            return projectResult
+        } finally {
+            // Stops the project specific checks when the build inputs could not be checked.
+            // The checks that are already running are short, and don't run build logic, so stopping the executors doesn't wait for long.
+            cancellation.cancel()
+            CompositeStoppable.stoppable(projectFingerprintExecutor, checkExecutor).stop()
+        }
     }
 
     private
-    fun checkBuildScopedFingerprint(fingerprintFile: ConfigurationCacheStateFile): CheckedFingerprint {
+    fun checkBuildScopedFingerprint(fingerprintFile: ConfigurationCacheStateFile, executor: Executor, cancellation: FingerprintCheckCancellation): CheckedFingerprint {
         return readFingerprintFile(fingerprintFile) { host ->
             cacheFingerprintController.run {
-                checkBuildScopedFingerprint(host)
+                checkBuildScopedFingerprint(host, executor, cancellation)
             }
         }
     }
 
     private
-    fun checkProjectScopedFingerprint(fingerprintFile: ConfigurationCacheStateFile): CheckedFingerprint {
+    fun readProjectScopedFingerprint(fingerprintFile: ConfigurationCacheStateFile, executor: Executor, cancellation: FingerprintCheckCancellation): ConfigurationCacheFingerprintChecker.ProjectScopedCheck {
         return readFingerprintFile(fingerprintFile) { host ->
             cacheFingerprintController.run {
-                checkProjectScopedFingerprint(host)
+                readProjectScopedFingerprint(host, executor, cancellation)
             }
         }
     }
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configurationcache
+
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.FilterInputStream
+import java.io.InputStream
+import java.lang.ref.SoftReference
+import javax.inject.Inject
+
+
+/**
+ * A global service that retains the plaintext state of the last loaded configuration cache entry in the daemon,
+ * so that a later build with the same [ConfigurationCacheKey] can load it again without reading, decrypting and decompressing the state files.
+ *
+ * The state is only loaded after the fingerprint of the entry has been checked, and only while the state files are unchanged.
+ * It is discarded when the heap of the daemon is running full, and held through soft references so the garbage collector can reclaim it.
+ * At most [maxRetainedSize] bytes are retained for the files of an entry.
+ */
+class RetainedConfigurationCacheState internal constructor(
+    private val maxRetainedSize: Long
+) {
+
+    @Inject
+    @Suppress("unused") // used in DI
+    constructor() : this(Runtime.getRuntime().maxMemory() / MAX_HEAP_FRACTION)
+
+    private
+    var entry: RetainedEntry? = null
+
+    /**
+     * Returns the state of the given [file] of the entry with the given [key], either from memory or from the stream created by [load].
+     *
+     * The state read from [load] is retained when the stream is closed, unless the [heapLoad] is too high.
+     */
+    internal
+    fun inputStreamFor(key: String, file: File, heapLoad: Double, load: () -> InputStream): InputStream {
+        val snapshot = FileSnapshot(file.length(), file.lastModified())
+        val remainingSize: Long
+        synchronized(this) {
+            if (heapLoad >= MAX_HEAP_LOAD) {
+                entry = null
+                return load()
+            }
+            val current = entry?.takeIf { it.key == key } ?: RetainedEntry(key).also { entry = it }
+            val retained = current.files[file]?.takeIf { it.snapshot == snapshot }?.state?.get()
+            if (retained != null) {
+                return ByteArrayInputStream(retained)
+            }
+            current.files.remove(file)
+            remainingSize = maxRetainedSize - current.retainedSize()
+        }
+        if (remainingSize <= 0) {
+            return load()
+        }
+        // The state file is compressed, so its plaintext is usually larger
+        val maxSize = minOf(remainingSize, MAX_ARRAY_SIZE).toInt()
+        return RetainingInputStream(load(), minOf(snapshot.length, maxSize.toLong()).toInt(), maxSize) { state ->
+            retain(key, file, RetainedFile(snapshot, SoftReference(state), state.size))
+        }
+    }
+
+    /**
+     * Discards any retained state of the given [file], as it is about to be replaced.
+     */
+    internal
+    fun discard(file: File) {
+        synchronized(this) {
+            entry?.files?.remove(file)
+        }
+    }
+
+    private
+    fun retain(key: String, file: File, state: RetainedFile) {
+        synchronized(this) {
+            // Other files of the entry may have been retained while this one was read
+            entry?.takeIf { it.key == key && it.retainedSize() + state.size <= maxRetainedSize }?.files?.put(file, state)
+        }
+    }
+
+    private
+    class RetainedEntry(val key: String) {
+        val files = mutableMapOf<File, RetainedFile>()
+
+        /**
+         * Returns the number of bytes retained for the files of this entry, after forgetting the files reclaimed by the garbage collector.
+         */
+        fun retainedSize(): Long {
+            files.values.removeIf { it.state.get() == null }
+            return files.values.sumOf { it.size.toLong() }
+        }
+    }
+
+    private
+    data class FileSnapshot(val length: Long, val lastModified: Long)
+
+    private
+    class RetainedFile(val snapshot: FileSnapshot, val state: SoftReference<ByteArray>, val size: Int)
+
+    /**
+     * Keeps a copy of the bytes read from the [input], and hands them to [onComplete] when the stream is closed.
+     * Any bytes not read by the consumer are read when closing, as the decoder may stop reading before the end of the stream.
+     * Stops copying once more than [maxSize] bytes have been read.
+     */
+    private
+    class RetainingInputStream(
+        input: InputStream,
+        initialSize: Int,
+        private val maxSize: Int,
+        private val onComplete: (ByteArray) -> Unit
+    ) : FilterInputStream(input) {
+
+        private
+        var copy: CopyBuffer? = CopyBuffer(initialSize)
+
+        private
+        var endOfInput = false
+
+        override fun read(): Int =
+            super.read().also { b ->
+                if (b < 0) {
+                    endOfInput = true
+                } else {
+                    copy?.write(b)
+                    checkSize()
+                }
+            }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int =
+            super.read(b, off, len).also { count ->
+                if (count < 0) {
+                    endOfInput = true
+                } else {
+                    copy?.write(b, off, count)
+                    checkSize()
+                }
+            }
+
+        override fun skip(n: Long): Long {
+            // Skipped bytes would be missing from the copy
+            copy = null
+            return super.skip(n)
+        }
+
+        override fun markSupported(): Boolean = false
+
+        private
+        fun checkSize() {
+            if ((copy?.size() ?: 0) > maxSize) {
+                copy = null
+            }
+        }
+
+        override fun close() {
+            try {
+                val buffer = ByteArray(8192)
+                while (copy != null && !endOfInput) {
+                    read(buffer, 0, buffer.size)
+                }
+            } finally {
+                super.close()
+            }
+            copy?.let { state ->
+                copy = null
+                onComplete(state.toRetainedArray())
+            }
+        }
+    }
+
+    /**
+     * A buffer that hands out its array without copying it, when it has been filled exactly.
+     */
+    private
+    class CopyBuffer(initialSize: Int) : ByteArrayOutputStream(initialSize) {
+        fun toRetainedArray(): ByteArray =
+            if (count == buf.size) buf
+            else buf.copyOf(count)
+    }
+
+    private
+    companion object {
+
+        /**
+         * The heap load at which retained state is discarded, relative to the load at which the daemon is considered to be running out of heap space.
+         */
+        const val MAX_HEAP_LOAD = 0.75
+
+        /**
+         * The maximum size of the retained state files of an entry, as a fraction of the maximum heap size.
+         */
+        const val MAX_HEAP_FRACTION = 8L
+
+        const val MAX_ARRAY_SIZE = Int.MAX_VALUE.toLong() - 8
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configurationcache
+
+import org.gradle.internal.concurrent.ManagedExecutor
+import org.gradle.internal.file.compress.Lz4BlockInputStream
+import org.gradle.internal.file.compress.Lz4BlockOutputStream
+import java.io.FilterInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+
+
+/**
+ * The format of the configuration cache state, written as the first byte of each state file.
+ *
+ * The state is compressed before it is encrypted, so the format byte and the blocks are encrypted too.
+ */
+private
+enum class StateFormat {
+    UNCOMPRESSED,
+
+    /**
+     * Written by [Lz4BlockOutputStream].
+     */
+    LZ4_BLOCKS
+}
+
+
+/**
+ * The number of blocks decompressed ahead of the one being read.
+ */
+private
+const val MAX_PENDING_BLOCKS = 4
+
+
+/**
+ * Writes the format of the state to the given [output], and returns the stream to write the state to.
+ */
+internal
+fun stateOutputStream(output: OutputStream, compress: Boolean): OutputStream =
+    if (compress) {
+        output.write(StateFormat.LZ4_BLOCKS.ordinal)
+        Lz4BlockOutputStream(output)
+    } else {
+        output.write(StateFormat.UNCOMPRESSED.ordinal)
+        output
+    }
+
+
+/**
+ * Reads the format of the state from the given [input], and returns the stream to read the state from.
+ *
+ * Compressed blocks are decompressed ahead on the executor created by [decompressionExecutor], which is stopped when the stream is closed.
+ */
+internal
+fun stateInputStream(input: InputStream, decompressionExecutor: () -> ManagedExecutor): InputStream =
+    when (val format = input.read()) {
+        StateFormat.UNCOMPRESSED.ordinal -> input
+        StateFormat.LZ4_BLOCKS.ordinal -> {
+            val executor = decompressionExecutor()
+            ExecutorStoppingInputStream(Lz4BlockInputStream(input, executor, MAX_PENDING_BLOCKS), executor)
+        }
+        else -> {
+            input.close()
+            throw IOException("Unsupported configuration cache state format: $format")
+        }
+    }
+
+
+private
+class ExecutorStoppingInputStream(input: InputStream, private val executor: ManagedExecutor) : FilterInputStream(input) {
+    override fun close() {
+        try {
+            super.close()
+        } finally {
+            executor.stop()
+        }
+    }
+}
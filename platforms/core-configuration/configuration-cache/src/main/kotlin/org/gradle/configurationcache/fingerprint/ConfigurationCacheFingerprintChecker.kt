@@ -33,6 +33,14 @@ import org.gradle.internal.util.NumberUtil.ordinal
 import org.gradle.util.Path
 import java.io.File
 import java.net.URI
+import java.util.concurrent.Callable
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.function.Consumer
 
 
@@ -40,8 +48,23 @@ internal
 typealias InvalidationReason = String
 
 
+/**
+ * Checks the recorded fingerprint of a cache entry against the current state of the build.
+ *
+ * Each fingerprint entry is checked on the given [executor] as soon as it has been read, so the checks run concurrently
+ * with each other and with the reading of the remaining entries. A check is skipped when an earlier check
+ * of the same scope has already failed, so the reported reason is the same as when checking the entries one at a time.
+ * Value sources run build logic, so they are only obtained once the entries recorded before them are known to be up-to-date,
+ * and only on the thread that checks the build-scoped fingerprint or completes the project-scoped check.
+ *
+ * The build-scoped checks and the reading of the project-scoped fingerprint of an entry can run at the same time when they share the same [cancellation].
+ */
 internal
-class ConfigurationCacheFingerprintChecker(private val host: Host) {
+class ConfigurationCacheFingerprintChecker(
+    private val host: Host,
+    private val executor: Executor = Executor(Runnable::run),
+    private val cancellation: FingerprintCheckCancellation = FingerprintCheckCancellation().apply { buildScopeValid() }
+) {
 
     interface Host {
         val isEncrypted: Boolean
@@ -65,63 +88,156 @@ class ConfigurationCacheFingerprintChecker(private val host: Host) {
 
     suspend fun ReadContext.checkBuildScopedFingerprint(): CheckedFingerprint {
         // TODO: log some debug info
-        while (true) {
-            when (val input = read()) {
-                null -> break
-                is ConfigurationCacheFingerprint -> {
-                    // An input that is not specific to a project. If it is out-of-date, then invalidate the whole cache entry and skip any further checks
-                    val reason = check(input)
-                    if (reason != null) {
-                        return CheckedFingerprint.EntryInvalid(reason)
+        // Any failure invalidates the whole cache entry, so the project-scoped checks are cancelled too
+        val checks = CheckScope(cancellation, decidesCancellation = true)
+        val pendingChecks = mutableListOf<Future<InvalidationReason?>>()
+        var valid = false
+        try {
+            while (!checks.hasFailed) {
+                when (val input = read()) {
+                    null -> break
+                    is ConfigurationCacheFingerprint -> {
+                        // An input that is not specific to a project. If it is out-of-date, then invalidate the whole cache entry and skip any further checks
+                        if (runsBuildLogic(input)) {
+                            val reason = firstReasonOf(pendingChecks) ?: check(input)
+                            if (reason != null) {
+                                return CheckedFingerprint.EntryInvalid(reason)
+                            }
+                        } else {
+                            pendingChecks.add(submitCheck(input, pendingChecks.size, checks))
+                        }
                     }
+                    else -> throw IllegalStateException("Unexpected configuration cache fingerprint: $input")
                 }
-                else -> throw IllegalStateException("Unexpected configuration cache fingerprint: $input")
+            }
+            val reason = firstReasonOf(pendingChecks)
+            if (reason != null) {
+                return CheckedFingerprint.EntryInvalid(reason)
+            }
+            valid = true
+            return CheckedFingerprint.Valid
+        } finally {
+            cancelAll(pendingChecks)
+            if (valid) {
+                cancellation.buildScopeValid()
+            } else {
+                cancellation.cancel()
             }
         }
-        return CheckedFingerprint.Valid
     }
 
-    suspend fun ReadContext.checkProjectScopedFingerprint(): CheckedFingerprint {
-        // TODO: log some debug info
+    suspend fun ReadContext.checkProjectScopedFingerprint(): CheckedFingerprint =
+        readProjectScopedFingerprint().complete()
+
+    /**
+     * Reads the project-scoped fingerprint and starts checking its entries, without running any build logic, so it can be called on any thread.
+     * The check is completed by [ProjectScopedCheck.complete].
+     */
+    suspend fun ReadContext.readProjectScopedFingerprint(): ProjectScopedCheck =
+        ProjectScopedCheck().apply {
+            try {
+                readEntries()
+            } catch (e: Throwable) {
+                cancel()
+                throw e
+            }
+        }
+
+    inner class ProjectScopedCheck {
+
+        private
         var firstReason: InvalidationReason? = null
+
+        private
         val projects = mutableMapOf<Path, ProjectInvalidationState>()
-        while (true) {
-            when (val input = read()) {
-                null -> break
-                is ProjectSpecificFingerprint.ProjectFingerprint -> input.run {
-                    // An input that is specific to a project. If it is out-of-date, then invalidate that project's values and continue checking values
-                    // Don't check a value for a project that is already out-of-date
-                    val state = projects.entryFor(input.projectPath)
-                    if (!state.isInvalid) {
-                        val reason = check(input.value)
-                        if (reason != null) {
-                            if (firstReason == null) {
-                                firstReason = reason
+
+        private
+        val pendingChecks = mutableListOf<Future<InvalidationReason?>>()
+
+        // The checks run concurrently, so their results are applied in the order the entries were read,
+        // along with the dependencies between projects
+        private
+        val steps = mutableListOf<() -> Unit>()
+
+        internal
+        suspend fun ReadContext.readEntries() {
+            while (!cancellation.isCancelled) {
+                when (val input = read()) {
+                    null -> break
+                    is ProjectSpecificFingerprint.ProjectFingerprint -> input.run {
+                        // An input that is specific to a project. If it is out-of-date, then invalidate that project's values and continue checking values
+                        // Don't check a value for a project that is already out-of-date
+                        val state = projects.entryFor(input.projectPath)
+                        val inputCheck = if (runsBuildLogic(input.value)) {
+                            // Obtained by complete(), once the build-scoped inputs and the inputs recorded before it are known to be up-to-date
+                            FutureTask<InvalidationReason?>(Callable { check(input.value) })
+                        } else {
+                            submitCheck(input.value, pendingChecks.size, state.checks)
+                        }
+                        pendingChecks.add(inputCheck)
+                        steps.add {
+                            if (state.isInvalid) {
+                                inputCheck.cancel(false)
+                            } else {
+                                // Runs the check here when it has not started yet
+                                inputCheck.run()
+                                val reason = await(inputCheck)
+                                if (reason != null) {
+                                    if (firstReason == null) {
+                                        firstReason = reason
+                                    }
+                                    state.invalidate()
+                                }
                             }
-                            state.invalidate()
                         }
                     }
-                }
-                is ProjectSpecificFingerprint.ProjectDependency -> {
-                    val consumer = projects.entryFor(input.consumingProject)
-                    val target = projects.entryFor(input.targetProject)
-                    target.consumedBy(consumer)
-                }
-                is ProjectSpecificFingerprint.CoupledProjects -> {
-                    if (host.invalidateCoupledProjects) {
-                        val referrer = projects.entryFor(input.referringProject)
+                    is ProjectSpecificFingerprint.ProjectDependency -> {
+                        val consumer = projects.entryFor(input.consumingProject)
                         val target = projects.entryFor(input.targetProject)
-                        target.consumedBy(referrer)
-                        referrer.consumedBy(target)
+                        steps.add { target.consumedBy(consumer) }
+                    }
+                    is ProjectSpecificFingerprint.CoupledProjects -> {
+                        if (host.invalidateCoupledProjects) {
+                            val referrer = projects.entryFor(input.referringProject)
+                            val target = projects.entryFor(input.targetProject)
+                            steps.add {
+                                target.consumedBy(referrer)
+                                referrer.consumedBy(target)
+                            }
+                        }
                     }
+                    else -> throw IllegalStateException("Unexpected configuration cache fingerprint: $input")
                 }
-                else -> throw IllegalStateException("Unexpected configuration cache fingerprint: $input")
             }
         }
-        return if (firstReason == null) {
-            CheckedFingerprint.Valid
-        } else {
-            CheckedFingerprint.ProjectsInvalid(firstReason!!, projects.entries.filter { it.value.isInvalid }.map { it.key }.toSet())
+
+        /**
+         * Waits for the build-scoped checks and applies the results of the project-scoped checks.
+         * Value sources run build logic, so they are obtained here, on the calling thread, and only for the projects that are still up-to-date.
+         *
+         * @throws CancellationException when the build-scoped checks invalidated the cache entry.
+         */
+        fun complete(): CheckedFingerprint {
+            try {
+                // The checks so far are speculative when the build-scoped checks are still running
+                if (!cancellation.awaitBuildScope()) {
+                    throw CancellationException("The build-scoped fingerprint check invalidated the cache entry.")
+                }
+                steps.forEach { it() }
+            } finally {
+                cancel()
+            }
+            return firstReason.let { reason ->
+                if (reason == null) {
+                    CheckedFingerprint.Valid
+                } else {
+                    CheckedFingerprint.ProjectsInvalid(reason, projects.entries.filter { it.value.isInvalid }.map { it.key }.toSet())
+                }
+            }
+        }
+
+        fun cancel() {
+            cancelAll(pendingChecks)
         }
     }
 
@@ -146,7 +262,48 @@ class ConfigurationCacheFingerprintChecker(private val host: Host) {
     }
 
     private
-    fun MutableMap<Path, ProjectInvalidationState>.entryFor(path: Path) = getOrPut(path) { ProjectInvalidationState() }
+    fun MutableMap<Path, ProjectInvalidationState>.entryFor(path: Path) = getOrPut(path) { ProjectInvalidationState(cancellation) }
+
+    private
+    fun runsBuildLogic(input: ConfigurationCacheFingerprint) =
+        input is ConfigurationCacheFingerprint.ValueSource
+
+    /**
+     * Submits the check of the given [input] to the executor. The check is skipped when a check submitted
+     * before it, in the same [scope], has already failed, or when the checks have been cancelled.
+     */
+    private
+    fun submitCheck(input: ConfigurationCacheFingerprint, index: Int, scope: CheckScope): FutureTask<InvalidationReason?> =
+        FutureTask<InvalidationReason?>(
+            Callable {
+                if (scope.hasFailedBefore(index)) {
+                    null
+                } else {
+                    check(input)?.also {
+                        scope.failedAt(index)
+                    }
+                }
+            }
+        ).also(executor::execute)
+
+    private
+    fun firstReasonOf(checks: List<Future<InvalidationReason?>>): InvalidationReason? =
+        checks.asSequence().map { await(it) }.firstOrNull { it != null }
+
+    private
+    fun await(check: Future<InvalidationReason?>): InvalidationReason? =
+        try {
+            check.get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
+
+    private
+    fun cancelAll(checks: List<Future<InvalidationReason?>>) {
+        for (check in checks) {
+            check.cancel(false)
+        }
+    }
 
     private
     fun check(input: ConfigurationCacheFingerprint): InvalidationReason? {
@@ -336,8 +493,46 @@ class ConfigurationCacheFingerprintChecker(private val host: Host) {
     fun buildLogicInputFailed(obtainedValue: ObtainedValue, failure: Throwable): InvalidationReason =
         "a build logic input of type '${obtainedValue.valueSourceType.simpleName}' failed when storing the entry with $failure"
 
+    /**
+     * Tracks the first failed check of a group of checks that invalidate the same thing.
+     *
+     * When the scope [decidesCancellation], a failure cancels the [cancellation], and only the checks recorded after the first failure are skipped,
+     * so the reported reason is the same as when checking the entries one at a time.
+     * Otherwise, the checks of the scope are speculative, and all of them count as failed once the [cancellation] has been cancelled.
+     */
+    private
+    class CheckScope(
+        private val cancellation: FingerprintCheckCancellation,
+        private val decidesCancellation: Boolean = false
+    ) {
+
+        private
+        val firstFailure = AtomicInteger(Int.MAX_VALUE)
+
+        private
+        val isCancelled: Boolean
+            get() = !decidesCancellation && cancellation.isCancelled
+
+        val hasFailed: Boolean
+            get() = isCancelled || firstFailure.get() != Int.MAX_VALUE
+
+        fun hasFailedBefore(index: Int) =
+            isCancelled || firstFailure.get() < index
+
+        fun failedAt(index: Int) {
+            firstFailure.accumulateAndGet(index) { current, failed -> minOf(current, failed) }
+            if (decidesCancellation) {
+                cancellation.cancel()
+            }
+        }
+    }
+
     private
-    class ProjectInvalidationState {
+    class ProjectInvalidationState(cancellation: FingerprintCheckCancellation) {
+
+        // The checks of the inputs of the project, which may run on any thread
+        val checks = CheckScope(cancellation)
+
         // When true, the project is definitely invalid
         // When false, validity is not known
         private
@@ -369,3 +564,42 @@ class ConfigurationCacheFingerprintChecker(private val host: Host) {
         }
     }
 }
+
+
+/**
+ * Shared by the build-scoped and project-scoped checks of a cache entry, so that the project-scoped checks can run
+ * while the build-scoped checks are still running.
+ *
+ * The project-scoped checks are speculative until the build-scoped checks have passed. They stop as soon as the checks are cancelled,
+ * and only obtain value sources once the build-scoped checks have passed.
+ */
+internal
+class FingerprintCheckCancellation {
+
+    private
+    val buildScopeChecked = CountDownLatch(1)
+
+    @Volatile
+    private
+    var cancelled = false
+
+    val isCancelled: Boolean
+        get() = cancelled
+
+    fun buildScopeValid() {
+        buildScopeChecked.countDown()
+    }
+
+    fun cancel() {
+        cancelled = true
+        buildScopeChecked.countDown()
+    }
+
+    /**
+     * Waits for the build-scoped checks, and returns false when the checks have been cancelled.
+     */
+    fun awaitBuildScope(): Boolean {
+        buildScopeChecked.await()
+        return !cancelled
+    }
+}
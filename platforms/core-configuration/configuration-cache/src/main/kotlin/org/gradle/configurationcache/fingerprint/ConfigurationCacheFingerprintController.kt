@@ -64,6 +64,7 @@ import org.gradle.util.internal.GFileUtils
 import java.io.File
 import java.net.URI
 import java.nio.file.Files
+import java.util.concurrent.Executor
 import java.util.function.Supplier
 
 
@@ -275,14 +276,14 @@ class ConfigurationCacheFingerprintController internal constructor(
         writingState = writingState.dispose()
     }
 
-    suspend fun ReadContext.checkBuildScopedFingerprint(host: Host): CheckedFingerprint =
-        ConfigurationCacheFingerprintChecker(CacheFingerprintCheckerHost(host)).run {
+    suspend fun ReadContext.checkBuildScopedFingerprint(host: Host, executor: Executor, cancellation: FingerprintCheckCancellation): CheckedFingerprint =
+        ConfigurationCacheFingerprintChecker(CacheFingerprintCheckerHost(host), executor, cancellation).run {
             checkBuildScopedFingerprint()
         }
 
-    suspend fun ReadContext.checkProjectScopedFingerprint(host: Host): CheckedFingerprint =
-        ConfigurationCacheFingerprintChecker(CacheFingerprintCheckerHost(host)).run {
-            checkProjectScopedFingerprint()
+    suspend fun ReadContext.readProjectScopedFingerprint(host: Host, executor: Executor, cancellation: FingerprintCheckCancellation): ConfigurationCacheFingerprintChecker.ProjectScopedCheck =
+        ConfigurationCacheFingerprintChecker(CacheFingerprintCheckerHost(host), executor, cancellation).run {
+            readProjectScopedFingerprint()
         }
 
     suspend fun ReadContext.collectFingerprintForReusedProjects(host: Host, reusedProjects: Set<Path>): Unit =
@@ -48,6 +48,21 @@ class ConfigurationCacheStartParameter(
 
     val encryptionRequested: Boolean = options.getInternalFlag("org.gradle.configuration-cache.internal.encryption", true)
 
+    /**
+     * Whether the state is compressed before it is written to the cache entry.
+     */
+    val isCompressingState: Boolean = options.getInternalFlag("org.gradle.configuration-cache.internal.compression", true)
+
+    /**
+     * Whether the daemon retains the state of the last loaded cache entry in memory, for use by later builds.
+     */
+    val isRetainingState: Boolean = options.getInternalFlag("org.gradle.configuration-cache.internal.retain-state", true)
+
+    /**
+     * Whether the work graph is stored as per-project shards that can be loaded in parallel.
+     */
+    val isShardedWorkGraph: Boolean = options.getInternalFlag("org.gradle.configuration-cache.internal.sharded-work-graph", false)
+
     val keystoreDir: String? = options.getInternalString("org.gradle.configuration-cache.internal.key-store-dir", null)
 
     val encryptionAlgorithm: String = options.getInternalString("org.gradle.configuration-cache.internal.encryption-alg", SupportedEncryptionAlgorithm.AES_ECB_PADDING.transformation)
@@ -74,6 +89,9 @@ class ConfigurationCacheStartParameter(
     val maxProblems: Int
         get() = startParameter.configurationCacheMaxProblems
 
+    val maxWorkerCount: Int
+        get() = startParameter.maxWorkerCount
+
     val ignoredFileSystemCheckInputs: String?
         get() = startParameter.configurationCacheIgnoredFileSystemCheckInputs
 
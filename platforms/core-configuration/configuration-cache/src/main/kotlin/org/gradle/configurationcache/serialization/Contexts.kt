@@ -55,19 +55,22 @@ class DefaultWriteContext(
 
     override val tracer: Tracer?,
 
-    problemsListener: ProblemsListener
+    problemsListener: ProblemsListener,
+
+    internal
+    val identityTables: WriteIdentityTables = WriteIdentityTables()
 
 ) : AbstractIsolateContext<WriteIsolate>(codec, problemsListener), WriteContext, Encoder by encoder, AutoCloseable {
 
-    override val sharedIdentities = WriteIdentities()
+    override val sharedIdentities = identityTables.shared
 
     override val circularReferences = CircularReferences()
 
     private
-    val classes = WriteIdentities()
+    val classes = identityTables.classes
 
     private
-    val scopes = WriteIdentities()
+    val scopes = identityTables.scopes
 
     /**
      * Closes the given [encoder] if it is [AutoCloseable].
@@ -217,17 +220,20 @@ class DefaultReadContext(
 
     override val logger: Logger,
 
-    problemsListener: ProblemsListener
+    problemsListener: ProblemsListener,
+
+    internal
+    val identityTables: ReadIdentityTables = ReadIdentityTables()
 
 ) : AbstractIsolateContext<ReadIsolate>(codec, problemsListener), ReadContext, Decoder by decoder, AutoCloseable {
 
-    override val sharedIdentities = ReadIdentities()
+    override val sharedIdentities = identityTables.shared
 
     private
-    val classes = ReadIdentities()
+    val classes = identityTables.classes
 
     private
-    val scopes = ReadIdentities()
+    val scopes = identityTables.scopes
 
     private
     lateinit var projectProvider: ProjectProvider
@@ -246,6 +252,15 @@ class DefaultReadContext(
         pendingOperations.clear()
     }
 
+    /**
+     * Defers the operations pending in this context until the given [context] finishes.
+     */
+    internal
+    fun finishWith(context: DefaultReadContext) {
+        context.pendingOperations.addAll(pendingOperations)
+        pendingOperations.clear()
+    }
+
     private
     var pendingOperations = ReferenceArrayList<() -> Unit>()
 
@@ -259,6 +274,15 @@ class DefaultReadContext(
         this.projectProvider = projectProvider
     }
 
+    /**
+     * Reads from the same class loader and projects as the given [context].
+     */
+    internal
+    fun initFrom(context: DefaultReadContext) {
+        initClassLoader(context.classLoader)
+        initProjectProvider(context.projectProvider)
+    }
+
     override var immediateMode: Boolean = false
 
     override fun close() {
@@ -284,10 +308,13 @@ class DefaultReadContext(
         val name = readString()
         val classLoader = if (readBoolean()) {
             val scope = readScope()
-            if (readBoolean()) {
-                scope.localClassLoader
-            } else {
-                scope.exportClassLoader
+            val local = readBoolean()
+            synchronized(scopeCreationLock) {
+                if (local) {
+                    scope.localClassLoader
+                } else {
+                    scope.exportClassLoader
+                }
             }
         } else {
             this.classLoader
@@ -321,10 +348,12 @@ class DefaultReadContext(
         val localImplementationHash = readHashCode()
         val exportClassPath = readClassPath()
 
-        val newScope = if (localImplementationHash != null && exportClassPath.isEmpty) {
-            parent.createLockedChild(name, origin, localClassPath, localImplementationHash, null)
-        } else {
-            parent.createChild(name, origin).local(localClassPath).export(exportClassPath).lock()
+        val newScope = synchronized(scopeCreationLock) {
+            if (localImplementationHash != null && exportClassPath.isEmpty) {
+                parent.createLockedChild(name, origin, localClassPath, localImplementationHash, null)
+            } else {
+                parent.createChild(name, origin).local(localClassPath).export(exportClassPath).lock()
+            }
         }
 
         scopes.putInstance(id, newScope)
@@ -346,6 +375,13 @@ class DefaultReadContext(
 }
 
 
+/**
+ * Guards the class loader scopes created while decoding, as shards of a state file can be decoded concurrently.
+ */
+private
+val scopeCreationLock = Any()
+
+
 interface DecodingProvider<T> {
     suspend fun ReadContext.decode(): T?
 }
@@ -25,6 +25,9 @@ class WriteIdentities {
     private
     val instanceIds = IdentityHashMap<Any, Int>()
 
+    val size: Int
+        get() = instanceIds.size
+
     fun getId(instance: Any) = instanceIds[instance]
 
     fun putInstance(instance: Any): Int {
@@ -35,19 +38,47 @@ class WriteIdentities {
 }
 
 
-class ReadIdentities {
+open class ReadIdentities {
 
     private
     val instanceIds = HashMap<Int, Any>()
 
-    fun getInstance(id: Int) = instanceIds[id]
+    open fun getInstance(id: Int): Any? = instanceIds[id]
 
-    fun putInstance(id: Int, instance: Any) {
+    open fun putInstance(id: Int, instance: Any) {
         instanceIds[id] = instance
     }
 }
 
 
+/**
+ * The identity tables of a write context that are not scoped to an isolate.
+ */
+internal
+class WriteIdentityTables(
+    val shared: WriteIdentities = WriteIdentities(),
+    val classes: WriteIdentities = WriteIdentities(),
+    val scopes: WriteIdentities = WriteIdentities()
+) {
+    /**
+     * The ids that will be assigned to the next instances of each table.
+     */
+    fun nextIds(): IntArray =
+        intArrayOf(shared.size, classes.size, scopes.size)
+}
+
+
+/**
+ * The identity tables of a read context that are not scoped to an isolate.
+ */
+internal
+class ReadIdentityTables(
+    val shared: ReadIdentities = ReadIdentities(),
+    val classes: ReadIdentities = ReadIdentities(),
+    val scopes: ReadIdentities = ReadIdentities()
+)
+
+
 class CircularReferences {
 
     private
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configurationcache.serialization
+
+import org.gradle.configurationcache.extensions.useToRun
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.operations.CurrentBuildOperationRef
+import org.gradle.internal.serialize.Decoder
+import org.gradle.internal.serialize.Encoder
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+
+
+/**
+ * Writes parts of a state file as independently encoded shards, so that the shards can be decoded concurrently.
+ *
+ * The shards share the identity tables of the enclosing context, so an object referenced from several shards is still encoded once,
+ * by the first shard that references it. Shards are written one after the other, so the ids first assigned by a shard form a range,
+ * which is recorded in the header of the shard. When a shard refers to an id assigned before its range, the reader waits until the
+ * shard that assigned the id has decoded the instance. As a shard only waits for shards written before it, and shards are started
+ * in the order they were written, reading the shards cannot deadlock.
+ */
+internal
+class StateShards(
+    private val writeContextFor: (Encoder, Codec<Any?>, WriteIdentityTables) -> DefaultWriteContext,
+    private val readContextFor: (Decoder, Codec<Any?>, ReadIdentityTables) -> DefaultReadContext,
+    private val executorFactory: ExecutorFactory,
+    private val maxParallelism: Int
+) {
+    /**
+     * Writes each of the given [shards] with a new context using a codec created by [codec].
+     */
+    suspend fun <T> WriteContext.writeShards(shards: List<T>, codec: () -> Codec<Any?>, writeShard: suspend WriteContext.(T) -> Unit) {
+        val identityTables = (this as DefaultWriteContext).identityTables
+        writeSmallInt(shards.size)
+        for (shard in shards) {
+            for (id in identityTables.nextIds()) {
+                writeSmallInt(id)
+            }
+            val bytes = ByteArrayOutputStream()
+            writeContextFor(KryoBackedEncoder(bytes), codec(), identityTables).useToRun {
+                writeShard(shard)
+            }
+            writeBinary(bytes.toByteArray())
+        }
+    }
+
+    /**
+     * Reads the given [shards] concurrently, each with a new context using a codec created by [codec].
+     * The operations deferred by the shards run when this context finishes, in the order the shards were written.
+     */
+    fun <T> ReadContext.readShards(shards: List<T>, codec: () -> Codec<Any?>, readShard: suspend ReadContext.(T) -> Unit) {
+        val context = this as DefaultReadContext
+        require(readSmallInt() == shards.size) {
+            "corrupt state file"
+        }
+        val encodedShards = shards.map { shard ->
+            EncodedShard(shard, IntArray(3) { readSmallInt() }, readBinary())
+        }
+        val identityTables = ShardedReadIdentityTables(context.identityTables)
+        // Shards are read on behalf of the current operation
+        val parentOperation = CurrentBuildOperationRef.instance().get()
+        val executor = executorFactory.create("Configuration cache state reader", maxParallelism.coerceIn(1, shards.size.coerceAtLeast(1)))
+        val shardContexts = try {
+            encodedShards.map { encodedShard ->
+                CompletableFuture.supplyAsync({
+                    CurrentBuildOperationRef.instance().with(parentOperation, CurrentBuildOperationRef.Callable<DefaultReadContext, RuntimeException> {
+                        val shardContext = readContextFor(KryoBackedDecoder(ByteArrayInputStream(encodedShard.bytes)), codec(), identityTables.forShard(encodedShard.firstIds))
+                        shardContext.useToRun {
+                            initFrom(context)
+                            runReadOperation {
+                                readShard(encodedShard.shard)
+                            }
+                        }
+                        shardContext
+                    })
+                }, executor).whenComplete { _, failure ->
+                    if (failure != null) {
+                        identityTables.abort(failure)
+                    }
+                }
+            }.map { it.joinUnwrapping() }
+        } finally {
+            executor.stop()
+        }
+        identityTables.publish()
+        for (shardContext in shardContexts) {
+            shardContext.finishWith(context)
+        }
+    }
+
+    private
+    class EncodedShard<T>(val shard: T, val firstIds: IntArray, val bytes: ByteArray)
+}
+
+
+private
+fun <T> CompletableFuture<T>.joinUnwrapping(): T =
+    try {
+        join()
+    } catch (e: CompletionException) {
+        throw e.cause ?: e
+    }
+
+
+/**
+ * The identity tables shared by shards that are read concurrently.
+ */
+internal
+class ShardedReadIdentityTables(private val parent: ReadIdentityTables) {
+
+    private
+    val shared = ShardedReadIdentities(parent.shared)
+
+    private
+    val classes = ShardedReadIdentities(parent.classes)
+
+    private
+    val scopes = ShardedReadIdentities(parent.scopes)
+
+    /**
+     * Returns the tables of the shard whose own instances have ids starting from the given [firstIds].
+     */
+    fun forShard(firstIds: IntArray) = ReadIdentityTables(
+        shared.forShard(firstIds[0]),
+        classes.forShard(firstIds[1]),
+        scopes.forShard(firstIds[2])
+    )
+
+    /**
+     * Fails the instances that have not been read yet, so the shards waiting for them fail too.
+     */
+    fun abort(failure: Throwable) {
+        shared.abort(failure)
+        classes.abort(failure)
+        scopes.abort(failure)
+    }
+
+    /**
+     * Adds the instances read by all shards to the parent tables.
+     */
+    fun publish() {
+        shared.publish()
+        classes.publish()
+        scopes.publish()
+    }
+}
+
+
+internal
+class ShardedReadIdentities(private val parent: ReadIdentities) {
+
+    private
+    val instances = ConcurrentHashMap<Int, CompletableFuture<Any>>()
+
+    @Volatile
+    private
+    var failure: Throwable? = null
+
+    fun forShard(firstId: Int): ReadIdentities = object : ReadIdentities() {
+        override fun getInstance(id: Int): Any? =
+            parent.getInstance(id) ?: when {
+                // Assigned by a shard written before this one
+                id < firstId -> instanceFor(id).joinUnwrapping()
+                else -> instances[id]?.getNow(null)
+            }
+
+        override fun putInstance(id: Int, instance: Any) {
+            instanceFor(id).complete(instance)
+        }
+    }
+
+    fun abort(failure: Throwable) {
+        this.failure = failure
+        for (instance in instances.values) {
+            instance.completeExceptionally(failure)
+        }
+    }
+
+    fun publish() {
+        for ((id, instance) in instances) {
+            if (instance.isDone && !instance.isCompletedExceptionally) {
+                parent.putInstance(id, instance.join())
+            }
+        }
+    }
+
+    private
+    fun instanceFor(id: Int): CompletableFuture<Any> =
+        instances.computeIfAbsent(id) { CompletableFuture() }.also { instance ->
+            failure?.let { instance.completeExceptionally(it) }
+        }
+}
@@ -37,6 +37,7 @@ import java.lang.reflect.Field
 class BeanPropertyReader(
     private val beanType: Class<*>,
     private val constructors: BeanConstructors,
+    schemas: BeanSchemas,
     instantiatorFactory: InstantiatorFactory
 ) : BeanStateReader {
     // TODO should use the same scheme as the original bean
@@ -44,7 +45,7 @@ class BeanPropertyReader(
     val instantiationScheme: InstantiationScheme = instantiatorFactory.decorateScheme()
 
     private
-    val relevantFields = relevantStateOf(beanType)
+    val relevantFields = schemas.relevantStateOf(beanType)
 
     private
     val constructorForSerialization by unsafeLazy {
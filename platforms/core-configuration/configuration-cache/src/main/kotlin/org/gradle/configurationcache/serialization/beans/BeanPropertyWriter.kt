@@ -28,11 +28,12 @@ import java.lang.reflect.Field
 
 
 class BeanPropertyWriter(
-    beanType: Class<*>
+    beanType: Class<*>,
+    schemas: BeanSchemas
 ) : BeanStateWriter {
 
     private
-    val relevantFields = relevantStateOf(beanType)
+    val relevantFields = schemas.relevantStateOf(beanType)
 
     /**
      * Serializes a bean by serializing the value of each of its fields.
@@ -21,6 +21,8 @@ import org.gradle.api.artifacts.Configuration
 import org.gradle.api.file.SourceDirectorySet
 import org.gradle.api.internal.ConventionTask
 import org.gradle.api.internal.IConventionAware
+import org.gradle.cache.internal.CrossBuildInMemoryCache
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory
 import org.gradle.configurationcache.problems.PropertyKind
 import org.gradle.configurationcache.serialization.MutableIsolateContext
 import org.gradle.configurationcache.serialization.Workarounds
@@ -41,6 +43,21 @@ val unsupportedFieldDeclaredTypes = listOf(
 )
 
 
+/**
+ * A global service that caches the relevant state of bean types, so it is only computed once per daemon.
+ */
+class BeanSchemas(
+    cacheFactory: CrossBuildInMemoryCacheFactory
+) {
+    private
+    val cache: CrossBuildInMemoryCache<Class<*>, List<RelevantField>> = cacheFactory.newClassCache()
+
+    internal
+    fun relevantStateOf(beanType: Class<*>): List<RelevantField> =
+        cache.get(beanType) { -> org.gradle.configurationcache.serialization.beans.relevantStateOf(beanType) }
+}
+
+
 internal
 fun relevantStateOf(beanType: Class<*>): List<RelevantField> =
     when (IConventionAware::class.java.isAssignableFrom(beanType)) {
@@ -42,6 +42,7 @@ import org.gradle.api.tasks.util.PatternSet
 import org.gradle.composite.internal.BuildTreeWorkGraphController
 import org.gradle.configurationcache.problems.DocumentationSection.NotYetImplementedJavaSerialization
 import org.gradle.configurationcache.serialization.Codec
+import org.gradle.configurationcache.serialization.StateShards
 import org.gradle.configurationcache.serialization.codecs.jos.JavaObjectSerializationCodec
 import org.gradle.configurationcache.serialization.codecs.jos.JavaSerializationEncodingLookup
 import org.gradle.configurationcache.serialization.codecs.transform.CalculateArtifactsCodec
@@ -395,6 +396,6 @@ class Codecs(
         bind(BuildIdentifierSerializer())
     }
 
-    fun workNodeCodecFor(gradle: GradleInternal) =
-        WorkNodeCodec(gradle, internalTypesCodec(), ordinalGroupFactory)
+    fun workNodeCodecFor(gradle: GradleInternal, stateShards: StateShards?) =
+        WorkNodeCodec(gradle, internalTypesCodec(), ordinalGroupFactory, ::internalTypesCodec, stateShards)
 }
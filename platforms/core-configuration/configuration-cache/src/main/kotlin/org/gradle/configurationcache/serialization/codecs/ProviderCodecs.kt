@@ -245,12 +245,18 @@ class BuildServiceProviderCodec(
             val name = readString()
             val implementationType = readClassOf<BuildService<*>>()
             val isResolved = readBoolean()
+            val registry = buildServiceRegistryOf(buildIdentifier)
             if (isResolved) {
                 val parameters = read() as BuildServiceParameters?
                 val maxUsages = readInt()
-                buildServiceRegistryOf(buildIdentifier).registerIfAbsent(name, implementationType, parameters, maxUsages)
+                // Shards of the work graph can be decoded concurrently
+                synchronized(registry) {
+                    registry.registerIfAbsent(name, implementationType, parameters, maxUsages)
+                }
             } else {
-                buildServiceRegistryOf(buildIdentifier).consume(name, implementationType)
+                synchronized(registry) {
+                    registry.consume(name, implementationType)
+                }
             }
         }
 
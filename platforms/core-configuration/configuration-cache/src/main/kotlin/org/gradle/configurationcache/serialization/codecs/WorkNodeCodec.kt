@@ -21,15 +21,19 @@ import org.gradle.api.internal.GradleInternal
 import org.gradle.api.internal.artifacts.transform.DefaultTransformUpstreamDependenciesResolver
 import org.gradle.api.internal.tasks.NodeExecutionContext
 import org.gradle.configurationcache.serialization.Codec
+import org.gradle.configurationcache.serialization.IsolateOwner
 import org.gradle.configurationcache.serialization.ReadContext
+import org.gradle.configurationcache.serialization.StateShards
 import org.gradle.configurationcache.serialization.WriteContext
 import org.gradle.configurationcache.serialization.decodePreservingIdentity
 import org.gradle.configurationcache.serialization.encodePreservingIdentityOf
 import org.gradle.configurationcache.serialization.ownerService
 import org.gradle.configurationcache.serialization.readCollection
 import org.gradle.configurationcache.serialization.readCollectionInto
+import org.gradle.configurationcache.serialization.readList
 import org.gradle.configurationcache.serialization.readNonNull
 import org.gradle.configurationcache.serialization.withGradleIsolate
+import org.gradle.configurationcache.serialization.withIsolate
 import org.gradle.configurationcache.serialization.writeCollection
 import org.gradle.execution.plan.ActionNode
 import org.gradle.execution.plan.CompositeNodeGroup
@@ -47,7 +51,15 @@ internal
 class WorkNodeCodec(
     private val owner: GradleInternal,
     private val internalTypesCodec: Codec<Any?>,
-    private val ordinalGroups: OrdinalGroupFactory
+    private val ordinalGroups: OrdinalGroupFactory,
+    /**
+     * Creates the codec for each shard of nodes, as the codec keeps state while encoding and decoding.
+     */
+    private val newInternalTypesCodec: () -> Codec<Any?>,
+    /**
+     * When present, the nodes of each project are written as a separate shard, so they can be read concurrently.
+     */
+    private val stateShards: StateShards?
 ) {
 
     suspend fun WriteContext.writeWork(work: ScheduledWork) {
@@ -73,8 +85,15 @@ class WorkNodeCodec(
         // Such tasks do not rerun when configuration cache is re-used, even if specified on the command line.
         // Not restoring them as entry points doesn't affect the resulting execution plan.
         val scheduledEntryNodeIds = mutableListOf<Int>()
+        writeBoolean(stateShards != null)
+        if (stateShards != null) {
+            writeShardedNodes(stateShards, nodes)
+        } else {
+            nodes.forEach { node ->
+                write(node)
+            }
+        }
         nodes.forEach { node ->
-            write(node)
             val nodeId = scheduledNodeIds.size
             scheduledNodeIds[node] = nodeId
             if (node in work.entryNodes) {
@@ -98,16 +117,17 @@ class WorkNodeCodec(
     private
     suspend fun ReadContext.doRead(): ScheduledWork {
         val nodeCount = readSmallInt()
-        val nodes = ArrayList<Node>(nodeCount)
+        val nodes = when {
+            readBoolean() -> readShardedNodes(nodeCount)
+            else -> List(nodeCount) { readNode() }
+        }
         val nodesById = HashMap<Int, Node>(nodeCount)
-        for (i in 0 until nodeCount) {
-            val node = readNode()
+        for (node in nodes) {
             nodesById[nodesById.size] = node
             if (node is LocalTaskNode) {
                 node.prepareNode.require()
                 nodesById[nodesById.size] = node.prepareNode
             }
-            nodes.add(node)
         }
         // Note that using the ImmutableSet retains the original ordering of entry nodes.
         val entryNodes = ImmutableSet.builder<Node>()
@@ -121,6 +141,49 @@ class WorkNodeCodec(
         return ScheduledWork(nodes, entryNodes.build())
     }
 
+    /**
+     * Writes the task nodes of each project as a shard, and all other nodes as a single shard.
+     * Nodes of different shards can still refer to the same objects, including other tasks. [StateShards] encodes such an object once
+     * and makes the shards that refer to it wait until it has been read, so the shards only need to be read in the order they were written.
+     */
+    private
+    suspend fun WriteContext.writeShardedNodes(stateShards: StateShards, nodes: List<Node>) {
+        val shards = nodes.indices.groupBy { index ->
+            (nodes[index] as? LocalTaskNode)?.task?.project?.path
+        }.values.toList()
+        writeCollection(shards) { indices ->
+            writeCollection(indices) { writeSmallInt(it) }
+        }
+        stateShards.run {
+            writeShards(shards, newInternalTypesCodec) { indices ->
+                withIsolate(IsolateOwner.OwnerGradle(owner)) {
+                    for (index in indices) {
+                        write(nodes[index])
+                    }
+                }
+            }
+        }
+    }
+
+    private
+    fun ReadContext.readShardedNodes(nodeCount: Int): List<Node> {
+        val shards = readList { readList { readSmallInt() } }
+        val stateShards = requireNotNull(stateShards) {
+            "Cannot read a sharded work graph without state shards."
+        }
+        val nodes = arrayOfNulls<Node>(nodeCount)
+        stateShards.run {
+            readShards(shards, newInternalTypesCodec) { indices ->
+                withIsolate(IsolateOwner.OwnerGradle(owner)) {
+                    for (index in indices) {
+                        nodes[index] = readNode()
+                    }
+                }
+            }
+        }
+        return nodes.map { it!! }
+    }
+
     private
     suspend fun ReadContext.readNode(): Node {
         val node = readNonNull<Node>()
@@ -47,7 +47,7 @@ class ConfigurationCacheBuildOperationsTest {
 
         // when:
         buildOperationExecutor.withStoreOperation("key") {
-            StoreResult(stateFile)
+            StoreResult(stateFile, 0)
         }
 
         // then:
@@ -71,7 +71,7 @@ class ConfigurationCacheBuildOperationsTest {
 
         // when:
         buildOperationExecutor.withLoadOperation {
-            LoadResult(stateFile, UUID.randomUUID().toString()) to Unit
+            LoadResult(stateFile, 0, UUID.randomUUID().toString()) to Unit
         }
 
         // then:
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configurationcache
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.hamcrest.CoreMatchers.equalTo
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.Rule
+import org.junit.Test
+import java.io.File
+
+
+class RetainedConfigurationCacheStateTest {
+
+    @JvmField
+    @Rule
+    val testDirectoryProvider = TestNameTestDirectoryProvider(javaClass)
+
+    private
+    val retainedState = RetainedConfigurationCacheState()
+
+    private
+    var loads = 0
+
+    @Test
+    fun `state is loaded from memory while the state file is unchanged`() {
+        val stateFile = stateFile("state")
+
+        assertThat(readState("key", stateFile), equalTo("state"))
+        assertThat(readState("key", stateFile), equalTo("state"))
+        assertThat(loads, equalTo(1))
+    }
+
+    @Test
+    fun `state is loaded from file when the state file has changed`() {
+        val stateFile = stateFile("state")
+        readState("key", stateFile)
+
+        stateFile.writeText("changed state")
+
+        assertThat(readState("key", stateFile), equalTo("changed state"))
+        assertThat(loads, equalTo(2))
+    }
+
+    @Test
+    fun `state is loaded from file when it has been discarded`() {
+        val stateFile = stateFile("state")
+        readState("key", stateFile)
+
+        retainedState.discard(stateFile)
+
+        assertThat(readState("key", stateFile), equalTo("state"))
+        assertThat(loads, equalTo(2))
+    }
+
+    @Test
+    fun `only the state of the last loaded entry is retained`() {
+        val stateFile = stateFile("state")
+        readState("key", stateFile)
+        readState("other key", stateFile)
+
+        assertThat(readState("key", stateFile), equalTo("state"))
+        assertThat(loads, equalTo(3))
+    }
+
+    @Test
+    fun `state is not retained when the heap is running full`() {
+        val stateFile = stateFile("state")
+        readState("key", stateFile)
+
+        assertThat(readState("key", stateFile, heapLoad = 0.9), equalTo("state"))
+        assertThat(readState("key", stateFile), equalTo("state"))
+        assertThat(loads, equalTo(3))
+    }
+
+    @Test
+    fun `state is retained when only partially read`() {
+        val stateFile = stateFile("state")
+        retainedState.inputStreamFor("key", stateFile, 0.0) { load(stateFile) }.use { it.read() }
+
+        assertThat(readState("key", stateFile), equalTo("state"))
+        assertThat(loads, equalTo(1))
+    }
+
+    @Test
+    fun `retained state of an entry is capped`() {
+        val retainedState = RetainedConfigurationCacheState(8)
+        val stateFile = stateFile("state")
+        val otherStateFile = stateFile("other state", "other.bin")
+
+        readState("key", stateFile, retainedState = retainedState)
+        readState("key", otherStateFile, retainedState = retainedState)
+
+        assertThat(readState("key", stateFile, retainedState = retainedState), equalTo("state"))
+        assertThat(readState("key", otherStateFile, retainedState = retainedState), equalTo("other state"))
+        assertThat(loads, equalTo(3))
+    }
+
+    private
+    fun stateFile(text: String, name: String = "state.bin"): File =
+        testDirectoryProvider.file(name).apply { writeText(text) }
+
+    private
+    fun readState(key: String, stateFile: File, heapLoad: Double = 0.0, retainedState: RetainedConfigurationCacheState = this.retainedState): String =
+        retainedState.inputStreamFor(key, stateFile, heapLoad) { load(stateFile) }.use {
+            it.readBytes().toString(Charsets.UTF_8)
+        }
+
+    private
+    fun load(stateFile: File) =
+        stateFile.inputStream().also { loads++ }
+}
@@ -19,6 +19,8 @@ package org.gradle.configurationcache.fingerprint
 import com.nhaarman.mockitokotlin2.any
 import com.nhaarman.mockitokotlin2.doReturn
 import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.never
+import com.nhaarman.mockitokotlin2.verify
 import org.gradle.api.Describable
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.logging.Logger
@@ -47,12 +49,21 @@ import org.gradle.internal.hash.HashCode
 import org.gradle.internal.hash.TestHashCodes
 import org.gradle.internal.serialize.Decoder
 import org.gradle.internal.serialize.Encoder
+import org.gradle.util.Path
 import org.hamcrest.CoreMatchers.equalTo
+import org.hamcrest.CoreMatchers.instanceOf
 import org.hamcrest.MatcherAssert.assertThat
+import org.junit.Assert.fail
 import org.junit.Test
 import java.io.File
 import java.io.InputStream
 import java.io.OutputStream
+import java.util.concurrent.Callable
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
 
 
 class ConfigurationCacheFingerprintCheckerTest {
@@ -201,6 +212,206 @@ class ConfigurationCacheFingerprintCheckerTest {
         )
     }
 
+    @Test
+    fun `first invalidated input is reported when inputs are checked concurrently`() {
+
+        // given:
+        val firstFile = File("first.gradle.kts")
+        val secondFile = File("second.gradle.kts")
+        val secondChecked = CountDownLatch(1)
+        val executor = Executors.newFixedThreadPool(2)
+
+        // expect:
+        try {
+            assertThat(
+                checkFingerprintGiven(
+                    mock {
+                        on { hashCodeOf(firstFile) }.then {
+                            // Only complete once the second input has been found to be out-of-date
+                            secondChecked.await()
+                            TestHashCodes.hashCodeFrom(1)
+                        }
+                        on { hashCodeOf(secondFile) }.then {
+                            secondChecked.countDown()
+                            TestHashCodes.hashCodeFrom(1)
+                        }
+                        on { displayNameOf(any()) }.then { invocation ->
+                            invocation.getArgument<File>(0).name
+                        }
+                    },
+                    listOf(
+                        ConfigurationCacheFingerprint.InputFile(firstFile, TestHashCodes.hashCodeFrom(2)),
+                        ConfigurationCacheFingerprint.InputFile(secondFile, TestHashCodes.hashCodeFrom(2))
+                    ),
+                    executor
+                ),
+                equalTo("file 'first.gradle.kts' has changed")
+            )
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    @Test
+    fun `first invalidated input is reported when a later input fails before it is checked`() {
+
+        // given:
+        val firstFile = File("first.gradle.kts")
+        val secondFile = File("second.gradle.kts")
+        var deferredCheck: Runnable? = null
+        val executor = Executor { check ->
+            val deferred = deferredCheck
+            if (deferred == null) {
+                // Only start checking the first input once the second input has been found to be out-of-date
+                deferredCheck = check
+            } else {
+                check.run()
+                deferred.run()
+            }
+        }
+
+        // expect:
+        assertThat(
+            checkFingerprintGiven(
+                mock {
+                    on { hashCodeOf(any()) } doReturn TestHashCodes.hashCodeFrom(1)
+                    on { displayNameOf(any()) }.then { invocation ->
+                        invocation.getArgument<File>(0).name
+                    }
+                },
+                listOf(
+                    ConfigurationCacheFingerprint.InputFile(firstFile, TestHashCodes.hashCodeFrom(2)),
+                    ConfigurationCacheFingerprint.InputFile(secondFile, TestHashCodes.hashCodeFrom(2))
+                ),
+                executor
+            ),
+            equalTo("file 'first.gradle.kts' has changed")
+        )
+    }
+
+    @Test
+    fun `project invalidation propagates to consumers and coupled projects when inputs are checked concurrently`() {
+
+        // given:
+        val upToDateFile = File("up-to-date.txt")
+        val changedFile = File("changed.txt")
+        val changedChecked = CountDownLatch(1)
+        val executor = Executors.newFixedThreadPool(2)
+        val host = mock<ConfigurationCacheFingerprintChecker.Host> {
+            on { invalidateCoupledProjects } doReturn true
+            on { hashCodeOf(upToDateFile) }.then {
+                // Only complete once the input recorded after this one has been checked
+                changedChecked.await()
+                TestHashCodes.hashCodeFrom(1)
+            }
+            on { hashCodeOf(changedFile) }.then {
+                changedChecked.countDown()
+                TestHashCodes.hashCodeFrom(1)
+            }
+            on { displayNameOf(any()) }.then { invocation ->
+                invocation.getArgument<File>(0).name
+            }
+        }
+
+        // when:
+        val checkedFingerprint = try {
+            checkProjectScopedFingerprintGiven(
+                host,
+                listOf(
+                    ProjectSpecificFingerprint.ProjectFingerprint(Path.path(":b"), ConfigurationCacheFingerprint.InputFile(upToDateFile, TestHashCodes.hashCodeFrom(1))),
+                    ProjectSpecificFingerprint.ProjectDependency(Path.path(":consumer"), Path.path(":a")),
+                    ProjectSpecificFingerprint.CoupledProjects(Path.path(":coupled"), Path.path(":a")),
+                    ProjectSpecificFingerprint.ProjectFingerprint(Path.path(":a"), ConfigurationCacheFingerprint.InputFile(changedFile, TestHashCodes.hashCodeFrom(2))),
+                    ProjectSpecificFingerprint.ProjectDependency(Path.path(":a"), Path.path(":b")),
+                    ProjectSpecificFingerprint.ProjectDependency(Path.path(":late-consumer"), Path.path(":a")),
+                    ProjectSpecificFingerprint.ProjectDependency(Path.path(":b-consumer"), Path.path(":b"))
+                ),
+                executor
+            )
+        } finally {
+            executor.shutdownNow()
+        }
+
+        // then:
+        val projectsInvalid = checkedFingerprint as CheckedFingerprint.ProjectsInvalid
+        assertThat(projectsInvalid.reason, equalTo("file 'changed.txt' has changed"))
+        assertThat(
+            projectsInvalid.invalidProjects,
+            equalTo(setOf(Path.path(":a"), Path.path(":consumer"), Path.path(":coupled"), Path.path(":late-consumer")))
+        )
+    }
+
+    @Test
+    fun `project-scoped value sources are not obtained once the checks are cancelled`() {
+
+        // given:
+        val obtainedValue = obtainedValueMock()
+        val host = mock<ConfigurationCacheFingerprintChecker.Host>()
+        val cancellation = FingerprintCheckCancellation()
+
+        // when:
+        val executor = Executors.newFixedThreadPool(2)
+        val projectCheck = executor.submit(Callable {
+            checkProjectScopedFingerprintGiven(
+                host,
+                listOf(ProjectSpecificFingerprint.ProjectFingerprint(Path.path(":a"), ConfigurationCacheFingerprint.ValueSource(obtainedValue))),
+                executor,
+                cancellation
+            )
+        })
+        // The build-scoped checks invalidate the entry
+        cancellation.cancel()
+
+        // then:
+        try {
+            projectCheck.get()
+            fail("Expected the project-scoped check to be cancelled")
+        } catch (e: ExecutionException) {
+            assertThat(e.cause, instanceOf(CancellationException::class.java))
+        } finally {
+            executor.shutdownNow()
+        }
+        verify(host, never()).instantiateValueSourceOf(any())
+    }
+
+    @Test
+    fun `project-scoped value sources are obtained on the thread that completes the check`() {
+
+        // given:
+        val obtainedValue = obtainedValueMock()
+        val valueSource = mock<ValueSource<Any, ValueSourceParameters>> {
+            on { obtain() } doReturn 42
+        }
+        val obtainedOn = mutableListOf<Thread>()
+        val host = mock<ConfigurationCacheFingerprintChecker.Host> {
+            on { instantiateValueSourceOf(obtainedValue) }.then {
+                obtainedOn.add(Thread.currentThread())
+                valueSource
+            }
+        }
+
+        // when:
+        val executor = Executors.newFixedThreadPool(2)
+        val projectCheck = try {
+            executor.submit(
+                Callable {
+                    readProjectScopedFingerprintGiven(
+                        host,
+                        listOf(ProjectSpecificFingerprint.ProjectFingerprint(Path.path(":a"), ConfigurationCacheFingerprint.ValueSource(obtainedValue))),
+                        executor
+                    )
+                }
+            ).get()
+        } finally {
+            executor.shutdownNow()
+        }
+
+        // then:
+        assertThat(obtainedOn, equalTo(emptyList()))
+        assertThat(projectCheck.complete(), equalTo<CheckedFingerprint>(CheckedFingerprint.Valid))
+        assertThat(obtainedOn, equalTo(listOf(Thread.currentThread())))
+    }
+
     private
     fun invalidationReasonForInitScriptsChange(
         from: Iterable<Pair<File, HashCode>>,
@@ -226,15 +437,23 @@ class ConfigurationCacheFingerprintCheckerTest {
     fun checkFingerprintGiven(
         host: ConfigurationCacheFingerprintChecker.Host,
         fingerprint: ConfigurationCacheFingerprint
+    ): InvalidationReason? =
+        checkFingerprintGiven(host, listOf(fingerprint), Executor(Runnable::run))
+
+    private
+    fun checkFingerprintGiven(
+        host: ConfigurationCacheFingerprintChecker.Host,
+        fingerprints: List<ConfigurationCacheFingerprint>,
+        executor: Executor
     ): InvalidationReason? {
 
         val readContext = recordWritingOf {
-            write(fingerprint)
+            fingerprints.forEach { write(it) }
             write(null)
         }
 
         val checkedFingerprint = readContext.runReadOperation {
-            ConfigurationCacheFingerprintChecker(host).run {
+            ConfigurationCacheFingerprintChecker(host, executor).run {
                 checkBuildScopedFingerprint()
             }
         }
@@ -245,6 +464,45 @@ class ConfigurationCacheFingerprintCheckerTest {
         }
     }
 
+    private
+    fun checkProjectScopedFingerprintGiven(
+        host: ConfigurationCacheFingerprintChecker.Host,
+        fingerprints: List<ProjectSpecificFingerprint>,
+        executor: Executor,
+        cancellation: FingerprintCheckCancellation = FingerprintCheckCancellation().apply { buildScopeValid() }
+    ): CheckedFingerprint {
+
+        val readContext = recordWritingOf {
+            fingerprints.forEach { write(it) }
+            write(null)
+        }
+
+        return readContext.runReadOperation {
+            ConfigurationCacheFingerprintChecker(host, executor, cancellation).run {
+                checkProjectScopedFingerprint()
+            }
+        }
+    }
+
+    private
+    fun readProjectScopedFingerprintGiven(
+        host: ConfigurationCacheFingerprintChecker.Host,
+        fingerprints: List<ProjectSpecificFingerprint>,
+        executor: Executor
+    ): ConfigurationCacheFingerprintChecker.ProjectScopedCheck {
+
+        val readContext = recordWritingOf {
+            fingerprints.forEach { write(it) }
+            write(null)
+        }
+
+        return readContext.runReadOperation {
+            ConfigurationCacheFingerprintChecker(host, executor, FingerprintCheckCancellation().apply { buildScopeValid() }).run {
+                readProjectScopedFingerprint()
+            }
+        }
+    }
+
     private
     fun obtainedValueMock(): ObtainedValue = mock {
         on { value } doReturn Try.successful(42)
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configurationcache.serialization
+
+import com.nhaarman.mockitokotlin2.mock
+import org.gradle.cache.internal.TestCrossBuildInMemoryCacheFactory
+import org.gradle.configurationcache.extensions.useToRun
+import org.gradle.configurationcache.serialization.beans.BeanConstructors
+import org.gradle.configurationcache.serialization.beans.BeanSchemas
+import org.gradle.configurationcache.serialization.beans.BeanStateReaderLookup
+import org.gradle.configurationcache.serialization.beans.BeanStateWriterLookup
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.serialize.Decoder
+import org.gradle.internal.serialize.Encoder
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder
+import org.gradle.util.TestUtil
+import org.hamcrest.CoreMatchers.equalTo
+import org.hamcrest.CoreMatchers.sameInstance
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.After
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.ConcurrentHashMap
+
+
+class StateShardsTest {
+
+    private
+    val executorFactory = DefaultExecutorFactory()
+
+    private
+    val stateShards = StateShards(::writeContextFor, ::readContextFor, executorFactory, 4)
+
+    @After
+    fun stop() {
+        executorFactory.stop()
+    }
+
+    @Test
+    fun `preserves identity of instances shared across shards and with the enclosing context`() {
+        val a = Shared("a")
+        val b = Shared("b")
+        val c = Shared("c")
+        val shards = listOf(
+            listOf(a, b),
+            listOf(b, c, a),
+            listOf(c, Shared("d"), b),
+            listOf(a, a)
+        )
+
+        val bytes = ByteArrayOutputStream().also { outputStream ->
+            writeContextFor(KryoBackedEncoder(outputStream), SharedCodec, WriteIdentityTables()).useToRun {
+                runWriteOperation {
+                    write(a)
+                    stateShards.run {
+                        writeShards(shards, { SharedCodec }) { shard ->
+                            writeCollection(shard) { write(it) }
+                        }
+                    }
+                    write(c)
+                }
+            }
+        }.toByteArray()
+
+        val read = ConcurrentHashMap<Int, List<Shared>>()
+        readContextFor(KryoBackedDecoder(ByteArrayInputStream(bytes)), SharedCodec, ReadIdentityTables()).useToRun {
+            initClassLoader(javaClass.classLoader)
+            initProjectProvider { throw UnsupportedOperationException() }
+            runReadOperation {
+                val readA = read()
+                stateShards.run {
+                    readShards(shards.indices.toList(), { SharedCodec }) { index ->
+                        read[index] = readList { read() as Shared }
+                    }
+                }
+                val readC = read()
+
+                assertThat(read.mapValues { (_, shard) -> shard.map { it.name } }, equalTo(mapOf(0 to listOf("a", "b"), 1 to listOf("b", "c", "a"), 2 to listOf("c", "d", "b"), 3 to listOf("a", "a"))))
+                assertThat(read.getValue(0)[0], sameInstance(readA))
+                assertThat(read.getValue(1)[2], sameInstance(readA))
+                assertThat(read.getValue(3)[1], sameInstance(readA))
+                assertThat(read.getValue(1)[0], sameInstance(read.getValue(0)[1]))
+                assertThat(read.getValue(2)[2], sameInstance(read.getValue(0)[1]))
+                assertThat(read.getValue(2)[0], sameInstance(read.getValue(1)[1]))
+                assertThat(readC, sameInstance(read.getValue(1)[1]))
+            }
+        }
+    }
+
+    private
+    fun writeContextFor(encoder: Encoder, codec: Codec<Any?>, identityTables: WriteIdentityTables) =
+        DefaultWriteContext(
+            codec = codec,
+            encoder = encoder,
+            scopeLookup = mock(),
+            beanStateWriterLookup = BeanStateWriterLookup(BeanSchemas(TestCrossBuildInMemoryCacheFactory())),
+            logger = mock(),
+            tracer = null,
+            problemsListener = mock(),
+            identityTables = identityTables
+        )
+
+    private
+    fun readContextFor(decoder: Decoder, codec: Codec<Any?>, identityTables: ReadIdentityTables) =
+        DefaultReadContext(
+            codec = codec,
+            decoder = decoder,
+            beanStateReaderLookup = BeanStateReaderLookup(BeanConstructors(TestCrossBuildInMemoryCacheFactory()), BeanSchemas(TestCrossBuildInMemoryCacheFactory()), TestUtil.instantiatorFactory()),
+            logger = mock(),
+            problemsListener = mock(),
+            identityTables = identityTables
+        )
+
+    private
+    class Shared(val name: String)
+
+    private
+    object SharedCodec : Codec<Any?> {
+
+        override suspend fun WriteContext.encode(value: Any?) {
+            encodePreservingSharedIdentityOf(value as Shared) {
+                writeString(it.name)
+            }
+        }
+
+        override suspend fun ReadContext.decode(): Any =
+            decodePreservingSharedIdentity {
+                Shared(readString())
+            }
+    }
+}
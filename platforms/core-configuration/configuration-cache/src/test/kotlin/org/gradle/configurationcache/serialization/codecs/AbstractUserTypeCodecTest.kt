@@ -28,6 +28,7 @@ import org.gradle.configurationcache.serialization.DefaultWriteContext
 import org.gradle.configurationcache.serialization.IsolateOwner
 import org.gradle.configurationcache.serialization.MutableIsolateContext
 import org.gradle.configurationcache.serialization.beans.BeanConstructors
+import org.gradle.configurationcache.serialization.beans.BeanSchemas
 import org.gradle.configurationcache.serialization.beans.BeanStateReaderLookup
 import org.gradle.configurationcache.serialization.beans.BeanStateWriterLookup
 import org.gradle.configurationcache.serialization.codecs.jos.JavaSerializationEncodingLookup
@@ -132,7 +133,7 @@ abstract class AbstractUserTypeCodecTest {
             codec = codec,
             encoder = encoder,
             scopeLookup = mock(),
-            beanStateWriterLookup = BeanStateWriterLookup(),
+            beanStateWriterLookup = BeanStateWriterLookup(BeanSchemas(TestCrossBuildInMemoryCacheFactory())),
             logger = mock(),
             tracer = null,
             problemsListener = problemHandler
@@ -143,7 +144,7 @@ abstract class AbstractUserTypeCodecTest {
         DefaultReadContext(
             codec = codec,
             decoder = KryoBackedDecoder(inputStream),
-            beanStateReaderLookup = BeanStateReaderLookup(BeanConstructors(TestCrossBuildInMemoryCacheFactory()), TestUtil.instantiatorFactory()),
+            beanStateReaderLookup = BeanStateReaderLookup(BeanConstructors(TestCrossBuildInMemoryCacheFactory()), BeanSchemas(TestCrossBuildInMemoryCacheFactory()), TestUtil.instantiatorFactory()),
             logger = mock(),
             problemsListener = mock()
         )
@@ -18,6 +18,8 @@ package org.gradle.caching.http.internal
 
 import org.gradle.api.internal.tasks.execution.ExecuteTaskBuildOperationType
 import org.gradle.caching.http.HttpBuildCache
+import org.gradle.caching.internal.controller.operations.BuildCacheRemoteLookupBuildOperationType
+import org.gradle.caching.internal.controller.operations.BuildCacheRemotePrefetchBuildOperationType
 import org.gradle.caching.internal.operations.BuildCacheRemoteStoreBuildOperationType
 import org.gradle.integtests.fixtures.BuildOperationsFixture
 import org.gradle.integtests.fixtures.timeout.IntegrationTestTimeout
@@ -525,6 +527,36 @@ class HttpBuildCacheServiceIntegrationTest extends HttpBuildCacheFixture {
         storeOps.first().failure.contains("response status 401: Unauthorized")
     }
 
+    def "prefetches entries found by batch lookup"() {
+        when:
+        withBuildCache().run "jar"
+        withBuildCache().run "clean"
+        withBuildCache().run "jar", "-Dorg.gradle.internal.build-cache.remote-prefetch=true"
+        then:
+        skipped ":compileJava"
+
+        and:
+        buildOperations.all(BuildCacheRemoteLookupBuildOperationType).size() > 0
+        with(buildOperations.only(BuildCacheRemotePrefetchBuildOperationType).result) {
+            prefetchCount > 0
+            hitCount > 0
+        }
+    }
+
+    def "prefetches entries one by one when server does not support batch lookup"() {
+        httpBuildCacheServer.withoutLookup()
+
+        when:
+        withBuildCache().run "jar"
+        withBuildCache().run "clean"
+        withBuildCache().run "jar", "-Dorg.gradle.internal.build-cache.remote-prefetch=true"
+        then:
+        skipped ":compileJava"
+
+        and:
+        buildOperations.only(BuildCacheRemotePrefetchBuildOperationType).result.hitCount > 0
+    }
+
     private List<BuildOperationRecord> compileJavaStoreOperations() {
         buildOperations.all(BuildCacheRemoteStoreBuildOperationType) {
             buildOperations.parentsOf(it).any {
@@ -308,6 +308,66 @@ class HttpBuildCacheServiceTest extends Specification {
         cache.store(key, writer("".bytes))
     }
 
+    def "can look up entries in batch"() {
+        def otherKey = new DefaultBuildCacheKey(HashCode.fromString("89abcdef01234567"))
+        server.expect("/cache/", ["POST"], new HttpServer.ActionSupport("lookup entries") {
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                assert request.getHeader(HttpHeaders.CONTENT_TYPE).startsWith(HttpBuildCacheService.BUILD_CACHE_KEYS_CONTENT_TYPE)
+                assert request.reader.readLines() as Set == [key.hashCode, otherKey.hashCode] as Set
+
+                response.setStatus(200)
+                response.setContentType(HttpBuildCacheService.BUILD_CACHE_KEYS_CONTENT_TYPE)
+                response.writer.write("${otherKey.hashCode}\n")
+            }
+        })
+
+        expect:
+        cache.findExisting([key, otherKey] as Set) == [otherKey] as Set
+    }
+
+    def "assumes all entries exist when server does not support lookup on http code #httpCode"(int httpCode) {
+        server.expect("/cache/", false, ["POST"], new HttpServer.ActionSupport("return ${httpCode}") {
+            @Override
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                response.setStatus(httpCode)
+            }
+        })
+
+        when:
+        def existing = cache.findExisting([key] as Set)
+        then:
+        existing == [key] as Set
+
+        when:
+        existing = cache.findExisting([key] as Set)
+        then:
+        // The server is not asked again
+        existing == [key] as Set
+
+        where:
+        httpCode << [HttpStatus.SC_OK, HttpStatus.SC_NOT_FOUND, HttpStatus.SC_METHOD_NOT_ALLOWED, HttpStatus.SC_NOT_IMPLEMENTED]
+    }
+
+    def "lookup reports recoverable error on http code #httpCode"(int httpCode) {
+        server.expect("/cache/", false, ["POST"], new HttpServer.ActionSupport("return ${httpCode} broken") {
+            @Override
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                //noinspection GrDeprecatedAPIUsage
+                response.setStatus(httpCode, "broken")
+            }
+        })
+
+        when:
+        cache.findExisting([key] as Set)
+
+        then:
+        BuildCacheException exception = thrown()
+        exception.message == "Looking up entries at '${server.uri}/cache/' response status ${httpCode}: broken"
+
+        where:
+        httpCode << [HttpStatus.SC_INTERNAL_SERVER_ERROR, HttpStatus.SC_SERVICE_UNAVAILABLE]
+    }
+
     def "does preemptive authentication"() {
         config.credentials.username = 'user'
         config.credentials.password = 'password'
@@ -22,35 +22,58 @@
 import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.protocol.HTTP;
 import org.gradle.api.UncheckedIOException;
+import org.gradle.caching.BatchLookupBuildCacheService;
 import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheEntryWriter;
 import org.gradle.caching.BuildCacheException;
 import org.gradle.caching.BuildCacheKey;
-import org.gradle.caching.BuildCacheService;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.resource.transport.http.HttpClientHelper;
 import org.gradle.internal.resource.transport.http.HttpClientResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Build cache implementation that delegates to a service accessible via HTTP.
+ *
+ * Entries are looked up in batches by sending a {@code POST} request to the root URL with one cache key per line.
+ * The server responds with the keys that have an entry, one per line, using the same content type as the request.
+ * When the server does not support this, all keys are assumed to exist and entries are requested one by one.
  */
-public class HttpBuildCacheService implements BuildCacheService {
+public class HttpBuildCacheService implements BatchLookupBuildCacheService {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpBuildCacheService.class);
     static final String BUILD_CACHE_CONTENT_TYPE = "application/vnd.gradle.build-cache-artifact.v1";
+    static final String BUILD_CACHE_KEYS_CONTENT_TYPE = "application/vnd.gradle.build-cache-keys.v1";
+
+    private static final Set<Integer> LOOKUP_UNSUPPORTED_HTTP_CODES = ImmutableSet.of(
+        HttpStatus.SC_NOT_FOUND,
+        HttpStatus.SC_METHOD_NOT_ALLOWED,
+        HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE,
+        HttpStatus.SC_NOT_IMPLEMENTED
+    );
 
     private static final Set<Integer> FATAL_HTTP_ERROR_CODES = ImmutableSet.of(
         HttpStatus.SC_USE_PROXY,
@@ -67,6 +90,7 @@ public class HttpBuildCacheService implements BuildCacheService {
     private final HttpClientHelper httpClientHelper;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
     private final boolean useExpectContinue;
+    private volatile boolean lookupUnsupported;
 
     public HttpBuildCacheService(HttpClientHelper httpClientHelper, URI url, HttpBuildCacheRequestCustomizer requestCustomizer, boolean useExpectContinue) {
         this.requestCustomizer = requestCustomizer;
@@ -102,6 +126,62 @@ public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws Buil
         }
     }
 
+    @Override
+    public Set<BuildCacheKey> findExisting(Set<BuildCacheKey> keys) throws BuildCacheException {
+        if (lookupUnsupported || keys.isEmpty()) {
+            return keys;
+        }
+        Map<String, BuildCacheKey> keysByHash = new HashMap<>();
+        StringBuilder body = new StringBuilder();
+        for (BuildCacheKey key : keys) {
+            keysByHash.put(key.getHashCode(), key);
+            body.append(key.getHashCode()).append('\n');
+        }
+        HttpPost httpPost = new HttpPost(root);
+        httpPost.addHeader(HttpHeaders.ACCEPT, BUILD_CACHE_KEYS_CONTENT_TYPE);
+        httpPost.setEntity(new StringEntity(body.toString(), ContentType.create(BUILD_CACHE_KEYS_CONTENT_TYPE, StandardCharsets.UTF_8)));
+        requestCustomizer.customize(httpPost);
+
+        try (HttpClientResponse response = httpClientHelper.performHttpRequest(httpPost)) {
+            StatusLine statusLine = response.getStatusLine();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Response for POST {}: {}", safeUri(root), statusLine);
+            }
+            int statusCode = statusLine.getStatusCode();
+            if (isHttpSuccess(statusCode) && isKeysContentType(response.getHeader(HttpHeaders.CONTENT_TYPE))) {
+                return readExistingKeys(response.getContent(), keysByHash);
+            } else if (isHttpSuccess(statusCode) || LOOKUP_UNSUPPORTED_HTTP_CODES.contains(statusCode)) {
+                // A server that doesn't know about lookups may respond to the request with something else entirely
+                LOGGER.debug("Build cache at '{}' does not support looking up entries, response status {}", safeUri(root), statusCode);
+                lookupUnsupported = true;
+                return keys;
+            } else {
+                String defaultMessage = String.format("Looking up entries at '%s' response status %d: %s", safeUri(root), statusCode, statusLine.getReasonPhrase());
+                throwHttpStatusCodeException(statusCode, defaultMessage);
+                return keys;
+            }
+        } catch (IOException e) {
+            throw wrap(e);
+        }
+    }
+
+    private static boolean isKeysContentType(@Nullable String contentType) {
+        return contentType != null && contentType.startsWith(BUILD_CACHE_KEYS_CONTENT_TYPE);
+    }
+
+    private static Set<BuildCacheKey> readExistingKeys(InputStream content, Map<String, BuildCacheKey> keysByHash) throws IOException {
+        Set<BuildCacheKey> existing = new HashSet<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            BuildCacheKey key = keysByHash.get(line.trim().toLowerCase(Locale.ROOT));
+            if (key != null) {
+                existing.add(key);
+            }
+        }
+        return existing;
+    }
+
     @Override
     public void store(BuildCacheKey key, BuildCacheEntryWriter writer) throws BuildCacheException {
         final URI uri = root.resolve(key.getHashCode());
@@ -23,6 +23,7 @@
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -33,14 +34,28 @@ public interface BuildCacheEntryPacker {
 
     class PackResult {
         private final long entries;
+        private final String compression;
 
         public PackResult(long entries) {
+            this(entries, null);
+        }
+
+        public PackResult(long entries, @Nullable String compression) {
             this.entries = entries;
+            this.compression = compression;
         }
 
         public long getEntries() {
             return entries;
         }
+
+        /**
+         * The compression used for the entry, or {@code null} if the entry was not compressed.
+         */
+        @Nullable
+        public String getCompression() {
+            return compression;
+        }
     }
 
     UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException;
@@ -49,11 +64,17 @@ class UnpackResult {
         private final OriginMetadata originMetadata;
         private final long entries;
         private final Map<String, FileSystemLocationSnapshot> snapshots;
+        private final String compression;
 
         public UnpackResult(OriginMetadata originMetadata, long entries, Map<String, FileSystemLocationSnapshot> snapshots) {
+            this(originMetadata, entries, snapshots, null);
+        }
+
+        public UnpackResult(OriginMetadata originMetadata, long entries, Map<String, FileSystemLocationSnapshot> snapshots, @Nullable String compression) {
             this.originMetadata = originMetadata;
             this.entries = entries;
             this.snapshots = snapshots;
+            this.compression = compression;
         }
 
         public OriginMetadata getOriginMetadata() {
@@ -67,5 +88,13 @@ public long getEntries() {
         public Map<String, FileSystemLocationSnapshot> getSnapshots() {
             return snapshots;
         }
+
+        /**
+         * The compression of the unpacked entry, or {@code null} if the entry was not compressed.
+         */
+        @Nullable
+        public String getCompression() {
+            return compression;
+        }
     }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * The compression used for packed build cache entries.
+ */
+public enum BuildCacheEntryCompression {
+    /**
+     * Compatible with all Gradle versions, and used by default.
+     */
+    GZIP("gzip"),
+
+    /**
+     * Much faster to compress and decompress than gzip, at the cost of larger entries.
+     */
+    LZ4("lz4");
+
+    private final String displayName;
+
+    BuildCacheEntryCompression(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public static BuildCacheEntryCompression forName(String name) {
+        for (BuildCacheEntryCompression compression : values()) {
+            if (compression.displayName.equals(name.toLowerCase(Locale.ROOT))) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown build cache entry compression '%s', supported values are: %s.",
+            name, Arrays.stream(values()).map(BuildCacheEntryCompression::getDisplayName).collect(Collectors.joining(", "))));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.file.compress.Lz4BlockInputStream;
+import org.gradle.internal.file.compress.Lz4BlockOutputStream;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Compresses packed entries with the configured {@link BuildCacheEntryCompression}.
+ *
+ * <p>Entries compressed with gzip are written without any additional header, so they can be read by all Gradle versions.
+ * Entries compressed with other codecs start with a header identifying the codec.
+ * When unpacking, the compression is detected from the entry, so entries written with any compression can be read.</p>
+ *
+ * <p>When an executor is given, gzip compression and decompression happens in chunks on multiple threads, see {@link ParallelGZipFormat}.
+ * The executor is shut down when the packer is closed.</p>
+ */
+public class CompressingBuildCacheEntryPacker implements BuildCacheEntryPacker, Closeable {
+    private static final byte[] CODEC_HEADER_MAGIC = {'G', 'B', 'C', 'E'};
+    private static final int CODEC_HEADER_SIZE = CODEC_HEADER_MAGIC.length + 1;
+    private static final byte LZ4_CODEC_ID = 1;
+
+    private final BuildCacheEntryPacker delegate;
+    private final BuildCacheEntryCompression compression;
+    private final int level;
+    private final ExecutorService executor;
+    private final int maxPendingChunks;
+
+    public CompressingBuildCacheEntryPacker(BuildCacheEntryPacker delegate, BuildCacheEntryCompression compression, int level) {
+        this(delegate, compression, level, null, 0);
+    }
+
+    public CompressingBuildCacheEntryPacker(BuildCacheEntryPacker delegate, BuildCacheEntryCompression compression, int level, @Nullable ExecutorService executor, int parallelism) {
+        this.delegate = delegate;
+        this.compression = compression;
+        this.level = level;
+        this.executor = executor;
+        // Keep enough chunks in flight to have every thread busy while the next chunk is read or written
+        this.maxPendingChunks = 2 * parallelism;
+    }
+
+    @Override
+    public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+        try (OutputStream compressedOutput = compress(output)) {
+            PackResult result = delegate.pack(entity, snapshots, compressedOutput, writeOrigin);
+            return new PackResult(result.getEntries(), compression.getDisplayName());
+        }
+    }
+
+    private OutputStream compress(OutputStream output) throws IOException {
+        switch (compression) {
+            case GZIP:
+                if (executor != null) {
+                    return new ParallelGZipOutputStream(output, executor, maxPendingChunks, level);
+                }
+                return new LeveledGZIPOutputStream(output, level);
+            case LZ4:
+                output.write(CODEC_HEADER_MAGIC);
+                output.write(LZ4_CODEC_ID);
+                return new Lz4BlockOutputStream(output);
+            default:
+                throw new AssertionError(compression);
+        }
+    }
+
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+        BufferedInputStream bufferedInput = new BufferedInputStream(input);
+        bufferedInput.mark(ParallelGZipFormat.HEADER_SIZE);
+        byte[] header = new byte[ParallelGZipFormat.HEADER_SIZE];
+        int headerLength = IOUtils.read(bufferedInput, header);
+        bufferedInput.reset();
+
+        BuildCacheEntryCompression entryCompression;
+        InputStream decompressedInput;
+        if (isCodecHeader(header, headerLength)) {
+            if (header[CODEC_HEADER_MAGIC.length] != LZ4_CODEC_ID) {
+                throw new ZipException("Unknown build cache entry compression: " + header[CODEC_HEADER_MAGIC.length]);
+            }
+            IOUtils.skipFully(bufferedInput, CODEC_HEADER_SIZE);
+            entryCompression = BuildCacheEntryCompression.LZ4;
+            decompressedInput = new Lz4BlockInputStream(bufferedInput);
+        } else {
+            entryCompression = BuildCacheEntryCompression.GZIP;
+            decompressedInput = executor != null && ParallelGZipFormat.isChunkHeader(header, headerLength)
+                ? new ParallelGZipInputStream(bufferedInput, executor, maxPendingChunks)
+                : new GZIPInputStream(bufferedInput);
+        }
+        try (InputStream closedInput = decompressedInput) {
+            UnpackResult result = delegate.unpack(entity, closedInput, readOrigin);
+            return new UnpackResult(result.getOriginMetadata(), result.getEntries(), result.getSnapshots(), entryCompression.getDisplayName());
+        }
+    }
+
+    private static boolean isCodecHeader(byte[] header, int length) {
+        if (length < CODEC_HEADER_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < CODEC_HEADER_MAGIC.length; i++) {
+            if (header[i] != CODEC_HEADER_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+        LeveledGZIPOutputStream(OutputStream output, int level) throws IOException {
+            super(output);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A gzip stream made of independently compressed chunks, so that chunks can be compressed and decompressed in parallel.
+ *
+ * <p>Each chunk is a complete gzip member, so the stream can also be read by any gzip reader.
+ * The header of each member has an extra field with the length of the compressed data, so a reader can find the next member without decompressing the current one:</p>
+ *
+ * <pre>
+ * 1f 8b 08 04 00 00 00 00 00 ff   gzip header, with FEXTRA set
+ * 08 00                            extra field length
+ * 47 43 04 00 LL LL LL LL          "GC" subfield with the length of the compressed data
+ * ...                              compressed data
+ * CC CC CC CC SS SS SS SS          CRC32 and size of the uncompressed data
+ * </pre>
+ */
+final class ParallelGZipFormat {
+    static final int CHUNK_SIZE = 1024 * 1024;
+    static final int HEADER_SIZE = 20;
+    static final int TRAILER_SIZE = 8;
+    /**
+     * The largest compressed length of a chunk, which is the worst case of deflating {@link #CHUNK_SIZE} bytes, as computed by zlib's {@code deflateBound()}.
+     */
+    static final int MAX_COMPRESSED_LENGTH = CHUNK_SIZE + (CHUNK_SIZE >> 12) + (CHUNK_SIZE >> 14) + (CHUNK_SIZE >> 25) + 13;
+
+    private static final byte[] HEADER_PREFIX = {
+        0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff,
+        8, 0,
+        'G', 'C', 4, 0
+    };
+
+    private ParallelGZipFormat() {
+    }
+
+    /**
+     * Returns whether the given bytes are the header of a chunk.
+     */
+    static boolean isChunkHeader(byte[] header, int length) {
+        if (length < HEADER_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < HEADER_PREFIX.length; i++) {
+            // Skip the modification time and the extra flags
+            if (i >= 4 && i < 9) {
+                continue;
+            }
+            if (header[i] != HEADER_PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the length of the compressed data of the chunk with the given header.
+     */
+    static int compressedLength(byte[] header) throws IOException {
+        if (!isChunkHeader(header, header.length)) {
+            throw new ZipException("Not in parallel GZIP format");
+        }
+        int length = ByteBuffer.wrap(header, 16, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        if (length < 0 || length > MAX_COMPRESSED_LENGTH) {
+            throw new ZipException("Invalid compressed chunk length: " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Compresses the given data into a complete chunk, including the header and trailer.
+     */
+    static byte[] compress(byte[] data, int length, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            // Incompressible data grows slightly when deflated
+            byte[] buffer = new byte[HEADER_SIZE + length + length / 1000 + 64 + TRAILER_SIZE];
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (HEADER_SIZE + compressedLength == buffer.length - TRAILER_SIZE) {
+                    byte[] larger = new byte[buffer.length * 2];
+                    System.arraycopy(buffer, 0, larger, 0, buffer.length);
+                    buffer = larger;
+                }
+                compressedLength += deflater.deflate(buffer, HEADER_SIZE + compressedLength, buffer.length - TRAILER_SIZE - HEADER_SIZE - compressedLength);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, length);
+
+            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, HEADER_SIZE + compressedLength + TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            chunk.put(HEADER_PREFIX).putInt(compressedLength);
+            chunk.position(HEADER_SIZE + compressedLength);
+            chunk.putInt((int) crc.getValue()).putInt(length);
+            if (chunk.limit() == buffer.length) {
+                return buffer;
+            }
+            byte[] result = new byte[chunk.limit()];
+            System.arraycopy(buffer, 0, result, 0, result.length);
+            return result;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses the compressed data and trailer of a chunk.
+     */
+    static byte[] decompress(byte[] compressed) throws IOException {
+        ByteBuffer trailer = ByteBuffer.wrap(compressed, compressed.length - TRAILER_SIZE, TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        int expectedCrc = trailer.getInt();
+        int length = trailer.getInt();
+        if (length < 0 || length > CHUNK_SIZE) {
+            throw new ZipException("Invalid chunk length: " + length);
+        }
+        byte[] data = new byte[length];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed, 0, compressed.length - TRAILER_SIZE);
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int count = inflater.inflate(data, inflated, length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length) {
+                throw new ZipException("Corrupt chunk: expected " + length + " bytes, but got " + inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt chunk: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new ZipException("Corrupt chunk: CRC mismatch");
+        }
+        return data;
+    }
+
+    static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import static org.gradle.caching.internal.packaging.impl.ParallelGZipFormat.HEADER_SIZE;
+import static org.gradle.caching.internal.packaging.impl.ParallelGZipFormat.TRAILER_SIZE;
+
+/**
+ * Reads data in the {@link ParallelGZipFormat}, decompressing chunks on the given executor.
+ *
+ * Compressed chunks are read ahead, so that up to {@code maxPendingChunks} chunks are decompressed while the current chunk is consumed.
+ */
+public class ParallelGZipInputStream extends InputStream {
+    private static final byte[] NO_DATA = new byte[0];
+
+    private final InputStream input;
+    private final Executor executor;
+    private final int maxPendingChunks;
+    private final Deque<Future<byte[]>> pendingChunks = new ArrayDeque<>();
+    private byte[] chunk = NO_DATA;
+    private int position;
+    private boolean endOfInput;
+
+    public ParallelGZipInputStream(InputStream input, Executor executor, int maxPendingChunks) {
+        this.input = input;
+        this.executor = executor;
+        this.maxPendingChunks = maxPendingChunks;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        return chunk[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureData()) {
+            return -1;
+        }
+        int count = Math.min(len, chunk.length - position);
+        System.arraycopy(chunk, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return chunk.length - position;
+    }
+
+    private boolean ensureData() throws IOException {
+        while (position == chunk.length) {
+            readAhead();
+            if (pendingChunks.isEmpty()) {
+                return false;
+            }
+            chunk = ParallelGZipFormat.await(pendingChunks.remove());
+            position = 0;
+        }
+        return true;
+    }
+
+    private void readAhead() throws IOException {
+        while (!endOfInput && pendingChunks.size() < maxPendingChunks) {
+            byte[] header = new byte[HEADER_SIZE];
+            int headerLength = IOUtils.read(input, header);
+            if (headerLength == 0) {
+                endOfInput = true;
+                return;
+            }
+            if (headerLength < HEADER_SIZE) {
+                throw new EOFException("Unexpected end of parallel GZIP stream");
+            }
+            byte[] compressed = new byte[ParallelGZipFormat.compressedLength(header) + TRAILER_SIZE];
+            IOUtils.readFully(input, compressed);
+            FutureTask<byte[]> decompression = new FutureTask<>(() -> ParallelGZipFormat.decompress(compressed));
+            executor.execute(decompression);
+            pendingChunks.add(decompression);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<byte[]> pendingChunk : pendingChunks) {
+            pendingChunk.cancel(false);
+        }
+        pendingChunks.clear();
+        input.close();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.Deflater;
+
+import static org.gradle.caching.internal.packaging.impl.ParallelGZipFormat.CHUNK_SIZE;
+
+/**
+ * Writes data in the {@link ParallelGZipFormat}, compressing chunks on the given executor.
+ *
+ * At most {@code maxPendingChunks} chunks are buffered while waiting to be compressed and written.
+ */
+public class ParallelGZipOutputStream extends OutputStream {
+    private final OutputStream output;
+    private final Executor executor;
+    private final int maxPendingChunks;
+    private final int level;
+    private final Deque<Future<byte[]>> pendingChunks = new ArrayDeque<>();
+    private byte[] buffer = new byte[CHUNK_SIZE];
+    private int count;
+    private boolean chunkWritten;
+    private boolean closed;
+
+    public ParallelGZipOutputStream(OutputStream output, Executor executor, int maxPendingChunks) {
+        this(output, executor, maxPendingChunks, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ParallelGZipOutputStream(OutputStream output, Executor executor, int maxPendingChunks, int level) {
+        this.output = output;
+        this.executor = executor;
+        this.maxPendingChunks = maxPendingChunks;
+        this.level = level;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            submitChunk();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                submitChunk();
+            }
+            int toCopy = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, toCopy);
+            count += toCopy;
+            off += toCopy;
+            len -= toCopy;
+        }
+    }
+
+    private void submitChunk() throws IOException {
+        byte[] data = buffer;
+        int length = count;
+        FutureTask<byte[]> compression = new FutureTask<>(() -> ParallelGZipFormat.compress(data, length, level));
+        executor.execute(compression);
+        pendingChunks.add(compression);
+        buffer = new byte[CHUNK_SIZE];
+        count = 0;
+        while (pendingChunks.size() > maxPendingChunks) {
+            writeNextChunk();
+        }
+    }
+
+    private void writeNextChunk() throws IOException {
+        output.write(ParallelGZipFormat.await(pendingChunks.remove()));
+        chunkWritten = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // Always write at least one chunk, so the result is a valid gzip stream
+            if (count > 0 || !chunkWritten && pendingChunks.isEmpty()) {
+                submitChunk();
+            }
+            while (!pendingChunks.isEmpty()) {
+                writeNextChunk();
+            }
+        } finally {
+            for (Future<byte[]> pendingChunk : pendingChunks) {
+                pendingChunk.cancel(false);
+            }
+            output.close();
+        }
+    }
+}
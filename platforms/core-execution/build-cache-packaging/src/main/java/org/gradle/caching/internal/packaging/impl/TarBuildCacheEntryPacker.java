@@ -20,6 +20,7 @@
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Interner;
 import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.Futures;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
@@ -53,6 +54,7 @@
 
 import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -66,9 +68,16 @@
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -92,12 +101,17 @@ private interface UnixPermissions {
     private static final Charset ENCODING = StandardCharsets.UTF_8;
     private static final String METADATA_PATH = "METADATA";
     private static final Pattern TREE_PATH = Pattern.compile("(missing-)?tree-([^/]+)(?:/(.*))?");
+    private static final int MAX_BACKGROUND_WRITE_SIZE = 1024 * 1024;
+    private static final int MAX_PENDING_WRITE_BYTES = 64 * 1024 * 1024;
 
     private final TarPackerFileSystemSupport fileSystemSupport;
     private final FilePermissionAccess filePermissionAccess;
     private final StreamHasher streamHasher;
     private final Interner<String> stringInterner;
     private final BufferProvider bufferProvider;
+    @Nullable
+    private final Executor fileWriteExecutor;
+    private final Semaphore pendingWriteBytes = new Semaphore(MAX_PENDING_WRITE_BYTES);
 
     public TarBuildCacheEntryPacker(
         TarPackerFileSystemSupport fileSystemSupport,
@@ -105,12 +119,28 @@ public TarBuildCacheEntryPacker(
         StreamHasher streamHasher,
         Interner<String> stringInterner,
         BufferProvider bufferProvider
+    ) {
+        this(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, bufferProvider, null);
+    }
+
+    /**
+     * Creates a packer that writes small unpacked files of directory trees on the given executor,
+     * while the next entries are read from the archive.
+     */
+    public TarBuildCacheEntryPacker(
+        TarPackerFileSystemSupport fileSystemSupport,
+        FilePermissionAccess filePermissionAccess,
+        StreamHasher streamHasher,
+        Interner<String> stringInterner,
+        BufferProvider bufferProvider,
+        @Nullable Executor fileWriteExecutor
     ) {
         this.fileSystemSupport = fileSystemSupport;
         this.filePermissionAccess = filePermissionAccess;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
         this.bufferProvider = bufferProvider;
+        this.fileWriteExecutor = fileWriteExecutor;
     }
 
     @Override
@@ -266,7 +296,7 @@ private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File tree
         return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName);
     }
 
-    private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+    private RegularFileSnapshot unpackFile(InputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
         try (CountingOutputStream output = new CountingOutputStream(new FileOutputStream(file))) {
             HashCode hash = streamHasher.hashCopy(input, output);
             chmodUnpackedFile(entry, file);
@@ -280,39 +310,71 @@ private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEn
     private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries, File treeRoot, String treeName) throws IOException {
         RelativePathParser parser = new RelativePathParser(safeEntryName(rootEntry));
 
-        DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
-        builder.enterDirectory(DIRECT, stringInterner.intern(treeRoot.getAbsolutePath()), stringInterner.intern(treeRoot.getName()), INCLUDE_EMPTY_DIRS);
+        UnpackedTreeBuilder builder = new UnpackedTreeBuilder();
+        builder.enterDirectory(stringInterner.intern(treeRoot.getAbsolutePath()), stringInterner.intern(treeRoot.getName()));
 
         TarArchiveEntry entry;
 
-        while ((entry = input.getNextTarEntry()) != null) {
-            boolean isDir = entry.isDirectory();
-            boolean outsideOfRoot = parser.nextPath(safeEntryName(entry), isDir, builder::leaveDirectory);
-            if (outsideOfRoot) {
-                break;
-            }
-            entries.incrementAndGet();
-
-            File file = new File(treeRoot, parser.getRelativePath());
-            if (isDir) {
-                FileUtils.forceMkdir(file);
-                chmodUnpackedFile(entry, file);
-                String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
-                String internedName = stringInterner.intern(parser.getName());
-                builder.enterDirectory(DIRECT, internedAbsolutePath, internedName, INCLUDE_EMPTY_DIRS);
-            } else {
-                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName());
-                builder.visitLeafElement(fileSnapshot);
+        try {
+            while ((entry = input.getNextTarEntry()) != null) {
+                boolean isDir = entry.isDirectory();
+                boolean outsideOfRoot = parser.nextPath(safeEntryName(entry), isDir, builder::leaveDirectory);
+                if (outsideOfRoot) {
+                    break;
+                }
+                entries.incrementAndGet();
+
+                File file = new File(treeRoot, parser.getRelativePath());
+                if (isDir) {
+                    FileUtils.forceMkdir(file);
+                    chmodUnpackedFile(entry, file);
+                    String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+                    String internedName = stringInterner.intern(parser.getName());
+                    builder.enterDirectory(internedAbsolutePath, internedName);
+                } else if (fileWriteExecutor != null && entry.getSize() <= MAX_BACKGROUND_WRITE_SIZE) {
+                    builder.visitFile(unpackFileInBackground(input, entry, file, parser.getName(), fileWriteExecutor));
+                } else {
+                    RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName());
+                    builder.visitFile(fileSnapshot);
+                }
             }
-        }
 
-        parser.exitToRoot(builder::leaveDirectory);
-        builder.leaveDirectory();
+            parser.exitToRoot(builder::leaveDirectory);
+            builder.leaveDirectory();
 
-        snapshots.put(treeName, builder.getResult());
+            snapshots.put(treeName, builder.getResult());
+        } catch (Throwable t) {
+            // Don't leave files being written behind when unpacking fails
+            builder.awaitPendingFilesQuietly();
+            throw t;
+        }
         return entry;
     }
 
+    /**
+     * Reads the content of the file from the archive, and writes it to disk on the file write executor.
+     */
+    private Future<RegularFileSnapshot> unpackFileInBackground(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName, Executor executor) throws IOException {
+        byte[] content = new byte[(int) entry.getSize()];
+        pendingWriteBytes.acquireUninterruptibly(content.length);
+        FutureTask<RegularFileSnapshot> write;
+        try {
+            IOUtils.readFully(input, content);
+            write = new FutureTask<>(() -> {
+                try {
+                    return unpackFile(new ByteArrayInputStream(content), entry, file, fileName);
+                } finally {
+                    pendingWriteBytes.release(content.length);
+                }
+            });
+        } catch (Throwable t) {
+            pendingWriteBytes.release(content.length);
+            throw t;
+        }
+        executor.execute(write);
+        return write;
+    }
+
     /**
      * Returns a safe name for the name of a tar archive entry.
      *
@@ -322,6 +384,61 @@ private static String safeEntryName(TarArchiveEntry tarEntry) {
         return PathTraversalChecker.safePathName(tarEntry.getName());
     }
 
+    /**
+     * Builds the snapshot of an unpacked directory tree, where some files are still being written in the background.
+     * Once the first file is pending, all further changes to the snapshot are recorded and applied when the result is requested.
+     */
+    private static class UnpackedTreeBuilder {
+        private final DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        private final List<Future<RegularFileSnapshot>> pendingFiles = new ArrayList<>();
+        private final List<Consumer<DirectorySnapshotBuilder>> pendingChanges = new ArrayList<>();
+
+        void enterDirectory(String absolutePath, String name) {
+            apply(builder -> builder.enterDirectory(DIRECT, absolutePath, name, INCLUDE_EMPTY_DIRS));
+        }
+
+        void leaveDirectory() {
+            apply(DirectorySnapshotBuilder::leaveDirectory);
+        }
+
+        void visitFile(RegularFileSnapshot snapshot) {
+            apply(builder -> builder.visitLeafElement(snapshot));
+        }
+
+        void visitFile(Future<RegularFileSnapshot> pendingSnapshot) {
+            pendingFiles.add(pendingSnapshot);
+            pendingChanges.add(builder -> builder.visitLeafElement(Futures.getUnchecked(pendingSnapshot)));
+        }
+
+        private void apply(Consumer<DirectorySnapshotBuilder> change) {
+            if (pendingChanges.isEmpty()) {
+                change.accept(builder);
+            } else {
+                pendingChanges.add(change);
+            }
+        }
+
+        @Nullable
+        FileSystemLocationSnapshot getResult() throws IOException {
+            for (Future<RegularFileSnapshot> pendingFile : pendingFiles) {
+                ParallelGZipFormat.await(pendingFile);
+            }
+            pendingChanges.forEach(change -> change.accept(builder));
+            pendingChanges.clear();
+            return builder.getResult();
+        }
+
+        void awaitPendingFilesQuietly() {
+            for (Future<RegularFileSnapshot> pendingFile : pendingFiles) {
+                try {
+                    pendingFile.get();
+                } catch (Exception ignored) {
+                    // The original failure is reported instead
+                }
+            }
+        }
+    }
+
     private void chmodUnpackedFile(TarArchiveEntry entry, File file) {
         filePermissionAccess.chmod(file, entry.getMode() & UnixPermissions.PERM_MASK);
     }
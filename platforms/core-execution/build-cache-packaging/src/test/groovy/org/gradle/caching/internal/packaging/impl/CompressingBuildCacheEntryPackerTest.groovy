@@ -0,0 +1,184 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.file.BufferProvider
+import org.gradle.internal.file.Deleter
+import org.gradle.internal.nativeintegration.filesystem.FileSystem
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.internal.snapshot.SnapshotVisitResult
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.concurrent.Executors
+import java.util.zip.Deflater
+import java.util.zip.GZIPInputStream
+import java.util.zip.ZipException
+
+import static org.gradle.caching.internal.packaging.impl.BuildCacheEntryCompression.GZIP
+import static org.gradle.caching.internal.packaging.impl.BuildCacheEntryCompression.LZ4
+import static org.gradle.internal.file.TreeType.DIRECTORY
+
+class CompressingBuildCacheEntryPackerTest extends AbstractTarBuildCacheEntryPackerSpec {
+    def executor = Executors.newFixedThreadPool(4)
+    def parallelPacker = new CompressingBuildCacheEntryPacker(
+        new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, Stub(BufferProvider) {
+            getBuffer() >> new byte[4096]
+        }, executor),
+        GZIP,
+        Deflater.DEFAULT_COMPRESSION,
+        executor,
+        4
+    )
+
+    @Override
+    protected FilePermissionAccess createFilePermissionAccess() {
+        new FilePermissionAccess() {
+            @Delegate
+            FileSystem fs = TestFiles.fileSystem()
+        }
+    }
+
+    @Override
+    protected Deleter createDeleter() {
+        TestFiles.deleter()
+    }
+
+    def cleanup() {
+        parallelPacker.close()
+    }
+
+    def "chunked stream of #length bytes can be read by #reader reader"() {
+        def data = sampleData(length)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        new ParallelGZipOutputStream(output, executor, 2).withCloseable { it.write(data) }
+        def input = new ByteArrayInputStream(output.toByteArray())
+        def decompressed = (reader == "parallel" ? new ParallelGZipInputStream(input, executor, 2) : new GZIPInputStream(input)).withCloseable { it.bytes }
+
+        then:
+        decompressed == data
+
+        where:
+        length                                    | reader
+        0                                         | "parallel"
+        0                                         | "gzip"
+        100                                       | "parallel"
+        ParallelGZipFormat.CHUNK_SIZE             | "parallel"
+        5 * ParallelGZipFormat.CHUNK_SIZE + 17    | "parallel"
+        5 * ParallelGZipFormat.CHUNK_SIZE + 17    | "gzip"
+    }
+
+    def "detects corrupt chunks"() {
+        def output = new ByteArrayOutputStream()
+        new ParallelGZipOutputStream(output, executor, 2).withCloseable { it.write(sampleData(1000)) }
+        def corrupt = output.toByteArray()
+        corrupt[corrupt.length - 10] ^= 0xff
+
+        when:
+        new ParallelGZipInputStream(new ByteArrayInputStream(corrupt), executor, 2).withCloseable { it.bytes }
+
+        then:
+        thrown(IOException)
+    }
+
+    def "rejects chunk with compressed length #length"() {
+        def output = new ByteArrayOutputStream()
+        new ParallelGZipOutputStream(output, executor, 2).withCloseable { it.write(sampleData(1000)) }
+        def corrupt = output.toByteArray()
+        ByteBuffer.wrap(corrupt, 16, 4).order(ByteOrder.LITTLE_ENDIAN).putInt(length)
+
+        when:
+        new ParallelGZipInputStream(new ByteArrayInputStream(corrupt), executor, 2).withCloseable { it.bytes }
+
+        then:
+        def e = thrown(ZipException)
+        e.message == "Invalid compressed chunk length: $length"
+
+        where:
+        length << [-1, ParallelGZipFormat.MAX_COMPRESSED_LENGTH + 1, Integer.MAX_VALUE]
+    }
+
+    def "unpacks directory with files written in parallel"() {
+        def sourceDir = temporaryFolder.file("source").createDir()
+        (0..<50).each { dir ->
+            (0..<20).each { file ->
+                sourceDir.file("dir-$dir/file-${file}.txt") << "content of $dir/$file"
+            }
+        }
+        sourceDir.file("large.bin").bytes = sampleData(3 * ParallelGZipFormat.CHUNK_SIZE)
+        def targetDir = temporaryFolder.file("target")
+        def output = new ByteArrayOutputStream()
+
+        when:
+        def packResult = parallelPacker.pack(entity(prop(DIRECTORY, sourceDir)), [test: fileSystemAccess.read(sourceDir.absolutePath)], output, writeOrigin)
+        def unpackResult = parallelPacker.unpack(entity(prop(DIRECTORY, targetDir)), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        unpackResult.entries == packResult.entries
+        targetDir.file("dir-42/file-7.txt").text == "content of 42/7"
+        targetDir.file("large.bin").bytes == sourceDir.file("large.bin").bytes
+        fileHashes(unpackResult.snapshots.test) == fileHashes(fileSystemAccess.read(targetDir.absolutePath))
+    }
+
+    def "unpacks entries compressed with #compression#description"() {
+        def sourceDir = temporaryFolder.file("source").createDir()
+        sourceDir.file("data.txt") << "output"
+        def targetDir = temporaryFolder.file("target")
+        def output = new ByteArrayOutputStream()
+        def writingPacker = new CompressingBuildCacheEntryPacker(packer, compression, level)
+
+        when:
+        def packResult = writingPacker.pack(entity(prop(DIRECTORY, sourceDir)), [test: fileSystemAccess.read(sourceDir.absolutePath)], output, writeOrigin)
+        def unpackResult = parallelPacker.unpack(entity(prop(DIRECTORY, targetDir)), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        targetDir.file("data.txt").text == "output"
+        packResult.compression == compression.displayName
+        unpackResult.compression == compression.displayName
+
+        where:
+        compression | level                        | description
+        GZIP        | Deflater.DEFAULT_COMPRESSION | " as a single stream"
+        GZIP        | Deflater.BEST_SPEED          | " at the fastest level"
+        LZ4         | Deflater.DEFAULT_COMPRESSION | ""
+    }
+
+    private static byte[] sampleData(int length) {
+        def random = new Random(length)
+        def data = new byte[length]
+        for (int i = 0; i < length; i++) {
+            // Mix of compressible and random data
+            data[i] = i.intdiv(4096) % 2 == 0 ? (byte) (i % 31) : (byte) random.nextInt()
+        }
+        return data
+    }
+
+    private static Map<String, String> fileHashes(FileSystemLocationSnapshot snapshot) {
+        def hashes = [:]
+        snapshot.accept { entry ->
+            if (entry instanceof RegularFileSnapshot) {
+                hashes[entry.absolutePath] = entry.hash.toString()
+            }
+            SnapshotVisitResult.CONTINUE
+        }
+        return hashes
+    }
+}
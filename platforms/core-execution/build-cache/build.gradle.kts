@@ -37,6 +37,9 @@ dependencies {
 
 
     jmhImplementation(platform(project(":distributions-dependencies")))
+    jmhImplementation(project(":core")) {
+        because("LocalBuildCacheServiceBenchmark uses the file store of the directory build cache")
+    }
     jmhImplementation(libs.ant)
     jmhImplementation(libs.commonsCompress)
     jmhImplementation(libs.aircompressor)
@@ -139,6 +139,7 @@ class BuildCacheBuildOperationsIntegrationTest extends AbstractIntegrationSpec {
 
         packOp.result.archiveSize == archiveSize
         packOp.result.archiveEntryCount == 5
+        packOp.result.archiveCompression == "gzip"
 
         storeOp.details.cacheKey == cacheKey
         storeOp.details.archiveSize == archiveSize
@@ -169,6 +170,7 @@ class BuildCacheBuildOperationsIntegrationTest extends AbstractIntegrationSpec {
         sizeDiff > -100 && sizeDiff < 100
 
         unpackOp.result.archiveEntryCount == 5
+        unpackOp.result.archiveCompression == "gzip"
     }
 
     def "records load failure for #exceptionType"() {
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.gradle.integtests.fixtures.AbstractIntegrationSpec
+import org.gradle.integtests.fixtures.DirectoryBuildCacheFixture
+
+class PackFileBuildCacheIntegrationTest extends AbstractIntegrationSpec implements DirectoryBuildCacheFixture {
+
+    def setup() {
+        buildFile << """
+            @CacheableTask
+            class CustomTask extends DefaultTask {
+                @Input
+                String val = "foo"
+
+                @OutputFile
+                File outputFile = project.file("build/output.txt")
+
+                @TaskAction
+                void generate() {
+                    outputFile.text = val
+                }
+            }
+
+            apply plugin: "base"
+            tasks.register("t", CustomTask)
+        """
+        executer.beforeExecute {
+            it.withBuildCacheEnabled()
+            it.withArgument("-Dorg.gradle.internal.build-cache.local.pack-files=true")
+        }
+    }
+
+    def "stores and loads entries from pack files when enabled"() {
+        when:
+        succeeds("t")
+
+        then:
+        executedAndNotSkipped(":t")
+        cacheDir.file("packs").listFiles().any { it.name ==~ /segment-\d+\.pack/ }
+        listCacheFiles().empty
+
+        when:
+        succeeds("clean", "t")
+
+        then:
+        skipped(":t")
+        file("build/output.txt").text == "foo"
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interners;
+import org.apache.commons.io.FileUtils;
+import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares sequential and parallel snapshotting of wide and deep directory trees.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class DirectorySnapshottingBenchmark {
+    private static final int FILE_SIZE = 4096;
+
+    @Param({"wide", "deep"})
+    String shape;
+
+    @Param({"20000"})
+    int fileCount;
+
+    Path tempDirPath;
+    ForkJoinPool pool;
+    DirectorySnapshotter sequentialSnapshotter;
+    DirectorySnapshotter parallelSnapshotter;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.tempDirPath = Files.createTempDirectory("directory-snapshotting");
+        byte[] content = new byte[FILE_SIZE];
+        for (int i = 0; i < fileCount; i++) {
+            Path file = tempDirPath.resolve(relativePathOf(i));
+            Files.createDirectories(file.getParent());
+            content[0] = (byte) i;
+            content[1] = (byte) (i >> 8);
+            Files.write(file, content);
+        }
+
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        DefaultFileHasher hasher = new DefaultFileHasher(new DefaultStreamHasher());
+        DirectorySnapshotterStatistics.Collector collector = new DirectorySnapshotterStatistics.Collector();
+        this.sequentialSnapshotter = new DirectorySnapshotter(hasher, Interners.newStrongInterner(), ImmutableList.of(), collector);
+        this.parallelSnapshotter = new DirectorySnapshotter(hasher, Interners.newStrongInterner(), ImmutableList.of(), collector, pool);
+    }
+
+    /**
+     * Wide trees have a few directories with a lot of files each,
+     * deep trees have a few files in each directory of nested hierarchies.
+     */
+    private String relativePathOf(int index) {
+        if (shape.equals("wide")) {
+            return "dir-" + (index % 4) + "/file-" + index + ".txt";
+        }
+        StringBuilder path = new StringBuilder();
+        int remaining = index / 4;
+        while (remaining > 0) {
+            path.append("level-").append(remaining % 8).append('/');
+            remaining /= 8;
+        }
+        return path.append("file-").append(index).append(".txt").toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        FileUtils.forceDelete(tempDirPath.toFile());
+    }
+
+    @Benchmark
+    public void sequential(Blackhole blackhole) {
+        blackhole.consume(sequentialSnapshotter.snapshot(tempDirPath.toString(), null, ImmutableMap.of(), blackhole::consume));
+    }
+
+    @Benchmark
+    public void parallel(Blackhole blackhole) {
+        blackhole.consume(parallelSnapshotter.snapshot(tempDirPath.toString(), null, ImmutableMap.of(), blackhole::consume));
+    }
+}
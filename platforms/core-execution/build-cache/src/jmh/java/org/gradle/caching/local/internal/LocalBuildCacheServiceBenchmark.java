@@ -0,0 +1,191 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.file.temp.DefaultTemporaryFileProvider;
+import org.gradle.cache.PersistentCache;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.DefaultBuildCacheKey;
+import org.gradle.internal.Factory;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.resource.local.DefaultPathKeyFileStore;
+import org.gradle.internal.time.Time;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the local build cache implementations when loading and storing entries, both from a single thread
+ * and from many threads at once as during a parallel build.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class LocalBuildCacheServiceBenchmark {
+    @Param({"pack", "directory", "h2"})
+    String implementation;
+
+    @Param({"10000"})
+    int entryCount;
+
+    @Param({"65536"})
+    int entrySize;
+
+    File tempDir;
+    BuildCacheService service;
+    byte[] content;
+    AtomicInteger storedKeys;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tempDir = Files.createTempDirectory("local-build-cache").toFile();
+        service = createService(new File(tempDir, "cache"));
+        content = new byte[entrySize];
+        ThreadLocalRandom.current().nextBytes(content);
+        for (int i = 0; i < entryCount; i++) {
+            service.store(keyOf(i), new ContentWriter(content));
+        }
+        storedKeys = new AtomicInteger(entryCount);
+    }
+
+    private BuildCacheService createService(File cacheDir) throws IOException {
+        Files.createDirectories(cacheDir.toPath());
+        BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(new DefaultTemporaryFileProvider(() -> new File(tempDir, "tmp")));
+        switch (implementation) {
+            case "pack":
+                return new PackFileBuildCacheService(cacheDir, tempFileStore, PackFileBuildCacheService.DEFAULT_SEGMENT_SIZE, 7, Time.clock());
+            case "directory":
+                return new DirectoryBuildCacheService(new DefaultPathKeyFileStore(null, cacheDir), unlockedCache(cacheDir), tempFileStore, file -> {}, ".failed");
+            case "h2":
+                H2BuildCacheService h2 = new H2BuildCacheService(cacheDir.toPath(), 20, 7, Time.clock());
+                h2.open();
+                return h2;
+            default:
+                throw new IllegalArgumentException(implementation);
+        }
+    }
+
+    /**
+     * Only this process uses the cache directory, so there is no need to lock it.
+     */
+    private static PersistentCache unlockedCache(File cacheDir) {
+        return (PersistentCache) Proxy.newProxyInstance(PersistentCache.class.getClassLoader(), new Class<?>[]{PersistentCache.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "withFileLock":
+                    if (args[0] instanceof Runnable) {
+                        ((Runnable) args[0]).run();
+                        return null;
+                    }
+                    return ((Factory<?>) args[0]).create();
+                case "getBaseDir":
+                    return cacheDir;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        service.close();
+        FileUtils.forceDelete(tempDir);
+    }
+
+    @Benchmark
+    public void load(Blackhole blackhole) {
+        loadRandomEntry(blackhole);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void loadContended(Blackhole blackhole) {
+        loadRandomEntry(blackhole);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void storeContended() {
+        service.store(keyOf(storedKeys.getAndIncrement()), new ContentWriter(content));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void mixedContended(Blackhole blackhole) {
+        if (ThreadLocalRandom.current().nextInt(10) == 0) {
+            service.store(keyOf(storedKeys.getAndIncrement()), new ContentWriter(content));
+        } else {
+            loadRandomEntry(blackhole);
+        }
+    }
+
+    private void loadRandomEntry(Blackhole blackhole) {
+        byte[] buffer = new byte[8192];
+        service.load(keyOf(ThreadLocalRandom.current().nextInt(entryCount)), input -> {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                blackhole.consume(read);
+            }
+        });
+    }
+
+    private static BuildCacheKey keyOf(int index) {
+        return new DefaultBuildCacheKey(Hashing.hashString("entry-" + index));
+    }
+
+    private static class ContentWriter implements BuildCacheEntryWriter {
+        private final byte[] content;
+
+        ContentWriter(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public void writeTo(OutputStream output) throws IOException {
+            try {
+                output.write(content);
+            } finally {
+                output.close();
+            }
+        }
+
+        @Override
+        public long getSize() {
+            return content.length;
+        }
+    }
+}
@@ -37,5 +37,10 @@ public interface BuildCacheController extends Closeable {
 
     Optional<BuildCacheLoadResult> load(BuildCacheKey cacheKey, CacheableEntity cacheableEntity);
 
+    /**
+     * Hints that the entry with the given key is likely to be loaded soon, so it can be downloaded from the remote cache in the background.
+     */
+    void prefetch(BuildCacheKey cacheKey);
+
     void store(BuildCacheKey cacheKey, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime);
 }
@@ -46,6 +46,7 @@
 import org.gradle.caching.local.internal.BuildCacheTempFileStore;
 import org.gradle.caching.local.internal.DefaultBuildCacheTempFileStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.file.TreeType;
@@ -81,6 +82,7 @@ public class DefaultBuildCacheController implements BuildCacheController {
     private final BuildCacheTempFileStore tmp;
     private final boolean emitDebugLogging;
     private final PackOperationExecutor packExecutor;
+    private final RemoteBuildCachePrefetcher prefetcher;
 
     private boolean closed;
 
@@ -95,6 +97,30 @@ public DefaultBuildCacheController(
         BuildCacheEntryPacker packer,
         OriginMetadataFactory originMetadataFactory,
         StringInterner stringInterner
+    ) {
+        this(config, buildOperationExecutor, buildOperationProgressEventEmitter, temporaryFileProvider, logStackTraces, emitDebugLogging, disableRemoteOnError, packer, originMetadataFactory, stringInterner, null, 0, Duration.ZERO);
+    }
+
+    /**
+     * Creates a controller that prefetches entries from the remote cache into the local cache on the given executor.
+     * Prefetching stops while more than {@code maxPrefetchedBytes} of prefetched entries have not been loaded yet,
+     * and loading an entry waits at most {@code prefetchWaitTimeout} for its prefetch to complete.
+     * Entries are only prefetched when there is a local cache to store them in.
+     */
+    public DefaultBuildCacheController(
+        BuildCacheServicesConfiguration config,
+        BuildOperationExecutor buildOperationExecutor,
+        BuildOperationProgressEventEmitter buildOperationProgressEventEmitter,
+        TemporaryFileProvider temporaryFileProvider,
+        boolean logStackTraces,
+        boolean emitDebugLogging,
+        boolean disableRemoteOnError,
+        BuildCacheEntryPacker packer,
+        OriginMetadataFactory originMetadataFactory,
+        StringInterner stringInterner,
+        @Nullable ManagedExecutor prefetchExecutor,
+        long maxPrefetchedBytes,
+        Duration prefetchWaitTimeout
     ) {
         this.emitDebugLogging = emitDebugLogging;
         this.local = toLocalHandle(config.getLocal(), config.isLocalPush(), buildOperationExecutor);
@@ -106,6 +132,9 @@ public DefaultBuildCacheController(
             originMetadataFactory,
             stringInterner
         );
+        this.prefetcher = prefetchExecutor != null && config.getRemote() != null && config.getLocal() != null && config.isLocalPush()
+            ? new RemoteBuildCachePrefetcher(config.getBuildPath(), config.getLocal(), remote, prefetchExecutor, buildOperationExecutor, maxPrefetchedBytes, prefetchWaitTimeout)
+            : null;
     }
 
     @Override
@@ -122,11 +151,37 @@ public boolean isEmitDebugLogging() {
     public Optional<BuildCacheLoadResult> load(BuildCacheKey key, CacheableEntity entity) {
         Optional<BuildCacheLoadResult> result = loadLocal(key, entity);
         if (result.isPresent()) {
+            if (prefetcher != null) {
+                prefetcher.loadedLocally(key);
+            }
             return result;
         }
+        if (prefetcher != null) {
+            switch (prefetcher.awaitPrefetched(key)) {
+                case MISSING:
+                    return Optional.empty();
+                case STORED_LOCALLY:
+                    result = loadLocal(key, entity);
+                    if (result.isPresent()) {
+                        return result;
+                    }
+                    break;
+                case NOT_PREFETCHED:
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+        }
         return loadRemoteAndStoreResultLocally(key, entity);
     }
 
+    @Override
+    public void prefetch(BuildCacheKey key) {
+        if (prefetcher != null) {
+            prefetcher.prefetch(key);
+        }
+    }
+
     private Optional<BuildCacheLoadResult> loadLocal(BuildCacheKey key, CacheableEntity entity) {
         try {
             return local.maybeLoad(key, file -> packExecutor.unpack(key, entity, file));
@@ -171,6 +226,9 @@ public void store(BuildCacheKey key, CacheableEntity entity, Map<String, FileSys
     public void close() throws IOException {
         if (!closed) {
             closed = true;
+            if (prefetcher != null) {
+                prefetcher.close();
+            }
             Closer closer = Closer.create();
             closer.register(local);
             closer.register(remote);
@@ -198,9 +256,9 @@ BuildCacheLoadResult unpack(BuildCacheKey key, CacheableEntity entity, File file
                 @Override
                 public BuildCacheLoadResult call(BuildOperationContext context) throws IOException {
                     try (InputStream input = new FileInputStream(file)) {
-                        BuildCacheLoadResult metadata = doUnpack(entity, input);
-                        context.setResult(new UnpackOperationResult(metadata.getArtifactEntryCount()));
-                        return metadata;
+                        BuildCacheEntryPacker.UnpackResult unpackResult = packer.unpack(entity, input, originMetadataFactory.createReader());
+                        context.setResult(new UnpackOperationResult(unpackResult.getEntries(), unpackResult.getCompression()));
+                        return toLoadResult(entity, unpackResult);
                     }
                 }
 
@@ -213,8 +271,7 @@ public BuildOperationDescriptor.Builder description() {
             });
         }
 
-        private BuildCacheLoadResult doUnpack(CacheableEntity entity, InputStream input) throws IOException {
-            BuildCacheEntryPacker.UnpackResult unpackResult = packer.unpack(entity, input, originMetadataFactory.createReader());
+        private BuildCacheLoadResult toLoadResult(CacheableEntity entity, BuildCacheEntryPacker.UnpackResult unpackResult) {
             // TODO: Update the snapshots from the action
             ImmutableSortedMap<String, FileSystemSnapshot> resultingSnapshots = snapshotUnpackedData(entity, unpackResult.getSnapshots());
             return new BuildCacheLoadResult() {
@@ -261,7 +318,7 @@ public void run(BuildOperationContext context) throws IOException {
                         OriginWriter originWriter = originMetadataFactory.createWriter(entity.getIdentity(), entity.getType(), executionTime);
                         BuildCacheEntryPacker.PackResult packResult = packer.pack(entity, snapshots, fileOutputStream, originWriter);
                         long entryCount = packResult.getEntries();
-                        context.setResult(new PackOperationResult(entryCount, file.length()));
+                        context.setResult(new PackOperationResult(entryCount, file.length(), packResult.getCompression()));
                     }
                 }
 
@@ -47,6 +47,11 @@ public Optional<BuildCacheLoadResult> load(BuildCacheKey cacheKey, CacheableEnti
         return Optional.empty();
     }
 
+    @Override
+    public void prefetch(BuildCacheKey cacheKey) {
+
+    }
+
     @Override
     public void store(BuildCacheKey cacheKey, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime) {
 
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.DefaultBuildCacheKey;
+import org.gradle.caching.internal.controller.operations.PrefetchOperationDetails;
+import org.gradle.caching.internal.controller.operations.PrefetchOperationResult;
+import org.gradle.caching.internal.controller.service.RemoteBuildCacheServiceHandle;
+import org.gradle.caching.local.internal.LocalBuildCacheService;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads entries from the remote build cache in the background, and stores them in the local build cache before they are loaded.
+ *
+ * Downloads go to temporary files of the local build cache, so they can be moved into it once complete.
+ * Entries that are already in the local cache are not downloaded.
+ * Prefetch requests are ignored while the prefetched entries that have not been loaded yet take up more than {@code maxPrefetchedBytes}.
+ *
+ * When the remote cache can look up many entries at once, requested entries are looked up in batches first,
+ * and only the entries that exist are downloaded.
+ *
+ * Lookups and downloads run without a parent build operation, as the work that requested them may have finished by then.
+ * Entries that are discarded before their download starts are not downloaded.
+ */
+class RemoteBuildCachePrefetcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteBuildCachePrefetcher.class);
+    private static final int MAX_LOOKUP_BATCH_SIZE = 256;
+
+    /**
+     * The outcome of waiting for a prefetched entry.
+     */
+    enum PrefetchResult {
+        /**
+         * The entry was not prefetched, or the prefetch did not complete in time, so it should be loaded from the remote cache.
+         */
+        NOT_PREFETCHED,
+        /**
+         * The remote cache does not have the entry.
+         */
+        MISSING,
+        /**
+         * The entry has been stored in the local cache.
+         */
+        STORED_LOCALLY
+    }
+
+    private final String buildPath;
+    private final LocalBuildCacheService local;
+    private final RemoteBuildCacheServiceHandle remote;
+    private final ManagedExecutor executor;
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final long maxPrefetchedBytes;
+    private final long waitTimeoutMillis;
+    private final Map<BuildCacheKey, PendingDownload> prefetchedEntries = new ConcurrentHashMap<>();
+    private final Queue<PendingDownload> pendingLookups = new ConcurrentLinkedQueue<>();
+    private final AtomicLong prefetchedBytes = new AtomicLong();
+
+    private final AtomicLong prefetchCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong wastedCount = new AtomicLong();
+
+    RemoteBuildCachePrefetcher(
+        String buildPath,
+        LocalBuildCacheService local,
+        RemoteBuildCacheServiceHandle remote,
+        ManagedExecutor executor,
+        BuildOperationExecutor buildOperationExecutor,
+        long maxPrefetchedBytes,
+        Duration waitTimeout
+    ) {
+        this.buildPath = buildPath;
+        this.local = local;
+        this.remote = remote;
+        this.executor = executor;
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.maxPrefetchedBytes = maxPrefetchedBytes;
+        this.waitTimeoutMillis = waitTimeout.toMillis();
+    }
+
+    public void prefetch(BuildCacheKey key) {
+        if (!remote.canLoad() || prefetchedBytes.get() >= maxPrefetchedBytes || prefetchedEntries.containsKey(key)) {
+            return;
+        }
+        PendingDownload pendingDownload = new PendingDownload(key);
+        if (prefetchedEntries.putIfAbsent(key, pendingDownload) != null) {
+            return;
+        }
+        prefetchCount.incrementAndGet();
+        if (remote.canLookup()) {
+            // Lookups requested while another lookup is in flight are batched together
+            pendingLookups.add(pendingDownload);
+            execute(pendingDownload, this::lookupPendingEntries);
+        } else {
+            execute(pendingDownload, () -> startDownload(pendingDownload));
+        }
+    }
+
+    private void lookupPendingEntries() {
+        List<PendingDownload> batch = new ArrayList<>();
+        PendingDownload next;
+        while (batch.size() < MAX_LOOKUP_BATCH_SIZE && (next = pendingLookups.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<BuildCacheKey> keys = new HashSet<>();
+        for (PendingDownload pendingDownload : batch) {
+            if (pendingDownload.result.isDone() || pendingDownload.skipIfDiscarded() || pendingDownload.skipIfStoredLocally()) {
+                continue;
+            }
+            keys.add(pendingDownload.key);
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        Set<BuildCacheKey> existing = CurrentBuildOperationRef.instance().with(null, () -> remote.maybeFindExisting(keys));
+        for (PendingDownload pendingDownload : batch) {
+            if (pendingDownload.result.isDone()) {
+                continue;
+            }
+            if (existing.contains(pendingDownload.key)) {
+                execute(pendingDownload, () -> startDownload(pendingDownload));
+            } else {
+                missCount.incrementAndGet();
+                pendingDownload.result.complete(null);
+            }
+        }
+    }
+
+    private void startDownload(PendingDownload pendingDownload) {
+        if (pendingDownload.skipIfDiscarded() || pendingDownload.skipIfStoredLocally()) {
+            return;
+        }
+        CurrentBuildOperationRef.instance().with(null, () -> {
+            try {
+                pendingDownload.result.complete(download(pendingDownload.key));
+            } catch (Throwable t) {
+                pendingDownload.result.completeExceptionally(t);
+            }
+        });
+    }
+
+    private void execute(PendingDownload pendingDownload, Runnable action) {
+        try {
+            executor.execute(action);
+        } catch (RejectedExecutionException e) {
+            // The build is finishing, the entry will be loaded directly if needed
+            pendingDownload.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Downloads the entry into the local cache, and returns its size, or null when the remote cache does not have it.
+     */
+    @Nullable
+    private Long download(BuildCacheKey key) {
+        AtomicLong size = new AtomicLong(-1);
+        local.withTempFile(((DefaultBuildCacheKey) key).getHashCodeInternal(), file -> {
+            AtomicBoolean loaded = new AtomicBoolean();
+            remote.maybeLoad(key, file, loadedFile -> {
+                loaded.set(true);
+                return null;
+            });
+            if (loaded.get()) {
+                size.set(file.length());
+                local.storeLocally(key, file);
+            }
+        });
+        if (size.get() < 0) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        prefetchedBytes.addAndGet(size.get());
+        return size.get();
+    }
+
+    /**
+     * Waits for the prefetch of the entry for the given key to complete, if it was requested.
+     *
+     * When the prefetch does not complete within the wait timeout, it is discarded so the caller can load the entry from the remote cache directly.
+     */
+    public PrefetchResult awaitPrefetched(BuildCacheKey key) {
+        PendingDownload pendingDownload = prefetchedEntries.remove(key);
+        if (pendingDownload == null) {
+            return PrefetchResult.NOT_PREFETCHED;
+        }
+        Long size;
+        try {
+            size = pendingDownload.result.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (TimeoutException e) {
+            LOGGER.debug("Timed out waiting for entry {} to be prefetched from remote build cache", key.getDisplayName());
+            discard(pendingDownload);
+            return PrefetchResult.NOT_PREFETCHED;
+        } catch (ExecutionException e) {
+            // Let the caller load the entry from the remote cache again
+            LOGGER.debug("Could not prefetch entry {} from remote build cache", key.getDisplayName(), e.getCause());
+            return PrefetchResult.NOT_PREFETCHED;
+        }
+        if (size == null) {
+            return PrefetchResult.MISSING;
+        }
+        claim(size);
+        return PrefetchResult.STORED_LOCALLY;
+    }
+
+    /**
+     * Marks the entry for the given key as loaded from the local cache.
+     * When the entry is still being prefetched, the prefetch is discarded.
+     */
+    public void loadedLocally(BuildCacheKey key) {
+        PendingDownload pendingDownload = prefetchedEntries.remove(key);
+        if (pendingDownload == null) {
+            return;
+        }
+        Long size = pendingDownload.result.getNow(null);
+        if (size != null) {
+            claim(size);
+        } else {
+            discard(pendingDownload);
+        }
+    }
+
+    private void claim(long size) {
+        if (size > 0) {
+            hitCount.incrementAndGet();
+            prefetchedBytes.addAndGet(-size);
+        }
+    }
+
+    private void discard(PendingDownload pendingDownload) {
+        pendingDownload.discarded = true;
+        pendingDownload.result.thenAccept(size -> {
+            if (size != null && size > 0) {
+                wastedCount.incrementAndGet();
+                prefetchedBytes.addAndGet(-size);
+            }
+        });
+    }
+
+    public void close() {
+        // Discard the remaining entries first, so downloads that have not started yet are skipped
+        prefetchedEntries.values().forEach(this::discard);
+        prefetchedEntries.clear();
+        executor.stop();
+        if (prefetchCount.get() > 0) {
+            buildOperationExecutor.run(new RunnableBuildOperation() {
+                @Override
+                public void run(BuildOperationContext context) {
+                    context.setResult(new PrefetchOperationResult(prefetchCount.get(), hitCount.get(), missCount.get(), wastedCount.get()));
+                }
+
+                @Override
+                public BuildOperationDescriptor.Builder description() {
+                    return BuildOperationDescriptor.displayName("Prefetch entries from remote build cache")
+                        .details(new PrefetchOperationDetails(buildPath));
+                }
+            });
+        }
+    }
+
+    private class PendingDownload {
+        private final BuildCacheKey key;
+        // The size of the entry stored in the local cache, zero when it was there already, or null when the remote cache does not have it
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private volatile boolean discarded;
+
+        PendingDownload(BuildCacheKey key) {
+            this.key = key;
+        }
+
+        /**
+         * Completes the download without a result when the entry was discarded before the download started.
+         */
+        boolean skipIfDiscarded() {
+            if (discarded) {
+                result.complete(null);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Completes the download without downloading when the local cache already has the entry.
+         */
+        boolean skipIfStoredLocally() {
+            if (local.contains(key)) {
+                result.complete(0L);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -70,6 +70,11 @@ public Optional<BuildCacheLoadResult> load(BuildCacheKey cacheKey, CacheableEnti
             return delegate.load(cacheKey, cacheableEntity);
         }
 
+        @Override
+        public void prefetch(BuildCacheKey cacheKey) {
+            delegate.prefetch(cacheKey);
+        }
+
         @Override
         public void store(BuildCacheKey cacheKey, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime) {
             delegate.store(cacheKey, entity, snapshots, executionTime);
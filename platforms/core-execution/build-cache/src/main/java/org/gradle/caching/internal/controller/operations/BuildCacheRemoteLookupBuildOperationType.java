@@ -0,0 +1,46 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.operations;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Looking up which of a batch of entries exist in the remote build cache.
+ */
+public final class BuildCacheRemoteLookupBuildOperationType implements BuildOperationType<BuildCacheRemoteLookupBuildOperationType.Details, BuildCacheRemoteLookupBuildOperationType.Result> {
+
+    public interface Details {
+
+        /**
+         * The number of entries that were looked up.
+         */
+        int getKeyCount();
+
+    }
+
+    public interface Result {
+
+        /**
+         * The number of looked up entries that may exist in the remote cache.
+         */
+        int getExistingCount();
+
+    }
+
+    private BuildCacheRemoteLookupBuildOperationType() {
+    }
+}
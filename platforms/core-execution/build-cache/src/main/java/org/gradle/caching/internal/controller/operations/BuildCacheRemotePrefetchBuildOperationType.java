@@ -0,0 +1,58 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.operations;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Summarizes the entries prefetched from the remote build cache during a build.
+ */
+public final class BuildCacheRemotePrefetchBuildOperationType implements BuildOperationType<BuildCacheRemotePrefetchBuildOperationType.Details, BuildCacheRemotePrefetchBuildOperationType.Result> {
+
+    public interface Details {
+
+        String getBuildPath();
+
+    }
+
+    public interface Result {
+
+        /**
+         * The number of entries that were requested from the remote cache ahead of time.
+         */
+        long getPrefetchCount();
+
+        /**
+         * The number of prefetched entries that were used to load the outputs of work.
+         */
+        long getHitCount();
+
+        /**
+         * The number of prefetched entries that were not present in the remote cache.
+         */
+        long getMissCount();
+
+        /**
+         * The number of prefetched entries that were downloaded, but never used.
+         */
+        long getWastedCount();
+
+    }
+
+    private BuildCacheRemotePrefetchBuildOperationType() {
+    }
+}
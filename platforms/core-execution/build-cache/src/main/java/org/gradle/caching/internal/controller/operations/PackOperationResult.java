@@ -18,14 +18,18 @@
 
 import org.gradle.caching.internal.operations.BuildCacheArchivePackBuildOperationType;
 
+import javax.annotation.Nullable;
+
 public class PackOperationResult implements BuildCacheArchivePackBuildOperationType.Result {
 
     private final long archiveEntryCount;
     private final long archiveSize;
+    private final String archiveCompression;
 
-    public PackOperationResult(long archiveEntryCount, long archiveSize) {
+    public PackOperationResult(long archiveEntryCount, long archiveSize, @Nullable String archiveCompression) {
         this.archiveEntryCount = archiveEntryCount;
         this.archiveSize = archiveSize;
+        this.archiveCompression = archiveCompression;
     }
 
     @Override
@@ -37,4 +41,10 @@ public long getArchiveSize() {
     public long getArchiveEntryCount() {
         return archiveEntryCount;
     }
+
+    @Nullable
+    @Override
+    public String getArchiveCompression() {
+        return archiveCompression;
+    }
 }
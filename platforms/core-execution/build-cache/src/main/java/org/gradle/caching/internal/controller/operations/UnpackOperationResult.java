@@ -18,12 +18,16 @@
 
 import org.gradle.caching.internal.operations.BuildCacheArchiveUnpackBuildOperationType;
 
+import javax.annotation.Nullable;
+
 public class UnpackOperationResult implements BuildCacheArchiveUnpackBuildOperationType.Result {
 
     private final long archiveEntryCount;
+    private final String archiveCompression;
 
-    public UnpackOperationResult(long archiveEntryCount) {
+    public UnpackOperationResult(long archiveEntryCount, @Nullable String archiveCompression) {
         this.archiveEntryCount = archiveEntryCount;
+        this.archiveCompression = archiveCompression;
     }
 
     @Override
@@ -31,4 +35,10 @@ public long getArchiveEntryCount() {
         return archiveEntryCount;
     }
 
+    @Nullable
+    @Override
+    public String getArchiveCompression() {
+        return archiveCompression;
+    }
+
 }
@@ -16,6 +16,7 @@
 
 package org.gradle.caching.internal.controller.service;
 
+import org.gradle.caching.BatchLookupBuildCacheService;
 import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
@@ -26,6 +27,7 @@
 import java.io.File;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 
 public class BaseRemoteBuildCacheServiceHandle implements RemoteBuildCacheServiceHandle {
@@ -62,7 +64,8 @@ public String describeFailure(BuildCacheKey key, BuildCacheServiceRole role) {
     private final boolean logStackTraces;
     private final boolean disableOnError;
 
-    private boolean disabled;
+    private volatile boolean disabled;
+    private volatile boolean lookupDisabled;
 
     public BaseRemoteBuildCacheServiceHandle(
         BuildCacheService service,
@@ -120,6 +123,35 @@ private Optional<BuildCacheLoadResult> maybeUnpack(LoadTarget loadTarget, Functi
         return Optional.empty();
     }
 
+    @Override
+    public boolean canLookup() {
+        return service instanceof BatchLookupBuildCacheService && canLoad() && !lookupDisabled;
+    }
+
+    @Override
+    public final Set<BuildCacheKey> maybeFindExisting(Set<BuildCacheKey> keys) {
+        if (!canLookup() || keys.isEmpty()) {
+            return keys;
+        }
+        try {
+            return lookupInner(keys);
+        } catch (Exception e) {
+            // Looking up entries is only an optimization, so we don't disable the cache, but load entries one by one instead
+            lookupDisabled = true;
+            String description = "Could not look up entries in " + role.getDisplayName() + " build cache";
+            if (logStackTraces) {
+                LOGGER.warn(description, e);
+            } else {
+                LOGGER.warn(description + ": " + e.getMessage());
+            }
+            return keys;
+        }
+    }
+
+    protected Set<BuildCacheKey> lookupInner(Set<BuildCacheKey> keys) {
+        return ((BatchLookupBuildCacheService) service).findExisting(keys);
+    }
+
     @Override
     public boolean canStore() {
         return pushEnabled && !disabled;
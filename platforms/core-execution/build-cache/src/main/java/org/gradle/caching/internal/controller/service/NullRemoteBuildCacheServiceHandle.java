@@ -22,6 +22,7 @@
 import javax.annotation.Nullable;
 import java.io.File;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 
 public class NullRemoteBuildCacheServiceHandle implements RemoteBuildCacheServiceHandle {
@@ -44,6 +45,16 @@ public Optional<BuildCacheLoadResult> maybeLoad(BuildCacheKey key, File toFile,
         return Optional.empty();
     }
 
+    @Override
+    public boolean canLookup() {
+        return false;
+    }
+
+    @Override
+    public Set<BuildCacheKey> maybeFindExisting(Set<BuildCacheKey> keys) {
+        return keys;
+    }
+
     @Override
     public boolean canStore() {
         return false;
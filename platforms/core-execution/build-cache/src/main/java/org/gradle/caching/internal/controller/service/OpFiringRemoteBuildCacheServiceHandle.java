@@ -22,6 +22,8 @@
 import org.gradle.caching.internal.controller.operations.LoadOperationDetails;
 import org.gradle.caching.internal.controller.operations.LoadOperationHitResult;
 import org.gradle.caching.internal.controller.operations.LoadOperationMissResult;
+import org.gradle.caching.internal.controller.operations.LookupOperationDetails;
+import org.gradle.caching.internal.controller.operations.LookupOperationResult;
 import org.gradle.caching.internal.controller.operations.StoreOperationDetails;
 import org.gradle.caching.internal.controller.operations.StoreOperationResult;
 import org.gradle.caching.internal.operations.BuildCacheRemoteDisabledDueToFailureProgressDetails;
@@ -29,10 +31,12 @@
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.BuildOperationProgressEventEmitter;
+import org.gradle.internal.operations.CallableBuildOperation;
 import org.gradle.internal.operations.RunnableBuildOperation;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Set;
 
 public class OpFiringRemoteBuildCacheServiceHandle extends BaseRemoteBuildCacheServiceHandle {
 
@@ -78,6 +82,25 @@ public BuildOperationDescriptor.Builder description() {
         });
     }
 
+    @Override
+    protected Set<BuildCacheKey> lookupInner(Set<BuildCacheKey> keys) {
+        return buildOperationExecutor.call(new CallableBuildOperation<Set<BuildCacheKey>>() {
+            @Override
+            public Set<BuildCacheKey> call(BuildOperationContext context) {
+                Set<BuildCacheKey> existing = OpFiringRemoteBuildCacheServiceHandle.super.lookupInner(keys);
+                context.setResult(new LookupOperationResult(existing.size()));
+                return existing;
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Look up " + keys.size() + " entries in " + role.getDisplayName() + " build cache")
+                    .details(new LookupOperationDetails(keys.size()))
+                    .progressDisplayName("Looking up entries in remote build cache");
+            }
+        });
+    }
+
     @Override
     protected void storeInner(final String description, final BuildCacheKey key, final StoreTarget storeTarget) {
         buildOperationExecutor.run(new RunnableBuildOperation() {
@@ -24,6 +24,7 @@
 import java.io.Closeable;
 import java.io.File;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 
 public interface RemoteBuildCacheServiceHandle extends Closeable {
@@ -41,6 +42,18 @@ public interface RemoteBuildCacheServiceHandle extends Closeable {
      */
     Optional<BuildCacheLoadResult> maybeLoad(BuildCacheKey key, File toFile, Function<File, BuildCacheLoadResult> unpackFunction);
 
+    /**
+     * Whether the cache can look up many entries at once.
+     */
+    boolean canLookup();
+
+    /**
+     * Returns the keys among the given keys that may have an entry in the cache.
+     *
+     * If canLookup() returns false, or the lookup fails, then all the given keys are returned.
+     */
+    Set<BuildCacheKey> maybeFindExisting(Set<BuildCacheKey> keys);
+
     boolean canStore();
 
     /**
@@ -75,14 +75,7 @@ public DirectoryBuildCacheServiceFactory(
 
     @Override
     public BuildCacheService createBuildCacheService(DirectoryBuildCache configuration, Describer describer) {
-        Object cacheDirectory = configuration.getDirectory();
-        File target;
-        if (cacheDirectory != null) {
-            target = resolver.resolve(cacheDirectory);
-        } else {
-            target = cacheBuilderFactory.baseDirForCrossVersionCache(BUILD_CACHE_KEY);
-        }
-        checkDirectory(target);
+        File target = resolveCacheDirectory(configuration);
 
         int removeUnusedEntriesAfterDays = configuration.getRemoveUnusedEntriesAfterDays();
         Supplier<Long> removeUnusedEntriesOlderThan = TimestampSuppliers.daysAgo(removeUnusedEntriesAfterDays);
@@ -104,6 +97,21 @@ public BuildCacheService createBuildCacheService(DirectoryBuildCache configurati
         return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
     }
 
+    /**
+     * Returns the configured cache directory, creating it if necessary.
+     */
+    File resolveCacheDirectory(DirectoryBuildCache configuration) {
+        Object cacheDirectory = configuration.getDirectory();
+        File target;
+        if (cacheDirectory != null) {
+            target = resolver.resolve(cacheDirectory);
+        } else {
+            target = cacheBuilderFactory.baseDirForCrossVersionCache(BUILD_CACHE_KEY);
+        }
+        checkDirectory(target);
+        return target;
+    }
+
     private CacheCleanupStrategy createCacheCleanupStrategy(Supplier<Long> removeUnusedEntriesTimestamp) {
         return DefaultCacheCleanupStrategy.from(cleanupActionDecorator.decorate(createCleanupAction(removeUnusedEntriesTimestamp)));
     }
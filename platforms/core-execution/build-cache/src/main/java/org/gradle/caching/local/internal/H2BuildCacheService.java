@@ -40,9 +40,9 @@
 import java.util.concurrent.TimeUnit;
 
 /**
- * This was used in Build cache next gen prototype, but it's was not deleted, since most of logic will be reused for new local cache.
+ * This was used in Build cache next gen prototype.
  *
- * TODO: Extract H2 specific code to a generic "H2Cache" class
+ * Superseded by {@link PackFileBuildCacheService}, only kept to compare the two in benchmarks.
  */
 public class H2BuildCacheService implements StatefulNextGenBuildCacheService {
 
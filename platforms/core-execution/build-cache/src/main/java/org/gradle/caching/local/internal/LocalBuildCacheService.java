@@ -21,6 +21,7 @@
 
 import java.io.Closeable;
 import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A build cache service that is capable of handling local files directly. The direct access
@@ -38,4 +39,13 @@ public interface LocalBuildCacheService extends BuildCacheTempFileStore, Closeab
      * Store the given file in the local file store as a cache artifact.
      */
     void storeLocally(BuildCacheKey key, File file);
+
+    /**
+     * Returns whether the local file store has a cache artifact for the given key, without reading it.
+     */
+    default boolean contains(BuildCacheKey key) {
+        AtomicBoolean found = new AtomicBoolean();
+        loadLocally(key, file -> found.set(true));
+        return found.get();
+    }
 }
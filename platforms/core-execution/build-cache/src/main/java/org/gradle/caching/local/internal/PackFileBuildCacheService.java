@@ -0,0 +1,629 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.gradle.api.Action;
+import org.gradle.api.NonNullApi;
+import org.gradle.cache.HasCleanupAction;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.DefaultBuildCacheKey;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.time.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A local build cache that stores entries in segmented, append-only pack files.
+ *
+ * <p>The index of all entries is kept in memory and is rebuilt from the record headers when the cache is opened.
+ * Loads and stores are lock-free and can run concurrently: stores reserve space at the end of the current segment
+ * and write their record there, and loads read from the segment at the position of the record.
+ * Entries are copied between the segments and local files with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+ * and {@link FileChannel#transferFrom(java.nio.channels.ReadableByteChannel, long, long)}, without copying them through the heap.</p>
+ *
+ * <p>Each record consists of a header followed by the content of the entry:</p>
+ * <ul>
+ *     <li>magic number (int), identifying an entry, padding left behind by a failed store or a discarded entry</li>
+ *     <li>content length (long)</li>
+ *     <li>last access time (long), updated in place</li>
+ *     <li>CRC32 checksum of the content (int)</li>
+ *     <li>CRC32 checksum of the header (int), covering everything but the magic number and the last access time</li>
+ *     <li>key length (byte), followed by the key</li>
+ * </ul>
+ * <p>The space for a record is reserved with a padding header covering the whole record, and the real header is written after the content,
+ * so a record only becomes visible once it is complete, and a record left incomplete by a crash is skipped by its reserved length.
+ * When the cache is opened, a header that cannot be read, for example because it was only partially written, is skipped up to the next valid header.
+ * Only the invalid data after the last valid record is truncated.
+ * The checksum of the content is verified when an entry is loaded for the first time.</p>
+ *
+ * <p>Entries that are removed, because they are corrupt or by cleanup, are marked as discarded by overwriting their magic number,
+ * so they stay removed when the cache is opened again.
+ * Cleanup removes entries that have not been used recently and compacts segments that mostly contain removed entries.
+ * The cache directory can only be used by a single service at a time. Opening the cache waits until other services have closed it.</p>
+ */
+@NonNullApi
+public class PackFileBuildCacheService implements LocalBuildCacheService, BuildCacheService, HasCleanupAction {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PackFileBuildCacheService.class);
+
+    public static final long DEFAULT_SEGMENT_SIZE = 256 * 1024 * 1024;
+    public static final long DEFAULT_LOCK_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+
+    private static final int ENTRY_MAGIC = 0x47424345;
+    private static final int PADDING_MAGIC = 0x47424350;
+    private static final int DISCARDED_MAGIC = 0x47424344;
+    private static final int HEADER_SIZE = 4 + 8 + 8 + 4 + 4 + 1;
+    private static final int ACCESS_TIME_OFFSET = 4 + 8;
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    private static final long LOCK_RETRY_INTERVAL = 100;
+    private static final long ACCESS_TIME_PRECISION = TimeUnit.HOURS.toMillis(1);
+    private static final double COMPACTION_THRESHOLD = 0.5;
+    private static final Pattern SEGMENT_FILE_NAME = Pattern.compile("segment-(\\d+)\\.pack");
+
+    private final File directory;
+    private final BuildCacheTempFileStore tempFileStore;
+    private final long maxSegmentSize;
+    private final int removeUnusedEntriesAfterDays;
+    private final Clock clock;
+    private final ConcurrentMap<HashCode, PackEntry> index = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, PackSegment> segments = new ConcurrentHashMap<>();
+    private final FileChannel lockChannel;
+    private volatile PackSegment writeSegment;
+
+    public PackFileBuildCacheService(File directory, BuildCacheTempFileStore tempFileStore, long maxSegmentSize, int removeUnusedEntriesAfterDays, Clock clock) {
+        this(directory, tempFileStore, maxSegmentSize, removeUnusedEntriesAfterDays, clock, DEFAULT_LOCK_TIMEOUT);
+    }
+
+    public PackFileBuildCacheService(File directory, BuildCacheTempFileStore tempFileStore, long maxSegmentSize, int removeUnusedEntriesAfterDays, Clock clock, long lockTimeout) {
+        this.directory = directory;
+        this.tempFileStore = tempFileStore;
+        this.maxSegmentSize = maxSegmentSize;
+        this.removeUnusedEntriesAfterDays = removeUnusedEntriesAfterDays;
+        this.clock = clock;
+        try {
+            Files.createDirectories(directory.toPath());
+            this.lockChannel = FileChannel.open(new File(directory, "pack.lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (!lock(lockChannel, lockTimeout)) {
+                lockChannel.close();
+                throw new BuildCacheException(String.format("Timeout waiting to lock build cache in %s. It is currently in use by another Gradle instance.", directory));
+            }
+            this.writeSegment = openSegments();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Locks the cache directory, waiting up to the given number of milliseconds for other services to release it.
+     * The lock is released when the channel is closed.
+     */
+    private boolean lock(FileChannel lockChannel, long timeout) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        boolean waiting = false;
+        while (!tryLock(lockChannel)) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            if (!waiting) {
+                LOGGER.info("Waiting for build cache in {} to be released by another Gradle instance", directory);
+                waiting = true;
+            }
+            try {
+                Thread.sleep(LOCK_RETRY_INTERVAL);
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+        return true;
+    }
+
+    private static boolean tryLock(FileChannel lockChannel) throws IOException {
+        try {
+            return lockChannel.tryLock() != null;
+        } catch (OverlappingFileLockException e) {
+            // Locked by another service in this process
+            return false;
+        }
+    }
+
+    private PackSegment openSegments() throws IOException {
+        TreeMap<Integer, File> segmentFiles = new TreeMap<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Matcher matcher = SEGMENT_FILE_NAME.matcher(file.getName());
+                if (matcher.matches()) {
+                    segmentFiles.put(Integer.parseInt(matcher.group(1)), file);
+                }
+            }
+        }
+        PackSegment last = null;
+        for (Map.Entry<Integer, File> segmentFile : segmentFiles.entrySet()) {
+            last = PackSegment.open(segmentFile.getKey(), segmentFile.getValue());
+            segments.put(last.getId(), last);
+            scan(last);
+        }
+        if (last == null || last.getEnd() >= maxSegmentSize) {
+            return newSegment(last == null ? 0 : last.getId() + 1);
+        }
+        return last;
+    }
+
+    /**
+     * Adds the records of the segment to the index.
+     *
+     * A record with an invalid header is skipped up to the next valid header, and turned into padding so it doesn't need to be searched again.
+     * When no valid header follows, the segment is truncated after the last valid record.
+     */
+    private void scan(PackSegment segment) throws IOException {
+        long size = segment.size();
+        long position = 0;
+        while (position < size) {
+            RecordHeader header = readHeader(segment, position, size);
+            if (header == null) {
+                long next = findNextHeader(segment, position + 1, size);
+                if (next < 0) {
+                    break;
+                }
+                LOGGER.debug("Skipping invalid record at {} in {}", position, segment);
+                if (next - position >= HEADER_SIZE) {
+                    writeHeader(segment, position, PADDING_MAGIC, new byte[0], next - position - HEADER_SIZE, 0, 0);
+                }
+                position = next;
+                continue;
+            }
+            if (header.magic == ENTRY_MAGIC) {
+                index.put(HashCode.fromBytes(header.key), new PackEntry(segment, position, header.key.length, header.contentLength, header.lastAccessed, header.contentChecksum, false));
+            }
+            position = header.getRecordEnd(position);
+        }
+        if (position < size) {
+            LOGGER.debug("Discarding incomplete records at the end of {}", segment);
+            segment.truncate(position);
+        }
+    }
+
+    /**
+     * Reads the header of the record at the given position, or returns {@code null} when there is no valid header for a complete record there.
+     */
+    @Nullable
+    private static RecordHeader readHeader(PackSegment segment, long position, long size) throws IOException {
+        if (position + HEADER_SIZE > size) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        segment.readFully(buffer, position);
+        buffer.flip();
+        int magic = buffer.getInt();
+        long contentLength = buffer.getLong();
+        long lastAccessed = buffer.getLong();
+        int contentChecksum = buffer.getInt();
+        int headerChecksum = buffer.getInt();
+        int keyLength = buffer.get() & 0xff;
+        if (!isRecordMagic(magic) || contentLength < 0 || keyLength > MAX_KEY_LENGTH || contentLength > size - position - HEADER_SIZE - keyLength) {
+            return null;
+        }
+        byte[] key = new byte[keyLength];
+        segment.readFully(ByteBuffer.wrap(key), position + HEADER_SIZE);
+        if (headerChecksum(contentLength, contentChecksum, key) != headerChecksum) {
+            return null;
+        }
+        return new RecordHeader(magic, contentLength, lastAccessed, contentChecksum, key);
+    }
+
+    /**
+     * Searches the segment for the next position at which a valid header starts, or returns -1 when there is none.
+     */
+    private static long findNextHeader(PackSegment segment, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long bufferStart = from;
+        while (bufferStart + HEADER_SIZE <= size) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), size - bufferStart));
+            segment.readFully(buffer, bufferStart);
+            buffer.flip();
+            for (int offset = 0; offset + 4 <= buffer.limit(); offset++) {
+                if (isRecordMagic(buffer.getInt(offset)) && readHeader(segment, bufferStart + offset, size) != null) {
+                    return bufferStart + offset;
+                }
+            }
+            // Let the chunks overlap, so a magic number spanning two chunks is found as well
+            bufferStart += buffer.limit() - 3;
+        }
+        return -1;
+    }
+
+    private static boolean isRecordMagic(int magic) {
+        return magic == ENTRY_MAGIC || magic == PADDING_MAGIC || magic == DISCARDED_MAGIC;
+    }
+
+    private PackSegment newSegment(int id) throws IOException {
+        PackSegment segment = PackSegment.open(id, new File(directory, "segment-" + id + ".pack"));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private synchronized PackSegment rollOver(PackSegment full) throws IOException {
+        if (writeSegment == full) {
+            writeSegment = newSegment(full.getId() + 1);
+        }
+        return writeSegment;
+    }
+
+    private static HashCode hashCodeOf(BuildCacheKey key) {
+        return ((DefaultBuildCacheKey) key).getHashCodeInternal();
+    }
+
+    @Override
+    public boolean contains(BuildCacheKey key) {
+        return index.containsKey(hashCodeOf(key));
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        HashCode hashCode = hashCodeOf(key);
+        PackEntry entry = index.get(hashCode);
+        if (entry == null) {
+            return false;
+        }
+        try {
+            verify(hashCode, entry);
+            markAccessed(entry);
+            try (InputStream input = entry.segment.openStream(entry.getContentOffset(), entry.contentLength)) {
+                reader.readFrom(input);
+            }
+            return true;
+        } catch (Exception e) {
+            discard(hashCode, entry);
+            throw new BuildCacheException("loading " + key, e);
+        }
+    }
+
+    @Override
+    public void loadLocally(BuildCacheKey key, Action<? super File> reader) {
+        HashCode hashCode = hashCodeOf(key);
+        PackEntry entry = index.get(hashCode);
+        if (entry == null) {
+            return;
+        }
+        tempFileStore.withTempFile(hashCode, file -> {
+            try {
+                verify(hashCode, entry);
+                markAccessed(entry);
+                try (FileChannel target = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    entry.segment.transferTo(entry.getContentOffset(), entry.contentLength, target);
+                }
+                reader.execute(file);
+            } catch (Exception e) {
+                discard(hashCode, entry);
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        });
+    }
+
+    /**
+     * Checks the content of an entry against its checksum, unless that has already been done.
+     */
+    private static void verify(HashCode hashCode, PackEntry entry) throws IOException {
+        if (!entry.verified) {
+            if (entry.segment.checksum(entry.getContentOffset(), entry.contentLength) != entry.contentChecksum) {
+                throw new IOException(String.format("Build cache entry %s in %s is corrupt", hashCode, entry.segment));
+            }
+            entry.verified = true;
+        }
+    }
+
+    /**
+     * Removes an entry that could not be loaded from the index, so it isn't used again.
+     * Its record is removed by the next compaction of its segment.
+     */
+    private void discard(HashCode hashCode, PackEntry entry) {
+        if (index.remove(hashCode, entry)) {
+            try {
+                markDiscarded(entry);
+            } catch (IOException e) {
+                LOGGER.debug("Could not discard build cache entry {} in {}", hashCode, entry.segment, e);
+            }
+        }
+    }
+
+    /**
+     * Overwrites the magic number of the record, so the entry is not added to the index when the segment is scanned again.
+     */
+    private static void markDiscarded(PackEntry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        buffer.putInt(DISCARDED_MAGIC).flip();
+        entry.segment.writeFully(buffer, entry.recordOffset);
+    }
+
+    private void markAccessed(PackEntry entry) throws IOException {
+        long now = clock.getCurrentTime();
+        entry.lastAccessed = now;
+        // Only write the access time when it has moved on enough to be relevant for cleanup
+        if (now - entry.persistedAccessTime > ACCESS_TIME_PRECISION) {
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            buffer.putLong(now).flip();
+            entry.segment.writeFully(buffer, entry.recordOffset + ACCESS_TIME_OFFSET);
+            entry.persistedAccessTime = now;
+        }
+    }
+
+    @Override
+    public void store(BuildCacheKey key, BuildCacheEntryWriter writer) throws BuildCacheException {
+        HashCode hashCode = hashCodeOf(key);
+        if (index.containsKey(hashCode)) {
+            return;
+        }
+        try {
+            PackEntry entry = append(hashCode, writer.getSize(), clock.getCurrentTime(), (segment, position) -> {
+                CRC32 crc = new CRC32();
+                try (OutputStream output = new CheckedOutputStream(segment.openOutputStream(position, writer.getSize()), crc)) {
+                    writer.writeTo(output);
+                }
+                return (int) crc.getValue();
+            });
+            addToIndex(hashCode, entry);
+        } catch (IOException e) {
+            throw new BuildCacheException("storing " + key, e);
+        }
+    }
+
+    @Override
+    public void storeLocally(BuildCacheKey key, File file) {
+        HashCode hashCode = hashCodeOf(key);
+        if (index.containsKey(hashCode)) {
+            return;
+        }
+        try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = source.size();
+            PackEntry entry = append(hashCode, size, clock.getCurrentTime(), (segment, position) -> {
+                segment.transferFrom(source, position, size);
+                return segment.checksum(position, size);
+            });
+            addToIndex(hashCode, entry);
+        } catch (IOException e) {
+            throw new BuildCacheException("storing " + key, e);
+        }
+    }
+
+    /**
+     * Adds a newly stored entry to the index. If another thread has stored the same key in the meantime, the new record is discarded.
+     */
+    private void addToIndex(HashCode hashCode, PackEntry entry) throws IOException {
+        if (index.putIfAbsent(hashCode, entry) != null) {
+            markDiscarded(entry);
+        }
+    }
+
+    /**
+     * Appends a record for the given key to the current segment.
+     * If writing the content fails, the reserved space is marked as padding so it doesn't hide the records after it.
+     */
+    private PackEntry append(HashCode hashCode, long contentLength, long lastAccessed, ContentWriter contentWriter) throws IOException {
+        byte[] key = hashCode.toByteArray();
+        long recordLength = HEADER_SIZE + key.length + contentLength;
+        // Until the content is written, the record is padding covering the reserved space, which is skipped when the segment is scanned.
+        // The placeholder also extends the file up to the content, as required by transferFrom().
+        ByteBuffer placeholder = ByteBuffer.allocate(HEADER_SIZE + key.length);
+        putHeader(placeholder, PADDING_MAGIC, new byte[0], recordLength - HEADER_SIZE, lastAccessed, 0);
+        placeholder.clear();
+        PackSegment segment = writeSegment;
+        long position;
+        while ((position = segment.reserve(placeholder, recordLength, maxSegmentSize)) < 0) {
+            segment = rollOver(segment);
+        }
+        int contentChecksum = contentWriter.write(segment, position + HEADER_SIZE + key.length);
+        writeHeader(segment, position, ENTRY_MAGIC, key, contentLength, lastAccessed, contentChecksum);
+        return new PackEntry(segment, position, key.length, contentLength, lastAccessed, contentChecksum, true);
+    }
+
+    private static void writeHeader(PackSegment segment, long position, int magic, byte[] key, long contentLength, long lastAccessed, int contentChecksum) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + key.length);
+        putHeader(header, magic, key, contentLength, lastAccessed, contentChecksum);
+        header.flip();
+        segment.writeFully(header, position);
+    }
+
+    private static void putHeader(ByteBuffer header, int magic, byte[] key, long contentLength, long lastAccessed, int contentChecksum) {
+        header.putInt(magic)
+            .putLong(contentLength)
+            .putLong(lastAccessed)
+            .putInt(contentChecksum)
+            .putInt(headerChecksum(contentLength, contentChecksum, key))
+            .put((byte) key.length)
+            .put(key);
+    }
+
+    private static int headerChecksum(long contentLength, int contentChecksum, byte[] key) {
+        ByteBuffer fields = ByteBuffer.allocate(8 + 4 + 1 + key.length);
+        fields.putLong(contentLength)
+            .putInt(contentChecksum)
+            .put((byte) key.length)
+            .put(key);
+        CRC32 crc = new CRC32();
+        crc.update(fields.array(), 0, fields.position());
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void withTempFile(HashCode key, Consumer<? super File> action) {
+        tempFileStore.withTempFile(key, action);
+    }
+
+    /**
+     * Removes entries that have not been used for the configured number of days, and compacts segments where less than half of the data is still in use.
+     *
+     * Cleanup is done after all build cache controllers are closed, so it doesn't need to care about concurrent access.
+     */
+    @Override
+    public synchronized void cleanup() {
+        long removeUnusedEntriesBefore = clock.getCurrentTime() - TimeUnit.DAYS.toMillis(removeUnusedEntriesAfterDays);
+        try {
+            for (Iterator<PackEntry> iterator = index.values().iterator(); iterator.hasNext(); ) {
+                PackEntry entry = iterator.next();
+                if (entry.lastAccessed < removeUnusedEntriesBefore) {
+                    iterator.remove();
+                    markDiscarded(entry);
+                }
+            }
+
+            Map<PackSegment, Long> liveBytes = new HashMap<>();
+            for (PackEntry entry : index.values()) {
+                liveBytes.merge(entry.segment, entry.getRecordLength(), Long::sum);
+            }
+            for (PackSegment segment : new ArrayList<>(segments.values())) {
+                long segmentLiveBytes = liveBytes.getOrDefault(segment, 0L);
+                if (segment.getEnd() > 0 && segmentLiveBytes < segment.getEnd() * COMPACTION_THRESHOLD) {
+                    compact(segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact build cache in " + directory, e);
+        }
+    }
+
+    /**
+     * Moves the entries still in use from the segment to the current segment, then deletes the segment.
+     */
+    private void compact(PackSegment segment) throws IOException {
+        if (segment == writeSegment) {
+            rollOver(segment);
+        }
+        List<Map.Entry<HashCode, PackEntry>> entries = new ArrayList<>();
+        for (Map.Entry<HashCode, PackEntry> entry : index.entrySet()) {
+            if (entry.getValue().segment == segment) {
+                entries.add(entry);
+            }
+        }
+        // Copy in file order, so the source segment is read sequentially
+        entries.sort((left, right) -> Long.compare(left.getValue().recordOffset, right.getValue().recordOffset));
+        for (Map.Entry<HashCode, PackEntry> entry : entries) {
+            PackEntry source = entry.getValue();
+            segment.getChannel().position(source.getContentOffset());
+            PackEntry copy = append(entry.getKey(), source.contentLength, source.lastAccessed, (target, position) -> {
+                target.transferFrom(segment.getChannel(), position, source.contentLength);
+                return source.contentChecksum;
+            });
+            // The content is copied as is, so it is only known to be intact when the source was
+            copy.verified = source.verified;
+            index.replace(entry.getKey(), source, copy);
+        }
+        segments.remove(segment.getId());
+        segment.close();
+        Files.delete(segment.getFile().toPath());
+    }
+
+    @VisibleForTesting
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        CompositeStoppable.stoppable(segments.values()).add(lockChannel).stop();
+    }
+
+    private interface ContentWriter {
+        /**
+         * Writes the content at the given position, and returns its checksum.
+         */
+        int write(PackSegment segment, long position) throws IOException;
+    }
+
+    private static class RecordHeader {
+        final int magic;
+        final long contentLength;
+        final long lastAccessed;
+        final int contentChecksum;
+        final byte[] key;
+
+        RecordHeader(int magic, long contentLength, long lastAccessed, int contentChecksum, byte[] key) {
+            this.magic = magic;
+            this.contentLength = contentLength;
+            this.lastAccessed = lastAccessed;
+            this.contentChecksum = contentChecksum;
+            this.key = key;
+        }
+
+        long getRecordEnd(long position) {
+            return position + HEADER_SIZE + key.length + contentLength;
+        }
+    }
+
+    private static class PackEntry {
+        final PackSegment segment;
+        final long recordOffset;
+        final int keyLength;
+        final long contentLength;
+        final int contentChecksum;
+        volatile long lastAccessed;
+        volatile long persistedAccessTime;
+        volatile boolean verified;
+
+        PackEntry(PackSegment segment, long recordOffset, int keyLength, long contentLength, long lastAccessed, int contentChecksum, boolean verified) {
+            this.segment = segment;
+            this.recordOffset = recordOffset;
+            this.keyLength = keyLength;
+            this.contentLength = contentLength;
+            this.lastAccessed = lastAccessed;
+            this.persistedAccessTime = lastAccessed;
+            this.contentChecksum = contentChecksum;
+            this.verified = verified;
+        }
+
+        long getContentOffset() {
+            return recordOffset + HEADER_SIZE + keyLength;
+        }
+
+        long getRecordLength() {
+            return HEADER_SIZE + keyLength + contentLength;
+        }
+    }
+}
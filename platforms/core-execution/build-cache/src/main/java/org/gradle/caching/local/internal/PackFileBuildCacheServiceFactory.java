@@ -0,0 +1,189 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.file.temp.TemporaryFileProvider;
+import org.gradle.cache.CacheBuilder;
+import org.gradle.cache.DefaultCacheCleanupStrategy;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.UnscopedCacheBuilderFactory;
+import org.gradle.cache.internal.CleanupActionDecorator;
+import org.gradle.cache.scopes.GlobalScopedCacheBuilderFactory;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.local.DirectoryBuildCache;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.file.FileAccessTimeJournal;
+import org.gradle.internal.file.PathToFileResolver;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.time.Clock;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.gradle.cache.FileLockManager.LockMode.OnDemand;
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * Creates a {@link PackFileBuildCacheService} for the local build cache, in the {@code packs} directory below the configured cache directory.
+ *
+ * <p>Cleanup of the pack files runs when the build cache is closed, at the frequency configured for the caches in the Gradle user home.
+ * Builds running in the same process share the pack files of a cache directory, which stay open until the last of them closes the build cache.
+ * When the pack files are in use by another process, opening them waits until that process releases them.</p>
+ */
+public class PackFileBuildCacheServiceFactory extends DirectoryBuildCacheServiceFactory {
+    static final String PACK_DIRECTORY = "packs";
+    private static final String PACK_FILE_BUILD_CACHE_TYPE = "pack-file";
+
+    private static final Map<File, SharedPackFiles> OPEN_PACK_FILES = new HashMap<>();
+
+    private final UnscopedCacheBuilderFactory unscopedCacheBuilderFactory;
+    private final CleanupActionDecorator cleanupActionDecorator;
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final Clock clock;
+
+    @Inject
+    public PackFileBuildCacheServiceFactory(
+        UnscopedCacheBuilderFactory unscopedCacheBuilderFactory, GlobalScopedCacheBuilderFactory cacheBuilderFactory, PathToFileResolver resolver, DirectoryBuildCacheFileStoreFactory fileStoreFactory,
+        CleanupActionDecorator cleanupActionDecorator, FileAccessTimeJournal fileAccessTimeJournal, TemporaryFileProvider temporaryFileProvider, Clock clock
+    ) {
+        super(unscopedCacheBuilderFactory, cacheBuilderFactory, resolver, fileStoreFactory, cleanupActionDecorator, fileAccessTimeJournal, temporaryFileProvider);
+        this.unscopedCacheBuilderFactory = unscopedCacheBuilderFactory;
+        this.cleanupActionDecorator = cleanupActionDecorator;
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.clock = clock;
+    }
+
+    @Override
+    public BuildCacheService createBuildCacheService(DirectoryBuildCache configuration, Describer describer) {
+        File packDirectory = new File(resolveCacheDirectory(configuration), PACK_DIRECTORY).getAbsoluteFile();
+        int removeUnusedEntriesAfterDays = configuration.getRemoveUnusedEntriesAfterDays();
+        describer.type(PACK_FILE_BUILD_CACHE_TYPE).
+            config("location", packDirectory.getAbsolutePath()).
+            config("removeUnusedEntriesAfter", removeUnusedEntriesAfterDays + " days");
+
+        synchronized (OPEN_PACK_FILES) {
+            SharedPackFiles packFiles = OPEN_PACK_FILES.get(packDirectory);
+            if (packFiles == null) {
+                packFiles = open(packDirectory, removeUnusedEntriesAfterDays);
+                OPEN_PACK_FILES.put(packDirectory, packFiles);
+            }
+            packFiles.references++;
+            return new SharedPackFileBuildCacheService(packFiles);
+        }
+    }
+
+    private SharedPackFiles open(File packDirectory, int removeUnusedEntriesAfterDays) {
+        PackFileBuildCacheService service = new PackFileBuildCacheService(packDirectory, new DefaultBuildCacheTempFileStore(temporaryFileProvider), PackFileBuildCacheService.DEFAULT_SEGMENT_SIZE, removeUnusedEntriesAfterDays, clock);
+        PersistentCache persistentCache = unscopedCacheBuilderFactory
+            .cache(packDirectory)
+            .withCleanupStrategy(DefaultCacheCleanupStrategy.from(cleanupActionDecorator.decorate((cleanableStore, progressMonitor) -> service.cleanup())))
+            .withDisplayName("Build cache pack files")
+            .withLockOptions(mode(OnDemand))
+            .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
+            .open();
+        return new SharedPackFiles(packDirectory, service, persistentCache);
+    }
+
+    /**
+     * The pack files of a cache directory, opened by the first build that uses them.
+     */
+    private static class SharedPackFiles {
+        final File directory;
+        final PackFileBuildCacheService service;
+        final PersistentCache persistentCache;
+        int references;
+
+        SharedPackFiles(File directory, PackFileBuildCacheService service, PersistentCache persistentCache) {
+            this.directory = directory;
+            this.service = service;
+            this.persistentCache = persistentCache;
+        }
+
+        /**
+         * Closes the persistent cache before the pack files, so cleanup still has access to them.
+         */
+        void close() {
+            CompositeStoppable.stoppable(persistentCache, service).stop();
+        }
+    }
+
+    /**
+     * A reference to shared pack files, which closes them when it is the last reference to be closed.
+     */
+    private static class SharedPackFileBuildCacheService implements LocalBuildCacheService, BuildCacheService {
+        private final SharedPackFiles packFiles;
+        private final PackFileBuildCacheService delegate;
+        private boolean closed;
+
+        SharedPackFileBuildCacheService(SharedPackFiles packFiles) {
+            this.packFiles = packFiles;
+            this.delegate = packFiles.service;
+        }
+
+        @Override
+        public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+            return delegate.load(key, reader);
+        }
+
+        @Override
+        public void loadLocally(BuildCacheKey key, Action<? super File> reader) {
+            delegate.loadLocally(key, reader);
+        }
+
+        @Override
+        public boolean contains(BuildCacheKey key) {
+            return delegate.contains(key);
+        }
+
+        @Override
+        public void store(BuildCacheKey key, BuildCacheEntryWriter writer) throws BuildCacheException {
+            delegate.store(key, writer);
+        }
+
+        @Override
+        public void storeLocally(BuildCacheKey key, File file) {
+            delegate.storeLocally(key, file);
+        }
+
+        @Override
+        public void withTempFile(HashCode key, Consumer<? super File> action) {
+            delegate.withTempFile(key, action);
+        }
+
+        @Override
+        public void close() {
+            synchronized (OPEN_PACK_FILES) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (--packFiles.references == 0) {
+                    OPEN_PACK_FILES.remove(packFiles.directory);
+                    packFiles.close();
+                }
+            }
+        }
+    }
+}
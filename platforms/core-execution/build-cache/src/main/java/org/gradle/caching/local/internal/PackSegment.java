@@ -0,0 +1,260 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of build cache entries.
+ *
+ * Space for records is reserved up-front, so multiple threads can write records to the same segment at the same time.
+ * Records are read and written at explicit positions, so concurrent reads and writes don't interfere with each other.
+ */
+class PackSegment implements Closeable {
+    private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+
+    private final int id;
+    private final File file;
+    private final FileChannel channel;
+    private final AtomicLong end;
+
+    private PackSegment(int id, File file, FileChannel channel, long end) {
+        this.id = id;
+        this.file = file;
+        this.channel = channel;
+        this.end = new AtomicLong(end);
+    }
+
+    static PackSegment open(int id, File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new PackSegment(id, file, channel, channel.size());
+    }
+
+    int getId() {
+        return id;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    FileChannel getChannel() {
+        return channel;
+    }
+
+    long getEnd() {
+        return end.get();
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Reserves space for a record of the given length at the end of the segment, and writes the placeholder at the start of it.
+     * The placeholder is written before any later space is reserved, so the segment never contains a record after unwritten space.
+     * A record larger than the maximum segment size can only be added to an empty segment.
+     *
+     * @return the position of the reserved space, or -1 if the segment is full.
+     */
+    synchronized long reserve(ByteBuffer placeholder, long length, long maxSize) throws IOException {
+        long current = end.get();
+        if (current > 0 && current + length > maxSize) {
+            return -1;
+        }
+        writeFully(placeholder, current);
+        end.set(current + length);
+        return current;
+    }
+
+    /**
+     * Discards everything from the given position, after the segment has been found to contain an incomplete record there.
+     */
+    void truncate(long position) throws IOException {
+        channel.truncate(position);
+        end.set(position);
+    }
+
+    void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of " + file);
+            }
+            position += read;
+        }
+    }
+
+    void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Copies bytes from the given channel, starting at its current position, into this segment.
+     */
+    void transferFrom(FileChannel source, long position, long length) throws IOException {
+        long transferred = 0;
+        while (transferred < length) {
+            long count = channel.transferFrom(source, position + transferred, length - transferred);
+            if (count <= 0) {
+                throw new EOFException("Unexpected end of input while writing to " + file);
+            }
+            transferred += count;
+        }
+    }
+
+    /**
+     * Copies bytes from this segment into the given channel, starting at the channel's current position.
+     */
+    void transferTo(long position, long length, FileChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < length) {
+            long count = channel.transferTo(position + transferred, length - transferred, target);
+            if (count <= 0) {
+                throw new EOFException("Unexpected end of " + file);
+            }
+            transferred += count;
+        }
+    }
+
+    /**
+     * Calculates the CRC32 checksum of the given range of this segment.
+     */
+    int checksum(long position, long length) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, CHECKSUM_BUFFER_SIZE));
+        long end = position + length;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            readFully(buffer, position);
+            buffer.flip();
+            position += buffer.remaining();
+            crc.update(buffer);
+        }
+        return (int) crc.getValue();
+    }
+
+    InputStream openStream(long position, long length) {
+        return new SegmentInputStream(position, position + length);
+    }
+
+    /**
+     * Opens a stream that writes exactly the given number of bytes starting at the given position.
+     */
+    OutputStream openOutputStream(long position, long length) {
+        return new SegmentOutputStream(position, position + length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+
+    private class SegmentInputStream extends InputStream {
+        private final long limit;
+        private long position;
+
+        SegmentInputStream(long position, long limit) {
+            this.position = position;
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            int read = read(buffer, 0, 1);
+            return read < 0 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= limit) {
+                return -1;
+            }
+            int count = (int) Math.min(len, limit - position);
+            int read = channel.read(ByteBuffer.wrap(b, off, count), position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of " + file);
+            }
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, limit - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, limit - position);
+        }
+    }
+
+    private class SegmentOutputStream extends OutputStream {
+        private final long limit;
+        private long position;
+
+        SegmentOutputStream(long position, long limit) {
+            this.position = position;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (position + len > limit) {
+                throw new IOException("Build cache entry is larger than its reported size");
+            }
+            writeFully(ByteBuffer.wrap(b, off, len), position);
+            position += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (position != limit) {
+                throw new IOException("Build cache entry is smaller than its reported size");
+            }
+        }
+    }
+}
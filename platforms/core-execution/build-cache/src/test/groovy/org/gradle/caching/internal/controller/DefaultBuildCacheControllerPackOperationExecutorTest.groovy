@@ -92,11 +92,12 @@ class DefaultBuildCacheControllerPackOperationExecutorTest extends Specification
         1 * originFactory.createReader() >> originReader
 
         then:
-        1 * packer.unpack(entity, _ as InputStream, originReader) >> new BuildCacheEntryPacker.UnpackResult(originMetadata, 123L, fileSnapshots)
+        1 * packer.unpack(entity, _ as InputStream, originReader) >> new BuildCacheEntryPacker.UnpackResult(originMetadata, 123L, fileSnapshots, "gzip")
 
         then:
         1 * buildOperationContext.setResult(_ as UnpackOperationResult) >> { UnpackOperationResult unpackResult ->
             assert unpackResult.archiveEntryCount == 123
+            assert unpackResult.archiveCompression == "gzip"
         }
 
         then:
@@ -146,12 +147,13 @@ class DefaultBuildCacheControllerPackOperationExecutorTest extends Specification
         1 * originFactory.createWriter(entity.identity, entity.type, Duration.ofMillis(421L)) >> originWriter
 
         then:
-        1 * packer.pack(entity, outputSnapshots, _ as OutputStream, originWriter) >> new BuildCacheEntryPacker.PackResult(123)
+        1 * packer.pack(entity, outputSnapshots, _ as OutputStream, originWriter) >> new BuildCacheEntryPacker.PackResult(123, "gzip")
 
         then:
         1 * buildOperationContext.setResult(_ as PackOperationResult) >> { PackOperationResult packResult ->
             assert packResult.archiveEntryCount == 123
             assert packResult.archiveSize == output.size()
+            assert packResult.archiveCompression == "gzip"
         }
 
         then:
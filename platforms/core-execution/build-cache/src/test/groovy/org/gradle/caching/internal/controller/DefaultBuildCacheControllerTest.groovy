@@ -19,16 +19,20 @@ package org.gradle.caching.internal.controller
 import org.gradle.api.Action
 import org.gradle.api.internal.cache.StringInterner
 import org.gradle.api.internal.file.TestFiles
+import org.gradle.caching.BatchLookupBuildCacheService
 import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
 import org.gradle.caching.internal.CacheableEntity
 import org.gradle.caching.internal.DefaultBuildCacheKey
+import org.gradle.caching.internal.controller.operations.BuildCacheRemotePrefetchBuildOperationType
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
 import org.gradle.caching.internal.origin.OriginMetadataFactory
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.hash.TestHashCodes
 import org.gradle.internal.operations.NoOpBuildOperationProgressEventEmitter
@@ -40,6 +44,8 @@ import org.junit.Rule
 import spock.lang.Specification
 
 import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
 import java.util.function.Consumer
 
 class DefaultBuildCacheControllerTest extends Specification {
@@ -64,6 +70,10 @@ class DefaultBuildCacheControllerTest extends Specification {
     BuildCacheEntryPacker packer = Stub(BuildCacheEntryPacker)
     OriginMetadataFactory originMetadataFactory = Stub(OriginMetadataFactory)
     StringInterner stringInterner = Stub(StringInterner)
+    ManagedExecutor prefetchExecutor = null
+    long maxPrefetchedBytes = 1024
+    Duration prefetchWaitTimeout = Duration.ofSeconds(10)
+    Set<BuildCacheKey> localEntries = ConcurrentHashMap.newKeySet()
 
     def operations = new TestBuildOperationExecutor()
     def buildOperationProgressEmitter = new NoOpBuildOperationProgressEventEmitter()
@@ -90,10 +100,26 @@ class DefaultBuildCacheControllerTest extends Specification {
             disableRemoteOnError,
             packer,
             originMetadataFactory,
-            stringInterner
+            stringInterner,
+            prefetchExecutor,
+            maxPrefetchedBytes,
+            prefetchWaitTimeout
         )
     }
 
+    private void loadLocalEntry(BuildCacheKey key, Action<File> action) {
+        if (localEntries.contains(key)) {
+            def file = tmpDir.file("local-entry")
+            file.text = "foo"
+            action.execute(file)
+        }
+    }
+
+    private static boolean loadFromRemote(BuildCacheEntryReader reader) {
+        reader.readFrom(new ByteArrayInputStream("foo".bytes))
+        true
+    }
+
     def "does suppress exceptions from load"() {
         given:
         1 * remote.load(key, _) >> { throw new RuntimeException() }
@@ -278,4 +304,224 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * local.close()
         1 * remote.close()
     }
+
+    def "load uses entry prefetched from remote into local cache"() {
+        given:
+        prefetchExecutor = new DefaultExecutorFactory().create("prefetch", 1)
+        def controller = getController()
+
+        when:
+        controller.prefetch(key)
+        def result = controller.load(key, cacheableEntity)
+        controller.close()
+
+        then:
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader -> loadFromRemote(reader) }
+        1 * local.storeLocally(key, _) >> { localEntries.add(key) }
+        (1..2) * local.loadLocally(key, _) >> { BuildCacheKey key, Action<File> action -> loadLocalEntry(key, action) }
+        result.present
+
+        and:
+        with(operations.log.mostRecentResult(BuildCacheRemotePrefetchBuildOperationType)) {
+            prefetchCount == 1
+            hitCount == 1
+            missCount == 0
+            wastedCount == 0
+        }
+    }
+
+    def "load does not query remote again after prefetch missed"() {
+        given:
+        prefetchExecutor = new DefaultExecutorFactory().create("prefetch", 1)
+        def controller = getController()
+
+        when:
+        controller.prefetch(key)
+        def result = controller.load(key, cacheableEntity)
+        controller.close()
+
+        then:
+        1 * remote.load(key, _) >> false
+        1 * local.loadLocally(key, _) // miss
+        0 * local.storeLocally(key, _)
+        !result.present
+
+        and:
+        operations.log.mostRecentResult(BuildCacheRemotePrefetchBuildOperationType).missCount == 1
+    }
+
+    def "prefetched entry is wasted when found in local cache before the prefetch completed"() {
+        given:
+        prefetchExecutor = new DefaultExecutorFactory().create("prefetch", 1)
+        def controller = getController()
+        def downloadStarted = new CountDownLatch(1)
+        def loadedLocally = new CountDownLatch(1)
+        localEntries.add(key)
+
+        when:
+        controller.prefetch(key)
+        downloadStarted.await()
+        controller.load(key, cacheableEntity)
+        loadedLocally.countDown()
+        controller.close()
+
+        then:
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            downloadStarted.countDown()
+            loadedLocally.await()
+            loadFromRemote(reader)
+        }
+        1 * local.loadLocally(key, _) >> { BuildCacheKey key, Action<File> action -> loadLocalEntry(key, action) }
+        1 * local.storeLocally(key, _)
+
+        and:
+        operations.log.mostRecentResult(BuildCacheRemotePrefetchBuildOperationType).wastedCount == 1
+    }
+
+    def "prefetch does not download entry discarded before the download started"() {
+        given:
+        prefetchExecutor = new DefaultExecutorFactory().create("prefetch", 1)
+        def controller = getController()
+        def executorBlocked = new CountDownLatch(1)
+        prefetchExecutor.execute { executorBlocked.await() }
+        localEntries.add(key)
+
+        when:
+        controller.prefetch(key)
+        controller.load(key, cacheableEntity)
+        executorBlocked.countDown()
+        controller.close()
+
+        then:
+        0 * remote.load(_, _)
+        1 * local.loadLocally(key, _) >> { BuildCacheKey key, Action<File> action -> loadLocalEntry(key, action) }
+
+        and:
+        with(operations.log.mostRecentResult(BuildCacheRemotePrefetchBuildOperationType)) {
+            prefetchCount == 1
+            wastedCount == 0
+        }
+    }
+
+    def "prefetch does not download entries already in local cache"() {
+        given:
+        prefetchExecutor = new DefaultExecutorFactory().create("prefetch", 1)
+        def controller = getController()
+        def checked = new CountDownLatch(1)
+
+        when:
+        controller.prefetch(key)
+        checked.await()
+        controller.close()
+
+        then:
+        1 * local.contains(key) >> {
+            checked.countDown()
+            true
+        }
+        0 * remote.load(_, _)
+        0 * local.storeLocally(_, _)
+    }
+
+    def "load falls back to remote when prefetch does not complete in time"() {
+        given:
+        prefetchExecutor = new DefaultExecutorFactory().create("prefetch", 1)
+        prefetchWaitTimeout = Duration.ofMillis(10)
+        def controller = getController()
+        def downloadStarted = new CountDownLatch(1)
+        def loaded = new CountDownLatch(1)
+        def testThread = Thread.currentThread()
+
+        when:
+        controller.prefetch(key)
+        downloadStarted.await()
+        def result = controller.load(key, cacheableEntity)
+        loaded.countDown()
+        controller.close()
+
+        then:
+        2 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            if (Thread.currentThread() != testThread) {
+                downloadStarted.countDown()
+                loaded.await()
+            }
+            loadFromRemote(reader)
+        }
+        2 * local.storeLocally(key, _)
+        result.present
+
+        and:
+        with(operations.log.mostRecentResult(BuildCacheRemotePrefetchBuildOperationType)) {
+            hitCount == 0
+            wastedCount == 1
+        }
+    }
+
+    def "does not prefetch entries while prefetched entries exceed the size limit"() {
+        given:
+        prefetchExecutor = Stub(ManagedExecutor) {
+            execute(_ as Runnable) >> { Runnable action -> action.run() }
+        }
+        maxPrefetchedBytes = 3
+        def otherKey = new DefaultBuildCacheKey(TestHashCodes.hashCodeFrom(87654321))
+        def controller = getController()
+
+        when:
+        controller.prefetch(key)
+        controller.prefetch(otherKey)
+        controller.close()
+
+        then:
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader -> loadFromRemote(reader) }
+        1 * local.storeLocally(key, _)
+        0 * remote.load(otherKey, _)
+
+        and:
+        with(operations.log.mostRecentResult(BuildCacheRemotePrefetchBuildOperationType)) {
+            prefetchCount == 1
+            wastedCount == 1
+        }
+    }
+
+    def "prefetch does not download entries missing from remote lookup"() {
+        given:
+        remote = Mock(BatchLookupBuildCacheService)
+        prefetchExecutor = new DefaultExecutorFactory().create("prefetch", 1)
+        def controller = getController()
+
+        when:
+        controller.prefetch(key)
+        def result = controller.load(key, cacheableEntity)
+        controller.close()
+
+        then:
+        1 * remote.findExisting([key] as Set) >> ([] as Set)
+        0 * remote.load(_, _)
+        1 * local.loadLocally(key, _) // miss
+        !result.present
+
+        and:
+        operations.log.mostRecentResult(BuildCacheRemotePrefetchBuildOperationType).missCount == 1
+    }
+
+    def "prefetch downloads entries found by remote lookup"() {
+        given:
+        remote = Mock(BatchLookupBuildCacheService)
+        prefetchExecutor = new DefaultExecutorFactory().create("prefetch", 1)
+        def controller = getController()
+
+        when:
+        controller.prefetch(key)
+        controller.load(key, cacheableEntity)
+        controller.close()
+
+        then:
+        1 * remote.findExisting([key] as Set) >> ([key] as Set)
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader -> loadFromRemote(reader) }
+        1 * local.storeLocally(key, _) >> { localEntries.add(key) }
+        (1..2) * local.loadLocally(key, _) >> { BuildCacheKey key, Action<File> action -> loadLocalEntry(key, action) }
+
+        and:
+        operations.log.mostRecentResult(BuildCacheRemotePrefetchBuildOperationType).hitCount == 1
+    }
 }
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.gradle.api.internal.file.temp.DefaultTemporaryFileProvider
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheException
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.internal.DefaultBuildCacheKey
+import org.gradle.internal.hash.TestHashCodes
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class PackFileBuildCacheServiceTest extends Specification {
+    private static final int REMOVE_UNUSED_ENTRIES_AFTER_7_DAYS = 7
+    private static final long SEGMENT_SIZE = 4096
+
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def cacheDir = temporaryFolder.createDir("cache")
+    def tempFileStore = new DefaultBuildCacheTempFileStore(new DefaultTemporaryFileProvider(() -> temporaryFolder.createDir("tmp")))
+    long now = System.currentTimeMillis()
+    PackFileBuildCacheService service
+
+    def setup() {
+        openService()
+    }
+
+    def cleanup() {
+        service.close()
+    }
+
+    def "can store and load entries"() {
+        when:
+        store(key(1), "Hello world")
+
+        then:
+        service.contains(key(1))
+        load(key(1)) == "Hello world"
+        !service.contains(key(2))
+        load(key(2)) == null
+    }
+
+    def "can store and load entries locally"() {
+        def file = temporaryFolder.createFile("entry")
+        file.text = "Hello world"
+
+        when:
+        service.storeLocally(key(1), file)
+        String loaded = null
+        service.loadLocally(key(1)) { loaded = it.text }
+
+        then:
+        loaded == "Hello world"
+    }
+
+    def "keeps the first entry stored for a key"() {
+        when:
+        store(key(1), "Hello world")
+        store(key(1), "Hello Bob")
+
+        then:
+        load(key(1)) == "Hello world"
+    }
+
+    def "can read entries stored by a previous service"() {
+        given:
+        (0..<100).each { store(key(it), "value-$it" * it) }
+
+        when:
+        reopenService()
+
+        then:
+        (0..<100).every { load(key(it)) == "value-$it" * it }
+        service.segmentCount > 1
+    }
+
+    def "failed store does not hide entries stored after it"() {
+        when:
+        service.store(key(1), new BuildCacheEntryWriter() {
+            @Override
+            void writeTo(OutputStream output) throws IOException {
+                output.write(new byte[5])
+                throw new IOException("broken")
+            }
+
+            @Override
+            long getSize() {
+                return 10
+            }
+        })
+
+        then:
+        thrown(BuildCacheException)
+
+        when:
+        store(key(2), "Hello world")
+        reopenService()
+
+        then:
+        !service.contains(key(1))
+        load(key(2)) == "Hello world"
+    }
+
+    def "discards incomplete entries at the end of a segment"() {
+        given:
+        store(key(1), "Hello world")
+        service.close()
+        def segment = cacheDir.listFiles().find { it.name.endsWith(".pack") }
+        new RandomAccessFile(segment, "rw").withCloseable { it.setLength(it.length() + 10) }
+
+        when:
+        openService()
+        store(key(2), "Hello Bob")
+        reopenService()
+
+        then:
+        load(key(1)) == "Hello world"
+        load(key(2)) == "Hello Bob"
+    }
+
+    def "skips incomplete entries before other entries"() {
+        given:
+        store(key(1), "Hello world")
+        service.close()
+        def segment = cacheDir.listFiles().find { it.name.endsWith(".pack") }
+        def bytes = segment.bytes
+        // A record reserved by a store that did not complete before the process stopped
+        segment.bytes = new byte[bytes.length + 100]
+        segment.append(bytes)
+
+        when:
+        openService()
+        store(key(2), "Hello Bob")
+        reopenService()
+
+        then:
+        load(key(1)) == "Hello world"
+        load(key(2)) == "Hello Bob"
+    }
+
+    def "skips entries with a damaged header"() {
+        given:
+        store(key(1), "Hello world")
+        store(key(2), "Hello Bob")
+        service.close()
+        def segment = cacheDir.listFiles().find { it.name.endsWith(".pack") }
+        def bytes = segment.bytes
+        // Damage the content length of the first record
+        bytes[6] = (byte) 0xff
+        segment.bytes = bytes
+
+        when:
+        openService()
+
+        then:
+        !service.contains(key(1))
+        load(key(2)) == "Hello Bob"
+
+        when:
+        store(key(3), "Hello Alice")
+        reopenService()
+
+        then:
+        !service.contains(key(1))
+        load(key(2)) == "Hello Bob"
+        load(key(3)) == "Hello Alice"
+    }
+
+    def "supports concurrent loads and stores"() {
+        given:
+        def executor = Executors.newFixedThreadPool(8)
+
+        when:
+        def futures = (0..<8).collect { thread ->
+            executor.submit {
+                (0..<200).each {
+                    def key = key(thread * 1000 + it)
+                    store(key, "value-$thread-$it")
+                    assert load(key) == "value-$thread-$it"
+                }
+            }
+        }
+        futures*.get()
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+        reopenService()
+
+        then:
+        (0..<8).every { thread -> (0..<200).every { load(key(thread * 1000 + it)) == "value-$thread-$it" } }
+    }
+
+    def "removes unused entries and compacts segments on cleanup"() {
+        given:
+        (0..<100).each { store(key(it), "x" * 100) }
+        def segmentCount = service.segmentCount
+
+        when:
+        now += TimeUnit.DAYS.toMillis(6)
+        (0..<10).each { load(key(it)) }
+        now += TimeUnit.DAYS.toMillis(2)
+        service.cleanup()
+
+        then:
+        service.segmentCount < segmentCount
+        (0..<10).every { load(key(it)) == "x" * 100 }
+        (10..<100).every { !service.contains(key(it)) }
+
+        when:
+        reopenService()
+
+        then:
+        (0..<10).every { load(key(it)) == "x" * 100 }
+        (10..<100).every { !service.contains(key(it)) }
+    }
+
+    def "entries removed by cleanup stay removed when segment is not compacted"() {
+        given:
+        (0..<3).each { store(key(it), "x" * 100) }
+
+        when:
+        now += TimeUnit.DAYS.toMillis(6)
+        (0..<2).each { load(key(it)) }
+        now += TimeUnit.DAYS.toMillis(2)
+        service.cleanup()
+        reopenService()
+
+        then:
+        service.segmentCount == 1
+        (0..<2).every { load(key(it)) == "x" * 100 }
+        !service.contains(key(2))
+    }
+
+    def "discards corrupt entries permanently"() {
+        given:
+        store(key(1), "Hello world")
+        store(key(2), "Hello Bob")
+        service.close()
+        def segment = cacheDir.listFiles().find { it.name.endsWith(".pack") }
+        def bytes = segment.bytes
+        bytes[new String(bytes, "ISO-8859-1").indexOf("Hello world")] = (byte) 'J'
+        segment.bytes = bytes
+
+        when:
+        openService()
+        load(key(1))
+
+        then:
+        thrown(BuildCacheException)
+        !service.contains(key(1))
+
+        when:
+        reopenService()
+
+        then:
+        !service.contains(key(1))
+        load(key(2)) == "Hello Bob"
+    }
+
+    def "cannot be used by multiple services at the same time"() {
+        when:
+        new PackFileBuildCacheService(cacheDir, tempFileStore, SEGMENT_SIZE, REMOVE_UNUSED_ENTRIES_AFTER_7_DAYS, { now }, 200)
+
+        then:
+        thrown(BuildCacheException)
+    }
+
+    def "waits for another service to release the cache"() {
+        given:
+        store(key(1), "Hello world")
+        def executor = Executors.newSingleThreadExecutor()
+
+        when:
+        def other = executor.submit {
+            new PackFileBuildCacheService(cacheDir, tempFileStore, SEGMENT_SIZE, REMOVE_UNUSED_ENTRIES_AFTER_7_DAYS, { now }, TimeUnit.SECONDS.toMillis(10))
+        }
+        Thread.sleep(300)
+        service.close()
+        service = other.get()
+        executor.shutdown()
+
+        then:
+        load(key(1)) == "Hello world"
+    }
+
+    private static BuildCacheKey key(int value) {
+        return new DefaultBuildCacheKey(TestHashCodes.hashCodeFrom(value))
+    }
+
+    private void store(BuildCacheKey key, String content) {
+        def bytes = content.bytes
+        service.store(key, new BuildCacheEntryWriter() {
+            @Override
+            void writeTo(OutputStream output) throws IOException {
+                output.withCloseable { it.write(bytes) }
+            }
+
+            @Override
+            long getSize() {
+                return bytes.length
+            }
+        })
+    }
+
+    private String load(BuildCacheKey key) {
+        String loaded = null
+        service.load(key) { input -> loaded = input.text }
+        return loaded
+    }
+
+    private void openService() {
+        service = new PackFileBuildCacheService(cacheDir, tempFileStore, SEGMENT_SIZE, REMOVE_UNUSED_ENTRIES_AFTER_7_DAYS, { now })
+    }
+
+    private void reopenService() {
+        service.close()
+        openService()
+    }
+}
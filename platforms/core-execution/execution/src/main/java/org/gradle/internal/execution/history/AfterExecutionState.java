@@ -18,6 +18,9 @@
 
 import com.google.common.collect.ImmutableSortedMap;
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
+import org.gradle.internal.hash.HashCode;
+
+import java.util.Optional;
 
 /**
  * Captures the state of a {@link org.gradle.internal.execution.UnitOfWork} after it has been executed.
@@ -27,4 +30,9 @@
 public interface AfterExecutionState extends ExecutionInputState, ExecutionOutputState {
     @Override
     ImmutableSortedMap<String, CurrentFileCollectionFingerprint> getInputFileProperties();
+
+    /**
+     * The build cache key of the execution, when caching was enabled for it.
+     */
+    Optional<HashCode> getCacheKey();
 }
@@ -18,6 +18,9 @@
 
 import com.google.common.collect.ImmutableSortedMap;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.hash.HashCode;
+
+import java.util.Optional;
 
 /**
  * Captures the state a {@link org.gradle.internal.execution.UnitOfWork} after the previous execution has finished.
@@ -29,4 +32,11 @@ public interface PreviousExecutionState extends ExecutionInputState, ExecutionOu
      */
     @Override
     ImmutableSortedMap<String, FileCollectionFingerprint> getInputFileProperties();
+
+    /**
+     * The build cache key of the previous execution, when caching was enabled for it.
+     *
+     * As long as the inputs of the work did not change, this is also the key of the next execution.
+     */
+    Optional<HashCode> getCacheKey();
 }
@@ -18,9 +18,7 @@
 
 import org.gradle.internal.execution.history.changes.CompareStrategy.ChangeDetector;
 
-import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Compares by absolute paths and file contents. Order does not matter.
@@ -37,13 +35,11 @@ public AbsolutePathChangeDetector(ItemComparator<S> itemComparator, CompareStrat
 
     @Override
     public boolean visitChangesSince(Map<String, S> previous, Map<String, S> current, String propertyTitle, ChangeVisitor visitor) {
-        Set<String> unaccountedForPreviousItems = new LinkedHashSet<>(previous.keySet());
-
         for (Map.Entry<String, S> currentEntry : current.entrySet()) {
             String currentAbsolutePath = currentEntry.getKey();
             S currentItem = currentEntry.getValue();
-            if (unaccountedForPreviousItems.remove(currentAbsolutePath)) {
-                S previousItem = previous.get(currentAbsolutePath);
+            S previousItem = previous.get(currentAbsolutePath);
+            if (previousItem != null) {
                 if (!itemComparator.hasSameContent(previousItem, currentItem)) {
                     Change modified = changeFactory.modified(currentAbsolutePath, propertyTitle, previousItem, currentItem);
                     if (!visitor.visitChange(modified)) {
@@ -59,8 +55,12 @@ public boolean visitChangesSince(Map<String, S> previous, Map<String, S> current
             }
         }
 
-        for (String previousAbsolutePath : unaccountedForPreviousItems) {
-            Change removed = changeFactory.removed(previousAbsolutePath, propertyTitle, previous.get(previousAbsolutePath));
+        for (Map.Entry<String, S> previousEntry : previous.entrySet()) {
+            String previousAbsolutePath = previousEntry.getKey();
+            if (current.containsKey(previousAbsolutePath)) {
+                continue;
+            }
+            Change removed = changeFactory.removed(previousAbsolutePath, propertyTitle, previousEntry.getValue());
             if (!visitor.visitChange(removed)) {
                 return false;
             }
@@ -16,8 +16,17 @@
 
 package org.gradle.internal.execution.history.changes;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Multimap;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
 import org.gradle.internal.fingerprint.FileSystemLocationFingerprint;
+import org.gradle.internal.hash.HashCode;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public abstract class AbstractFingerprintCompareStrategy extends CompareStrategy<FileCollectionFingerprint, FileSystemLocationFingerprint> implements FingerprintCompareStrategy {
 
@@ -50,11 +59,98 @@ public boolean hasSameContent(FileSystemLocationFingerprint previous, FileSystem
         }
     };
 
+    private final boolean orderSensitive;
+
     public AbstractFingerprintCompareStrategy(ChangeDetector<FileSystemLocationFingerprint> changeDetector) {
+        this(changeDetector, false);
+    }
+
+    /**
+     * @param orderSensitive whether the change detector depends on the order of the fingerprints across roots.
+     * If not, the fingerprints in roots with the same hash in both collections are not passed to the change detector.
+     */
+    protected AbstractFingerprintCompareStrategy(ChangeDetector<FileSystemLocationFingerprint> changeDetector, boolean orderSensitive) {
         super(
             FileCollectionFingerprint::getFingerprints,
             FileCollectionFingerprint::getRootHashes,
             new TrivialChangeDetector<>(ITEM_COMPARATOR, FINGERPRINT_CHANGE_FACTORY, changeDetector)
         );
+        this.orderSensitive = orderSensitive;
+    }
+
+    @Override
+    protected boolean visitChangesSince(
+        Multimap<String, HashCode> previousRootHashes,
+        Multimap<String, HashCode> currentRootHashes,
+        Map<String, FileSystemLocationFingerprint> previous,
+        Map<String, FileSystemLocationFingerprint> current,
+        String propertyTitle,
+        ChangeVisitor visitor
+    ) {
+        if (!orderSensitive) {
+            Map<String, Boolean> changedRoots = changedRoots(previousRootHashes, currentRootHashes);
+            if (changedRoots.containsValue(false)) {
+                previous = fingerprintsInChangedRoots(previous, changedRoots);
+                current = fingerprintsInChangedRoots(current, changedRoots);
+            }
+        }
+        return super.visitChangesSince(previousRootHashes, currentRootHashes, previous, current, propertyTitle, visitor);
+    }
+
+    /**
+     * Returns for each root whether it has been added, removed or has a different hash.
+     */
+    private static Map<String, Boolean> changedRoots(Multimap<String, HashCode> previousRootHashes, Multimap<String, HashCode> currentRootHashes) {
+        Map<String, Boolean> changedRoots = new HashMap<>();
+        for (String root : previousRootHashes.keySet()) {
+            changedRoots.put(root, !Iterables.elementsEqual(previousRootHashes.get(root), currentRootHashes.get(root)));
+        }
+        for (String root : currentRootHashes.keySet()) {
+            changedRoots.putIfAbsent(root, true);
+        }
+        return changedRoots;
+    }
+
+    /**
+     * Drops the fingerprints in unchanged roots. A root with the same hash has the same contents, so its fingerprints can't contribute any changes.
+     *
+     * The fingerprints of a root are usually next to each other, so the root of the previous fingerprint is checked first.
+     */
+    private static Map<String, FileSystemLocationFingerprint> fingerprintsInChangedRoots(Map<String, FileSystemLocationFingerprint> fingerprints, Map<String, Boolean> changedRoots) {
+        Map<String, FileSystemLocationFingerprint> fingerprintsInChangedRoots = new LinkedHashMap<>();
+        String root = null;
+        for (Map.Entry<String, FileSystemLocationFingerprint> entry : fingerprints.entrySet()) {
+            String path = entry.getKey();
+            if (root == null || !isInRoot(path, root)) {
+                root = findRoot(path, changedRoots);
+            }
+            // Fingerprints outside of the known roots are always compared
+            if (root == null || changedRoots.get(root)) {
+                fingerprintsInChangedRoots.put(path, entry.getValue());
+            }
+        }
+        return fingerprintsInChangedRoots;
+    }
+
+    /**
+     * Finds a root containing the path by looking up the path and its ancestors.
+     */
+    @Nullable
+    private static String findRoot(String path, Map<String, Boolean> roots) {
+        for (int end = path.length(); end >= 0; end = path.lastIndexOf(File.separatorChar, end - 1)) {
+            if (end > 0 && roots.containsKey(path.substring(0, end))) {
+                return path.substring(0, end);
+            }
+            // File system roots like '/' end with a separator
+            if (end < path.length() && roots.containsKey(path.substring(0, end + 1))) {
+                return path.substring(0, end + 1);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isInRoot(String path, String root) {
+        return path.startsWith(root)
+            && (path.length() == root.length() || root.charAt(root.length() - 1) == File.separatorChar || path.charAt(root.length()) == File.separatorChar);
     }
 }
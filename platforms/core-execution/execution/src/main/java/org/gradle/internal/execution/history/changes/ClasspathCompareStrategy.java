@@ -32,7 +32,7 @@ public class ClasspathCompareStrategy extends AbstractFingerprintCompareStrategy
     public static final FingerprintCompareStrategy INSTANCE = new ClasspathCompareStrategy();
 
     private ClasspathCompareStrategy() {
-        super(ClasspathCompareStrategy::visitChangesSince);
+        super(ClasspathCompareStrategy::visitChangesSince, true);
     }
 
     private static boolean visitChangesSince(
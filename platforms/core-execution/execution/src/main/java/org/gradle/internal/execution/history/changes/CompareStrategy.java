@@ -39,10 +39,26 @@ public CompareStrategy(
     }
 
     public boolean visitChangesSince(C previous, C current, String propertyTitle, ChangeVisitor visitor) {
-        if (Iterables.elementsEqual(rootHasher.apply(previous).entries(), rootHasher.apply(current).entries())) {
+        Multimap<String, HashCode> previousRootHashes = rootHasher.apply(previous);
+        Multimap<String, HashCode> currentRootHashes = rootHasher.apply(current);
+        if (Iterables.elementsEqual(previousRootHashes.entries(), currentRootHashes.entries())) {
             return true;
         }
-        return changeDetector.visitChangesSince(indexer.apply(previous), indexer.apply(current), propertyTitle, visitor);
+        return visitChangesSince(previousRootHashes, currentRootHashes, indexer.apply(previous), indexer.apply(current), propertyTitle, visitor);
+    }
+
+    /**
+     * Compares the items of two collections whose root hashes are different.
+     */
+    protected boolean visitChangesSince(
+        Multimap<String, HashCode> previousRootHashes,
+        Multimap<String, HashCode> currentRootHashes,
+        Map<String, S> previous,
+        Map<String, S> current,
+        String propertyTitle,
+        ChangeVisitor visitor
+    ) {
+        return changeDetector.visitChangesSince(previous, current, propertyTitle, visitor);
     }
 
     public interface ChangeDetector<S> {
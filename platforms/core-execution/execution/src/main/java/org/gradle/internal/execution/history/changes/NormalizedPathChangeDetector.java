@@ -127,8 +127,9 @@ private static ListMultimap<FileSystemLocationFingerprint, FilePathWithType> get
         Map<String, FileSystemLocationFingerprint> previousFingerprints,
         Set<Entry<String, FileSystemLocationFingerprint>> currentEntries
     ) {
+        // Only entries without an exact match end up here, so don't size for all previous entries
         ListMultimap<FileSystemLocationFingerprint, FilePathWithType> results = MultimapBuilder
-            .hashKeys(previousFingerprints.size())
+            .hashKeys()
             .linkedListValues()
             .build();
         for (Entry<String, FileSystemLocationFingerprint> previousEntry : previousFingerprints.entrySet()) {
@@ -66,20 +66,25 @@ public Optional<PreviousExecutionState> load(String key) {
 
     @Override
     public void store(String key, AfterExecutionState executionState) {
-        store.put(key, new DefaultPreviousExecutionState(
+        store.put(key, toPreviousExecutionState(executionState));
+    }
+
+    @Override
+    public void remove(String key) {
+        store.remove(key);
+    }
+
+    static PreviousExecutionState toPreviousExecutionState(AfterExecutionState executionState) {
+        return new DefaultPreviousExecutionState(
             executionState.getOriginMetadata(),
             executionState.getImplementation(),
             executionState.getAdditionalImplementations(),
             executionState.getInputProperties(),
             prepareForSerialization(executionState.getInputFileProperties()),
             executionState.getOutputFilesProducedByWork(),
-            executionState.isSuccessful()
-        ));
-    }
-
-    @Override
-    public void remove(String key) {
-        store.remove(key);
+            executionState.isSuccessful(),
+            executionState.getCacheKey().orElse(null)
+        );
     }
 
     private static ImmutableSortedMap<String, FileCollectionFingerprint> prepareForSerialization(ImmutableSortedMap<String, CurrentFileCollectionFingerprint> fingerprints) {
@@ -21,14 +21,19 @@
 import org.gradle.caching.internal.origin.OriginMetadata;
 import org.gradle.internal.execution.history.PreviousExecutionState;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
 
+import javax.annotation.Nullable;
+import java.util.Optional;
+
 public class DefaultPreviousExecutionState extends AbstractInputExecutionState<FileCollectionFingerprint> implements PreviousExecutionState {
     private final ImmutableSortedMap<String, FileSystemSnapshot> outputFilesProducedByWork;
     private final OriginMetadata originMetadata;
     private final boolean successful;
+    private final HashCode cacheKey;
 
     public DefaultPreviousExecutionState(
         OriginMetadata originMetadata,
@@ -37,12 +42,14 @@ public DefaultPreviousExecutionState(
         ImmutableSortedMap<String, ValueSnapshot> inputProperties,
         ImmutableSortedMap<String, FileCollectionFingerprint> inputFileProperties,
         ImmutableSortedMap<String, FileSystemSnapshot> outputFilesProducedByWork,
-        boolean successful
+        boolean successful,
+        @Nullable HashCode cacheKey
     ) {
         super(implementation, additionalImplementations, inputProperties, inputFileProperties);
         this.outputFilesProducedByWork = outputFilesProducedByWork;
         this.originMetadata = originMetadata;
         this.successful = successful;
+        this.cacheKey = cacheKey;
     }
 
     @Override
@@ -60,6 +67,11 @@ public boolean isSuccessful() {
         return successful;
     }
 
+    @Override
+    public Optional<HashCode> getCacheKey() {
+        return Optional.ofNullable(cacheKey);
+    }
+
     @Override
     public boolean isReused() {
         return true;
@@ -23,9 +23,11 @@
 import org.gradle.internal.execution.history.PreviousExecutionState;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.serialize.AbstractSerializer;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.Serializer;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.snapshot.ValueSnapshot;
@@ -35,12 +37,14 @@
 
 import java.time.Duration;
 import java.util.Map;
+import java.util.Optional;
 
 public class DefaultPreviousExecutionStateSerializer extends AbstractSerializer<PreviousExecutionState> {
     private final Serializer<FileCollectionFingerprint> fileCollectionFingerprintSerializer;
     private final Serializer<FileSystemSnapshot> fileSystemSnapshotSerializer;
     private final Serializer<ImplementationSnapshot> implementationSnapshotSerializer;
     private final Serializer<ValueSnapshot> valueSnapshotSerializer;
+    private final HashCodeSerializer hashCodeSerializer = new HashCodeSerializer();
 
     public DefaultPreviousExecutionStateSerializer(
         Serializer<FileCollectionFingerprint> fileCollectionFingerprintSerializer,
@@ -76,6 +80,9 @@ public PreviousExecutionState read(Decoder decoder) throws Exception {
         ImmutableSortedMap<String, FileSystemSnapshot> outputFilesSnapshots = readSnapshots(decoder);
 
         boolean successful = decoder.readBoolean();
+        HashCode cacheKey = decoder.readBoolean()
+            ? hashCodeSerializer.read(decoder)
+            : null;
 
         return new DefaultPreviousExecutionState(
             originMetadata,
@@ -84,7 +91,8 @@ public PreviousExecutionState read(Decoder decoder) throws Exception {
             inputProperties,
             inputFilesFingerprints,
             outputFilesSnapshots,
-            successful
+            successful,
+            cacheKey
         );
     }
 
@@ -106,6 +114,11 @@ public void write(Encoder encoder, PreviousExecutionState execution) throws Exce
         writeSnapshots(encoder, execution.getOutputFilesProducedByWork());
 
         encoder.writeBoolean(execution.isSuccessful());
+        Optional<HashCode> cacheKey = execution.getCacheKey();
+        encoder.writeBoolean(cacheKey.isPresent());
+        if (cacheKey.isPresent()) {
+            hashCodeSerializer.write(encoder, cacheKey.get());
+        }
     }
 
     public ImmutableSortedMap<String, ValueSnapshot> readInputProperties(Decoder decoder) throws Exception {
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl;
+
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.execution.history.AfterExecutionState;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+import org.gradle.internal.execution.history.PreviousExecutionState;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationRunner;
+import org.gradle.internal.operations.BuildOperationType;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An {@link ExecutionHistoryStore} that hands updates to a background writer instead of storing them on the calling thread.
+ *
+ * <p>Pending updates for the same key are coalesced, and {@link #load(String)} sees pending updates before they are written.
+ * The background writer stores pending updates in batches, each batch running as a {@link FlushOperation}.
+ * When too many updates are pending, callers store their updates themselves.
+ * All pending updates are written when the store is closed at the end of the build.</p>
+ *
+ * <p>The flush operations have no parent: the operation that enqueued an update has usually finished by the time
+ * the update is written. When writing a batch fails, the background writer stops and leaves its updates pending.
+ * From then on callers store their updates themselves, and {@link #flush()} writes the remaining updates on the
+ * calling thread, so no update is ever dropped.</p>
+ */
+public class WriteBehindExecutionHistoryStore implements ExecutionHistoryStore, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindExecutionHistoryStore.class);
+    private static final int BATCH_SIZE = 500;
+
+    private final ExecutionHistoryStore delegate;
+    private final ManagedExecutor executor;
+    private final BuildOperationRunner buildOperationRunner;
+    private final int maxPendingUpdates;
+    private final ConcurrentMap<String, PendingUpdate> pendingUpdates = new ConcurrentHashMap<>();
+    private final AtomicBoolean writerScheduled = new AtomicBoolean();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private final Object flushLock = new Object();
+
+    public WriteBehindExecutionHistoryStore(
+        ExecutionHistoryStore delegate,
+        ManagedExecutor executor,
+        BuildOperationRunner buildOperationRunner,
+        int maxPendingUpdates
+    ) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.buildOperationRunner = buildOperationRunner;
+        this.maxPendingUpdates = maxPendingUpdates;
+    }
+
+    @Override
+    public Optional<PreviousExecutionState> load(String key) {
+        PendingUpdate pendingUpdate = pendingUpdates.get(key);
+        if (pendingUpdate != null) {
+            return pendingUpdate.asPreviousExecutionState();
+        }
+        return delegate.load(key);
+    }
+
+    @Override
+    public void store(String key, AfterExecutionState executionState) {
+        enqueue(key, new PendingUpdate(executionState));
+    }
+
+    @Override
+    public void remove(String key) {
+        enqueue(key, new PendingUpdate(null));
+    }
+
+    private void enqueue(String key, PendingUpdate update) {
+        if (failure.get() != null) {
+            // The writer has failed, apply the update on this thread
+            pendingUpdates.remove(key);
+            update.applyTo(key, delegate);
+            return;
+        }
+        if (pendingUpdates.size() >= maxPendingUpdates && !pendingUpdates.containsKey(key)) {
+            // The writer is falling behind, apply the update on this thread instead of queueing up more work
+            update.applyTo(key, delegate);
+            return;
+        }
+        pendingUpdates.put(key, update);
+        if (writerScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> CurrentBuildOperationRef.instance().with(null, this::writePendingUpdates));
+        }
+    }
+
+    private void writePendingUpdates() {
+        try {
+            do {
+                while (!pendingUpdates.isEmpty()) {
+                    writeBatch();
+                }
+                writerScheduled.set(false);
+                // Updates enqueued after the last batch might not have scheduled another writer
+            } while (!pendingUpdates.isEmpty() && writerScheduled.compareAndSet(false, true));
+        } catch (RuntimeException e) {
+            // Leave the writer scheduled, so no other writer is started, and leave the remaining updates to flush()
+            LOGGER.debug("Could not write execution history in the background, writing it on the calling threads instead.", e);
+            failure.compareAndSet(null, e);
+            synchronized (flushLock) {
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    private void writeBatch() {
+        List<Map.Entry<String, PendingUpdate>> batch = new ArrayList<>(BATCH_SIZE);
+        for (Map.Entry<String, PendingUpdate> entry : pendingUpdates.entrySet()) {
+            batch.add(entry);
+            if (batch.size() == BATCH_SIZE) {
+                break;
+            }
+        }
+        int pendingUpdateCount = pendingUpdates.size();
+        buildOperationRunner.run(new RunnableBuildOperation() {
+                @Override
+                public void run(BuildOperationContext context) {
+                for (Map.Entry<String, PendingUpdate> entry : batch) {
+                    entry.getValue().applyTo(entry.getKey(), delegate);
+                    // Keep newer updates for the same key pending
+                    pendingUpdates.remove(entry.getKey(), entry.getValue());
+                }
+                context.setResult(FlushOperation.Result.INSTANCE);
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Write execution history")
+                    .details(new FlushDetails(pendingUpdateCount, batch.size()));
+            }
+        });
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until all pending updates have been written.
+     * When the background writer has failed, writes the remaining updates on the calling thread.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            while (!pendingUpdates.isEmpty() && failure.get() == null) {
+                try {
+                    flushLock.wait();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }
+        for (Map.Entry<String, PendingUpdate> entry : pendingUpdates.entrySet()) {
+            entry.getValue().applyTo(entry.getKey(), delegate);
+            pendingUpdates.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            executor.stop();
+        }
+    }
+
+    private static class PendingUpdate {
+        @Nullable
+        private final AfterExecutionState executionState;
+
+        PendingUpdate(@Nullable AfterExecutionState executionState) {
+            this.executionState = executionState;
+        }
+
+        Optional<PreviousExecutionState> asPreviousExecutionState() {
+            return Optional.ofNullable(executionState).map(DefaultExecutionHistoryStore::toPreviousExecutionState);
+        }
+
+        void applyTo(String key, ExecutionHistoryStore store) {
+            if (executionState == null) {
+                store.remove(key);
+            } else {
+                store.store(key, executionState);
+            }
+        }
+    }
+
+    private static class FlushDetails implements FlushOperation.Details {
+        private final int pendingUpdateCount;
+        private final int batchSize;
+
+        FlushDetails(int pendingUpdateCount, int batchSize) {
+            this.pendingUpdateCount = pendingUpdateCount;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public int getPendingUpdateCount() {
+            return pendingUpdateCount;
+        }
+
+        @Override
+        public int getBatchSize() {
+            return batchSize;
+        }
+    }
+
+    /**
+     * Writes a batch of pending updates to the execution history.
+     * The duration of the operation is the flush latency of the batch.
+     */
+    public interface FlushOperation extends BuildOperationType<FlushOperation.Details, FlushOperation.Result> {
+        interface Details {
+            /**
+             * The number of updates that were pending when the batch was started.
+             */
+            int getPendingUpdateCount();
+
+            /**
+             * The number of updates written by the batch.
+             */
+            int getBatchSize();
+        }
+
+        interface Result {
+            Result INSTANCE = new Result() {
+            };
+        }
+    }
+}
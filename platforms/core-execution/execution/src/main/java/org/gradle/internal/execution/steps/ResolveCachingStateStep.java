@@ -17,6 +17,7 @@
 package org.gradle.internal.execution.steps;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.internal.controller.BuildCacheController;
 import org.gradle.internal.execution.UnitOfWork;
@@ -27,6 +28,9 @@
 import org.gradle.internal.execution.caching.impl.DefaultCachingStateFactory;
 import org.gradle.internal.execution.history.BeforeExecutionState;
 import org.gradle.internal.execution.history.OverlappingOutputs;
+import org.gradle.internal.execution.history.PreviousExecutionState;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.NOPLogger;
@@ -69,7 +73,10 @@ public CachingResult execute(UnitOfWork work, C context) {
         }
 
         cachingState.apply(
-            enabled -> logCacheKey(enabled.getKey(), work),
+            enabled -> {
+                logCacheKey(enabled.getKey(), work);
+                maybePrefetch(enabled, work, context);
+            },
             disabled -> logDisabledReasons(disabled.getDisabledReasons(), work)
         );
 
@@ -104,6 +111,33 @@ private CachingState calculateCachingStateWithNoCapturedInputs(UnitOfWork work)
             .orElse(CachingState.NOT_DETERMINED);
     }
 
+    /**
+     * Starts downloading the entry from the remote cache while the work is checked for being up-to-date.
+     * Work that executed successfully before and still has its outputs is likely up-to-date, so its entry is not prefetched.
+     */
+    private void maybePrefetch(CachingState.Enabled cachingState, UnitOfWork work, C context) {
+        if (!buildCache.isEnabled() || !work.isAllowedToLoadFromCache()) {
+            return;
+        }
+        boolean likelyUpToDate = context.getPreviousExecutionState()
+            .filter(PreviousExecutionState::isSuccessful)
+            .map(previousExecutionState -> !hasRemovedOutputs(previousExecutionState, cachingState.getBeforeExecutionState()))
+            .orElse(false);
+        if (!likelyUpToDate) {
+            buildCache.prefetch(cachingState.getKey());
+        }
+    }
+
+    private static boolean hasRemovedOutputs(PreviousExecutionState previousExecutionState, BeforeExecutionState beforeExecutionState) {
+        ImmutableSortedMap<String, FileSystemSnapshot> currentOutputs = beforeExecutionState.getOutputFileLocationSnapshots();
+        return previousExecutionState.getOutputFilesProducedByWork().entrySet().stream()
+            .anyMatch(entry -> !isMissing(entry.getValue()) && isMissing(currentOutputs.getOrDefault(entry.getKey(), FileSystemSnapshot.EMPTY)));
+    }
+
+    private static boolean isMissing(FileSystemSnapshot snapshot) {
+        return snapshot.roots().allMatch(root -> root.getType() == FileType.Missing);
+    }
+
     private void logCacheKey(BuildCacheKey cacheKey, UnitOfWork work) {
         if (buildCache.isEmitDebugLogging()) {
             LOGGER.warn("Build cache key for {} is {}", work.getDisplayName(), cacheKey.getDisplayName());
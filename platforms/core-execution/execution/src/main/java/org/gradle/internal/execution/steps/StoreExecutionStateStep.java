@@ -26,11 +26,15 @@
 import org.gradle.internal.execution.history.changes.ChangeDetectorVisitor;
 import org.gradle.internal.execution.history.changes.OutputFileChanges;
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
+import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
 
-public class StoreExecutionStateStep<C extends BeforeExecutionContext, R extends AfterExecutionResult> implements Step<C, R> {
+import javax.annotation.Nullable;
+import java.util.Optional;
+
+public class StoreExecutionStateStep<C extends CachingContext, R extends AfterExecutionResult> implements Step<C, R> {
     private final Step<? super C, ? extends R> delegate;
 
     public StoreExecutionStateStep(
@@ -46,11 +50,18 @@ public R execute(UnitOfWork work, C context) {
             .ifPresent(history -> context.getBeforeExecutionState()
                 .flatMap(beforeExecutionState -> result.getAfterExecutionOutputState()
                     .filter(afterExecutionState -> result.getExecution().isSuccessful() || shouldPreserveFailedState(context, afterExecutionState))
-                    .map(executionOutputState -> new DefaultAfterExecutionState(beforeExecutionState, executionOutputState)))
+                    .map(executionOutputState -> new DefaultAfterExecutionState(beforeExecutionState, executionOutputState, cacheKeyOf(context))))
                 .ifPresent(afterExecutionState -> history.store(context.getIdentity().getUniqueId(), afterExecutionState)));
         return result;
     }
 
+    @Nullable
+    private static HashCode cacheKeyOf(CachingContext context) {
+        return context.getCachingState().whenEnabled()
+            .map(enabled -> HashCode.fromBytes(enabled.getKey().toByteArray()))
+            .orElse(null);
+    }
+
     private static <C extends BeforeExecutionContext, R extends AfterExecutionResult> boolean shouldPreserveFailedState(C context, ExecutionOutputState afterExecutionOutputState) {
         // We do not store the history if there was a failure and the outputs did not change, since then the next execution can be incremental.
         // For example the current execution fails because of a compilation failure and for the next execution the source file is fixed,
@@ -79,10 +90,12 @@ private static boolean didOutputsChange(ImmutableSortedMap<String, FileSystemSna
     private static class DefaultAfterExecutionState implements AfterExecutionState {
         private final BeforeExecutionState beforeExecutionState;
         private final ExecutionOutputState afterExecutionOutputState;
+        private final HashCode cacheKey;
 
-        public DefaultAfterExecutionState(BeforeExecutionState beforeExecutionState, ExecutionOutputState afterExecutionOutputState) {
+        public DefaultAfterExecutionState(BeforeExecutionState beforeExecutionState, ExecutionOutputState afterExecutionOutputState, @Nullable HashCode cacheKey) {
             this.beforeExecutionState = beforeExecutionState;
             this.afterExecutionOutputState = afterExecutionOutputState;
+            this.cacheKey = cacheKey;
         }
 
         @Override
@@ -105,6 +118,11 @@ public ImmutableSortedMap<String, CurrentFileCollectionFingerprint> getInputFile
             return beforeExecutionState.getInputFileProperties();
         }
 
+        @Override
+        public Optional<HashCode> getCacheKey() {
+            return Optional.ofNullable(cacheKey);
+        }
+
         @Override
         public boolean isSuccessful() {
             return afterExecutionOutputState.isSuccessful();
@@ -25,6 +25,7 @@ import org.gradle.internal.fingerprint.FileCollectionFingerprint
 import org.gradle.internal.fingerprint.FileSystemLocationFingerprint
 import org.gradle.internal.fingerprint.impl.DefaultFileSystemLocationFingerprint
 import org.gradle.internal.fingerprint.impl.EmptyCurrentFileCollectionFingerprint
+import org.gradle.internal.hash.HashCode
 import org.gradle.internal.hash.TestHashCodes
 import spock.lang.Specification
 
@@ -288,6 +289,92 @@ class FingerprintCompareStrategyTest extends Specification {
         strategy << ALL_STRATEGIES
     }
 
+    def "only compares entries in roots with changed hashes (strategy: #strategy)"() {
+        def unchangedRoot = new File("/unchanged").absolutePath
+        def changedRoot = new File("/changed").absolutePath
+        def unchangedFile = new File(unchangedRoot, "file.txt").absolutePath
+        def changedFile = new File(changedRoot, "file.txt").absolutePath
+        def previous = fingerprints(
+            [(unchangedFile): fingerprint("file.txt", 1), (changedFile): fingerprint("file.txt", 2)],
+            ImmutableMultimap.of(unchangedRoot, TestHashCodes.hashCodeFrom(1), changedRoot, TestHashCodes.hashCodeFrom(2))
+        )
+        // The entries of the unchanged root differ, but its hash doesn't, so they are not compared
+        def current = fingerprints(
+            [(changedFile): fingerprint("file.txt", 3)],
+            ImmutableMultimap.of(unchangedRoot, TestHashCodes.hashCodeFrom(1), changedRoot, TestHashCodes.hashCodeFrom(4))
+        )
+
+        expect:
+        changes(strategy, current, previous) == [DefaultFileChange.modified(changedFile, "test", FileType.RegularFile, FileType.RegularFile, "file.txt")]
+
+        where:
+        strategy << [ABSOLUTE, NORMALIZED]
+    }
+
+    def "compares entries of added and removed roots (strategy: #strategy)"() {
+        def unchangedRoot = new File("/unchanged").absolutePath
+        def removedRoot = new File("/removed").absolutePath
+        def addedRoot = new File("/added").absolutePath
+        def unchangedFile = new File(unchangedRoot, "file.txt").absolutePath
+        def removedFile = new File(removedRoot, "removed.txt").absolutePath
+        def addedFile = new File(addedRoot, "added.txt").absolutePath
+        def previous = fingerprints(
+            [(unchangedFile): fingerprint("file.txt", 1), (removedFile): fingerprint("removed.txt", 2)],
+            ImmutableMultimap.of(unchangedRoot, TestHashCodes.hashCodeFrom(1), removedRoot, TestHashCodes.hashCodeFrom(2))
+        )
+        def current = fingerprints(
+            [(unchangedFile): fingerprint("file.txt", 1), (addedFile): fingerprint("added.txt", 3)],
+            ImmutableMultimap.of(unchangedRoot, TestHashCodes.hashCodeFrom(1), addedRoot, TestHashCodes.hashCodeFrom(3))
+        )
+
+        expect:
+        changes(strategy, current, previous) == [
+            DefaultFileChange.removed(removedFile, "test", FileType.RegularFile, "removed.txt"),
+            DefaultFileChange.added(addedFile, "test", FileType.RegularFile, "added.txt")
+        ]
+
+        where:
+        strategy << [ABSOLUTE, NORMALIZED]
+    }
+
+    def "skips entries in unchanged roots nested in a changed file system root (strategy: #strategy)"() {
+        def fileSystemRoot = File.listRoots()[0].absolutePath
+        def unchangedRoot = new File(fileSystemRoot, "unchanged").absolutePath
+        def unchangedFile = new File(unchangedRoot, "file.txt").absolutePath
+        def changedFile = new File(fileSystemRoot, "file.txt").absolutePath
+        def previous = fingerprints(
+            [(unchangedFile): fingerprint("file.txt", 1), (changedFile): fingerprint("file.txt", 2)],
+            ImmutableMultimap.of(fileSystemRoot, TestHashCodes.hashCodeFrom(1), unchangedRoot, TestHashCodes.hashCodeFrom(2))
+        )
+        def current = fingerprints(
+            [(changedFile): fingerprint("file.txt", 3)],
+            ImmutableMultimap.of(fileSystemRoot, TestHashCodes.hashCodeFrom(3), unchangedRoot, TestHashCodes.hashCodeFrom(2))
+        )
+
+        expect:
+        changes(strategy, current, previous) == [DefaultFileChange.modified(changedFile, "test", FileType.RegularFile, FileType.RegularFile, "file.txt")]
+
+        where:
+        strategy << [ABSOLUTE, NORMALIZED]
+    }
+
+    def "compares all entries of a classpath when only some roots changed"() {
+        def firstRoot = new File("/first.jar").absolutePath
+        def secondRoot = new File("/second.jar").absolutePath
+        def previous = fingerprints(
+            [(firstRoot): fingerprint("first.jar", 1), (secondRoot): fingerprint("second.jar", 2)],
+            ImmutableMultimap.of(firstRoot, TestHashCodes.hashCodeFrom(1), secondRoot, TestHashCodes.hashCodeFrom(2))
+        )
+        // The roots keep their hashes, but their order changes
+        def current = fingerprints(
+            [(secondRoot): fingerprint("second.jar", 2), (firstRoot): fingerprint("first.jar", 1)],
+            ImmutableMultimap.of(secondRoot, TestHashCodes.hashCodeFrom(2), firstRoot, TestHashCodes.hashCodeFrom(1))
+        )
+
+        expect:
+        !changes(ClasspathCompareStrategy.INSTANCE, current, previous).empty
+    }
+
     def "comparing empty fingerprints produces empty (strategy: #strategy)"() {
         expect:
         changes(strategy, new EmptyCurrentFileCollectionFingerprint("test"), new EmptyCurrentFileCollectionFingerprint("test"),).empty
@@ -303,6 +390,10 @@ class FingerprintCompareStrategyTest extends Specification {
         changes(strategy, currentFingerprint, previousFingerprint)
     }
 
+    def fingerprints(Map<String, FileSystemLocationFingerprint> fingerprints, ImmutableMultimap<String, HashCode> rootHashes) {
+        new SerializableFileCollectionFingerprint(fingerprints, rootHashes, TestHashCodes.hashCodeFrom(5432))
+    }
+
     def changes(FingerprintCompareStrategy strategy, FileCollectionFingerprint currentFingerprint, FileCollectionFingerprint previousFingerprint) {
         def visitor = new CollectingChangeVisitor()
         strategy.visitChangesSince(previousFingerprint, currentFingerprint, "test", visitor)
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl
+
+import com.google.common.collect.ImmutableSortedMap
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
+import org.gradle.internal.execution.history.AfterExecutionState
+import org.gradle.internal.execution.history.ExecutionHistoryStore
+import org.gradle.internal.execution.history.PreviousExecutionState
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationDescriptor
+import org.gradle.internal.operations.CurrentBuildOperationRef
+import org.gradle.internal.operations.DefaultBuildOperationIdFactory
+import org.gradle.internal.operations.DefaultBuildOperationRunner
+import org.gradle.internal.operations.RunnableBuildOperation
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import spock.lang.Specification
+
+class WriteBehindExecutionHistoryStoreTest extends Specification {
+    def delegate = Mock(ExecutionHistoryStore)
+    def scheduledWriters = []
+    def executor = Stub(ManagedExecutor) {
+        execute(_) >> { Runnable writer -> scheduledWriters << writer }
+    }
+    def buildOperationExecutor = new TestBuildOperationExecutor()
+    def store = new WriteBehindExecutionHistoryStore(delegate, executor, buildOperationExecutor, 2)
+
+    def "stores state in the background"() {
+        def state = afterExecutionState()
+
+        when:
+        store.store("key", state)
+
+        then:
+        0 * delegate._
+        scheduledWriters.size() == 1
+
+        when:
+        runScheduledWriters()
+
+        then:
+        1 * delegate.store("key", state)
+        0 * delegate._
+    }
+
+    def "loads pending state before it is written"() {
+        when:
+        store.store("key", afterExecutionState())
+        def loaded = store.load("key")
+
+        then:
+        loaded.present
+        loaded.get().successful
+        0 * delegate._
+
+        when:
+        runScheduledWriters()
+        loaded = store.load("key")
+
+        then:
+        1 * delegate.store("key", _)
+        1 * delegate.load("key") >> Optional.of(Stub(PreviousExecutionState))
+        loaded.present
+    }
+
+    def "pending removal hides stored state"() {
+        when:
+        store.remove("key")
+
+        then:
+        !store.load("key").present
+        0 * delegate._
+
+        when:
+        runScheduledWriters()
+
+        then:
+        1 * delegate.remove("key")
+    }
+
+    def "coalesces pending updates for the same key"() {
+        def first = afterExecutionState()
+        def second = afterExecutionState()
+
+        when:
+        store.store("key", first)
+        store.store("key", second)
+        store.store("other", first)
+        runScheduledWriters()
+
+        then:
+        scheduledWriters.empty
+        1 * delegate.store("key", second)
+        1 * delegate.store("other", first)
+        0 * delegate._
+    }
+
+    def "stores state on calling thread when too many updates are pending"() {
+        def state = afterExecutionState()
+
+        when:
+        store.store("first", state)
+        store.store("second", state)
+        store.store("third", state)
+
+        then:
+        1 * delegate.store("third", state)
+        0 * delegate._
+
+        when:
+        store.store("first", state)
+
+        then:
+        0 * delegate._
+    }
+
+    def "records flush operations"() {
+        when:
+        store.store("first", afterExecutionState())
+        store.store("second", afterExecutionState())
+        runScheduledWriters()
+
+        then:
+        def details = buildOperationExecutor.log.mostRecentDetails(WriteBehindExecutionHistoryStore.FlushOperation)
+        details.pendingUpdateCount == 2
+        details.batchSize == 2
+    }
+
+    def "writes pending updates on the calling thread when the background writer fails"() {
+        def state = afterExecutionState()
+
+        when:
+        store.store("key", state)
+        runScheduledWriters()
+
+        then:
+        1 * delegate.store("key", state) >> { throw new RuntimeException("broken") }
+        store.load("key").present
+
+        when:
+        store.store("other", state)
+
+        then:
+        1 * delegate.store("other", state)
+        scheduledWriters.empty
+
+        when:
+        store.flush()
+
+        then:
+        1 * delegate.store("key", state)
+        0 * delegate._
+    }
+
+    def "rethrows write failures when flushing"() {
+        def failure = new RuntimeException("broken")
+
+        when:
+        store.store("key", afterExecutionState())
+        runScheduledWriters()
+        store.flush()
+
+        then:
+        2 * delegate.store("key", _) >> { throw failure }
+        def e = thrown(RuntimeException)
+        e == failure
+    }
+
+    def "writes updates after the operation that enqueued them has finished"() {
+        def buildOperationRunner = new DefaultBuildOperationRunner(
+            CurrentBuildOperationRef.instance(),
+            { 0L } as DefaultBuildOperationRunner.TimeSupplier,
+            new DefaultBuildOperationIdFactory(),
+            { DefaultBuildOperationRunner.BuildOperationExecutionListener.NO_OP } as DefaultBuildOperationRunner.BuildOperationExecutionListenerFactory
+        )
+        def store = new WriteBehindExecutionHistoryStore(delegate, executor, buildOperationRunner, 100)
+        def state = afterExecutionState()
+
+        when:
+        buildOperationRunner.run(new RunnableBuildOperation() {
+            @Override
+            void run(BuildOperationContext context) {
+                store.store("key", state)
+            }
+
+            @Override
+            BuildOperationDescriptor.Builder description() {
+                BuildOperationDescriptor.displayName("Execute work")
+            }
+        })
+        runScheduledWriters()
+        store.flush()
+
+        then:
+        1 * delegate.store("key", state)
+        0 * delegate._
+    }
+
+    def "writes all pending updates when closed"() {
+        def executor = new DefaultExecutorFactory().create("test")
+        def store = new WriteBehindExecutionHistoryStore(delegate, executor, buildOperationExecutor, 100)
+
+        when:
+        50.times { store.store("key-$it", afterExecutionState()) }
+        store.close()
+
+        then:
+        50 * delegate.store(_, _)
+    }
+
+    private void runScheduledWriters() {
+        while (!scheduledWriters.empty) {
+            scheduledWriters.remove(0).run()
+        }
+    }
+
+    private AfterExecutionState afterExecutionState() {
+        Stub(AfterExecutionState) {
+            getInputFileProperties() >> ImmutableSortedMap.of()
+            isSuccessful() >> true
+        }
+    }
+}
@@ -17,12 +17,21 @@
 package org.gradle.internal.execution.steps
 
 import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableSortedMap
 import org.gradle.api.problems.internal.Problem
 import org.gradle.caching.internal.controller.BuildCacheController
 import org.gradle.internal.execution.caching.CachingDisabledReason
 import org.gradle.internal.execution.caching.CachingDisabledReasonCategory
+import org.gradle.internal.execution.history.BeforeExecutionState
+import org.gradle.internal.execution.history.PreviousExecutionState
+import org.gradle.internal.file.FileType
+import org.gradle.internal.hash.TestHashCodes
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.FileSystemSnapshot
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot
 
 import java.time.Duration
+import java.util.stream.Stream
 
 class ResolveCachingStateStepTest extends StepSpec<ValidationFinishedContext> {
 
@@ -74,4 +83,65 @@ class ResolveCachingStateStepTest extends StepSpec<ValidationFinishedContext> {
             context.cachingState.whenDisabled().map { it.disabledReasons }.get() as List == [disabledReason]
         }) >> delegateResult
     }
+
+    def "prefetches entry from build cache when work did not execute successfully before"() {
+        when:
+        step.execute(work, context)
+        then:
+        _ * buildCache.enabled >> true
+        _ * context.beforeExecutionState >> Optional.of(beforeExecutionState(outputExists: false))
+        _ * context.validationProblems >> ImmutableList.of()
+        _ * context.previousExecutionState >> previousExecutionState
+        _ * work.shouldDisableCaching(null) >> Optional.empty()
+        _ * work.allowedToLoadFromCache >> true
+        1 * buildCache.prefetch({ it != null })
+        1 * delegate.execute(work, { CachingContext context -> context.cachingState.whenEnabled().present }) >> delegateResult
+
+        where:
+        previousExecutionState << [
+            Optional.empty(),
+            Optional.of(previousExecutionState(successful: false)),
+            Optional.of(previousExecutionState(successful: true))
+        ]
+    }
+
+    def "does not prefetch entry from build cache when work executed successfully before and outputs are present"() {
+        when:
+        step.execute(work, context)
+        then:
+        _ * buildCache.enabled >> true
+        _ * context.beforeExecutionState >> Optional.of(beforeExecutionState(outputExists: true))
+        _ * context.validationProblems >> ImmutableList.of()
+        _ * context.previousExecutionState >> Optional.of(previousExecutionState(successful: true))
+        _ * work.shouldDisableCaching(null) >> Optional.empty()
+        _ * work.allowedToLoadFromCache >> true
+        0 * buildCache.prefetch(_)
+        1 * delegate.execute(work, _ as CachingContext) >> delegateResult
+    }
+
+    private BeforeExecutionState beforeExecutionState(Map args) {
+        Stub(BeforeExecutionState) {
+            implementation >> ImplementationSnapshot.of("Test", TestHashCodes.hashCodeFrom(123))
+            additionalImplementations >> ImmutableList.of()
+            inputProperties >> ImmutableSortedMap.of()
+            inputFileProperties >> ImmutableSortedMap.of()
+            outputFileLocationSnapshots >> ImmutableSortedMap.of("out", outputSnapshot(args.outputExists ? FileType.Directory : FileType.Missing))
+        }
+    }
+
+    private PreviousExecutionState previousExecutionState(Map args) {
+        Stub(PreviousExecutionState) {
+            successful >> args.successful
+            outputFilesProducedByWork >> ImmutableSortedMap.of("out", outputSnapshot(FileType.Directory))
+        }
+    }
+
+    private FileSystemSnapshot outputSnapshot(FileType type) {
+        def root = Stub(FileSystemLocationSnapshot) {
+            getType() >> type
+        }
+        Stub(FileSystemSnapshot) {
+            roots() >> { Stream.of(root) }
+        }
+    }
 }
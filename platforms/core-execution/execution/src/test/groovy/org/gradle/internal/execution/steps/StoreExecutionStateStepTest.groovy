@@ -19,7 +19,9 @@ package org.gradle.internal.execution.steps
 import com.google.common.collect.ImmutableList
 import com.google.common.collect.ImmutableSortedMap
 import org.gradle.caching.internal.origin.OriginMetadata
+import org.gradle.caching.internal.DefaultBuildCacheKey
 import org.gradle.internal.Try
+import org.gradle.internal.execution.caching.CachingState
 import org.gradle.internal.execution.history.AfterExecutionState
 import org.gradle.internal.execution.history.BeforeExecutionState
 import org.gradle.internal.execution.history.ExecutionHistoryStore
@@ -30,7 +32,7 @@ import org.gradle.internal.snapshot.impl.ImplementationSnapshot
 
 import static org.gradle.internal.execution.ExecutionEngine.Execution
 
-class StoreExecutionStateStepTest extends StepSpec<BeforeExecutionContext> implements SnapshotterFixture {
+class StoreExecutionStateStepTest extends StepSpec<CachingContext> implements SnapshotterFixture {
     def executionHistoryStore = Mock(ExecutionHistoryStore)
 
     def originMetadata = Mock(OriginMetadata)
@@ -44,12 +46,13 @@ class StoreExecutionStateStepTest extends StepSpec<BeforeExecutionContext> imple
     def outputFile = file("output.txt").text = "output"
     def outputFilesProducedByWork = snapshotsOf(output: outputFile)
 
-    def step = new StoreExecutionStateStep<BeforeExecutionContext, AfterExecutionResult>(delegate)
+    def step = new StoreExecutionStateStep<CachingContext, AfterExecutionResult>(delegate)
     def delegateResult = Mock(AfterExecutionResult)
 
 
     def setup() {
         _ * context.history >> Optional.of(executionHistoryStore)
+        _ * context.cachingState >> CachingState.NOT_DETERMINED
     }
 
     def "output snapshots are stored after successful execution"() {
@@ -73,6 +76,31 @@ class StoreExecutionStateStepTest extends StepSpec<BeforeExecutionContext> imple
         0 * _
     }
 
+    def "cache key is stored when caching is enabled"() {
+        def cacheKey = TestHashCodes.hashCodeFrom(1234)
+
+        when:
+        step.execute(work, context)
+
+        then:
+        1 * delegate.execute(work, context) >> delegateResult
+
+        then:
+        1 * delegateResult.afterExecutionOutputState >> Optional.of(Mock(AfterExecutionState) {
+            _ * getOutputFilesProducedByWork() >> this.outputFilesProducedByWork
+            _ * getOriginMetadata() >> originMetadata
+        })
+        _ * context.beforeExecutionState >> Optional.of(beforeExecutionState)
+        _ * context.cachingState >> CachingState.enabled(new DefaultBuildCacheKey(cacheKey), beforeExecutionState)
+        _ * delegateResult.execution >> Try.successful(Mock(Execution))
+
+        then:
+        1 * executionHistoryStore.store(identity.uniqueId, { AfterExecutionState executionState ->
+            executionState.cacheKey == Optional.of(cacheKey)
+        })
+        0 * _
+    }
+
     def "output snapshots are stored after failed execution when there's no previous state available"() {
         when:
         def result = step.execute(work, context)
@@ -50,7 +50,8 @@ public void store(String key, AfterExecutionState executionState) {
             executionState.getInputProperties(),
             prepareForSerialization(executionState.getInputFileProperties()),
             executionState.getOutputFilesProducedByWork(),
-            executionState.isSuccessful()
+            executionState.isSuccessful(),
+            executionState.getCacheKey().orElse(null)
         ));
     }
 
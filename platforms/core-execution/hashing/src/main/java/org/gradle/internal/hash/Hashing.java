@@ -47,6 +47,8 @@ private Hashing() {
 
     private static final HashFunction SHA512 = MessageDigestHashFunction.of("SHA-512");
 
+    private static final HashFunction MURMUR3 = new Murmur3HashFunction();
+
     private static final HashFunction DEFAULT = MD5;
 
     /**
@@ -150,33 +152,33 @@ public static HashFunction sha512() {
         return SHA512;
     }
 
-    private static abstract class MessageDigestHashFunction implements HashFunction {
-        private final int hexDigits;
-
-        public MessageDigestHashFunction(int hashBits) {
-            this.hexDigits = hashBits / 4;
-        }
+    /**
+     * 128-bit Murmur3 (x64 variant) hashing function.
+     *
+     * This is a fast non-cryptographic hash function, only suitable where hashes are not required to be secure,
+     * e.g. for fingerprinting file contents.
+     */
+    public static HashFunction murmur3() {
+        return MURMUR3;
+    }
 
-        public static MessageDigestHashFunction of(String algorithm) {
-            MessageDigest prototype;
-            try {
-                prototype = MessageDigest.getInstance(algorithm);
-            } catch (NoSuchAlgorithmException e) {
-                throw new IllegalArgumentException("Cannot instantiate digest algorithm: " + algorithm);
-            }
-            int hashBits = prototype.getDigestLength() * 8;
-            try {
-                prototype.clone();
-                return new CloningMessageDigestHashFunction(prototype, hashBits);
-            } catch (CloneNotSupportedException e) {
-                return new RegularMessageDigestHashFunction(algorithm, hashBits);
+    /**
+     * Returns the hashing function for the given algorithm, as returned by {@link HashFunction#getAlgorithm()}.
+     */
+    public static HashFunction forAlgorithm(String algorithm) {
+        for (HashFunction function : new HashFunction[]{MD5, SHA1, SHA256, SHA512, MURMUR3}) {
+            if (function.getAlgorithm().equalsIgnoreCase(algorithm)) {
+                return function;
             }
         }
+        throw new IllegalArgumentException("Unknown hash algorithm: " + algorithm);
+    }
 
-        @Override
-        public PrimitiveHasher newPrimitiveHasher() {
-            MessageDigest digest = createDigest();
-            return new MessageDigestHasher(digest);
+    private static abstract class AbstractHashFunction implements HashFunction {
+        private final int hexDigits;
+
+        public AbstractHashFunction(int hashBits) {
+            this.hexDigits = hashBits / 4;
         }
 
         @Override
@@ -216,8 +218,6 @@ private HashingOutputStream primitiveStreamHasher() {
             return new HashingOutputStream(this, ByteStreams.nullOutputStream());
         }
 
-        protected abstract MessageDigest createDigest();
-
         @Override
         public int getHexDigits() {
             return hexDigits;
@@ -229,6 +229,36 @@ public String toString() {
         }
     }
 
+    private static abstract class MessageDigestHashFunction extends AbstractHashFunction {
+        public MessageDigestHashFunction(int hashBits) {
+            super(hashBits);
+        }
+
+        public static MessageDigestHashFunction of(String algorithm) {
+            MessageDigest prototype;
+            try {
+                prototype = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException("Cannot instantiate digest algorithm: " + algorithm);
+            }
+            int hashBits = prototype.getDigestLength() * 8;
+            try {
+                prototype.clone();
+                return new CloningMessageDigestHashFunction(prototype, hashBits);
+            } catch (CloneNotSupportedException e) {
+                return new RegularMessageDigestHashFunction(algorithm, hashBits);
+            }
+        }
+
+        @Override
+        public PrimitiveHasher newPrimitiveHasher() {
+            MessageDigest digest = createDigest();
+            return new MessageDigestHasher(digest);
+        }
+
+        protected abstract MessageDigest createDigest();
+    }
+
     private static class CloningMessageDigestHashFunction extends MessageDigestHashFunction {
         private final MessageDigest prototype;
 
@@ -360,6 +390,204 @@ public HashCode hash() {
         }
     }
 
+    private static class Murmur3HashFunction extends AbstractHashFunction {
+        public Murmur3HashFunction() {
+            super(128);
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "MURMUR3-128";
+        }
+
+        @Override
+        public PrimitiveHasher newPrimitiveHasher() {
+            return new Murmur3Hasher();
+        }
+    }
+
+    /**
+     * Streaming implementation of the x64 128-bit variant of MurmurHash3 with a seed of zero.
+     * Produces the same hashes as Guava's {@code Hashing.murmur3_128()}.
+     */
+    private static class Murmur3Hasher implements PrimitiveHasher {
+        private static final int BLOCK_SIZE = 16;
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private final byte[] pending = new byte[BLOCK_SIZE];
+        private int pendingLength;
+        private long length;
+        private long h1;
+        private long h2;
+        private boolean done;
+
+        private void checkNotDone() {
+            if (done) {
+                throw new IllegalStateException("Cannot reuse hasher!");
+            }
+        }
+
+        @Override
+        public void putByte(byte b) {
+            checkNotDone();
+            pending[pendingLength++] = b;
+            length++;
+            if (pendingLength == BLOCK_SIZE) {
+                processBlock(pending, 0);
+                pendingLength = 0;
+            }
+        }
+
+        @Override
+        public void putBytes(byte[] bytes) {
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void putBytes(byte[] bytes, int off, int len) {
+            checkNotDone();
+            length += len;
+            if (pendingLength > 0) {
+                int toCopy = Math.min(BLOCK_SIZE - pendingLength, len);
+                System.arraycopy(bytes, off, pending, pendingLength, toCopy);
+                pendingLength += toCopy;
+                off += toCopy;
+                len -= toCopy;
+                if (pendingLength < BLOCK_SIZE) {
+                    return;
+                }
+                processBlock(pending, 0);
+                pendingLength = 0;
+            }
+            while (len >= BLOCK_SIZE) {
+                processBlock(bytes, off);
+                off += BLOCK_SIZE;
+                len -= BLOCK_SIZE;
+            }
+            System.arraycopy(bytes, off, pending, 0, len);
+            pendingLength = len;
+        }
+
+        @Override
+        public void putInt(int value) {
+            for (int i = 0; i < 4; i++) {
+                putByte((byte) (value >>> (i * 8)));
+            }
+        }
+
+        @Override
+        public void putLong(long value) {
+            for (int i = 0; i < 8; i++) {
+                putByte((byte) (value >>> (i * 8)));
+            }
+        }
+
+        @Override
+        public void putDouble(double value) {
+            long longValue = Double.doubleToRawLongBits(value);
+            putLong(longValue);
+        }
+
+        @Override
+        public void putBoolean(boolean value) {
+            putByte((byte) (value ? 1 : 0));
+        }
+
+        @Override
+        public void putString(CharSequence value) {
+            putBytes(value.toString().getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public void putHash(HashCode hashCode) {
+            hashCode.appendToHasher(this);
+        }
+
+        @Override
+        public HashCode hash() {
+            checkNotDone();
+            done = true;
+            if (pendingLength > 0) {
+                long k1 = 0;
+                long k2 = 0;
+                for (int i = pendingLength - 1; i >= 8; i--) {
+                    k2 = (k2 << 8) | (pending[i] & 0xffL);
+                }
+                for (int i = Math.min(pendingLength, 8) - 1; i >= 0; i--) {
+                    k1 = (k1 << 8) | (pending[i] & 0xffL);
+                }
+                h1 ^= mixK1(k1);
+                h2 ^= mixK2(k2);
+            }
+
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+
+            byte[] bytes = new byte[BLOCK_SIZE];
+            for (int i = 0; i < 8; i++) {
+                bytes[i] = (byte) (h1 >>> (i * 8));
+                bytes[i + 8] = (byte) (h2 >>> (i * 8));
+            }
+            return HashCode.fromBytes(bytes, SAFE_TO_REUSE_BYTES);
+        }
+
+        private void processBlock(byte[] bytes, int off) {
+            long k1 = readLongLittleEndian(bytes, off);
+            long k2 = readLongLittleEndian(bytes, off + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        private static long readLongLittleEndian(byte[] bytes, int off) {
+            return (bytes[off] & 0xffL)
+                | (bytes[off + 1] & 0xffL) << 8
+                | (bytes[off + 2] & 0xffL) << 16
+                | (bytes[off + 3] & 0xffL) << 24
+                | (bytes[off + 4] & 0xffL) << 32
+                | (bytes[off + 5] & 0xffL) << 40
+                | (bytes[off + 6] & 0xffL) << 48
+                | (bytes[off + 7] & 0xffL) << 56;
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            return k1;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            return k2;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+
     private static class DefaultHasher implements Hasher {
         private final PrimitiveHasher hasher;
 
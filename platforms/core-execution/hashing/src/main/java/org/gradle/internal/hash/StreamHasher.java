@@ -30,4 +30,12 @@ public interface StreamHasher {
      * The method will not close either stream.
      */
     HashCode hashCopy(InputStream inputStream, OutputStream outputStream) throws IOException;
+
+    /**
+     * Returns the hash function used to hash stream contents.
+     *
+     * Persistent stores of content hashes should be keyed by its {@link HashFunction#getAlgorithm() algorithm},
+     * so hashes produced by different functions are never mixed.
+     */
+    HashFunction getHashFunction();
 }
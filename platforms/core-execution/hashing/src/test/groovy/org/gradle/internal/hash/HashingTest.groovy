@@ -109,6 +109,40 @@ class HashingTest extends Specification {
         hashStrings(["abc", "de"]) != hashStrings(["ab", "cde"])
     }
 
+    def 'murmur3 produces the same hashes as the reference implementation for #length bytes'() {
+        given:
+        def bytes = new byte[length]
+        new Random(length).nextBytes(bytes)
+        def expected = HashCode.fromBytes(com.google.common.hash.Hashing.murmur3_128().hashBytes(bytes).asBytes())
+
+        when:
+        def hasher = Hashing.murmur3().newPrimitiveHasher()
+        int offset = 0
+        while (offset < length) {
+            int chunk = Math.min(length - offset, offset % 7 + 1)
+            hasher.putBytes(bytes, offset, chunk)
+            offset += chunk
+        }
+
+        then:
+        Hashing.murmur3().hashBytes(bytes) == expected
+        hasher.hash() == expected
+
+        where:
+        length << [0, 1, 8, 15, 16, 17, 100, 4097]
+    }
+
+    def 'can look up hash function by algorithm'() {
+        expect:
+        Hashing.forAlgorithm(algorithm) == function
+
+        where:
+        algorithm     | function
+        "MD5"         | Hashing.md5()
+        "sha-1"       | Hashing.sha1()
+        "MURMUR3-128" | Hashing.murmur3()
+    }
+
     def hashStrings(List<String> strings) {
         def hasher = Hashing.newHasher()
         strings.each { hasher.putString(it) }
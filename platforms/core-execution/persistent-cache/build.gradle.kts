@@ -1,5 +1,6 @@
 plugins {
     id("gradlebuild.distribution.api-java")
+    id("gradlebuild.jmh")
 }
 
 description = """Persistent caches on disk and cross process locking.
@@ -28,4 +29,9 @@ dependencies {
         because("DefaultPersistentDirectoryCacheTest instantiates DefaultClassLoaderRegistry which requires a 'gradle-plugins.properties' through DefaultPluginModuleRegistry")
     }
     integTestDistributionRuntimeOnly(project(":distributions-core"))
+
+    jmhImplementation(platform(project(":distributions-dependencies")))
+    jmhImplementation(project(":base-services"))
+    jmhImplementation(project(":messaging"))
+    jmhImplementation(libs.commonsIo)
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.cache.IndexedCacheParameters;
+import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.mmap.MappedLogIndexedCache;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares the B-tree and memory-mapped log storage of indexed caches, both uncontended and with concurrent readers and writers.
+ *
+ * The B-tree is not thread-safe, so concurrent access to it is serialized by a single lock, like the owning cache does.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class IndexedCacheStoreBenchmark {
+    private static final BaseSerializerFactory SERIALIZER_FACTORY = new BaseSerializerFactory();
+
+    @Param({"BTREE", "MAPPED_LOG"})
+    IndexedCacheParameters.Storage storage;
+
+    @Param({"100000"})
+    int entryCount;
+
+    @Param({"256"})
+    int valueSize;
+
+    File tempDir;
+    IndexedCacheStore<String, byte[]> store;
+    byte[] value;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tempDir = Files.createTempDirectory("indexed-cache-store").toFile();
+        Serializer<String> keySerializer = SERIALIZER_FACTORY.getSerializerFor(String.class);
+        Serializer<byte[]> valueSerializer = SERIALIZER_FACTORY.getSerializerFor(byte[].class);
+        store = storage == IndexedCacheParameters.Storage.MAPPED_LOG
+            ? new MappedLogIndexedCache<>(new File(tempDir, "cache.log"), keySerializer, valueSerializer)
+            : new SynchronizedStore<>(new BTreePersistentIndexedCache<>(new File(tempDir, "cache.bin"), keySerializer, valueSerializer));
+        value = new byte[valueSize];
+        for (int i = 0; i < entryCount; i++) {
+            store.put(keyOf(i), value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        FileUtils.forceDelete(tempDir);
+    }
+
+    @Benchmark
+    public byte[] get() {
+        return store.get(randomKey());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public byte[] getContended() {
+        return store.get(randomKey());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void putContended() {
+        store.put(randomKey(), value);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public byte[] mixedContended() {
+        String key = randomKey();
+        if (ThreadLocalRandom.current().nextInt(10) == 0) {
+            store.put(key, value);
+            return value;
+        }
+        return store.get(key);
+    }
+
+    private String randomKey() {
+        return keyOf(ThreadLocalRandom.current().nextInt(entryCount));
+    }
+
+    private static String keyOf(int index) {
+        return "/some/project/build/outputs/file-" + index;
+    }
+
+    private static class SynchronizedStore<K, V> implements IndexedCacheStore<K, V> {
+        private final IndexedCacheStore<K, V> delegate;
+
+        SynchronizedStore(IndexedCacheStore<K, V> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized V get(K key) {
+            return delegate.get(key);
+        }
+
+        @Override
+        public synchronized void put(K key, V value) {
+            delegate.put(key, value);
+        }
+
+        @Override
+        public synchronized void remove(K key) {
+            delegate.remove(key);
+        }
+
+        @Override
+        public synchronized void close() {
+            delegate.close();
+        }
+    }
+}
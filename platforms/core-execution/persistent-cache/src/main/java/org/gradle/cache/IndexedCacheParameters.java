@@ -27,24 +27,26 @@
     private final Serializer<K> keySerializer;
     private final Serializer<V> valueSerializer;
     private final CacheDecorator cacheDecorator;
+    private final Storage storage;
 
     public static <K, V> IndexedCacheParameters<K, V> of(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        return new IndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, null);
+        return new IndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, null, Storage.BTREE);
     }
 
     public static <K, V> IndexedCacheParameters<K, V> of(String cacheName, Class<K> keyType, Serializer<V> valueSerializer) {
-        return new IndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), valueSerializer, null);
+        return new IndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), valueSerializer, null, Storage.BTREE);
     }
 
     public static <K, V> IndexedCacheParameters<K, V> of(String cacheName, Class<K> keyType, Class<V> valueType) {
-        return new IndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), SERIALIZER_FACTORY.getSerializerFor(valueType), null);
+        return new IndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), SERIALIZER_FACTORY.getSerializerFor(valueType), null, Storage.BTREE);
     }
 
-    private IndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer, @Nullable CacheDecorator cacheDecorator) {
+    private IndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer, @Nullable CacheDecorator cacheDecorator, Storage storage) {
         this.cacheName = cacheName;
         this.keySerializer = keySerializer;
         this.valueSerializer = valueSerializer;
         this.cacheDecorator = cacheDecorator;
+        this.storage = storage;
     }
 
     public String getCacheName() {
@@ -64,7 +66,31 @@ public CacheDecorator getCacheDecorator() {
         return cacheDecorator;
     }
 
+    public Storage getStorage() {
+        return storage;
+    }
+
     public IndexedCacheParameters<K, V> withCacheDecorator(CacheDecorator cacheDecorator) {
-        return new IndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator);
+        return new IndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator, storage);
+    }
+
+    public IndexedCacheParameters<K, V> withStorage(Storage storage) {
+        return new IndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator, storage);
+    }
+
+    /**
+     * The on-disk format used to persist the entries of the cache.
+     */
+    public enum Storage {
+        /**
+         * A B-tree in a single block file. Accesses are serialized by the owning cache.
+         */
+        BTREE,
+
+        /**
+         * A memory-mapped, append-only log with an in-memory hash index.
+         * Reads are lock-free and writes only contend for keys in the same lock stripe.
+         */
+        MAPPED_LOG
     }
 }
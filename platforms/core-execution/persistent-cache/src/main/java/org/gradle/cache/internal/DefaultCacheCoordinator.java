@@ -33,6 +33,7 @@
 import org.gradle.cache.MultiProcessSafeIndexedCache;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
+import org.gradle.cache.internal.mmap.MappedLogIndexedCache;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
@@ -310,7 +311,9 @@ public <K, V> MultiProcessSafeIndexedCache<K, V> newCache(final IndexedCachePara
             if (entry == null) {
                 File cacheFile = findCacheFile(parameters);
                 LOG.debug("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                Factory<IndexedCacheStore<K, V>> indexedCacheFactory = parameters.getStorage() == IndexedCacheParameters.Storage.MAPPED_LOG
+                    ? () -> new MappedLogIndexedCache<>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer())
+                    : () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
 
                 MultiProcessSafeIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafeIndexedCache<K, V>(indexedCacheFactory, fileAccess);
                 CacheDecorator decorator = parameters.getCacheDecorator();
@@ -335,7 +338,8 @@ public <K, V> MultiProcessSafeIndexedCache<K, V> newCache(final IndexedCachePara
     }
 
     private <K, V> File findCacheFile(IndexedCacheParameters<K, V> parameters) {
-        return new File(baseDir, parameters.getCacheName() + ".bin");
+        String extension = parameters.getStorage() == IndexedCacheParameters.Storage.MAPPED_LOG ? ".log" : ".bin";
+        return new File(baseDir, parameters.getCacheName() + extension);
     }
 
     @Override
@@ -505,6 +509,7 @@ void assertCompatibleCacheParameters(IndexedCacheParameters<K, V> parameters) {
             checkCompatibleKeySerializer(faultMessages, parameters.getKeySerializer());
             checkCompatibleValueSerializer(faultMessages, parameters.getValueSerializer());
             checkCompatibleCacheDecorator(faultMessages, parameters.getCacheDecorator());
+            checkCompatibleStorage(faultMessages, parameters.getStorage());
 
             if (!faultMessages.isEmpty()) {
                 String lineSeparator = SystemProperties.getInstance().getLineSeparator();
@@ -547,6 +552,14 @@ private void checkCompatibleCacheDecorator(Collection<String> faultMessages, Cac
                         cacheDecorator, parameters.getCacheDecorator()));
             }
         }
+
+        private void checkCompatibleStorage(Collection<String> faultMessages, IndexedCacheParameters.Storage storage) {
+            if (storage != parameters.getStorage()) {
+                faultMessages.add(
+                    String.format(" * Requested cache storage (%s) doesn't match current cache storage (%s)",
+                        storage, parameters.getStorage()));
+            }
+        }
     }
 
     @VisibleForTesting
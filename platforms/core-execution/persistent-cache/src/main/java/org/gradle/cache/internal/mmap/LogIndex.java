@@ -0,0 +1,183 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.mmap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+import java.util.function.LongToIntFunction;
+
+/**
+ * An open-addressing hash table from keys to the offset of their latest record in the log.
+ *
+ * <p>Each slot packs the offset of a record together with some bits of the key hash, so most probes
+ * can be rejected without reading the key from the log. Slots are only ever claimed once per key and
+ * afterwards only replaced with a newer offset for the same key, which makes lookups safe without locking.
+ * Callers must make sure that a key is only updated by one thread at a time.</p>
+ */
+class LogIndex {
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private static final int MIN_CAPACITY = 1024;
+
+    static final long MAX_OFFSET = OFFSET_MASK;
+    static final long NOT_FOUND = -1;
+
+    private final LongToIntFunction hashOfRecord;
+    private final ReadWriteLock resizeLock = new ReentrantReadWriteLock();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile AtomicLongArray slots;
+
+    /**
+     * @param hashOfRecord computes the key hash of the record at a given offset, used when the index grows.
+     */
+    LogIndex(int expectedSize, LongToIntFunction hashOfRecord) {
+        this.hashOfRecord = hashOfRecord;
+        this.slots = new AtomicLongArray(capacityFor(expectedSize));
+    }
+
+    /**
+     * Returns the offset of the record for the key with the given hash, or {@link #NOT_FOUND}.
+     *
+     * @param isKey checks whether the record at a given offset has the key being looked up.
+     */
+    long get(int hash, LongPredicate isKey) {
+        AtomicLongArray slots = this.slots;
+        int mask = slots.length() - 1;
+        int tag = tagOf(hash);
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long slot = slots.get(i);
+            if (slot == 0) {
+                return NOT_FOUND;
+            }
+            if (tagOf(slot) == tag && isKey.test(offsetOf(slot))) {
+                return offsetOf(slot);
+            }
+        }
+    }
+
+    /**
+     * Points the key with the given hash to a new record.
+     *
+     * @param isKey checks whether the record at a given offset has the key being updated.
+     */
+    void put(int hash, long offset, LongPredicate isKey) {
+        if (size.get() + 1 > slots.length() / 2) {
+            grow();
+        }
+        boolean added;
+        resizeLock.readLock().lock();
+        try {
+            added = insert(slots, hash, offset, isKey);
+        } finally {
+            resizeLock.readLock().unlock();
+        }
+        if (added) {
+            size.incrementAndGet();
+        }
+    }
+
+    /**
+     * Adds a key that is known not to be in the index yet, used when loading the log.
+     */
+    void add(int hash, long offset) {
+        put(hash, offset, existing -> false);
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the offset of the latest record of each key in the index.
+     */
+    long[] offsets() {
+        AtomicLongArray slots = this.slots;
+        long[] offsets = new long[size.get()];
+        int count = 0;
+        for (int i = 0; i < slots.length() && count < offsets.length; i++) {
+            long slot = slots.get(i);
+            if (slot != 0) {
+                offsets[count++] = offsetOf(slot);
+            }
+        }
+        return offsets;
+    }
+
+    private static boolean insert(AtomicLongArray slots, int hash, long offset, LongPredicate isKey) {
+        int mask = slots.length() - 1;
+        int tag = tagOf(hash);
+        long entry = ((long) tag << OFFSET_BITS) | offset;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long slot = slots.get(i);
+            if (slot == 0) {
+                if (slots.compareAndSet(i, 0, entry)) {
+                    return true;
+                }
+                // Claimed by a concurrent writer of a different key
+                slot = slots.get(i);
+            }
+            if (tagOf(slot) == tag && isKey.test(offsetOf(slot))) {
+                slots.set(i, entry);
+                return false;
+            }
+        }
+    }
+
+    private void grow() {
+        resizeLock.writeLock().lock();
+        try {
+            AtomicLongArray current = slots;
+            if (size.get() + 1 <= current.length() / 2) {
+                return;
+            }
+            AtomicLongArray grown = new AtomicLongArray(current.length() * 2);
+            for (int i = 0; i < current.length(); i++) {
+                long slot = current.get(i);
+                if (slot != 0) {
+                    long offset = offsetOf(slot);
+                    insert(grown, hashOfRecord.applyAsInt(offset), offset, existing -> false);
+                }
+            }
+            slots = grown;
+        } finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity / 2 < expectedSize) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private static int tagOf(int hash) {
+        return hash >>> 8;
+    }
+
+    private static int tagOf(long slot) {
+        return (int) (slot >>> OFFSET_BITS);
+    }
+
+    private static long offsetOf(long slot) {
+        return slot & OFFSET_MASK;
+    }
+}
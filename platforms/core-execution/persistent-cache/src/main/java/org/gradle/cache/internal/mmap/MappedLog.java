@@ -0,0 +1,160 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.mmap;
+
+import org.gradle.internal.io.MappedByteBuffers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A file that is mapped into memory in fixed size segments and that grows by appending.
+ *
+ * <p>Appending reserves a range of the file atomically, so concurrent writers never overlap.
+ * Bytes written to a reserved range become visible to other threads once the offset
+ * has been published through some other synchronization, e.g. the {@link LogIndex}.</p>
+ *
+ * <p>Closing the log unmaps the segments right away instead of leaving that to the garbage collector,
+ * because Windows doesn't allow truncating or replacing a file while parts of it are still mapped.
+ * The log must not be accessed anymore once it has been closed.</p>
+ */
+class MappedLog implements Closeable {
+    static final int SEGMENT_SIZE = 1 << 24;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final AtomicLong end;
+    private final Object mappingLock = new Object();
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    MappedLog(RandomAccessFile file, long end) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.end = new AtomicLong(end);
+    }
+
+    long getEnd() {
+        return end.get();
+    }
+
+    /**
+     * Appends the given bytes to the log, returning the offset they were written to.
+     */
+    long append(byte[] bytes) throws IOException {
+        long offset = end.getAndAdd(bytes.length);
+        mapUpTo(offset + bytes.length);
+        MappedByteBuffer[] segments = this.segments;
+        int written = 0;
+        while (written < bytes.length) {
+            long position = offset + written;
+            ByteBuffer segment = segments[segmentOf(position)].duplicate();
+            segment.position(offsetInSegment(position));
+            int count = Math.min(bytes.length - written, segment.remaining());
+            segment.put(bytes, written, count);
+            written += count;
+        }
+        return offset;
+    }
+
+    /**
+     * Reads bytes from a range of the log that has previously been appended.
+     */
+    void read(long offset, byte[] target, int length) {
+        MappedByteBuffer[] segments = this.segments;
+        int read = 0;
+        while (read < length) {
+            long position = offset + read;
+            ByteBuffer segment = segments[segmentOf(position)].duplicate();
+            segment.position(offsetInSegment(position));
+            int count = Math.min(length - read, segment.remaining());
+            segment.get(target, read, count);
+            read += count;
+        }
+    }
+
+    int readInt(long offset) {
+        byte[] bytes = new byte[4];
+        read(offset, bytes, 4);
+        return ByteBuffer.wrap(bytes).getInt();
+    }
+
+    private void mapUpTo(long limit) throws IOException {
+        if ((long) segments.length * SEGMENT_SIZE >= limit) {
+            return;
+        }
+        synchronized (mappingLock) {
+            MappedByteBuffer[] current = segments;
+            int required = segmentOf(limit - 1) + 1;
+            if (current.length >= required) {
+                return;
+            }
+            MappedByteBuffer[] grown = Arrays.copyOf(current, required);
+            for (int i = current.length; i < required; i++) {
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * SEGMENT_SIZE, SEGMENT_SIZE);
+            }
+            segments = grown;
+        }
+    }
+
+    void mapExisting() throws IOException {
+        if (end.get() > 0) {
+            mapUpTo(end.get());
+        }
+    }
+
+    /**
+     * Writes all appended bytes to the storage device.
+     */
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        MappedByteBuffer[] segments = this.segments;
+        this.segments = new MappedByteBuffer[0];
+        try {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        } finally {
+            try {
+                for (MappedByteBuffer segment : segments) {
+                    MappedByteBuffers.unmap(segment);
+                }
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    private static int segmentOf(long position) {
+        return (int) (position / SEGMENT_SIZE);
+    }
+
+    private static int offsetInSegment(long position) {
+        return (int) (position % SEGMENT_SIZE);
+    }
+}
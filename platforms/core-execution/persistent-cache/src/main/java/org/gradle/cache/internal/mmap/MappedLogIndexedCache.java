@@ -0,0 +1,493 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.mmap;
+
+import com.google.common.util.concurrent.Striped;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.IndexedCacheStore;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * An indexed cache stored in a memory-mapped, append-only log file.
+ *
+ * <p>Every put or remove appends a checksummed record to the log and then points the in-memory {@link LogIndex}
+ * to it. Reads don't take any locks: they look up the offset of the latest record for the key and decode the
+ * value straight from the mapped file. Writes are serialized per lock stripe of the key, so writers of
+ * unrelated keys can append concurrently.</p>
+ *
+ * <p>When the cache is closed, the keys and offsets of the live records are written to an index file next to the log,
+ * together with the generation of the log and the checksum of its last record. When the cache is opened again, the
+ * index file is only used if it still matches the log, and the log is then scanned from where the index file ends.
+ * Otherwise, the whole log is scanned. The scan stops at the first record that is incomplete or doesn't match its
+ * checksum and the log is truncated there, so a crash loses at most the records that were being written.
+ * When superseded records take up most of the log, it is compacted while opening, which starts a new generation.</p>
+ */
+public class MappedLogIndexedCache<K, V> implements IndexedCacheStore<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedLogIndexedCache.class);
+
+    private static final int MAGIC = 0x47524c47;
+    private static final int INDEX_MAGIC = 0x47524c49;
+    private static final int VERSION = 2;
+    // magic, version, generation
+    private static final int FILE_HEADER_SIZE = 16;
+    // record length, checksum, key length, value length
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int TOMBSTONE = -1;
+    private static final int LOCK_STRIPES = 64;
+    private static final long COMPACTION_THRESHOLD = 1024 * 1024;
+    private static final long NO_RECORD = 0;
+
+    private final File cacheFile;
+    private final File indexFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final Striped<Lock> writeLocks = Striped.lock(LOCK_STRIPES);
+    private final AtomicLong lastRecord = new AtomicLong(NO_RECORD);
+    private MappedLog log;
+    private LogIndex index;
+    private long generation;
+    private boolean indexFileUpToDate;
+    private volatile boolean modified;
+
+    public MappedLogIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this.cacheFile = cacheFile;
+        this.indexFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".index");
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        try {
+            open();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + cacheFile.getName() + " (" + cacheFile + ")";
+    }
+
+    private void open() throws IOException {
+        LOGGER.debug("Opening {}", this);
+        RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+        LogContents contents;
+        try {
+            contents = scan(file);
+            if (contents.getGarbageBytes() > Math.max(contents.liveBytes, COMPACTION_THRESHOLD)) {
+                file.close();
+                contents = compact(contents);
+                file = new RandomAccessFile(cacheFile, "rw");
+            }
+            // Nothing of the file is mapped at this point, which Windows requires for truncating it
+            // Drop anything after the last valid record, so it can't be mistaken for valid records later on
+            file.getChannel().truncate(contents.end);
+            log = new MappedLog(file, contents.end);
+            log.mapExisting();
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+        generation = contents.generation;
+        indexFileUpToDate = contents.upToDate;
+        lastRecord.set(contents.lastRecord);
+        index = new LogIndex(contents.records.size(), this::hashOfRecord);
+        for (Map.Entry<ByteBuffer, Record> entry : contents.records.entrySet()) {
+            index.add(hash(entry.getKey().array()), entry.getValue().offset);
+        }
+    }
+
+    private LogContents scan(RandomAccessFile file) throws IOException {
+        long length = file.length();
+        file.seek(0);
+        if (length < FILE_HEADER_SIZE || file.readInt() != MAGIC || file.readInt() != VERSION) {
+            if (length > 0) {
+                LOGGER.debug("{} has an unexpected format. Discarding.", this);
+            }
+            LogContents contents = new LogContents(ThreadLocalRandom.current().nextLong());
+            file.setLength(0);
+            file.seek(0);
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeLong(contents.generation);
+            return contents;
+        }
+        long generation = file.readLong();
+        LogContents contents = readIndexFile(file, generation, length);
+        if (contents == null) {
+            contents = new LogContents(generation);
+        } else {
+            LOGGER.debug("Using index file of {}, scanning the log from offset {}.", this, contents.end);
+        }
+        long position = contents.end;
+        FileChannel channel = file.getChannel().position(position);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER_SIZE <= length) {
+            int recordLength = input.readInt();
+            int checksum = input.readInt();
+            if (recordLength < RECORD_HEADER_SIZE || position + recordLength > length) {
+                break;
+            }
+            byte[] body = new byte[recordLength - 8];
+            try {
+                input.readFully(body);
+            } catch (EOFException e) {
+                break;
+            }
+            crc.reset();
+            crc.update(body, 0, body.length);
+            ByteBuffer header = ByteBuffer.wrap(body);
+            int keyLength = header.getInt();
+            int valueLength = header.getInt();
+            if ((int) crc.getValue() != checksum || keyLength < 0 || valueLength < TOMBSTONE || RECORD_HEADER_SIZE + keyLength + Math.max(valueLength, 0) != recordLength) {
+                break;
+            }
+            ByteBuffer key = ByteBuffer.wrap(Arrays.copyOfRange(body, 8, 8 + keyLength));
+            Record previous = valueLength == TOMBSTONE
+                ? contents.records.remove(key)
+                : contents.records.put(key, new Record(position, recordLength));
+            if (previous != null) {
+                contents.liveBytes -= previous.length;
+            }
+            if (valueLength != TOMBSTONE) {
+                contents.liveBytes += recordLength;
+            }
+            contents.lastRecord = position;
+            contents.upToDate = false;
+            position += recordLength;
+        }
+        contents.end = position;
+        return contents;
+    }
+
+    /**
+     * Reads the live records from the index file, or returns {@code null} when the index file is missing, damaged
+     * or doesn't belong to the log. The index file belongs to the log when it has the same generation and when the
+     * last record it knows about is still in the log, so the log can only have grown since the index file was written.
+     */
+    @Nullable
+    private LogContents readIndexFile(RandomAccessFile file, long generation, long length) {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(indexFile.toPath());
+            if (bytes.length < 4) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 4);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if ((int) crc.getValue() != buffer.getInt(bytes.length - 4)
+                || buffer.getInt() != INDEX_MAGIC
+                || buffer.getInt() != VERSION
+                || buffer.getLong() != generation) {
+                return null;
+            }
+            LogContents contents = new LogContents(generation);
+            contents.end = buffer.getLong();
+            contents.lastRecord = buffer.getLong();
+            int lastChecksum = buffer.getInt();
+            if (contents.end > length || !hasRecord(file, contents.lastRecord, contents.end, lastChecksum)) {
+                return null;
+            }
+            for (int keyLength = buffer.getInt(); keyLength != -1; keyLength = buffer.getInt()) {
+                byte[] key = new byte[keyLength];
+                buffer.get(key);
+                Record record = new Record(buffer.getLong(), buffer.getInt());
+                contents.records.put(ByteBuffer.wrap(key), record);
+                contents.liveBytes += record.length;
+            }
+            contents.upToDate = true;
+            return contents;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Could not read index file of {}.", this, e);
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the log has a record with the given checksum that ends at the given offset.
+     */
+    private static boolean hasRecord(RandomAccessFile file, long offset, long end, int checksum) throws IOException {
+        if (offset == NO_RECORD) {
+            return end == FILE_HEADER_SIZE;
+        }
+        if (offset < FILE_HEADER_SIZE || offset + RECORD_HEADER_SIZE > end) {
+            return false;
+        }
+        file.seek(offset);
+        return file.readInt() == end - offset && file.readInt() == checksum;
+    }
+
+    private void writeIndexFile() throws IOException {
+        long lastRecord = this.lastRecord.get();
+        CRC32 crc = new CRC32();
+        try (FileOutputStream outputStream = new FileOutputStream(indexFile)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(outputStream, crc)));
+            output.writeInt(INDEX_MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(generation);
+            output.writeLong(log.getEnd());
+            output.writeLong(lastRecord);
+            output.writeInt(lastRecord == NO_RECORD ? 0 : log.readInt(lastRecord + 4));
+            for (long offset : index.offsets()) {
+                if (log.readInt(offset + 12) == TOMBSTONE) {
+                    continue;
+                }
+                byte[] keyBytes = new byte[log.readInt(offset + 8)];
+                log.read(offset + RECORD_HEADER_SIZE, keyBytes, keyBytes.length);
+                output.writeInt(keyBytes.length);
+                output.write(keyBytes);
+                output.writeLong(offset);
+                output.writeInt(log.readInt(offset));
+            }
+            output.writeInt(-1);
+            output.flush();
+            new DataOutputStream(outputStream).writeInt((int) crc.getValue());
+        }
+    }
+
+    private LogContents compact(LogContents contents) throws IOException {
+        LOGGER.debug("Compacting {}, {} of {} bytes are live.", this, contents.liveBytes, contents.end);
+        List<Map.Entry<ByteBuffer, Record>> entries = new ArrayList<>(contents.records.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().offset));
+
+        File compactedFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".compacting");
+        LogContents compacted = new LogContents(ThreadLocalRandom.current().nextLong());
+        try (RandomAccessFile source = new RandomAccessFile(cacheFile, "r");
+             FileOutputStream outputStream = new FileOutputStream(compactedFile)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(compacted.generation);
+            long position = FILE_HEADER_SIZE;
+            for (Map.Entry<ByteBuffer, Record> entry : entries) {
+                Record record = entry.getValue();
+                byte[] bytes = new byte[record.length];
+                source.seek(record.offset);
+                source.readFully(bytes);
+                output.write(bytes);
+                compacted.records.put(entry.getKey(), new Record(position, record.length));
+                compacted.lastRecord = position;
+                position += record.length;
+            }
+            output.flush();
+            outputStream.getFD().sync();
+            compacted.liveBytes = contents.liveBytes;
+            compacted.end = position;
+        }
+        Files.move(compactedFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return compacted;
+    }
+
+    @Override
+    @Nullable
+    public V get(K key) {
+        try {
+            byte[] keyBytes = serializeKey(key);
+            long offset = find(hash(keyBytes), keyBytes);
+            if (offset == LogIndex.NOT_FOUND) {
+                return null;
+            }
+            int valueLength = log.readInt(offset + 12);
+            byte[] value = new byte[valueLength];
+            log.read(offset + RECORD_HEADER_SIZE + keyBytes.length, value, valueLength);
+            return valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(value)));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            append(key, value);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            append(key, null);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    private void append(K key, @Nullable V value) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        outputStream.write(new byte[RECORD_HEADER_SIZE]);
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+        keySerializer.write(encoder, key);
+        encoder.flush();
+        int keyLength = outputStream.size() - RECORD_HEADER_SIZE;
+        if (value != null) {
+            valueSerializer.write(encoder, value);
+            encoder.flush();
+        }
+        byte[] record = outputStream.toByteArray();
+        ByteBuffer header = ByteBuffer.wrap(record);
+        header.putInt(0, record.length);
+        header.putInt(8, keyLength);
+        header.putInt(12, value == null ? TOMBSTONE : record.length - RECORD_HEADER_SIZE - keyLength);
+        CRC32 crc = new CRC32();
+        crc.update(record, 8, record.length - 8);
+        header.putInt(4, (int) crc.getValue());
+
+        byte[] keyBytes = Arrays.copyOfRange(record, RECORD_HEADER_SIZE, RECORD_HEADER_SIZE + keyLength);
+        int hash = hash(keyBytes);
+        Lock lock = writeLocks.getAt(hash & (LOCK_STRIPES - 1));
+        lock.lock();
+        try {
+            if (value == null && find(hash, keyBytes) == LogIndex.NOT_FOUND) {
+                return;
+            }
+            long offset = log.append(record);
+            if (offset > LogIndex.MAX_OFFSET) {
+                throw new IOException("Maximum size of the log exceeded.");
+            }
+            index.put(hash, offset, candidate -> hasKey(candidate, keyBytes));
+            lastRecord.accumulateAndGet(offset, Math::max);
+            modified = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        LOGGER.debug("Closing {}", this);
+        try {
+            try {
+                if (modified || !indexFileUpToDate) {
+                    // The index file must not refer to records that haven't been written yet
+                    log.force();
+                    writeIndexFile();
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Could not write index file of {}.", this, e);
+                indexFile.delete();
+            } finally {
+                log.close();
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] serializeKey(K key) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+        keySerializer.write(encoder, key);
+        encoder.flush();
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Returns the offset of the record holding the current value for the given key, or {@link LogIndex#NOT_FOUND} when there is none.
+     */
+    private long find(int hash, byte[] keyBytes) {
+        long offset = index.get(hash, candidate -> hasKey(candidate, keyBytes));
+        if (offset == LogIndex.NOT_FOUND || log.readInt(offset + 12) == TOMBSTONE) {
+            return LogIndex.NOT_FOUND;
+        }
+        return offset;
+    }
+
+    private boolean hasKey(long offset, byte[] keyBytes) {
+        if (log.readInt(offset + 8) != keyBytes.length) {
+            return false;
+        }
+        byte[] candidate = new byte[keyBytes.length];
+        log.read(offset + RECORD_HEADER_SIZE, candidate, candidate.length);
+        return Arrays.equals(candidate, keyBytes);
+    }
+
+    private int hashOfRecord(long offset) {
+        byte[] keyBytes = new byte[log.readInt(offset + 8)];
+        log.read(offset + RECORD_HEADER_SIZE, keyBytes, keyBytes.length);
+        return hash(keyBytes);
+    }
+
+    private static int hash(byte[] keyBytes) {
+        int hash = Arrays.hashCode(keyBytes) * 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static class LogContents {
+        final long generation;
+        final Map<ByteBuffer, Record> records = new HashMap<>();
+        long liveBytes;
+        long end = FILE_HEADER_SIZE;
+        long lastRecord = NO_RECORD;
+        // Whether the index file describes exactly these contents
+        boolean upToDate;
+
+        LogContents(long generation) {
+            this.generation = generation;
+        }
+
+        long getGarbageBytes() {
+            return end - FILE_HEADER_SIZE - liveBytes;
+        }
+    }
+
+    private static class Record {
+        final long offset;
+        final int length;
+
+        Record(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
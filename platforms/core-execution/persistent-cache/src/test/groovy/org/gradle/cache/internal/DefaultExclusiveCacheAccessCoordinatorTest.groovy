@@ -742,6 +742,20 @@ class DefaultExclusiveCacheAccessCoordinatorTest extends ConcurrentSpec {
         access?.close()
     }
 
+    def "throws InvalidCacheReuseException when cache storage differs"() {
+        def access = newAccess(OnDemand)
+
+        when:
+        access.newCache(IndexedCacheParameters.of('cache', String.class, Integer.class))
+        access.newCache(IndexedCacheParameters.of('cache', String.class, Integer.class).withStorage(IndexedCacheParameters.Storage.MAPPED_LOG))
+
+        then:
+        thrown(DefaultCacheCoordinator.InvalidCacheReuseException)
+
+        cleanup:
+        access?.close()
+    }
+
     def "throws InvalidCacheReuseException when cache decorator differs"() {
         def access = newAccess(OnDemand)
         def decorator = Mock(CacheDecorator)
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.mmap
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class MappedLogIndexedCacheTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    final serializerFactory = new BaseSerializerFactory()
+    TestFile cacheFile
+    MappedLogIndexedCache<String, String> cache
+
+    def setup() {
+        cacheFile = tmpDir.file("cache.log")
+    }
+
+    def cleanup() {
+        cache?.close()
+    }
+
+    def "returns null for unknown entries"() {
+        given:
+        openCache()
+
+        expect:
+        cache.get("unknown") == null
+    }
+
+    def "persists added, updated and removed entries"() {
+        given:
+        openCache()
+
+        when:
+        (0..<100).each { cache.put("key-$it".toString(), "value-$it".toString()) }
+        (0..<100).step(2) { cache.put("key-$it".toString(), "updated-$it".toString()) }
+        (0..<100).step(10) { cache.remove("key-$it".toString()) }
+
+        then:
+        assertEntries()
+
+        when:
+        reopenCache()
+
+        then:
+        assertEntries()
+    }
+
+    def "stores values that span multiple mapped segments"() {
+        given:
+        openCache()
+        def value = "x" * (MappedLog.SEGMENT_SIZE + 100)
+
+        when:
+        cache.put("small", "value")
+        cache.put("large", value)
+        reopenCache()
+
+        then:
+        cache.get("small") == "value"
+        cache.get("large") == value
+    }
+
+    def "discards incomplete records at the end of the log"() {
+        given:
+        openCache()
+        cache.put("complete", "value")
+        cache.put("incomplete", "value")
+        cache.close()
+
+        when:
+        def length = lengthWithoutTrailingZeros()
+        new RandomAccessFile(cacheFile, "rw").withCloseable { it.setLength(length - 1) }
+        openCache()
+
+        then:
+        cache.get("complete") == "value"
+        cache.get("incomplete") == null
+
+        when:
+        cache.put("next", "value")
+        reopenCache()
+
+        then:
+        cache.get("complete") == "value"
+        cache.get("incomplete") == null
+        cache.get("next") == "value"
+    }
+
+    def "discards log with unexpected format"() {
+        given:
+        cacheFile.text = "not a log file"
+
+        when:
+        openCache()
+        cache.put("key", "value")
+        reopenCache()
+
+        then:
+        cache.get("key") == "value"
+    }
+
+    def "compacts log when most records are superseded"() {
+        given:
+        openCache()
+        def value = "x" * 1024
+        (0..<2000).each { cache.put("key-${it % 10}".toString(), value + it) }
+        cache.close()
+        def lengthBeforeCompaction = lengthWithoutTrailingZeros()
+
+        when:
+        openCache()
+
+        then:
+        lengthWithoutTrailingZeros() < lengthBeforeCompaction / 100
+        (1990..<2000).every { cache.get("key-${it % 10}".toString()) == value + it }
+    }
+
+    def "scans records that were appended after the index file was written"() {
+        given:
+        openCache()
+        cache.put("indexed", "value")
+        reopenCache()
+        def indexFile = tmpDir.file("cache.log.index")
+        def staleIndex = indexFile.bytes
+
+        when:
+        cache.put("appended", "value")
+        cache.remove("indexed")
+        cache.close()
+        indexFile.bytes = staleIndex
+        openCache()
+
+        then:
+        cache.get("indexed") == null
+        cache.get("appended") == "value"
+    }
+
+    def "ignores index file that does not match the log"() {
+        given:
+        openCache()
+        cache.put("key", "value")
+        cache.close()
+        def indexFile = tmpDir.file("cache.log.index")
+        def index = indexFile.bytes
+
+        when:
+        cacheFile.delete()
+        openCache()
+        cache.put("other", "value")
+        cache.close()
+        indexFile.bytes = index
+        openCache()
+
+        then:
+        cache.get("key") == null
+        cache.get("other") == "value"
+
+        when:
+        cache.close()
+        indexFile.bytes = [1, 2, 3, 4, 5] as byte[]
+        openCache()
+
+        then:
+        cache.get("other") == "value"
+    }
+
+    def "supports concurrent readers and writers"() {
+        given:
+        openCache()
+        def executor = Executors.newFixedThreadPool(8)
+
+        when:
+        def futures = (0..<8).collect { thread ->
+            executor.submit {
+                (0..<2000).each {
+                    def key = "key-$thread-$it".toString()
+                    cache.put(key, "value-$it".toString())
+                    assert cache.get(key) == "value-$it"
+                }
+            }
+        }
+        futures*.get()
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+        reopenCache()
+
+        then:
+        (0..<8).every { thread -> (0..<2000).every { cache.get("key-$thread-$it".toString()) == "value-$it" } }
+    }
+
+    private void assertEntries() {
+        (0..<100).each {
+            def expected = it % 10 == 0 ? null : it % 2 == 0 ? "updated-$it" : "value-$it"
+            assert cache.get("key-$it".toString()) == expected
+        }
+    }
+
+    private void openCache() {
+        cache = new MappedLogIndexedCache<String, String>(cacheFile, serializerFactory.getSerializerFor(String), serializerFactory.getSerializerFor(String))
+    }
+
+    private void reopenCache() {
+        cache.close()
+        openCache()
+    }
+
+    /**
+     * The log is mapped in whole segments, so the file has trailing zeros after the last record.
+     */
+    private long lengthWithoutTrailingZeros() {
+        def bytes = cacheFile.bytes
+        def length = bytes.length
+        while (length > 0 && bytes[length - 1] == 0) {
+            length--
+        }
+        return length
+    }
+}
@@ -17,6 +17,7 @@
 package org.gradle.internal.snapshot.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Interner;
@@ -56,17 +57,27 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import static org.gradle.internal.snapshot.DirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS;
 
 /**
  * For creating {@link DirectorySnapshot}s of directories.
+ *
+ * When a {@link ForkJoinPool} is provided, unfiltered snapshots are taken in parallel:
+ * sub-directories are walked as separate fork-join tasks and regular files are hashed in batches on the pool.
+ * The results are merged by the same {@link org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder},
+ * so the produced snapshots are identical to the ones produced by a sequential walk.
  */
 public class DirectorySnapshotter {
     private static final EnumSet<FileVisitOption> DONT_FOLLOW_SYMLINKS = EnumSet.noneOf(FileVisitOption.class);
+    private static final int FILE_HASHING_BATCH_SIZE = 64;
     private static final SymbolicLinkMapping EMPTY_SYMBOLIC_LINK_MAPPING = new SymbolicLinkMapping() {
 
         @Override
@@ -89,12 +100,28 @@ public Iterable<String> getRemappedSegments(Iterable<String> segments) {
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
     private final DirectorySnapshotterStatistics.Collector collector;
+    @Nullable
+    private final ForkJoinPool parallelSnapshottingPool;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector) {
+        this(hasher, stringInterner, defaultExcludes, collector, null);
+    }
+
+    /**
+     * @param parallelSnapshottingPool the pool to walk and hash directory trees on, or {@code null} to walk directory trees sequentially.
+     */
+    public DirectorySnapshotter(
+        FileHasher hasher,
+        Interner<String> stringInterner,
+        Collection<String> defaultExcludes,
+        DirectorySnapshotterStatistics.Collector collector,
+        @Nullable ForkJoinPool parallelSnapshottingPool
+    ) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
         this.collector = collector;
+        this.parallelSnapshottingPool = parallelSnapshottingPool;
     }
 
     /**
@@ -112,6 +139,8 @@ public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner,
      * For example, if an element of a directory is filtered out, the consumer will receive all the non-filtered out
      * file snapshots and all the non-filtered directory snapshots in the directory.
      * @return The (possible filtered) snapshot of the directory.
+     *
+     * Filtered snapshots are always taken sequentially, since the order in which the predicate is consulted is observable.
      */
     public FileSystemLocationSnapshot snapshot(
         String absolutePath,
@@ -119,18 +148,27 @@ public FileSystemLocationSnapshot snapshot(
         Map<String, ? extends FileSystemLocationSnapshot> previouslyKnownSnapshots,
         Consumer<FileSystemLocationSnapshot> unfilteredSnapshotRecorder
     ) {
+        AtomicBoolean hasBeenFiltered = new AtomicBoolean();
+        Path rootPath = Paths.get(absolutePath);
+        boolean parallel = parallelSnapshottingPool != null && predicate == null;
+        PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, previouslyKnownSnapshots, unfilteredSnapshotRecorder, parallel);
+        if (parallel) {
+            parallelSnapshottingPool.invoke(ForkJoinTask.adapt(() -> walk(rootPath, visitor)));
+        } else {
+            walk(rootPath, visitor);
+        }
+        FileSystemLocationSnapshot result = visitor.getResult();
+        if (!hasBeenFiltered.get()) {
+            unfilteredSnapshotRecorder.accept(result);
+        }
+        return result;
+    }
+
+    private static void walk(Path rootPath, PathVisitor visitor) {
         try {
-            AtomicBoolean hasBeenFiltered = new AtomicBoolean();
-            Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, previouslyKnownSnapshots, unfilteredSnapshotRecorder);
             Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
-            FileSystemLocationSnapshot result = visitor.getResult();
-            if (!hasBeenFiltered.get()) {
-                unfilteredSnapshotRecorder.accept(result);
-            }
-            return result;
         } catch (IOException e) {
-            throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", absolutePath), e);
+            throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", rootPath), e);
         }
     }
 
@@ -266,6 +304,8 @@ private static class PathVisitor extends DirectorySnapshotterStatistics.Collecti
         private final Set<FileSystemLocationSnapshot> filteredDirectorySnapshots = new HashSet<>();
         private final ImmutableMap<String, ? extends FileSystemLocationSnapshot> previouslyKnownSnapshots;
         private final Consumer<FileSystemLocationSnapshot> unfilteredSnapshotRecorder;
+        private final boolean parallel;
+        private final Deque<PendingChildren> pendingChildren = new ArrayDeque<>();
 
         public PathVisitor(
             @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
@@ -276,7 +316,8 @@ public PathVisitor(
             DirectorySnapshotterStatistics.Collector statisticsCollector,
             SymbolicLinkMapping symbolicLinkMapping,
             Map<String, ? extends FileSystemLocationSnapshot> previouslyKnownSnapshots,
-            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotRecorder
+            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotRecorder,
+            boolean parallel
         ) {
             super(statisticsCollector);
             this.builder = FilteredTrackingMerkleDirectorySnapshotBuilder.sortingRequired(this::recordUnfilteredSnapshot);
@@ -288,6 +329,27 @@ public PathVisitor(
             this.symbolicLinkMapping = symbolicLinkMapping;
             this.previouslyKnownSnapshots = ImmutableMap.copyOf(previouslyKnownSnapshots);
             this.unfilteredSnapshotRecorder = unfilteredSnapshotRecorder;
+            this.parallel = parallel;
+        }
+
+        /**
+         * Creates a visitor for a sub-directory of the directory currently visited by {@code parent}, to be walked in a separate fork-join task.
+         *
+         * The relative path is tracked from the sub-directory, which is fine since it is only used for filtering and filtered snapshots are never taken in parallel.
+         */
+        private PathVisitor(PathVisitor parent) {
+            super(parent.collector, true);
+            this.builder = FilteredTrackingMerkleDirectorySnapshotBuilder.sortingRequired(this::recordUnfilteredSnapshot);
+            this.predicate = parent.predicate;
+            this.hasBeenFiltered = parent.hasBeenFiltered;
+            this.hasher = parent.hasher;
+            this.stringInterner = parent.stringInterner;
+            this.defaultExcludes = parent.defaultExcludes;
+            this.symbolicLinkMapping = parent.symbolicLinkMapping;
+            this.previouslyKnownSnapshots = parent.previouslyKnownSnapshots;
+            this.unfilteredSnapshotRecorder = parent.unfilteredSnapshotRecorder;
+            this.parallel = true;
+            this.parentDirectories.addAll(parent.parentDirectories);
         }
 
         private void recordUnfilteredSnapshot(FileSystemLocationSnapshot snapshot) {
@@ -315,8 +377,23 @@ protected FileVisitResult doPreVisitDirectory(Path dir, BasicFileAttributes attr
                     }
                 }
 
+                if (parallel && !pendingChildren.isEmpty()) {
+                    // Walk the sub-directory in a separate task, the result is merged when leaving the parent directory
+                    pathTracker.leave();
+                    PathVisitor subtreeVisitor = new PathVisitor(this);
+                    pendingChildren.getFirst().fork(() -> {
+                        walk(dir, subtreeVisitor);
+                        FileSystemLocationSnapshot subtreeSnapshot = subtreeVisitor.getResult();
+                        return subtreeSnapshot == null ? ImmutableList.of() : ImmutableList.of(subtreeSnapshot);
+                    });
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
                 builder.enterDirectory(AccessType.DIRECT, internedRemappedAbsolutePath, fileName, INCLUDE_EMPTY_DIRS);
                 parentDirectories.addFirst(dir.toString());
+                if (parallel) {
+                    pendingChildren.addFirst(new PendingChildren());
+                }
                 return FileVisitResult.CONTINUE;
             } else {
                 pathTracker.leave();
@@ -333,6 +410,9 @@ protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             if (isNotFileSystemLoopException(exc)) {
                 throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), exc);
             }
+            if (parallel) {
+                pendingChildren.removeFirst().joinInto(builder);
+            }
             boolean currentLevelComplete = builder.isCurrentLevelUnfiltered();
             FileSystemLocationSnapshot currentLevel = builder.leaveDirectory();
             if (!currentLevelComplete) {
@@ -395,7 +475,8 @@ private DirectorySnapshot followSymlink(Path file, String internedFileName, Atom
                         collector,
                         symbolicLinkMapping.withNewMapping(file.toString(), targetDirString, pathTracker),
                         previouslyKnownSnapshots,
-                        unfilteredSnapshotRecorder);
+                        unfilteredSnapshotRecorder,
+                        parallel);
                     Files.walkFileTree(targetDir, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, subtreeVisitor);
                     return (DirectorySnapshot) subtreeVisitor.getResult();
                 } else {
@@ -413,7 +494,12 @@ private boolean introducesCycle(String targetDirString) {
         private void visitResolvedFile(Path file, BasicFileAttributes targetAttributes, AccessType accessType) {
             String internedName = intern(file.getFileName().toString());
             if (shouldVisitFile(file, internedName)) {
-                builder.visitLeafElement(snapshotFile(file, internedName, targetAttributes, accessType));
+                if (parallel && !pendingChildren.isEmpty()) {
+                    // Hashing is the expensive part of snapshotting a file, so we do it in batches on the fork-join pool
+                    pendingChildren.getFirst().addFile(() -> snapshotFile(file, internedName, targetAttributes, accessType));
+                } else {
+                    builder.visitLeafElement(snapshotFile(file, internedName, targetAttributes, accessType));
+                }
             }
         }
 
@@ -521,4 +607,53 @@ public FileSystemLocationSnapshot getResult() {
             return builder.getResult();
         }
     }
+
+    /**
+     * The children of a directory which are being snapshotted in parallel by fork-join tasks.
+     */
+    private static class PendingChildren {
+        private final List<ForkJoinTask<List<FileSystemLocationSnapshot>>> tasks = new ArrayList<>();
+        private List<Supplier<FileSystemLeafSnapshot>> fileBatch = new ArrayList<>(FILE_HASHING_BATCH_SIZE);
+
+        public void fork(Callable<List<FileSystemLocationSnapshot>> task) {
+            tasks.add(ForkJoinTask.adapt(task).fork());
+        }
+
+        public void addFile(Supplier<FileSystemLeafSnapshot> fileSnapshotter) {
+            fileBatch.add(fileSnapshotter);
+            if (fileBatch.size() == FILE_HASHING_BATCH_SIZE) {
+                List<Supplier<FileSystemLeafSnapshot>> batch = fileBatch;
+                fileBatch = new ArrayList<>(FILE_HASHING_BATCH_SIZE);
+                fork(() -> snapshotFiles(batch));
+            }
+        }
+
+        /**
+         * Waits for all the children to be snapshotted and adds them to the builder.
+         * The builder sorts the children, so the order in which the tasks finish does not matter.
+         */
+        public void joinInto(FilteredTrackingMerkleDirectorySnapshotBuilder builder) {
+            List<FileSystemLocationSnapshot> remainingFiles = snapshotFiles(fileBatch);
+            for (ForkJoinTask<List<FileSystemLocationSnapshot>> task : tasks) {
+                task.join().forEach(snapshot -> visitChild(snapshot, builder));
+            }
+            remainingFiles.forEach(snapshot -> visitChild(snapshot, builder));
+        }
+
+        private static List<FileSystemLocationSnapshot> snapshotFiles(List<Supplier<FileSystemLeafSnapshot>> batch) {
+            List<FileSystemLocationSnapshot> snapshots = new ArrayList<>(batch.size());
+            for (Supplier<FileSystemLeafSnapshot> fileSnapshotter : batch) {
+                snapshots.add(fileSnapshotter.get());
+            }
+            return snapshots;
+        }
+
+        private static void visitChild(FileSystemLocationSnapshot snapshot, FilteredTrackingMerkleDirectorySnapshotBuilder builder) {
+            if (snapshot instanceof DirectorySnapshot) {
+                builder.visitDirectory((DirectorySnapshot) snapshot);
+            } else {
+                builder.visitLeafElement((FileSystemLeafSnapshot) snapshot);
+            }
+        }
+    }
 }
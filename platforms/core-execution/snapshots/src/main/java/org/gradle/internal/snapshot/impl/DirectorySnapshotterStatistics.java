@@ -105,15 +105,31 @@ public String toString() {
 
     abstract class CollectingFileVisitor implements FileVisitor<Path> {
         protected final Collector collector;
+        private boolean rootDirectoryAlreadyRecorded;
 
         public CollectingFileVisitor(Collector collector) {
+            this(collector, false);
+        }
+
+        /**
+         * @param subtreeOfRecordedHierarchy whether this visitor walks a subtree of a hierarchy which has already been recorded,
+         * in which case neither the hierarchy nor the root directory of the walk are recorded again.
+         */
+        protected CollectingFileVisitor(Collector collector, boolean subtreeOfRecordedHierarchy) {
             this.collector = collector;
-            collector.recordVisitHierarchy();
+            this.rootDirectoryAlreadyRecorded = subtreeOfRecordedHierarchy;
+            if (!subtreeOfRecordedHierarchy) {
+                collector.recordVisitHierarchy();
+            }
         }
 
         @Override
         public final FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-            collector.recordVisitDirectory();
+            if (rootDirectoryAlreadyRecorded) {
+                rootDirectoryAlreadyRecorded = false;
+            } else {
+                collector.recordVisitDirectory();
+            }
             return doPreVisitDirectory(dir, attrs);
         }
 
@@ -42,6 +42,7 @@ import spock.lang.Issue
 import spock.lang.Specification
 
 import java.nio.file.Paths
+import java.util.concurrent.ForkJoinPool
 import java.util.function.Consumer
 
 @UsesNativeServices
@@ -530,6 +531,30 @@ class DirectorySnapshotterTest extends Specification {
         pipe.delete()
     }
 
+    def "parallel snapshot is identical to sequential snapshot"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        (0..<200).each { index ->
+            rootDir.file("dir${index % 7}/sub${index % 3}/file${index}.txt").text = "content ${index}"
+        }
+        rootDir.file("a.txt").text = "root file"
+        rootDir.file("empty").createDir()
+        def pool = new ForkJoinPool(4)
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], statisticsCollector, pool)
+
+        when:
+        def sequentialSnapshot = directorySnapshotter.snapshot(rootDir.absolutePath, null, [:], {})
+        def parallelSnapshot = parallelSnapshotter.snapshot(rootDir.absolutePath, null, [:], unfilteredSubSnapshotsCollector)
+
+        then:
+        parallelSnapshot.hash == sequentialSnapshot.hash
+        SnapshotVisitorUtil.getAbsolutePaths(parallelSnapshot, true) == SnapshotVisitorUtil.getAbsolutePaths(sequentialSnapshot, true)
+        unfilteredSubsnapshots == [parallelSnapshot]
+
+        cleanup:
+        pool.shutdown()
+    }
+
     def "default excludes are correctly parsed"() {
         def defaultExcludes = new DirectorySnapshotter.DefaultExcludes(DirectoryScanner.getDefaultExcludes() as List)
 
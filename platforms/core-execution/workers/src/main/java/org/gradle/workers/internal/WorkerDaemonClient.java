@@ -18,6 +18,7 @@
 
 import org.gradle.api.logging.LogLevel;
 import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.time.Time;
 import org.gradle.process.internal.health.memory.JvmMemoryStatus;
 import org.gradle.process.internal.worker.MultiRequestClient;
 import org.gradle.process.internal.worker.WorkerProcess;
@@ -30,6 +31,8 @@ class WorkerDaemonClient implements Stoppable {
     private final LogLevel logLevel;
     private final ActionExecutionSpecFactory actionExecutionSpecFactory;
     private int uses;
+    private long startupTime;
+    private long lastUsedTime = Time.currentTimeMillis();
     private boolean failed;
     private boolean cannotBeExpired = Boolean.getBoolean(DISABLE_EXPIRATION_PROPERTY_KEY);
 
@@ -67,6 +70,28 @@ public int getUses() {
         return uses;
     }
 
+    /**
+     * Returns the time in milliseconds it took to start this worker daemon.
+     */
+    public long getStartupTime() {
+        return startupTime;
+    }
+
+    public void setStartupTime(long startupTime) {
+        this.startupTime = startupTime;
+    }
+
+    /**
+     * Returns the time at which this worker daemon last finished running work.
+     */
+    public long getLastUsedTime() {
+        return lastUsedTime;
+    }
+
+    public void setLastUsedTime(long lastUsedTime) {
+        this.lastUsedTime = lastUsedTime;
+    }
+
     public KeepAliveMode getKeepAliveMode() {
         return forkOptions.getKeepAliveMode();
     }
@@ -96,6 +121,7 @@ public String toString() {
         return "WorkerDaemonClient{" +
             " log level=" + logLevel +
             ", use count=" + uses +
+            ", startup time=" + startupTime + "ms" +
             ", has failed=" + failed +
             ", can be expired=" + !cannotBeExpired +
             ", workerProcess=" + workerProcess +
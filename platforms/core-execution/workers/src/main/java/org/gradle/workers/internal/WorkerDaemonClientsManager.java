@@ -22,6 +22,8 @@
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.exceptions.DefaultMultiCauseException;
@@ -30,24 +32,37 @@
 import org.gradle.internal.logging.events.OutputEvent;
 import org.gradle.internal.logging.events.OutputEventListener;
 import org.gradle.internal.session.BuildSessionLifecycleListener;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
 import org.gradle.process.internal.health.memory.MemoryManager;
 import org.gradle.process.internal.health.memory.OsMemoryInfo;
 import org.gradle.process.internal.worker.WorkerProcess;
 import org.gradle.util.internal.CollectionUtils;
 
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
-
-import static java.util.Comparator.comparingInt;
+import java.util.Map;
 
 public class WorkerDaemonClientsManager implements Stoppable {
+    /**
+     * The number of worker daemons to start in the background at the start of each build, for the fork options most recently used by previous builds.
+     */
+    public static final String WARM_UP_DAEMONS_PROPERTY_KEY = "org.gradle.workers.internal.warm-up-daemons";
 
     private static final Logger LOGGER = Logging.getLogger(WorkerDaemonClientsManager.class);
+    private static final int MAX_RECENT_FORK_OPTIONS = 16;
 
     private final Object lock = new Object();
     private final List<WorkerDaemonClient> allClients = new ArrayList<WorkerDaemonClient>();
     private final List<WorkerDaemonClient> idleClients = new ArrayList<WorkerDaemonClient>();
+    // Canonical fork options, most recently used first
+    private final Deque<DaemonForkOptions> recentForkOptions = new ArrayDeque<>();
     private final Action<WorkerProcess> workerProcessCleanupAction = new WorkerProcessCleanupAction();
 
     private final WorkerDaemonStarter workerDaemonStarter;
@@ -58,9 +73,19 @@ public class WorkerDaemonClientsManager implements Stoppable {
     private final OutputEventListener logLevelChangeEventListener;
     private final WorkerDaemonExpiration workerDaemonExpiration;
     private final MemoryManager memoryManager;
+    private final ExecutorFactory executorFactory;
+    private final int warmUpDaemons = Integer.getInteger(WARM_UP_DAEMONS_PROPERTY_KEY, 0);
+    private ManagedExecutor warmUpExecutor;
     private volatile LogLevel currentLogLevel;
 
-    public WorkerDaemonClientsManager(WorkerDaemonStarter workerDaemonStarter, ListenerManager listenerManager, LoggingManagerInternal loggingManager, MemoryManager memoryManager, OsMemoryInfo memoryInfo) {
+    // Pool statistics for the current build session
+    private int idleClientsReused;
+    private int newClientsRequested;
+    private int clientsStarted;
+    private int warmClientsStarted;
+    private long totalStartupTime;
+
+    public WorkerDaemonClientsManager(WorkerDaemonStarter workerDaemonStarter, ListenerManager listenerManager, LoggingManagerInternal loggingManager, MemoryManager memoryManager, OsMemoryInfo memoryInfo, ExecutorFactory executorFactory) {
         this.workerDaemonStarter = workerDaemonStarter;
         this.listenerManager = listenerManager;
         this.loggingManager = loggingManager;
@@ -71,46 +96,106 @@ public WorkerDaemonClientsManager(WorkerDaemonStarter workerDaemonStarter, Liste
         loggingManager.addOutputEventListener(logLevelChangeEventListener);
         this.currentLogLevel = loggingManager.getLevel();
         this.memoryManager = memoryManager;
+        this.executorFactory = executorFactory;
         this.workerDaemonExpiration = new WorkerDaemonExpiration(this, getTotalPhysicalMemory());
         memoryManager.addMemoryHolder(workerDaemonExpiration);
     }
 
     // TODO - should supply and check for the same parameters as passed to reserveNewClient()
     public WorkerDaemonClient reserveIdleClient(DaemonForkOptions forkOptions) {
-        return reserveIdleClient(forkOptions, idleClients);
+        WorkerDaemonClient client = reserveIdleClient(forkOptions, idleClients);
+        if (client != null) {
+            synchronized (lock) {
+                idleClientsReused++;
+            }
+        }
+        return client;
     }
 
+    /**
+     * Reserves the compatible client that uses the least memory, so that larger daemons remain available for work that needs them.
+     */
+    @Nullable
     WorkerDaemonClient reserveIdleClient(DaemonForkOptions forkOptions, List<WorkerDaemonClient> clients) {
         synchronized (lock) {
+            WorkerDaemonClient bestFit = null;
+            long bestFitMemoryUsage = -1;
             Iterator<WorkerDaemonClient> it = clients.iterator();
             while (it.hasNext()) {
                 WorkerDaemonClient candidate = it.next();
                 if (candidate.isCompatibleWith(forkOptions)) {
-                    it.remove();
                     if (candidate.getLogLevel() != currentLogLevel) {
                         // TODO: Send a message to workers to change their log level rather than stopping
+                        it.remove();
                         LOGGER.info("Log level has changed, stopping idle worker daemon with out-of-date log level.");
                         candidate.stop();
+                    } else if (bestFit == null) {
+                        bestFit = candidate;
                     } else {
-                        return candidate;
+                        if (bestFitMemoryUsage < 0) {
+                            bestFitMemoryUsage = workerDaemonExpiration.getMemoryUsage(bestFit);
+                        }
+                        long memoryUsage = workerDaemonExpiration.getMemoryUsage(candidate);
+                        if (memoryUsage < bestFitMemoryUsage) {
+                            bestFit = candidate;
+                            bestFitMemoryUsage = memoryUsage;
+                        }
                     }
                 }
             }
-            return null;
+            if (bestFit != null) {
+                clients.remove(bestFit);
+            }
+            return bestFit;
         }
     }
 
     public WorkerDaemonClient reserveNewClient(DaemonForkOptions forkOptions) {
+        DaemonForkOptions canonicalForkOptions;
+        synchronized (lock) {
+            newClientsRequested++;
+            canonicalForkOptions = canonicalize(forkOptions);
+        }
+        return startClient(canonicalForkOptions);
+    }
+
+    private WorkerDaemonClient startClient(DaemonForkOptions forkOptions) {
         //allow the daemon to be started concurrently
+        Timer clock = Time.startTimer();
         WorkerDaemonClient client = workerDaemonStarter.startDaemon(forkOptions, workerProcessCleanupAction);
+        long startupTime = clock.getElapsedMillis();
+        client.setStartupTime(startupTime);
         synchronized (lock) {
             allClients.add(client);
+            clientsStarted++;
+            totalStartupTime += startupTime;
         }
         return client;
     }
 
+    /**
+     * Returns a previously seen instance of fork options that is equivalent to the given options, so that daemons started for equivalent options share a single definition.
+     */
+    private DaemonForkOptions canonicalize(DaemonForkOptions forkOptions) {
+        Iterator<DaemonForkOptions> it = recentForkOptions.iterator();
+        while (it.hasNext()) {
+            DaemonForkOptions candidate = it.next();
+            if (candidate.isCompatibleWith(forkOptions) && forkOptions.isCompatibleWith(candidate)) {
+                it.remove();
+                recentForkOptions.addFirst(candidate);
+                return candidate;
+            }
+        }
+        recentForkOptions.addFirst(forkOptions);
+        if (recentForkOptions.size() > MAX_RECENT_FORK_OPTIONS) {
+            recentForkOptions.removeLast();
+        }
+        return forkOptions;
+    }
+
     public void release(WorkerDaemonClient client) {
         synchronized (lock) {
+            client.setLastUsedTime(Time.currentTimeMillis());
             if (!client.isFailed()) {
                 idleClients.add(client);
             }
@@ -119,6 +204,15 @@ public void release(WorkerDaemonClient client) {
 
     @Override
     public void stop() {
+        ManagedExecutor warmUpExecutor;
+        synchronized (lock) {
+            warmUpExecutor = this.warmUpExecutor;
+            this.warmUpExecutor = null;
+        }
+        // Wait for daemons that are being warmed up outside the lock, as they need the lock to register themselves
+        if (warmUpExecutor != null) {
+            warmUpExecutor.stop();
+        }
         synchronized (lock) {
             stopWorkers(allClients);
             allClients.clear();
@@ -130,6 +224,19 @@ public void stop() {
         loggingManager.removeOutputEventListener(logLevelChangeEventListener);
     }
 
+    /**
+     * Returns the memory used by all worker daemons, including those that are running work.
+     */
+    public long getMemoryUsage() {
+        synchronized (lock) {
+            long memoryUsage = 0;
+            for (WorkerDaemonClient client : allClients) {
+                memoryUsage += workerDaemonExpiration.getMemoryUsage(client);
+            }
+            return memoryUsage;
+        }
+    }
+
     private long getTotalPhysicalMemory() {
         try {
             return memoryInfo.getOsSnapshot().getPhysicalMemory().getTotal();
@@ -145,7 +252,12 @@ private long getTotalPhysicalMemory() {
      */
     public void selectIdleClientsToStop(Transformer<List<WorkerDaemonClient>, List<WorkerDaemonClient>> selectionFunction) {
         synchronized (lock) {
-            List<WorkerDaemonClient> sortedClients = CollectionUtils.sort(idleClients, comparingInt(WorkerDaemonClient::getUses));
+            long now = Time.currentTimeMillis();
+            Map<WorkerDaemonClient, Double> evictionScores = new IdentityHashMap<>();
+            for (WorkerDaemonClient client : idleClients) {
+                evictionScores.put(client, evictionScore(client, now));
+            }
+            List<WorkerDaemonClient> sortedClients = CollectionUtils.sort(idleClients, Comparator.<WorkerDaemonClient>comparingDouble(evictionScores::get).reversed());
             List<WorkerDaemonClient> clientsToStop = selectionFunction.transform(new ArrayList<>(sortedClients));
             if (!clientsToStop.isEmpty()) {
                 stopWorkers(clientsToStop);
@@ -153,6 +265,74 @@ public void selectIdleClientsToStop(Transformer<List<WorkerDaemonClient>, List<W
         }
     }
 
+    /**
+     * Idle clients that hold a lot of memory, have been idle for a long time, are seldom used and are quick to restart are the cheapest to stop, and have the highest score.
+     */
+    private double evictionScore(WorkerDaemonClient client, long now) {
+        long idleTime = Math.max(0, now - client.getLastUsedTime());
+        long memoryUsage = workerDaemonExpiration.getMemoryUsage(client);
+        return (double) (idleTime + 1) * (memoryUsage + 1) / ((double) (client.getStartupTime() + 1) * (client.getUses() + 1));
+    }
+
+    /**
+     * Starts worker daemons in the background for the most recently used fork options that have no idle daemon.
+     */
+    private void startWarmClients() {
+        synchronized (lock) {
+            List<DaemonForkOptions> toWarmUp = new ArrayList<>();
+            for (DaemonForkOptions forkOptions : recentForkOptions) {
+                if (toWarmUp.size() == warmUpDaemons) {
+                    break;
+                }
+                if (!hasIdleClientFor(forkOptions)) {
+                    toWarmUp.add(forkOptions);
+                }
+            }
+            if (toWarmUp.isEmpty()) {
+                return;
+            }
+            if (warmUpExecutor == null) {
+                warmUpExecutor = executorFactory.create("Worker daemon warm-up");
+            }
+            LOGGER.debug("Starting {} warm worker daemon(s).", toWarmUp.size());
+            for (DaemonForkOptions forkOptions : toWarmUp) {
+                warmUpExecutor.execute(() -> {
+                    try {
+                        WorkerDaemonClient client = startClient(forkOptions);
+                        synchronized (lock) {
+                            warmClientsStarted++;
+                        }
+                        release(client);
+                    } catch (Exception e) {
+                        LOGGER.info("Could not start warm worker daemon with fork options {}.", forkOptions, e);
+                    }
+                });
+            }
+        }
+    }
+
+    private boolean hasIdleClientFor(DaemonForkOptions forkOptions) {
+        for (WorkerDaemonClient client : idleClients) {
+            if (client.getLogLevel() == currentLogLevel && client.isCompatibleWith(forkOptions)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reportPoolStatistics() {
+        int requests = idleClientsReused + newClientsRequested;
+        if (requests > 0 || clientsStarted > 0) {
+            LOGGER.info("Worker daemon pool: {} of {} request(s) reused an idle worker daemon ({}% hit rate), {} worker daemon(s) started ({} warm) in {}ms.",
+                idleClientsReused, requests, requests == 0 ? 0 : idleClientsReused * 100 / requests, clientsStarted, warmClientsStarted, totalStartupTime);
+        }
+        idleClientsReused = 0;
+        newClientsRequested = 0;
+        clientsStarted = 0;
+        warmClientsStarted = 0;
+        totalStartupTime = 0;
+    }
+
     private void stopWorkers(List<WorkerDaemonClient> clientsToStop) {
         if (clientsToStop.size() > 0) {
             int clientCount = clientsToStop.size();
@@ -180,9 +360,17 @@ private void stopWorkers(List<WorkerDaemonClient> clientsToStop) {
     }
 
     private class StopSessionScopedWorkers implements BuildSessionLifecycleListener {
+        @Override
+        public void afterStart() {
+            if (warmUpDaemons > 0) {
+                startWarmClients();
+            }
+        }
+
         @Override
         public void beforeComplete() {
             synchronized (lock) {
+                reportPoolStatistics();
                 List<WorkerDaemonClient> sessionScopedClients = CollectionUtils.filter(allClients, client -> client.getKeepAliveMode() == KeepAliveMode.SESSION);
                 stopWorkers(sessionScopedClients);
             }
@@ -49,6 +49,38 @@ public long attemptToRelease(long memoryAmountBytes) throws IllegalArgumentExcep
         return selector.getReleasedBytes();
     }
 
+    /**
+     * Returns the memory used by the given worker daemon, or an approximation when the daemon has not reported it.
+     */
+    long getMemoryUsage(WorkerDaemonClient client) {
+        // prefer to use the actual memory usage reported by the worker
+        try {
+            return client.getJvmMemoryStatus().getCommittedMemory();
+        } catch (UnsupportedOperationException e) {
+            // This means the client does not support reporting jvm memory info
+        } catch (IllegalStateException e) {
+            // This means the client has not reported memory usage yet
+        }
+
+        // if the worker has not reported memory usage yet for some reason, or does not support it,
+        // use the max heap as an approximation
+        String forkOptionsMaxHeapSize = client.getForkOptions().getJavaForkOptions().getMaxHeapSize();
+        long parsed = MemoryAmount.parseNotation(forkOptionsMaxHeapSize);
+        if (parsed != -1) {
+            // From fork options
+            return parsed;
+        }
+
+        // If we don't know what the max heap is, approximate it based on OS total memory
+        // according to JVM documentation
+        if (osTotalMemory != -1) {
+            return new MaximumHeapHelper().getDefaultMaximumHeapSize(osTotalMemory);
+        }
+
+        // If we get here, we have no idea how much memory the worker is using
+        return 0;
+    }
+
     /**
      * Simple implementation of memory based expiration.
      *
@@ -93,34 +125,5 @@ public List<WorkerDaemonClient> transform(List<WorkerDaemonClient> idleClients)
             }
             return toExpire;
         }
-
-        private long getMemoryUsage(WorkerDaemonClient idleClient) {
-            // prefer to use the actual memory usage reported by the worker
-            try {
-                return idleClient.getJvmMemoryStatus().getCommittedMemory();
-            } catch (UnsupportedOperationException e) {
-                // This means the client does not support reporting jvm memory info
-            } catch (IllegalStateException e) {
-                // This means the client has not reported memory usage yet
-            }
-
-            // if the worker has not reported memory usage yet for some reason, or does not support it,
-            // use the max heap as an approximation
-            String forkOptionsMaxHeapSize = idleClient.getForkOptions().getJavaForkOptions().getMaxHeapSize();
-            long parsed = MemoryAmount.parseNotation(forkOptionsMaxHeapSize);
-            if (parsed != -1) {
-                // From fork options
-                return parsed;
-            }
-
-            // If we don't know what the max heap is, approximate it based on OS total memory
-            // according to JVM documentation
-            if (osTotalMemory != -1) {
-                return new MaximumHeapHelper().getDefaultMaximumHeapSize(osTotalMemory);
-            }
-
-            // If we get here, we have no idea how much memory the worker is using
-            return 0;
-        }
     }
 }
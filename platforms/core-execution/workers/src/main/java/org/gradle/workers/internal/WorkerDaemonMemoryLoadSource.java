@@ -0,0 +1,61 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.workers.internal;
+
+import org.gradle.internal.work.WorkerLoadSource;
+import org.gradle.process.internal.health.memory.OsMemoryInfo;
+import org.gradle.process.internal.health.memory.OsMemoryStatusAspect;
+
+/**
+ * Reports the share of the memory available to worker daemons that is used by the running worker daemons, relative to {@link #TARGET_MEMORY_SHARE}.
+ * The available memory is the memory used by the worker daemons plus the free physical memory.
+ */
+public class WorkerDaemonMemoryLoadSource implements WorkerLoadSource {
+    /**
+     * The share of the available memory that worker daemons can use before the machine is considered to be overloaded.
+     */
+    static final double TARGET_MEMORY_SHARE = 0.75;
+
+    private final WorkerDaemonClientsManager clientsManager;
+    private final OsMemoryInfo memoryInfo;
+
+    public WorkerDaemonMemoryLoadSource(WorkerDaemonClientsManager clientsManager, OsMemoryInfo memoryInfo) {
+        this.clientsManager = clientsManager;
+        this.memoryInfo = memoryInfo;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "worker daemon memory";
+    }
+
+    @Override
+    public double getLoad() {
+        long memoryUsage = clientsManager.getMemoryUsage();
+        if (memoryUsage == 0) {
+            return 0;
+        }
+        OsMemoryStatusAspect.Available physicalMemory;
+        try {
+            physicalMemory = memoryInfo.getOsSnapshot().getPhysicalMemory();
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+        double share = (double) memoryUsage / (memoryUsage + physicalMemory.getFree());
+        return share / TARGET_MEMORY_SHARE;
+    }
+}
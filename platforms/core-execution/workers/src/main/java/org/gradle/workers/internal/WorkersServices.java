@@ -84,8 +84,13 @@ WorkerDaemonClientsManager createWorkerDaemonClientsManager(WorkerProcessFactory
                                                                     MemoryManager memoryManager,
                                                                     OsMemoryInfo memoryInfo,
                                                                     ClassPathRegistry classPathRegistry,
-                                                                    ActionExecutionSpecFactory actionExecutionSpecFactory) {
-            return new WorkerDaemonClientsManager(new WorkerDaemonStarter(workerFactory, loggingManager, classPathRegistry, actionExecutionSpecFactory), listenerManager, loggingManager, memoryManager, memoryInfo);
+                                                                    ActionExecutionSpecFactory actionExecutionSpecFactory,
+                                                                    ExecutorFactory executorFactory) {
+            return new WorkerDaemonClientsManager(new WorkerDaemonStarter(workerFactory, loggingManager, classPathRegistry, actionExecutionSpecFactory), listenerManager, loggingManager, memoryManager, memoryInfo, executorFactory);
+        }
+
+        WorkerDaemonMemoryLoadSource createWorkerDaemonMemoryLoadSource(WorkerDaemonClientsManager workerDaemonClientsManager, OsMemoryInfo memoryInfo) {
+            return new WorkerDaemonMemoryLoadSource(workerDaemonClientsManager, memoryInfo);
         }
 
         ClassLoaderStructureProvider createClassLoaderStructureProvider(ClassLoaderRegistry classLoaderRegistry) {
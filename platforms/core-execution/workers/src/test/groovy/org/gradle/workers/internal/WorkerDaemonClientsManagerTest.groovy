@@ -18,6 +18,8 @@ package org.gradle.workers.internal
 
 import org.gradle.api.Transformer
 import org.gradle.api.logging.LogLevel
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
 import org.gradle.internal.session.BuildSessionLifecycleListener
 import org.gradle.internal.event.DefaultListenerManager
 import org.gradle.internal.event.ListenerManager
@@ -27,9 +29,12 @@ import org.gradle.internal.logging.events.LogLevelChangeEvent
 import org.gradle.internal.logging.events.OutputEventListener
 import org.gradle.internal.service.scopes.Scopes
 import org.gradle.process.internal.ExecException
+import org.gradle.process.internal.health.memory.JvmMemoryStatus
 import org.gradle.process.internal.health.memory.MBeanOsMemoryInfo
 import org.gradle.process.internal.health.memory.MemoryManager
 import org.gradle.util.ConcurrentSpecification
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
 import spock.lang.Subject
 
 class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
@@ -38,9 +43,13 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
     def listenerManager = Stub(ListenerManager)
     def loggingManager = Stub(LoggingManagerInternal)
     def memoryManager = Mock(MemoryManager)
+    def executorFactory = Stub(ExecutorFactory)
+
+    @Rule
+    SetSystemProperties systemProperties = new SetSystemProperties()
 
     @Subject
-        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory)
 
     def "does not reserve idle client when no clients"() {
         expect:
@@ -66,6 +75,38 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         input == [noMatch] //match removed from input
     }
 
+    def "reserves compatible idle client that uses the least memory"() {
+        def large = Stub(WorkerDaemonClient) {
+            isCompatibleWith(_) >> true
+            getJvmMemoryStatus() >> Stub(JvmMemoryStatus) { getCommittedMemory() >> 2048 }
+        }
+        def small = Stub(WorkerDaemonClient) {
+            isCompatibleWith(_) >> true
+            getJvmMemoryStatus() >> Stub(JvmMemoryStatus) { getCommittedMemory() >> 1024 }
+        }
+        def input = [large, small]
+
+        expect:
+        manager.reserveIdleClient(options, input) == small
+        input == [large]
+    }
+
+    def "starts new clients with previously seen equivalent fork options"() {
+        def options1 = Stub(DaemonForkOptions) { isCompatibleWith(_) >> true }
+        def options2 = Stub(DaemonForkOptions) { isCompatibleWith(_) >> true }
+        def newClient = Stub(WorkerDaemonClient)
+        def starter = Mock(WorkerDaemonStarter)
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory)
+
+        when:
+        manager.reserveNewClient(options1)
+        manager.reserveNewClient(options2)
+
+        then:
+        2 * starter.startDaemon(options1, _) >> newClient
+        0 * starter.startDaemon(options2, _)
+    }
+
     def "reserves new client"() {
         def newClient = Stub(WorkerDaemonClient)
         starter.startDaemon(options, _) >> newClient
@@ -149,7 +190,7 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
 
     def "can stop session-scoped clients"() {
         listenerManager = new DefaultListenerManager(Scopes.BuildSession)
-        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory)
         def client1 = Mock(WorkerDaemonClient)
         def client2 = Mock(WorkerDaemonClient)
         starter.startDaemon(options, _) >>> [client1, client2]
@@ -168,7 +209,7 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
 
     def "Stopping session-scoped clients does not stop other clients"() {
         listenerManager = new DefaultListenerManager(Scopes.BuildSession)
-        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory)
         def client1 = Mock(WorkerDaemonClient)
         def client2 = Mock(WorkerDaemonClient)
         starter.startDaemon(options, _) >>> [client1, client2]
@@ -216,7 +257,7 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         loggingManager.getLevel() >> LogLevel.INFO
 
         when:
-        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory)
 
         then:
         listener != null
@@ -237,9 +278,9 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
     }
 
     def "prefers to stop less frequently used idle clients when releasing memory"() {
-        def client1 = Mock(WorkerDaemonClient) { _ * getUses() >> 5 }
-        def client2 = Mock(WorkerDaemonClient) { _ * getUses() >> 1 }
-        def client3 = Mock(WorkerDaemonClient) { _ * getUses() >> 3 }
+        def client1 = Mock(WorkerDaemonClient) { _ * getUses() >> 5; _ * getJvmMemoryStatus() >> Stub(JvmMemoryStatus) }
+        def client2 = Mock(WorkerDaemonClient) { _ * getUses() >> 1; _ * getJvmMemoryStatus() >> Stub(JvmMemoryStatus) }
+        def client3 = Mock(WorkerDaemonClient) { _ * getUses() >> 3; _ * getJvmMemoryStatus() >> Stub(JvmMemoryStatus) }
         starter.startDaemon(options, _) >>> [client1, client2, client3]
         def stopMostPreferredClient = new Transformer<List<WorkerDaemonClient>, List<WorkerDaemonClient>>() {
             @Override
@@ -266,10 +307,32 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         0 * client1.stop()
     }
 
+    def "prefers to stop idle clients that are quick to restart when releasing memory"() {
+        def slowToStart = Mock(WorkerDaemonClient) { _ * getStartupTime() >> 10000; _ * getJvmMemoryStatus() >> Stub(JvmMemoryStatus) }
+        def quickToStart = Mock(WorkerDaemonClient) { _ * getStartupTime() >> 100; _ * getJvmMemoryStatus() >> Stub(JvmMemoryStatus) }
+        starter.startDaemon(options, _) >>> [slowToStart, quickToStart]
+        def stopMostPreferredClient = new Transformer<List<WorkerDaemonClient>, List<WorkerDaemonClient>>() {
+            @Override
+            List<WorkerDaemonClient> transform(List<WorkerDaemonClient> workerDaemonClients) {
+                return workerDaemonClients[0..0]
+            }
+        }
+
+        when:
+        2.times { manager.reserveNewClient(options) }
+        manager.release(slowToStart)
+        manager.release(quickToStart)
+        manager.selectIdleClientsToStop(stopMostPreferredClient)
+
+        then:
+        1 * quickToStart.stop()
+        0 * slowToStart.stop()
+    }
+
     def "does not stop busy clients when releasing memory"() {
-        def client1 = Mock(WorkerDaemonClient) { _ * getUses() >> 5 }
-        def client2 = Mock(WorkerDaemonClient) { _ * getUses() >> 1 }
-        def client3 = Mock(WorkerDaemonClient) { _ * getUses() >> 3 }
+        def client1 = Mock(WorkerDaemonClient) { _ * getUses() >> 5; _ * getJvmMemoryStatus() >> Stub(JvmMemoryStatus) }
+        def client2 = Mock(WorkerDaemonClient) { _ * getUses() >> 1; _ * getJvmMemoryStatus() >> Stub(JvmMemoryStatus) }
+        def client3 = Mock(WorkerDaemonClient) { _ * getUses() >> 3; _ * getJvmMemoryStatus() >> Stub(JvmMemoryStatus) }
         starter.startDaemon(options, _) >>> [client1, client2, client3]
         def stopAll = new Transformer<List<WorkerDaemonClient>, List<WorkerDaemonClient>>() {
             @Override
@@ -289,11 +352,40 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         1 * client3.stop()
     }
 
+    def "starts warm clients at the start of a session for fork options used by previous sessions"() {
+        System.setProperty(WorkerDaemonClientsManager.WARM_UP_DAEMONS_PROPERTY_KEY, "1")
+        listenerManager = new DefaultListenerManager(Scopes.BuildSession)
+        executorFactory.create(_) >> Stub(ManagedExecutor) {
+            execute(_) >> { Runnable runnable -> runnable.run() }
+        }
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory)
+        def client = Mock(WorkerDaemonClient)
+        def warmClient = Mock(WorkerDaemonClient) {
+            isCompatibleWith(_) >> true
+            getLogLevel() >> LogLevel.DEBUG
+        }
+        starter.startDaemon(options, _) >>> [client, warmClient]
+
+        when:
+        manager.reserveNewClient(options)
+        listenerManager.getBroadcaster(BuildSessionLifecycleListener).beforeComplete()
+
+        then:
+        1 * client.getKeepAliveMode() >> KeepAliveMode.SESSION
+        1 * client.stop()
+
+        when:
+        listenerManager.getBroadcaster(BuildSessionLifecycleListener).afterStart()
+
+        then:
+        manager.reserveIdleClient(options) == warmClient
+    }
+
     def "registers/deregisters a worker daemon expiration with the memory manager"() {
         WorkerDaemonExpiration workerDaemonExpiration
 
         when:
-        def manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        def manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory)
 
         then:
         1 * memoryManager.addMemoryHolder(_) >> { args -> workerDaemonExpiration = args[0] }
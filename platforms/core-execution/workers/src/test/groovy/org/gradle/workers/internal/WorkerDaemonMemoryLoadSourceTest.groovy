@@ -0,0 +1,82 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.workers.internal
+
+import org.gradle.internal.buildoption.DefaultInternalOptions
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.work.AdaptiveWorkerLeaseController
+import org.gradle.internal.work.AdjustWorkerLeasesBuildOperationType
+import org.gradle.internal.work.WorkerLeaseLimit
+import org.gradle.internal.work.WorkerLeaseService
+import org.gradle.process.internal.health.memory.OsMemoryInfo
+import org.gradle.process.internal.health.memory.OsMemoryStatusSnapshot
+import spock.lang.Specification
+
+class WorkerDaemonMemoryLoadSourceTest extends Specification {
+    private static final long GB = 1024 * 1024 * 1024
+
+    long memoryUsage
+    long freeMemory
+    def clientsManager = Stub(WorkerDaemonClientsManager) {
+        getMemoryUsage() >> { memoryUsage }
+    }
+    def memoryInfo = Stub(OsMemoryInfo) {
+        getOsSnapshot() >> { new OsMemoryStatusSnapshot(16 * GB, freeMemory) }
+    }
+    def source = new WorkerDaemonMemoryLoadSource(clientsManager, memoryInfo)
+
+    def "reports the share of the available memory used by worker daemons relative to the target share"() {
+        memoryUsage = 3 * GB
+        freeMemory = 1 * GB
+
+        expect:
+        source.load == 1.0d
+    }
+
+    def "reports no load when there are no worker daemons"() {
+        freeMemory = 1 * GB
+
+        expect:
+        source.load == 0.0d
+    }
+
+    def "reduces the number of worker leases when worker daemons use most of the available memory"() {
+        def workerLeaseService = Stub(WorkerLeaseService) {
+            getMaxWorkerCount() >> 4
+        }
+        def workerLeaseLimit = Mock(WorkerLeaseLimit) {
+            getWorkerLeaseLimit() >> 4
+            getWorkerLeasesInUse() >> 4
+        }
+        def buildOperationExecutor = new TestBuildOperationExecutor()
+        def executorFactory = new DefaultExecutorFactory()
+        def controller = new AdaptiveWorkerLeaseController(workerLeaseService, workerLeaseLimit, [source], executorFactory, buildOperationExecutor, new DefaultInternalOptions(["org.gradle.internal.workers.adaptive": "true"]))
+        memoryUsage = 6 * GB
+        freeMemory = 1 * GB
+
+        when:
+        controller.adjust()
+
+        then:
+        1 * workerLeaseLimit.setWorkerLeaseLimit(3)
+        buildOperationExecutor.log.mostRecentDetails(AdjustWorkerLeasesBuildOperationType).loads.keySet() == ["worker daemon memory"] as Set
+
+        cleanup:
+        executorFactory.stop()
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resources;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.lock;
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.unlock;
+
+/**
+ * Measures the throughput of worker threads that repeatedly acquire and release a pair of locks, as the plan executor does for each node.
+ * Fewer locks means more threads waiting for a lock to be released.
+ */
+@Fork(1)
+@Threads(16)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ResourceLockCoordinationServiceBenchmark {
+    private static final ResourceLockContainer NO_OP_CONTAINER = new ResourceLockContainer() {
+        @Override
+        public void lockAcquired(ResourceLock lock) {
+        }
+
+        @Override
+        public void lockReleased(ResourceLock lock) {
+        }
+    };
+
+    @Param({"2", "16", "256"})
+    int lockCount;
+
+    DefaultResourceLockCoordinationService coordinationService;
+    List<ResourceLock> locks;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        coordinationService = new DefaultResourceLockCoordinationService();
+        locks = new ArrayList<ResourceLock>(lockCount);
+        for (int i = 0; i < lockCount; i++) {
+            locks.add(new ExclusiveAccessResourceLock("lock " + i, coordinationService, NO_OP_CONTAINER));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class WorkerState {
+        final Random random = new Random(1234L);
+    }
+
+    @Benchmark
+    public void acquireAndReleaseLocks(WorkerState worker) {
+        int first = worker.random.nextInt(lockCount);
+        int second = (first + 1 + worker.random.nextInt(lockCount - 1)) % lockCount;
+        List<ResourceLock> pair = Arrays.asList(locks.get(first), locks.get(second));
+        coordinationService.withStateLock(lock(pair));
+        coordinationService.withStateLock(unlock(pair));
+    }
+}
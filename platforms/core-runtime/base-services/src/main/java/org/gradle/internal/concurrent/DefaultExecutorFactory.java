@@ -30,6 +30,7 @@
 
 public class DefaultExecutorFactory implements ExecutorFactory, Stoppable {
     private final Set<ManagedExecutor> executors = new CopyOnWriteArraySet<ManagedExecutor>();
+    private final Set<ManagedForkJoinPool> forkJoinPools = new CopyOnWriteArraySet<ManagedForkJoinPool>();
     @Nullable
     private final ClassLoader threadFactoryContextClassloader;
 
@@ -44,9 +45,10 @@ public DefaultExecutorFactory(@Nullable ClassLoader threadFactoryContextClassloa
     @Override
     public void stop() {
         try {
-            CompositeStoppable.stoppable(executors).stop();
+            new CompositeStoppable().add(executors).add(forkJoinPools).stop();
         } finally {
             executors.clear();
+            forkJoinPools.clear();
         }
     }
 
@@ -101,6 +103,13 @@ private ScheduledExecutorService createScheduledExecutor(String displayName, int
         return new ScheduledThreadPoolExecutor(fixedSize, newThreadFactory(displayName));
     }
 
+    @Override
+    public ManagedForkJoinPool createForkJoinPool(String displayName, int parallelism) {
+        ManagedForkJoinPool pool = new TrackedForkJoinPool(displayName, parallelism);
+        forkJoinPools.add(pool);
+        return pool;
+    }
+
     private ThreadFactory newThreadFactory(String displayName) {
         return new ThreadFactoryImpl(displayName, threadFactoryContextClassloader);
     }
@@ -120,6 +129,21 @@ public void stop(int timeoutValue, TimeUnit timeoutUnits) throws IllegalStateExc
         }
     }
 
+    private class TrackedForkJoinPool extends ManagedForkJoinPool {
+        TrackedForkJoinPool(String displayName, int parallelism) {
+            super(displayName, parallelism, threadFactoryContextClassloader);
+        }
+
+        @Override
+        public void stop() {
+            try {
+                super.stop();
+            } finally {
+                forkJoinPools.remove(this);
+            }
+        }
+    }
+
     private class TrackedScheduledManagedExecutor extends ManagedScheduledExecutorImpl {
         TrackedScheduledManagedExecutor(ScheduledExecutorService executor, ExecutorPolicy executorPolicy) {
             super(executor, executorPolicy);
@@ -73,4 +73,16 @@ public interface ExecutorFactory {
      * @see java.util.concurrent.ScheduledExecutorService
      */
     ManagedScheduledExecutor createScheduled(String displayName, int fixedSize);
+
+    /**
+     * Creates a fork-join pool which can run recursive tasks concurrently. It is the caller's responsibility to stop the pool.
+     *
+     * @param displayName The display name for this pool. Used for thread names.
+     * @param parallelism The maximum number of threads actively running tasks
+     * @return The pool
+     * @see java.util.concurrent.ForkJoinPool
+     */
+    default ManagedForkJoinPool createForkJoinPool(String displayName, int parallelism) {
+        return new ManagedForkJoinPool(displayName, parallelism, Thread.currentThread().getContextClassLoader());
+    }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.concurrent;
+
+import org.gradle.internal.UncheckedException;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ForkJoinPool} that can be stopped like the other executors created by an {@link ExecutorFactory}.
+ */
+public class ManagedForkJoinPool extends ForkJoinPool implements Stoppable {
+
+    public ManagedForkJoinPool(String displayName, int parallelism, @Nullable ClassLoader contextClassloader) {
+        super(parallelism, new WorkerThreadFactory(displayName, contextClassloader), null, false);
+    }
+
+    /**
+     * Stops accepting new tasks and blocks until all currently executing tasks have been completed.
+     */
+    @Override
+    public void stop() {
+        shutdown();
+        try {
+            awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private static class WorkerThreadFactory implements ForkJoinWorkerThreadFactory {
+        private final AtomicLong counter = new AtomicLong();
+        private final String displayName;
+        @Nullable
+        private final ClassLoader contextClassloader;
+
+        WorkerThreadFactory(String displayName, @Nullable ClassLoader contextClassloader) {
+            this.displayName = displayName;
+            this.contextClassloader = contextClassloader;
+        }
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = defaultForkJoinWorkerThreadFactory.newThread(pool);
+            long count = counter.incrementAndGet();
+            thread.setName(count == 1 ? displayName : displayName + " Thread " + count);
+            thread.setContextClassLoader(contextClassloader);
+            return thread;
+        }
+    }
+}
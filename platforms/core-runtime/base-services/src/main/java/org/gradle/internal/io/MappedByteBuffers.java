@@ -0,0 +1,81 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.io;
+
+import org.gradle.internal.UncheckedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Unmaps memory-mapped buffers right away instead of leaving that to the garbage collector.
+ *
+ * <p>Windows doesn't allow deleting, truncating or replacing a file while parts of it are still mapped.</p>
+ */
+public class MappedByteBuffers {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedByteBuffers.class);
+    private static final Consumer<MappedByteBuffer> UNMAPPER = createUnmapper();
+
+    private MappedByteBuffers() {
+    }
+
+    /**
+     * Unmaps the given buffer. The buffer and all buffers derived from it must not be accessed anymore once it has been unmapped.
+     */
+    public static void unmap(MappedByteBuffer buffer) {
+        UNMAPPER.accept(buffer);
+    }
+
+    private static Consumer<MappedByteBuffer> createUnmapper() {
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invoke(invokeCleaner, unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not available, try the Java 8 way
+        }
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> invoke(clean, invoke(cleaner, buffer));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Cannot unmap buffers explicitly, they will be unmapped when garbage collected.", e);
+            return buffer -> {
+            };
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (InvocationTargetException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+    }
+}
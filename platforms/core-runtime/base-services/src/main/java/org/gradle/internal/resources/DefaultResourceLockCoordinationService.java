@@ -29,45 +29,52 @@
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.Set;
-
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coordinates changes to resource locks, so that a set of locks can be acquired or released atomically.
+ *
+ * <p>Only the state changes are serialized. Queries made by the thread that owns the state lock, such as {@link #getCurrent()},
+ * do not need to synchronize, and threads waiting for a state change are only woken when there is a change to wait for.</p>
+ */
 public class DefaultResourceLockCoordinationService implements ResourceLockCoordinationService, Closeable {
-    private final Object lock = new Object();
-    private final Set<Action<ResourceLock>> releaseHandlers = new LinkedHashSet<Action<ResourceLock>>();
-    private Thread currentOwner;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+    private final Set<Action<ResourceLock>> releaseHandlers = new CopyOnWriteArraySet<Action<ResourceLock>>();
+    // Counts the state changes notified by threads that do not own the state lock, so that a waiting thread does not miss them
+    private final AtomicLong externalStateChanges = new AtomicLong();
+    private final AtomicInteger waitingThreads = new AtomicInteger();
+    private volatile Thread currentOwner;
+    // Only accessed by the current owner
     private DefaultResourceLockState currentState;
 
     @Override
     public void close() throws IOException {
-        synchronized (lock) {
-            if (!releaseHandlers.isEmpty()) {
-                throw new IllegalStateException("Some lock release listeners have not been removed.");
-            }
+        if (!releaseHandlers.isEmpty()) {
+            throw new IllegalStateException("Some lock release listeners have not been removed.");
         }
     }
 
     @Override
     public void assertHasStateLock() {
-        synchronized (lock) {
-            if (getCurrent() == null) {
-                throw new IllegalStateException();
-            }
+        if (getCurrent() == null) {
+            throw new IllegalStateException();
         }
     }
 
     @Override
     public void addLockReleaseListener(Action<ResourceLock> listener) {
-        synchronized (lock) {
-            releaseHandlers.add(listener);
-        }
+        releaseHandlers.add(listener);
     }
 
     @Override
     public void removeLockReleaseListener(Action<ResourceLock> listener) {
-        synchronized (lock) {
-            releaseHandlers.remove(listener);
-        }
+        releaseHandlers.remove(listener);
     }
 
     @Override
@@ -96,11 +103,13 @@ public ResourceLockState.Disposition transform(ResourceLockState resourceLockSta
 
     @Override
     public boolean withStateLock(InternalTransformer<ResourceLockState.Disposition, ResourceLockState> stateLockAction) {
-        synchronized (lock) {
+        lock.lock();
+        try {
             DefaultResourceLockState resourceLockState = new DefaultResourceLockState();
             DefaultResourceLockState previous = startOperation(resourceLockState);
             try {
                 while (true) {
+                    long externalStateChangesBeforeAction = externalStateChanges.get();
                     ResourceLockState.Disposition disposition;
                     disposition = stateLockAction.transform(resourceLockState);
                     switch (disposition) {
@@ -109,11 +118,7 @@ public boolean withStateLock(InternalTransformer<ResourceLockState.Disposition,
                             maybeNotifyStateChange(resourceLockState);
                             resourceLockState.reset();
                             finishOperation(previous);
-                            try {
-                                lock.wait();
-                            } catch (InterruptedException e) {
-                                throw UncheckedException.throwAsUncheckedException(e);
-                            }
+                            awaitStateChange(externalStateChangesBeforeAction);
                             startOperation(resourceLockState);
                             break;
                         case FINISHED:
@@ -132,6 +137,22 @@ public boolean withStateLock(InternalTransformer<ResourceLockState.Disposition,
             } finally {
                 finishOperation(previous);
             }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitStateChange(long externalStateChangesBeforeAction) {
+        waitingThreads.incrementAndGet();
+        try {
+            // Another thread may have notified a change without holding the state lock while the action was running
+            if (externalStateChanges.get() == externalStateChangesBeforeAction) {
+                stateChanged.await();
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            waitingThreads.decrementAndGet();
         }
     }
 
@@ -158,12 +179,10 @@ private void finishOperation(@Nullable DefaultResourceLockState previous) {
 
     @Override
     public ResourceLockState getCurrent() {
-        synchronized (lock) {
-            if (currentOwner != Thread.currentThread()) {
-                return null;
-            } else {
-                return currentState;
-            }
+        if (currentOwner != Thread.currentThread()) {
+            return null;
+        } else {
+            return currentState;
         }
     }
 
@@ -181,8 +200,24 @@ private void maybeNotifyStateChange(DefaultResourceLockState resourceLockState)
 
     @Override
     public void notifyStateChange() {
-        synchronized (lock) {
-            lock.notifyAll();
+        if (lock.isHeldByCurrentThread()) {
+            signalWaitingThreads();
+            return;
+        }
+        externalStateChanges.incrementAndGet();
+        if (waitingThreads.get() > 0) {
+            lock.lock();
+            try {
+                signalWaitingThreads();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void signalWaitingThreads() {
+        if (waitingThreads.get() > 0) {
+            stateChanged.signalAll();
         }
     }
 
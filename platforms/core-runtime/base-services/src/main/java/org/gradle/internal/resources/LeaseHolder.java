@@ -16,8 +16,11 @@
 
 package org.gradle.internal.resources;
 
+/**
+ * Grants up to a maximum number of leases. All methods must be called while holding the state lock.
+ */
 public class LeaseHolder {
-    private final int maxWorkerCount;
+    private int maxWorkerCount;
     private int leasesInUse;
 
     public LeaseHolder(int maxWorkerCount) {
@@ -35,4 +38,19 @@ public boolean grantLease() {
     public void releaseLease() {
         leasesInUse--;
     }
+
+    public int getMaxWorkerCount() {
+        return maxWorkerCount;
+    }
+
+    /**
+     * Changes the maximum number of leases. Leases already granted above the new maximum are kept until they are released.
+     */
+    public void setMaxWorkerCount(int maxWorkerCount) {
+        this.maxWorkerCount = maxWorkerCount;
+    }
+
+    public int getLeasesInUse() {
+        return leasesInUse;
+    }
 }
@@ -53,7 +53,7 @@
 import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.tryLock;
 import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.unlock;
 
-public class DefaultWorkerLeaseService implements WorkerLeaseService, ProjectParallelExecutionController, Stoppable {
+public class DefaultWorkerLeaseService implements WorkerLeaseService, WorkerLeaseLimit, ProjectParallelExecutionController, Stoppable {
     public static final String PROJECT_LOCK_STATS_PROPERTY = "org.gradle.internal.project.lock.stats";
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultWorkerLeaseService.class);
 
@@ -96,6 +96,32 @@ public int getMaxWorkerCount() {
         return maxWorkerCount;
     }
 
+    @Override
+    public int getWorkerLeaseLimit() {
+        return coordinationService.withStateLock(() -> workerLeaseLockRegistry.root.getMaxWorkerCount());
+    }
+
+    @Override
+    public int getWorkerLeasesInUse() {
+        return coordinationService.withStateLock(() -> workerLeaseLockRegistry.root.getLeasesInUse());
+    }
+
+    @Override
+    public void setWorkerLeaseLimit(int limit) {
+        if (limit < 1 || limit > maxWorkerCount) {
+            throw new IllegalArgumentException("Worker lease limit must be between 1 and " + maxWorkerCount + " but was " + limit + ".");
+        }
+        coordinationService.withStateLock(() -> {
+            int previous = workerLeaseLockRegistry.root.getMaxWorkerCount();
+            workerLeaseLockRegistry.root.setMaxWorkerCount(limit);
+            if (limit > previous) {
+                // Wake up any threads waiting for a lease
+                coordinationService.notifyStateChange();
+            }
+        });
+        LOGGER.debug("Using {} of {} worker leases.", limit, maxWorkerCount);
+    }
+
     @Override
     public WorkerLease getCurrentWorkerLease() {
         List<? extends WorkerLease> operations = workerLeaseLockRegistry.getResourceLocksByCurrentThread();
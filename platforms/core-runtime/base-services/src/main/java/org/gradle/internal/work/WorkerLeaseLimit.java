@@ -0,0 +1,41 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.work;
+
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+
+/**
+ * Allows the number of worker leases that can be granted at any given time to be changed, between 1 and {@link WorkerLeaseService#getMaxWorkerCount()}.
+ */
+@ServiceScope(Scopes.BuildSession.class)
+public interface WorkerLeaseLimit {
+    /**
+     * Returns the number of worker leases that can currently be granted.
+     */
+    int getWorkerLeaseLimit();
+
+    /**
+     * Returns the number of worker leases that are currently granted. This may be greater than the limit when the limit has been reduced.
+     */
+    int getWorkerLeasesInUse();
+
+    /**
+     * Changes the number of worker leases that can be granted. Leases that are currently granted are not revoked, so reducing the limit takes effect as leases are released.
+     */
+    void setWorkerLeaseLimit(int limit);
+}
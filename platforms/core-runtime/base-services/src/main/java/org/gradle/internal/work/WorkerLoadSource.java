@@ -0,0 +1,33 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.work;
+
+/**
+ * Reports the load on some resource used by workers, such as the CPUs of the machine or the heap of the build process.
+ * Used to adapt the number of worker leases to the load.
+ */
+public interface WorkerLoadSource {
+    /**
+     * A short name for the resource, used in diagnostics.
+     */
+    String getDisplayName();
+
+    /**
+     * Returns the current load on the resource, where 1 means the resource is saturated. Returns a negative value when the load is not known.
+     */
+    double getLoad();
+}
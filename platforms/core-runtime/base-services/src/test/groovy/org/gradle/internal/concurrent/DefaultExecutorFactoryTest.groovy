@@ -436,4 +436,19 @@ class DefaultExecutorFactoryTest extends ConcurrentSpec {
         def ex = thrown(RuntimeException)
         ex.is(failure1)
     }
+
+    def stopOfFactoryStopsForkJoinPools() {
+        when:
+        def pool = factory.createForkJoinPool('test', 2)
+        def result = pool.submit({ Thread.currentThread().name } as Callable<String>).get()
+
+        then:
+        result.startsWith('test')
+
+        when:
+        factory.stop()
+
+        then:
+        pool.terminated
+    }
 }
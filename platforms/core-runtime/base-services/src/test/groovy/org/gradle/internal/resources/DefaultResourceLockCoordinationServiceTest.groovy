@@ -21,6 +21,9 @@ import org.gradle.internal.InternalTransformer
 import org.gradle.test.fixtures.ConcurrentTestUtil
 import org.gradle.test.fixtures.concurrent.ConcurrentSpec
 
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
 import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.lock
 import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.tryLock
 import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.unlock
@@ -403,6 +406,29 @@ class DefaultResourceLockCoordinationServiceTest extends ConcurrentSpec {
         0 * listener._
     }
 
+    def "retries a lock action when a state change is notified without holding the state lock"() {
+        def ready = new AtomicBoolean()
+        def count = new AtomicInteger()
+
+        when:
+        async {
+            start {
+                coordinationService.withStateLock { state ->
+                    if (count.incrementAndGet() == 1) {
+                        instant.attempted
+                    }
+                    return ready.get() ? FINISHED : RETRY
+                }
+            }
+            thread.blockUntil.attempted
+            ready.set(true)
+            coordinationService.notifyStateChange()
+        }
+
+        then:
+        count.get() >= 2
+    }
+
     TestTrackedResourceLock resourceLock(String displayName, boolean locked, boolean hasLock = false) {
         return new TestTrackedResourceLock(displayName, coordinationService, Mock(ResourceLockContainer), locked, hasLock)
     }
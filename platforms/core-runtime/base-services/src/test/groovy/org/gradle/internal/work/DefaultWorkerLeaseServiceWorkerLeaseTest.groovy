@@ -73,6 +73,55 @@ class DefaultWorkerLeaseServiceWorkerLeaseTest extends AbstractWorkerLeaseServic
         registry?.stop()
     }
 
+    def "worker start blocks while the lease limit is reduced"() {
+        def registry = workerLeaseService(2)
+        registry.workerLeaseLimit = 1
+
+        when:
+        async {
+            start {
+                def cl = registry.startWorker()
+                instant.worker1
+                thread.blockUntil.worker2
+                cl.leaseFinish()
+            }
+            start {
+                thread.blockUntil.worker1
+                thread.block()
+                instant.limitIncreased
+                registry.workerLeaseLimit = 2
+            }
+            start {
+                thread.blockUntil.worker1
+                def cl = registry.startWorker()
+                instant.worker2
+                cl.leaseFinish()
+            }
+        }
+
+        then:
+        instant.worker2 > instant.limitIncreased
+        registry.workerLeaseLimit == 2
+        registry.workerLeasesInUse == 0
+
+        cleanup:
+        registry?.stop()
+    }
+
+    def "cannot increase the lease limit above the maximum worker count"() {
+        def registry = workerLeaseService(2)
+
+        when:
+        registry.workerLeaseLimit = 3
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Worker lease limit must be between 1 and 2 but was 3."
+
+        cleanup:
+        registry?.stop()
+    }
+
     def "can run as worker thread"() {
         def registry = workerLeaseService(1)
 
@@ -12,6 +12,9 @@ dependencies {
     implementation(project(":functional"))
     implementation(libs.guava)
     implementation(libs.slf4jApi)
+    implementation(libs.aircompressor) {
+        because("Used for LZ4 compression of build cache entries and of the configuration cache state")
+    }
 
     testImplementation(project(":native"))
     testImplementation(project(":base-services")) {
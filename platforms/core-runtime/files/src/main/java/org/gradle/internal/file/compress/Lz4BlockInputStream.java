@@ -0,0 +1,242 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.file.compress;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
+import io.airlift.compress.MalformedInputException;
+import io.airlift.compress.lz4.Lz4Decompressor;
+
+import javax.annotation.Nullable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+import static org.gradle.internal.file.compress.Lz4BlockOutputStream.BLOCK_HEADER_SIZE;
+import static org.gradle.internal.file.compress.Lz4BlockOutputStream.BLOCK_SIZE;
+
+/**
+ * Reads data written by {@link Lz4BlockOutputStream}.
+ *
+ * <p>When created with an executor, the stream reads blocks ahead of the one being read and decompresses them on the executor,
+ * so decompression overlaps with the processing of the data.</p>
+ */
+public class Lz4BlockInputStream extends InputStream {
+    private static final byte[] NO_DATA = new byte[0];
+
+    private final InputStream input;
+    private final Lz4Decompressor decompressor = new Lz4Decompressor();
+    private final byte[] header = new byte[BLOCK_HEADER_SIZE];
+    @Nullable
+    private final Executor executor;
+    private final int maxPendingBlocks;
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<Future<byte[]>>();
+    private final byte[] compressed;
+    private byte[] buffer;
+    private int count;
+    private int position;
+    private boolean endOfInput;
+    private int blockLength;
+    private int blockCompressedLength;
+    private int blockChecksum;
+
+    public Lz4BlockInputStream(InputStream input) {
+        this.input = input;
+        this.executor = null;
+        this.maxPendingBlocks = 0;
+        this.compressed = new byte[BLOCK_SIZE];
+        this.buffer = new byte[BLOCK_SIZE];
+    }
+
+    /**
+     * Creates a stream that decompresses up to {@code maxPendingBlocks} blocks ahead on the given executor.
+     */
+    public Lz4BlockInputStream(InputStream input, Executor executor, int maxPendingBlocks) {
+        if (maxPendingBlocks < 1) {
+            throw new IllegalArgumentException("Must read at least one block ahead.");
+        }
+        this.input = input;
+        this.executor = executor;
+        this.maxPendingBlocks = maxPendingBlocks;
+        this.compressed = NO_DATA;
+        this.buffer = NO_DATA;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureData()) {
+            return -1;
+        }
+        int toCopy = Math.min(len, count - position);
+        System.arraycopy(buffer, position, b, off, toCopy);
+        position += toCopy;
+        return toCopy;
+    }
+
+    @Override
+    public int available() {
+        return count - position;
+    }
+
+    private boolean ensureData() throws IOException {
+        while (position == count) {
+            if (executor == null) {
+                if (endOfInput) {
+                    return false;
+                }
+                readBlock();
+            } else {
+                readAhead(executor);
+                Future<byte[]> nextBlock = pendingBlocks.poll();
+                if (nextBlock == null) {
+                    return false;
+                }
+                buffer = await(nextBlock);
+                count = buffer.length;
+                position = 0;
+            }
+        }
+        return true;
+    }
+
+    private void readBlock() throws IOException {
+        position = 0;
+        count = 0;
+        if (!readHeader()) {
+            return;
+        }
+        if (blockCompressedLength == blockLength) {
+            ByteStreams.readFully(input, buffer, 0, blockLength);
+        } else {
+            ByteStreams.readFully(input, compressed, 0, blockCompressedLength);
+            decompress(compressed, blockCompressedLength, buffer, blockLength);
+        }
+        verifyChecksum(buffer, blockLength, blockChecksum);
+        count = blockLength;
+    }
+
+    private void readAhead(Executor executor) throws IOException {
+        while (!endOfInput && pendingBlocks.size() < maxPendingBlocks) {
+            if (!readHeader()) {
+                return;
+            }
+            final int length = blockLength;
+            final int checksum = blockChecksum;
+            final byte[] data = new byte[blockCompressedLength];
+            ByteStreams.readFully(input, data);
+            FutureTask<byte[]> decoding = new FutureTask<byte[]>(() -> {
+                byte[] block = data;
+                if (data.length != length) {
+                    block = new byte[length];
+                    decompress(data, data.length, block, length);
+                }
+                verifyChecksum(block, length, checksum);
+                return block;
+            });
+            executor.execute(decoding);
+            pendingBlocks.add(decoding);
+        }
+    }
+
+    /**
+     * Reads the header of the next block, and returns false when the end of the stream has been reached.
+     */
+    private boolean readHeader() throws IOException {
+        if (ByteStreams.read(input, header, 0, BLOCK_HEADER_SIZE) < BLOCK_HEADER_SIZE) {
+            throw new EOFException("Unexpected end of LZ4 stream");
+        }
+        ByteBuffer blockHeader = ByteBuffer.wrap(header);
+        blockLength = blockHeader.getInt();
+        blockCompressedLength = blockHeader.getInt();
+        blockChecksum = blockHeader.getInt();
+        if (blockLength == 0) {
+            endOfInput = true;
+            return false;
+        }
+        if (blockLength < 0 || blockLength > BLOCK_SIZE || blockCompressedLength <= 0 || blockCompressedLength > blockLength) {
+            throw new ZipException("Corrupt LZ4 block header");
+        }
+        return true;
+    }
+
+    private void decompress(byte[] data, int compressedLength, byte[] target, int length) throws ZipException {
+        int decompressedLength;
+        try {
+            decompressedLength = decompressor.decompress(data, 0, compressedLength, target, 0, length);
+        } catch (MalformedInputException e) {
+            throw new ZipException("Corrupt LZ4 block: " + e.getMessage());
+        }
+        if (decompressedLength != length) {
+            throw new ZipException("Corrupt LZ4 block: expected " + length + " bytes, but got " + decompressedLength);
+        }
+    }
+
+    private static void verifyChecksum(byte[] data, int length, int expectedChecksum) throws ZipException {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        if ((int) crc.getValue() != expectedChecksum) {
+            throw new ZipException("Corrupt LZ4 block: CRC mismatch");
+        }
+    }
+
+    private static byte[] await(Future<byte[]> block) throws IOException {
+        try {
+            return block.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            Throwables.throwIfInstanceOf(cause, IOException.class);
+            Throwables.throwIfUnchecked(cause);
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Closes the underlying stream. Blocks that are still pending are cancelled.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Future<byte[]> pendingBlock : pendingBlocks) {
+            pendingBlock.cancel(false);
+        }
+        pendingBlocks.clear();
+        input.close();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.file.compress;
+
+import io.airlift.compress.lz4.Lz4Compressor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Writes data as a sequence of independently LZ4 compressed blocks.
+ *
+ * <p>Each block starts with a header with the uncompressed length, the compressed length and the CRC32 of the uncompressed data.
+ * Blocks that don't compress are stored as is, which is marked by the compressed length being equal to the uncompressed length.
+ * The stream ends with a block header with an uncompressed length of zero.</p>
+ *
+ * @see Lz4BlockInputStream
+ */
+public class Lz4BlockOutputStream extends OutputStream {
+    public static final int BLOCK_SIZE = 256 * 1024;
+    static final int BLOCK_HEADER_SIZE = 12;
+
+    private final OutputStream output;
+    private final Lz4Compressor compressor = new Lz4Compressor();
+    private final CRC32 crc = new CRC32();
+    private final byte[] buffer = new byte[BLOCK_SIZE];
+    private final byte[] compressed = new byte[compressor.maxCompressedLength(BLOCK_SIZE)];
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+    private int count;
+    private boolean closed;
+
+    public Lz4BlockOutputStream(OutputStream output) {
+        this.output = output;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            writeBlock();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                writeBlock();
+            }
+            int toCopy = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, toCopy);
+            count += toCopy;
+            off += toCopy;
+            len -= toCopy;
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        crc.reset();
+        crc.update(buffer, 0, count);
+        int compressedLength = compressor.compress(buffer, 0, count, compressed, 0, compressed.length);
+        boolean stored = compressedLength >= count;
+        writeHeader(count, stored ? count : compressedLength, (int) crc.getValue());
+        if (stored) {
+            output.write(buffer, 0, count);
+        } else {
+            output.write(compressed, 0, compressedLength);
+        }
+        count = 0;
+    }
+
+    private void writeHeader(int length, int compressedLength, int checksum) throws IOException {
+        header.clear();
+        header.putInt(length).putInt(compressedLength).putInt(checksum);
+        output.write(header.array(), 0, BLOCK_HEADER_SIZE);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            writeBlock();
+        }
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (count > 0) {
+                writeBlock();
+            }
+            writeHeader(0, 0, 0);
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.file.compress
+
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import java.util.concurrent.FutureTask
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.zip.ZipException
+
+import static org.gradle.internal.file.compress.Lz4BlockOutputStream.BLOCK_HEADER_SIZE
+import static org.gradle.internal.file.compress.Lz4BlockOutputStream.BLOCK_SIZE
+
+class Lz4BlockInputStreamTest extends Specification {
+    def executor = Executors.newFixedThreadPool(2)
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "reads #length bytes #mode"() {
+        def data = sampleData(length)
+
+        expect:
+        readAll(compress(data), readAhead) == data
+
+        where:
+        [length, readAhead] << [[0, 100, BLOCK_SIZE, 5 * BLOCK_SIZE + 17], [false, true]].combinations()
+        mode = readAhead ? "with read ahead" : "without read ahead"
+    }
+
+    def "empty stream only contains the end of stream header"() {
+        def compressed = compress(new byte[0])
+
+        expect:
+        compressed.length == BLOCK_HEADER_SIZE
+        ByteBuffer.wrap(compressed).getInt() == 0
+        newInputStream(compressed, readAhead).read() == -1
+
+        where:
+        readAhead << [false, true]
+    }
+
+    def "stores blocks that do not compress #mode"() {
+        def data = new byte[BLOCK_SIZE + 100]
+        new Random(42).nextBytes(data)
+
+        when:
+        def compressed = compress(data)
+        def header = ByteBuffer.wrap(compressed)
+
+        then:
+        header.getInt() == BLOCK_SIZE
+        header.getInt() == BLOCK_SIZE
+        compressed.length == data.length + 3 * BLOCK_HEADER_SIZE
+        readAll(compressed, readAhead) == data
+
+        where:
+        readAhead << [false, true]
+        mode = readAhead ? "with read ahead" : "without read ahead"
+    }
+
+    def "reads spanning blocks #mode"() {
+        def data = sampleData(3 * BLOCK_SIZE)
+        def input = newInputStream(compress(data), readAhead)
+
+        when:
+        def start = new byte[BLOCK_SIZE - 10]
+        new DataInputStream(input).readFully(start)
+        def spanning = new byte[BLOCK_SIZE + 20]
+        new DataInputStream(input).readFully(spanning)
+        def single = input.read()
+        def rest = input.bytes
+
+        then:
+        start == data[0..<(BLOCK_SIZE - 10)] as byte[]
+        spanning == data[(BLOCK_SIZE - 10)..<(2 * BLOCK_SIZE + 10)] as byte[]
+        single == (data[2 * BLOCK_SIZE + 10] & 0xff)
+        rest == data[(2 * BLOCK_SIZE + 11)..<data.length] as byte[]
+        input.read() == -1
+
+        where:
+        readAhead << [false, true]
+        mode = readAhead ? "with read ahead" : "without read ahead"
+    }
+
+    def "fails on truncated header #mode"() {
+        def compressed = compress(sampleData(100))
+        def truncated = Arrays.copyOf(compressed, BLOCK_HEADER_SIZE - 2)
+
+        when:
+        readAll(truncated, readAhead)
+
+        then:
+        thrown(EOFException)
+
+        where:
+        readAhead << [false, true]
+        mode = readAhead ? "with read ahead" : "without read ahead"
+    }
+
+    def "fails on missing end of stream #mode"() {
+        def compressed = compress(sampleData(100))
+        def truncated = Arrays.copyOf(compressed, compressed.length - BLOCK_HEADER_SIZE)
+
+        when:
+        readAll(truncated, readAhead)
+
+        then:
+        thrown(EOFException)
+
+        where:
+        readAhead << [false, true]
+        mode = readAhead ? "with read ahead" : "without read ahead"
+    }
+
+    def "fails on corrupt header #mode"() {
+        def compressed = compress(sampleData(100))
+        ByteBuffer.wrap(compressed).putInt(BLOCK_SIZE + 1)
+
+        when:
+        readAll(compressed, readAhead)
+
+        then:
+        def e = thrown(ZipException)
+        e.message == "Corrupt LZ4 block header"
+
+        where:
+        readAhead << [false, true]
+        mode = readAhead ? "with read ahead" : "without read ahead"
+    }
+
+    def "fails on corrupt data #mode"() {
+        def compressed = compress(sampleData(10000))
+        compressed[compressed.length - 100] ^= 0xff
+
+        when:
+        readAll(compressed, readAhead)
+
+        then:
+        thrown(ZipException)
+
+        where:
+        readAhead << [false, true]
+        mode = readAhead ? "with read ahead" : "without read ahead"
+    }
+
+    def "cancels blocks decompressed ahead when closed"() {
+        def tasks = []
+        // Only decompresses the first block, so the others stay pending
+        Executor executor = { Runnable task ->
+            tasks << task
+            if (tasks.size() == 1) {
+                task.run()
+            }
+        }
+        def closed = new AtomicBoolean()
+        def source = new ByteArrayInputStream(compress(sampleData(5 * BLOCK_SIZE))) {
+            @Override
+            void close() {
+                closed.set(true)
+            }
+        }
+        def input = new Lz4BlockInputStream(source, executor, 3)
+
+        when:
+        input.read()
+        input.close()
+
+        then:
+        tasks.size() == 3
+        tasks.every { (it as FutureTask).done }
+        tasks.drop(1).every { (it as FutureTask).cancelled }
+        closed.get()
+    }
+
+    private byte[] readAll(byte[] compressed, boolean readAhead) {
+        return newInputStream(compressed, readAhead).withCloseable { it.bytes }
+    }
+
+    private InputStream newInputStream(byte[] compressed, boolean readAhead) {
+        def input = new ByteArrayInputStream(compressed)
+        return readAhead ? new Lz4BlockInputStream(input, executor, 2) : new Lz4BlockInputStream(input)
+    }
+
+    private static byte[] compress(byte[] data) {
+        def output = new ByteArrayOutputStream()
+        new Lz4BlockOutputStream(output).withCloseable { it.write(data) }
+        return output.toByteArray()
+    }
+
+    private static byte[] sampleData(int length) {
+        def random = new Random(length)
+        def data = new byte[length]
+        for (int i = 0; i < length; i++) {
+            // Mix of compressible and random data
+            data[i] = i.intdiv(4096) % 2 == 0 ? (byte) (i % 31) : (byte) random.nextInt()
+        }
+        return data
+    }
+}
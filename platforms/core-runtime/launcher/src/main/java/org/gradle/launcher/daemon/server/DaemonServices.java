@@ -58,6 +58,7 @@
 import org.gradle.launcher.daemon.server.exec.WatchForDisconnection;
 import org.gradle.launcher.daemon.server.health.DaemonHealthCheck;
 import org.gradle.launcher.daemon.server.health.DaemonHealthStats;
+import org.gradle.launcher.daemon.server.health.DaemonHeapLoadSource;
 import org.gradle.launcher.daemon.server.health.HealthExpirationStrategy;
 import org.gradle.launcher.daemon.server.health.gc.GarbageCollectorMonitoringStrategy;
 import org.gradle.launcher.daemon.server.scaninfo.DaemonScanInfo;
@@ -132,6 +133,10 @@ protected DaemonHealthStats createDaemonHealthStats(DaemonRunningStats runningSt
         return new DaemonHealthStats(runningStats, strategy, executorFactory);
     }
 
+    protected DaemonHeapLoadSource createDaemonHeapLoadSource(DaemonHealthStats stats, GarbageCollectorMonitoringStrategy strategy) {
+        return new DaemonHeapLoadSource(stats, strategy);
+    }
+
     protected GarbageCollectorMonitoringStrategy createGarbageCollectorMonitoringStrategy() {
         return GarbageCollectorMonitoringStrategy.determineGcStrategy();
     }
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.launcher.daemon.server.health;
+
+import org.gradle.internal.work.HeapLoadSource;
+import org.gradle.launcher.daemon.server.health.gc.GarbageCollectionStats;
+import org.gradle.launcher.daemon.server.health.gc.GarbageCollectorMonitoringStrategy;
+
+/**
+ * Reports the heap usage of the daemon after garbage collection, relative to the usage at which the daemon is considered to be running out of heap space.
+ */
+public class DaemonHeapLoadSource implements HeapLoadSource {
+    private final DaemonHealthStats stats;
+    private final GarbageCollectorMonitoringStrategy strategy;
+
+    public DaemonHeapLoadSource(DaemonHealthStats stats, GarbageCollectorMonitoringStrategy strategy) {
+        this.stats = stats;
+        this.strategy = strategy;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "daemon heap";
+    }
+
+    @Override
+    public double getLoad() {
+        GarbageCollectionStats heapStats = stats.getHeapStats();
+        if (!heapStats.isValid() || strategy.getHeapUsageThreshold() <= 0) {
+            return -1;
+        }
+        return (double) heapStats.getUsedPercent() / strategy.getHeapUsageThreshold();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.remote.internal.inet;
+
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.id.UUIDGenerator;
+import org.gradle.internal.remote.ConnectionAcceptor;
+import org.gradle.internal.remote.internal.RemoteConnection;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Serializers;
+import org.gradle.internal.serialize.StatefulSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Measures the latency and throughput of socket connections to a local peer that echoes every message back, for both the blocking and the multiplexed transport.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class SocketConnectionBenchmark {
+    private static final int BATCH_SIZE = 32;
+    private static final StatefulSerializer<String> SERIALIZER = Serializers.stateful(BaseSerializerFactory.STRING_SERIALIZER);
+
+    @Param({"blocking", "multiplexed"})
+    String transportType;
+
+    @Param({"16", "4096"})
+    int messageSize;
+
+    DefaultExecutorFactory executorFactory;
+    MultiplexedSocketTransport transport;
+    ConnectionAcceptor acceptor;
+    RemoteConnection<String> connection;
+    RemoteConnection<String> echoConnection;
+    String message;
+
+    @Setup(Level.Trial)
+    public void setup() throws InterruptedException {
+        executorFactory = new DefaultExecutorFactory();
+        transport = new MultiplexedSocketTransport(executorFactory, transportType.equals("multiplexed"), 1);
+        BlockingQueue<RemoteConnection<String>> accepted = new LinkedBlockingQueue<RemoteConnection<String>>();
+        acceptor = new TcpIncomingConnector(executorFactory, new InetAddressFactory(), new UUIDGenerator(), transport).accept(completion -> {
+            RemoteConnection<String> peer = completion.create(SERIALIZER);
+            accepted.add(peer);
+            executorFactory.create("Echo peer").execute(() -> {
+                String received;
+                while ((received = peer.receive()) != null) {
+                    peer.dispatch(received);
+                    peer.flush();
+                }
+            });
+        }, false);
+        connection = new TcpOutgoingConnector(transport).connect(acceptor.getAddress()).create(SERIALIZER);
+        echoConnection = accepted.take();
+        StringBuilder builder = new StringBuilder(messageSize);
+        for (int i = 0; i < messageSize; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        message = builder.toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connection.stop();
+        echoConnection.stop();
+        acceptor.stop();
+        transport.stop();
+        executorFactory.stop();
+    }
+
+    @Benchmark
+    public void roundTrip(Blackhole blackhole) {
+        connection.dispatch(message);
+        connection.flush();
+        blackhole.consume(connection.receive());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void pipelined(Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            connection.dispatch(message);
+        }
+        connection.flush();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            blackhole.consume(connection.receive());
+        }
+    }
+}
@@ -0,0 +1,482 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.remote.internal.inet;
+
+import org.gradle.internal.io.BufferCaster;
+
+import javax.annotation.Nullable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A non-blocking socket channel whose IO is performed by a {@link SelectorLoop}, exposed as a pair of blocking streams.
+ *
+ * <p>The loop reads whatever is available into a queue that the input stream consumes. Reading stops while too much received data has not been consumed yet.</p>
+ *
+ * <p>The output stream fills pooled buffers, which are written on flush with a single gathering write from the flushing thread.
+ * Whatever the socket does not accept is left to the loop, and later flushes are batched with it until the loop has written it. Writers block while too much data is waiting to be written.</p>
+ *
+ * <p>Closing the output stream waits for the pending data to be written for a limited time, after which the socket is closed without writing it.</p>
+ */
+class MultiplexedSocketChannel {
+    private static final int MAX_RECEIVED_BYTES = 256 * 1024;
+    private static final int MAX_PENDING_WRITE_BYTES = 1024 * 1024;
+    private static final long DEFAULT_CLOSE_TIMEOUT_MILLIS = 30000;
+
+    private final SocketChannel socket;
+    private final SelectorLoop loop;
+    private final ByteBufferPool bufferPool;
+    private final long closeTimeoutMillis;
+    private final InputStream inputStream = new ChannelInputStream();
+    private final OutputStream outputStream = new ChannelOutputStream();
+
+    // Only accessed by the loop thread
+    @Nullable
+    private SelectionKey key;
+
+    private final Object lock = new Object();
+    private final Deque<byte[]> received = new ArrayDeque<byte[]>();
+    private int receivedOffset;
+    private int receivedBytes;
+    private boolean readPaused;
+    private boolean endOfInput;
+    private boolean inputClosed;
+    @Nullable
+    private IOException readFailure;
+
+    @Nullable
+    private ByteBuffer current;
+    private final Deque<ByteBuffer> pendingWrites = new ArrayDeque<ByteBuffer>();
+    private long pendingWriteBytes;
+    private boolean writeScheduled;
+    private boolean outputClosed;
+    @Nullable
+    private IOException writeFailure;
+
+    MultiplexedSocketChannel(SocketChannel socket, SelectorLoop loop, ByteBufferPool bufferPool) {
+        this(socket, loop, bufferPool, DEFAULT_CLOSE_TIMEOUT_MILLIS);
+    }
+
+    MultiplexedSocketChannel(SocketChannel socket, SelectorLoop loop, ByteBufferPool bufferPool, long closeTimeoutMillis) {
+        this.socket = socket;
+        this.loop = loop;
+        this.bufferPool = bufferPool;
+        this.closeTimeoutMillis = closeTimeoutMillis;
+        if (!loop.execute(this::register)) {
+            onLoopStopped();
+        }
+    }
+
+    SocketChannel getSocket() {
+        return socket;
+    }
+
+    InputStream getInputStream() {
+        return inputStream;
+    }
+
+    OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    private void register() {
+        try {
+            key = loop.register(this);
+        } catch (IOException e) {
+            failReads(e);
+            failWrites(e);
+        }
+    }
+
+    /**
+     * Called by the loop when the socket has data to read.
+     */
+    void onReadable() {
+        ByteBuffer buffer = loop.getReadBuffer();
+        int count;
+        try {
+            count = socket.read(buffer);
+        } catch (IOException e) {
+            if (SocketConnection.isEndOfStream(e)) {
+                count = -1;
+            } else {
+                failReads(e);
+                updateInterest();
+                return;
+            }
+        }
+        synchronized (lock) {
+            if (count < 0) {
+                endOfInput = true;
+            } else if (count > 0 && !inputClosed) {
+                BufferCaster.cast(buffer).flip();
+                byte[] chunk = new byte[count];
+                buffer.get(chunk);
+                received.add(chunk);
+                receivedBytes += count;
+                readPaused = receivedBytes >= MAX_RECEIVED_BYTES;
+            }
+            lock.notifyAll();
+        }
+        updateInterest();
+    }
+
+    /**
+     * Called by the loop when the socket can accept more data.
+     */
+    void onWritable() {
+        writePending();
+    }
+
+    /**
+     * Called by the loop when handling the IO for this channel failed, after which it no longer performs IO for this channel.
+     */
+    void onFailed(Throwable failure) {
+        if (key != null) {
+            key.cancel();
+        }
+        IOException ioFailure = new IOException("Socket IO failed.", failure);
+        failReads(ioFailure);
+        failWrites(ioFailure);
+    }
+
+    /**
+     * Called by the loop when it stops, after which it no longer performs IO for this channel.
+     */
+    void onLoopStopped() {
+        IOException failure = new IOException("Socket selector has stopped.");
+        failReads(failure);
+        failWrites(failure);
+    }
+
+    /**
+     * Writes the pending data that the socket did not accept when it was flushed. Runs on the loop thread.
+     */
+    private void writePending() {
+        synchronized (lock) {
+            writeScheduled = false;
+            writeToSocket();
+        }
+        updateInterest();
+    }
+
+    /**
+     * Writes as much of the pending data as the socket accepts, without blocking.
+     */
+    private void writeToSocket() {
+        // Must hold the lock
+        if (writeFailure != null || pendingWrites.isEmpty()) {
+            return;
+        }
+        try {
+            socket.write(pendingWrites.toArray(new ByteBuffer[0]));
+        } catch (IOException e) {
+            writeFailure = e;
+        }
+        while (!pendingWrites.isEmpty() && !pendingWrites.peek().hasRemaining()) {
+            ByteBuffer written = pendingWrites.remove();
+            pendingWriteBytes -= written.limit();
+            bufferPool.release(written);
+        }
+        lock.notifyAll();
+    }
+
+    /**
+     * Writes the pending data from the calling thread when the loop is not already waiting to write, and leaves whatever the socket does not accept to the loop.
+     */
+    private void writeOrSchedule() throws IOException {
+        // Must hold the lock
+        if (!writeScheduled) {
+            writeToSocket();
+        }
+        if (!pendingWrites.isEmpty()) {
+            scheduleWrite();
+        }
+        awaitPendingWrites(MAX_PENDING_WRITE_BYTES);
+    }
+
+    /**
+     * Selects the operations the loop should wait for, based on the state of the streams. Runs on the loop thread.
+     */
+    private void updateInterest() {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        int ops;
+        synchronized (lock) {
+            ops = 0;
+            if (!readPaused && !endOfInput && !inputClosed && readFailure == null) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (writeFailure == null && !pendingWrites.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+        }
+        try {
+            key.interestOps(ops);
+        } catch (CancelledKeyException e) {
+            // Channel has been closed
+        }
+    }
+
+    private void failReads(IOException failure) {
+        synchronized (lock) {
+            if (readFailure == null && !endOfInput) {
+                readFailure = failure;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void failWrites(IOException failure) {
+        synchronized (lock) {
+            if (writeFailure == null) {
+                writeFailure = failure;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void scheduleWrite() {
+        // Must hold the lock
+        if (!writeScheduled) {
+            writeScheduled = true;
+            if (!loop.execute(this::writePending)) {
+                writeFailure = new IOException("Socket selector has stopped.");
+            }
+        }
+    }
+
+    private void awaitPendingWrites(long maxPendingBytes) throws IOException {
+        // Must hold the lock
+        while (writeFailure == null && pendingWriteBytes > maxPendingBytes) {
+            await();
+        }
+        if (writeFailure != null) {
+            throw writeFailure;
+        }
+    }
+
+    /**
+     * Waits for all pending data to be written. When this takes longer than the close timeout, the socket is closed without writing the remaining data.
+     */
+    private void awaitAllWritten() throws IOException {
+        // Must hold the lock
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(closeTimeoutMillis);
+        while (writeFailure == null && pendingWriteBytes > 0) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                writeFailure = new IOException("Timeout waiting for pending data to be written to the socket.");
+                forceClose();
+                break;
+            }
+            await(remainingMillis);
+        }
+        if (writeFailure != null) {
+            throw writeFailure;
+        }
+    }
+
+    private void forceClose() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignore, the socket is being abandoned
+        }
+        // Let the loop drop the key of the closed socket
+        loop.execute(this::updateInterest);
+    }
+
+    private void await() throws InterruptedIOException {
+        await(0);
+    }
+
+    private void await(long timeoutMillis) throws InterruptedIOException {
+        try {
+            lock.wait(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private class ChannelInputStream extends InputStream {
+        private final byte[] readBuffer = new byte[1];
+
+        @Override
+        public int read() throws IOException {
+            int nread = read(readBuffer, 0, 1);
+            if (nread <= 0) {
+                return -1;
+            }
+            return readBuffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] dest, int offset, int max) throws IOException {
+            if (max == 0) {
+                return 0;
+            }
+            synchronized (lock) {
+                while (received.isEmpty()) {
+                    if (inputClosed || endOfInput) {
+                        return -1;
+                    }
+                    if (readFailure != null) {
+                        throw readFailure;
+                    }
+                    await();
+                }
+                byte[] chunk = received.peek();
+                int count = Math.min(max, chunk.length - receivedOffset);
+                System.arraycopy(chunk, receivedOffset, dest, offset, count);
+                receivedOffset += count;
+                receivedBytes -= count;
+                if (receivedOffset == chunk.length) {
+                    received.remove();
+                    receivedOffset = 0;
+                }
+                if (readPaused && receivedBytes < MAX_RECEIVED_BYTES / 2) {
+                    readPaused = false;
+                    loop.execute(MultiplexedSocketChannel.this::updateInterest);
+                }
+                return count;
+            }
+        }
+
+        @Override
+        public int available() {
+            synchronized (lock) {
+                return receivedBytes;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (lock) {
+                inputClosed = true;
+                received.clear();
+                receivedBytes = 0;
+                lock.notifyAll();
+            }
+            loop.execute(MultiplexedSocketChannel.this::updateInterest);
+        }
+    }
+
+    private class ChannelOutputStream extends OutputStream {
+        private final byte[] writeBuffer = new byte[1];
+
+        @Override
+        public void write(int b) throws IOException {
+            writeBuffer[0] = (byte) b;
+            write(writeBuffer, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] src, int offset, int max) throws IOException {
+            synchronized (lock) {
+                checkWritable();
+                int remaining = max;
+                int currentPos = offset;
+                while (remaining > 0) {
+                    if (current == null) {
+                        current = bufferPool.acquire();
+                    }
+                    int count = Math.min(remaining, current.remaining());
+                    current.put(src, currentPos, count);
+                    remaining -= count;
+                    currentPos += count;
+                    if (!current.hasRemaining()) {
+                        // Start writing full buffers without waiting for a flush, and block when the peer is not keeping up
+                        queueCurrent();
+                        writeOrSchedule();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (lock) {
+                checkWritable();
+                queueCurrent();
+                writeOrSchedule();
+            }
+        }
+
+        private void checkWritable() throws IOException {
+            if (writeFailure != null) {
+                throw writeFailure;
+            }
+            if (outputClosed) {
+                throw new EOFException("Socket output has been closed.");
+            }
+        }
+
+        private void queueCurrent() {
+            if (current != null && current.position() > 0) {
+                BufferCaster.cast(current).flip();
+                pendingWrites.add(current);
+                pendingWriteBytes += current.limit();
+                current = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (lock) {
+                if (outputClosed) {
+                    return;
+                }
+                try {
+                    // Wait for everything that has been flushed to reach the socket, as the socket is closed next
+                    if (writeFailure == null) {
+                        queueCurrent();
+                        writeOrSchedule();
+                        awaitAllWritten();
+                    }
+                } finally {
+                    outputClosed = true;
+                    releaseBuffers();
+                }
+            }
+        }
+
+        private void releaseBuffers() {
+            if (current != null) {
+                bufferPool.release(current);
+                current = null;
+            }
+            // Anything still pending could not be written
+            for (ByteBuffer pendingWrite : pendingWrites) {
+                bufferPool.release(pendingWrite);
+            }
+            pendingWrites.clear();
+            pendingWriteBytes = 0;
+        }
+    }
+}
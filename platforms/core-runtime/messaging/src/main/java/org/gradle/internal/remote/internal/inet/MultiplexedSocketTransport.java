@@ -0,0 +1,111 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.remote.internal.inet;
+
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Performs the IO for socket connections on a small, shared set of selector threads, instead of each connection blocking in its own selector.
+ *
+ * <p>Enabled by setting the {@value #ENABLED_PROPERTY_KEY} system property. Each process decides for itself, as both transports use the same wire format.</p>
+ */
+public class MultiplexedSocketTransport implements Stoppable {
+    public static final String ENABLED_PROPERTY_KEY = "org.gradle.internal.remote.multiplexed-transport";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 64;
+
+    private final ExecutorFactory executorFactory;
+    private final boolean enabled;
+    private final int selectorCount;
+    private final ByteBufferPool bufferPool = new ByteBufferPool(WRITE_BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    private final Object lock = new Object();
+    private final List<SelectorLoop> loops = new ArrayList<SelectorLoop>();
+    @Nullable
+    private ManagedExecutor executor;
+    private int nextLoop;
+    private boolean stopped;
+
+    public MultiplexedSocketTransport(ExecutorFactory executorFactory) {
+        this(executorFactory, Boolean.getBoolean(ENABLED_PROPERTY_KEY), Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 4)));
+    }
+
+    public MultiplexedSocketTransport(ExecutorFactory executorFactory, boolean enabled, int selectorCount) {
+        this.executorFactory = executorFactory;
+        this.enabled = enabled;
+        this.selectorCount = selectorCount;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Takes over the IO of the given connected socket, which must be in non-blocking mode.
+     */
+    MultiplexedSocketChannel register(SocketChannel socket) {
+        return new MultiplexedSocketChannel(socket, nextLoop(), bufferPool);
+    }
+
+    private SelectorLoop nextLoop() {
+        synchronized (lock) {
+            if (stopped) {
+                throw new IllegalStateException("Cannot register a socket, as the transport has been stopped.");
+            }
+            if (loops.isEmpty()) {
+                // Start the selector threads on first use, so that processes that do not use sockets do not pay for them
+                executor = executorFactory.create("Socket selector");
+                try {
+                    for (int i = 0; i < selectorCount; i++) {
+                        SelectorLoop loop = new SelectorLoop();
+                        loops.add(loop);
+                        executor.execute(loop);
+                    }
+                } catch (IOException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            // Connections are long-lived and similarly busy, so a round robin spreads them well enough
+            SelectorLoop loop = loops.get(nextLoop);
+            nextLoop = (nextLoop + 1) % loops.size();
+            return loop;
+        }
+    }
+
+    @Override
+    public void stop() {
+        ManagedExecutor executor;
+        synchronized (lock) {
+            stopped = true;
+            for (SelectorLoop loop : loops) {
+                loop.stop();
+            }
+            executor = this.executor;
+        }
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+}
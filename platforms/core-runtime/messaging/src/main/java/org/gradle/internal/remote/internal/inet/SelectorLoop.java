@@ -0,0 +1,148 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.remote.internal.inet;
+
+import org.gradle.internal.io.BufferCaster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Performs the socket IO for a set of {@link MultiplexedSocketChannel}s using a single selector.
+ *
+ * All changes to the registration of channels are made by the loop thread, so they never block on a concurrent select.
+ * When handling the IO of a channel fails, only that channel is failed.
+ */
+class SelectorLoop implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SelectorLoop.class);
+    static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Selector selector;
+    private final Object lock = new Object();
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    // Reads are copied out of this buffer straight away, so it can be shared by all channels of this loop
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private volatile boolean stopped;
+
+    SelectorLoop() throws IOException {
+        selector = Selector.open();
+    }
+
+    /**
+     * Runs the given action on the loop thread.
+     *
+     * @return false when the loop has stopped and the action will not run.
+     */
+    boolean execute(Runnable action) {
+        synchronized (lock) {
+            if (stopped) {
+                return false;
+            }
+            tasks.add(action);
+        }
+        selector.wakeup();
+        return true;
+    }
+
+    /**
+     * Registers the given channel for reads. Must be called from the loop thread.
+     */
+    SelectionKey register(MultiplexedSocketChannel channel) throws ClosedChannelException {
+        return channel.getSocket().register(selector, SelectionKey.OP_READ, channel);
+    }
+
+    /**
+     * Returns the buffer to read into. Must be called from the loop thread.
+     */
+    ByteBuffer getReadBuffer() {
+        BufferCaster.cast(readBuffer).clear();
+        return readBuffer;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!stopped) {
+                selector.select();
+                runTasks();
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    MultiplexedSocketChannel channel = (MultiplexedSocketChannel) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            channel.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            channel.onWritable();
+                        }
+                    } catch (CancelledKeyException e) {
+                        // Channel was closed, ignore
+                    } catch (Throwable e) {
+                        // Only fail the channel that failed, the loop keeps serving the other channels
+                        LOGGER.error("Socket IO failed.", e);
+                        channel.onFailed(e);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            LOGGER.error("Socket selector loop failed.", e);
+        } finally {
+            synchronized (lock) {
+                stopped = true;
+            }
+            // Run the remaining tasks, so that every channel is either registered and told about the stop below, or has already been told by its task
+            runTasks();
+            List<MultiplexedSocketChannel> channels = new ArrayList<MultiplexedSocketChannel>();
+            for (SelectionKey key : selector.keys()) {
+                channels.add((MultiplexedSocketChannel) key.attachment());
+            }
+            for (MultiplexedSocketChannel channel : channels) {
+                channel.onLoopStopped();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close selector.", e);
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    void stop() {
+        stopped = true;
+        selector.wakeup();
+    }
+}
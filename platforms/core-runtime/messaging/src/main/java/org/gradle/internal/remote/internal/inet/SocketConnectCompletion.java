@@ -21,13 +21,17 @@
 import org.gradle.internal.serialize.StatefulSerializer;
 import org.gradle.internal.remote.internal.ConnectCompletion;
 
+import javax.annotation.Nullable;
 import java.nio.channels.SocketChannel;
 
 class SocketConnectCompletion implements ConnectCompletion {
     private final SocketChannel socket;
+    @Nullable
+    private final MultiplexedSocketTransport transport;
 
-    public SocketConnectCompletion(SocketChannel socket) {
+    public SocketConnectCompletion(SocketChannel socket, @Nullable MultiplexedSocketTransport transport) {
         this.socket = socket;
+        this.transport = transport;
     }
 
     @Override
@@ -37,6 +41,6 @@ public String toString() {
 
     @Override
     public <T> RemoteConnection<T> create(StatefulSerializer<T> serializer) {
-        return new SocketConnection<T>(socket, new KryoBackedMessageSerializer(), serializer);
+        return new SocketConnection<T>(socket, transport, new KryoBackedMessageSerializer(), serializer);
     }
 }
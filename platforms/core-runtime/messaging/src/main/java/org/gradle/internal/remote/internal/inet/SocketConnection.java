@@ -31,6 +31,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
@@ -51,13 +52,26 @@
     private final FlushableEncoder encoder;
 
     public SocketConnection(SocketChannel socket, MessageSerializer streamSerializer, StatefulSerializer<T> messageSerializer) {
+        this(socket, null, streamSerializer, messageSerializer);
+    }
+
+    /**
+     * Creates a connection whose IO is performed by the given transport, or by the calling threads when the transport is null or disabled.
+     */
+    public SocketConnection(SocketChannel socket, @Nullable MultiplexedSocketTransport transport, MessageSerializer streamSerializer, StatefulSerializer<T> messageSerializer) {
         this.socket = socket;
         try {
             // NOTE: we use non-blocking IO as there is no reliable way when using blocking IO to shutdown reads while
             // keeping writes active. For example, Socket.shutdownInput() does not work on Windows.
             socket.configureBlocking(false);
-            outstr = new SocketOutputStream(socket);
-            instr = new SocketInputStream(socket);
+            if (transport != null && transport.isEnabled()) {
+                MultiplexedSocketChannel channel = transport.register(socket);
+                outstr = channel.getOutputStream();
+                instr = channel.getInputStream();
+            } else {
+                outstr = new SocketOutputStream(socket);
+                instr = new SocketInputStream(socket);
+            }
         } catch (IOException e) {
             throw UncheckedException.throwAsUncheckedException(e);
         }
@@ -95,7 +109,7 @@ public T receive() throws MessageIOException {
         }
     }
 
-    private static boolean isEndOfStream(Exception e) {
+    static boolean isEndOfStream(Exception e) {
         if (e instanceof EOFException) {
             return true;
         }
@@ -29,6 +29,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.channels.ClosedChannelException;
@@ -43,11 +44,18 @@ public class TcpIncomingConnector implements IncomingConnector {
     private final ExecutorFactory executorFactory;
     private final InetAddressFactory addressFactory;
     private final IdGenerator<UUID> idGenerator;
+    @Nullable
+    private final MultiplexedSocketTransport transport;
 
     public TcpIncomingConnector(ExecutorFactory executorFactory, InetAddressFactory addressFactory, IdGenerator<UUID> idGenerator) {
+        this(executorFactory, addressFactory, idGenerator, null);
+    }
+
+    public TcpIncomingConnector(ExecutorFactory executorFactory, InetAddressFactory addressFactory, IdGenerator<UUID> idGenerator, @Nullable MultiplexedSocketTransport transport) {
         this.executorFactory = executorFactory;
         this.addressFactory = addressFactory;
         this.idGenerator = idGenerator;
+        this.transport = transport;
     }
 
     @Override
@@ -115,7 +123,7 @@ public void run() {
                         }
                         LOGGER.debug("Accepted connection from {} to {}.", socket.socket().getRemoteSocketAddress(), socket.socket().getLocalSocketAddress());
                         try {
-                            action.execute(new SocketConnectCompletion(socket));
+                            action.execute(new SocketConnectCompletion(socket, transport));
                         } catch (Throwable t) {
                             socket.close();
                             throw t;
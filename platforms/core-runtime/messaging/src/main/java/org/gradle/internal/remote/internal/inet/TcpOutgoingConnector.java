@@ -23,6 +23,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.net.*;
 import java.nio.channels.SocketChannel;
@@ -31,6 +32,16 @@
 public class TcpOutgoingConnector implements OutgoingConnector {
     private static final Logger LOGGER = LoggerFactory.getLogger(TcpOutgoingConnector.class);
     private static final int CONNECT_TIMEOUT = 10000;
+    @Nullable
+    private final MultiplexedSocketTransport transport;
+
+    public TcpOutgoingConnector() {
+        this(null);
+    }
+
+    public TcpOutgoingConnector(@Nullable MultiplexedSocketTransport transport) {
+        this.transport = transport;
+    }
 
     @Override
     public ConnectCompletion connect(Address destinationAddress) throws org.gradle.internal.remote.internal.ConnectException {
@@ -62,7 +73,7 @@ public ConnectCompletion connect(Address destinationAddress) throws org.gradle.i
                     continue;
                 }
                 LOGGER.debug("Connected to address {}.", socketChannel.socket().getRemoteSocketAddress());
-                return new SocketConnectCompletion(socketChannel);
+                return new SocketConnectCompletion(socketChannel, transport);
             }
             throw new org.gradle.internal.remote.internal.ConnectException(String.format("Could not connect to server %s. Tried addresses: %s.",
                     destinationAddress, candidateAddresses), lastFailure);
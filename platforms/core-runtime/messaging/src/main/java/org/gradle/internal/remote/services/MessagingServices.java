@@ -26,6 +26,7 @@
 import org.gradle.internal.remote.internal.hub.MessageHubBackedClient;
 import org.gradle.internal.remote.internal.hub.MessageHubBackedServer;
 import org.gradle.internal.remote.internal.inet.InetAddressFactory;
+import org.gradle.internal.remote.internal.inet.MultiplexedSocketTransport;
 import org.gradle.internal.remote.internal.inet.TcpIncomingConnector;
 import org.gradle.internal.remote.internal.inet.TcpOutgoingConnector;
 
@@ -49,15 +50,20 @@ protected InetAddressFactory createInetAddressFactory() {
         return new InetAddressFactory();
     }
 
-    protected OutgoingConnector createOutgoingConnector() {
-        return new TcpOutgoingConnector();
+    protected MultiplexedSocketTransport createMultiplexedSocketTransport(ExecutorFactory executorFactory) {
+        return new MultiplexedSocketTransport(executorFactory);
     }
 
-    protected IncomingConnector createIncomingConnector(ExecutorFactory executorFactory, InetAddressFactory inetAddressFactory) {
+    protected OutgoingConnector createOutgoingConnector(MultiplexedSocketTransport transport) {
+        return new TcpOutgoingConnector(transport);
+    }
+
+    protected IncomingConnector createIncomingConnector(ExecutorFactory executorFactory, InetAddressFactory inetAddressFactory, MultiplexedSocketTransport transport) {
         return new TcpIncomingConnector(
                 executorFactory,
                 inetAddressFactory,
-                idGenerator
+                idGenerator,
+                transport
         );
     }
 
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.remote.internal.inet
+
+import spock.lang.Specification
+
+import java.nio.channels.ServerSocketChannel
+import java.nio.channels.SocketChannel
+
+class MultiplexedSocketChannelTest extends Specification {
+    def loop = new SelectorLoop()
+    def loopThread = new Thread(loop, "test selector")
+    def bufferPool = new ByteBufferPool(64 * 1024, 4)
+    def server = ServerSocketChannel.open()
+    def sockets = []
+
+    def setup() {
+        server.bind(new InetSocketAddress(InetAddress.loopbackAddress, 0))
+        loopThread.start()
+    }
+
+    def cleanup() {
+        loop.stop()
+        loopThread.join()
+        sockets*.close()
+        server.close()
+    }
+
+    def "failure handling the IO of one channel does not affect other channels"() {
+        def (failingSocket, failingPeer) = connect()
+        def (socket, peer) = connect()
+        def failing = new MultiplexedSocketChannel(failingSocket, loop, bufferPool) {
+            @Override
+            void onReadable() {
+                throw new IllegalStateException("broken")
+            }
+        }
+        def channel = new MultiplexedSocketChannel(socket, loop, bufferPool)
+
+        when:
+        failingPeer.socket().outputStream.write(1)
+        failing.inputStream.read()
+
+        then:
+        def e = thrown(IOException)
+        e.cause.message == "broken"
+
+        when:
+        peer.socket().outputStream.write(42)
+        channel.outputStream.write(7)
+        channel.outputStream.flush()
+
+        then:
+        channel.inputStream.read() == 42
+        peer.socket().inputStream.read() == 7
+    }
+
+    def "closing the output closes the socket when pending data cannot be written in time"() {
+        def socket = SocketChannel.open()
+        sockets << socket
+        socket.socket().sendBufferSize = 8192
+        socket.connect(server.localAddress)
+        def peer = server.accept()
+        sockets << peer
+        peer.socket().receiveBufferSize = 8192
+        socket.configureBlocking(false)
+        def channel = new MultiplexedSocketChannel(socket, loop, bufferPool, 200)
+        channel.outputStream.write(new byte[512 * 1024])
+
+        when:
+        channel.outputStream.close()
+
+        then:
+        def e = thrown(IOException)
+        e.message == "Timeout waiting for pending data to be written to the socket."
+        !socket.open
+    }
+
+    private List<SocketChannel> connect() {
+        def socket = SocketChannel.open(server.localAddress)
+        def peer = server.accept()
+        sockets << socket << peer
+        socket.configureBlocking(false)
+        return [socket, peer]
+    }
+}
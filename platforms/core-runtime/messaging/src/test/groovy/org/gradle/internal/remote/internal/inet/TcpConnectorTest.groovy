@@ -16,6 +16,7 @@
 package org.gradle.internal.remote.internal.inet
 
 import org.gradle.api.Action
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.id.UUIDGenerator
 import org.gradle.internal.remote.internal.ConnectCompletion
 import org.gradle.internal.remote.internal.ConnectException
@@ -30,6 +31,7 @@ import org.gradle.test.precondition.Requires
 import org.gradle.test.preconditions.UnitTestPreconditions
 import org.gradle.util.ports.ReleasingPortAllocator
 import org.junit.Rule
+import spock.lang.AutoCleanup
 import spock.lang.Issue
 import spock.lang.Shared
 import spock.lang.Timeout
@@ -41,11 +43,17 @@ class TcpConnectorTest extends ConcurrentSpec {
     @Shared def serializer = Serializers.stateful(BaseSerializerFactory.STRING_SERIALIZER)
     final def idGenerator = new UUIDGenerator()
     final def addressFactory = new InetAddressFactory()
-    final def outgoingConnector = new TcpOutgoingConnector()
-    final def incomingConnector = new TcpIncomingConnector(executorFactory, addressFactory, idGenerator)
+    @AutoCleanup("stop")
+    final def transport = new MultiplexedSocketTransport(new DefaultExecutorFactory(), isMultiplexed(), 1)
+    final def outgoingConnector = new TcpOutgoingConnector(transport)
+    final def incomingConnector = new TcpIncomingConnector(executorFactory, addressFactory, idGenerator, transport)
     @Rule
     public ReleasingPortAllocator portAllocator = new ReleasingPortAllocator()
 
+    boolean isMultiplexed() {
+        return false
+    }
+
     def "client can connect to server"() {
         Action action = Mock()
 
@@ -223,6 +231,29 @@ class TcpConnectorTest extends ConcurrentSpec {
         acceptor?.stop()
     }
 
+    def "can exchange messages larger than the connection buffers"() {
+        def message = "x" * (1024 * 1024)
+
+        when:
+        def acceptor = incomingConnector.accept({ ConnectCompletion event ->
+            def conn = event.create(serializer)
+            conn.dispatch(conn.receive())
+            conn.stop()
+        } as Action, false)
+
+        def connection = outgoingConnector.connect(acceptor.address).create(serializer)
+        connection.dispatch(message)
+        connection.flush()
+
+        then:
+        connection.receive() == message
+        connection.receive() == null
+
+        cleanup:
+        connection?.stop()
+        acceptor?.stop()
+    }
+
     def "returns null on failure to receive due to truncated input"() {
         given:
         def incomingSerializer = { Encoder encoder, String value ->
@@ -18,6 +18,8 @@
 
 import org.gradle.internal.operations.BuildOperationType;
 
+import javax.annotation.Nullable;
+
 public final class BuildCacheArchiveUnpackBuildOperationType implements BuildOperationType<BuildCacheArchiveUnpackBuildOperationType.Details, BuildCacheArchiveUnpackBuildOperationType.Result> {
 
     public interface Details {
@@ -35,6 +37,14 @@ public interface Result {
 
         long getArchiveEntryCount();
 
+        /**
+         * The compression of the archive, for example {@code gzip}, or {@code null} if the archive is not compressed.
+         *
+         * @since 8.6
+         */
+        @Nullable
+        String getArchiveCompression();
+
     }
 
 }
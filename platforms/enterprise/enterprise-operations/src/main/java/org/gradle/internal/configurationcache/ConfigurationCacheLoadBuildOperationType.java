@@ -38,6 +38,13 @@ public interface Result {
          */
         long getCacheEntrySize();
 
+        /**
+         * The number of bytes of the loaded configuration cache entry, before compression.
+         *
+         * @since 8.6
+         */
+        long getCacheEntryUncompressedSize();
+
         /**
          * The ID of the build that store the configuration cache entry.
          *
@@ -37,6 +37,7 @@
 import org.gradle.api.logging.Logging;
 import org.gradle.internal.Factory;
 import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.time.Clock;
 import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
@@ -51,6 +52,11 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
 
     private static final Logger LOGGER = Logging.getLogger(DefaultTestExecuter.class);
 
+    /**
+     * When set, test classes are distributed across forks based on their durations in the previous run, rather than round-robin.
+     */
+    public static final String DURATION_AWARE_SCHEDULING_PROPERTY_KEY = "org.gradle.internal.testing.duration-aware-scheduling";
+
     private final WorkerProcessFactory workerFactory;
     private final ActorFactory actorFactory;
     private final ForkedTestClasspathFactory testClasspathFactory;
@@ -59,12 +65,14 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
     private final Clock clock;
     private final DocumentationRegistry documentationRegistry;
     private final DefaultTestFilter testFilter;
+    private final ExecutorFactory executorFactory;
     private TestClassProcessor processor;
 
     public DefaultTestExecuter(
         WorkerProcessFactory workerFactory, ActorFactory actorFactory, ModuleRegistry moduleRegistry,
         WorkerLeaseService workerLeaseService, int maxWorkerCount,
-        Clock clock, DocumentationRegistry documentationRegistry, DefaultTestFilter testFilter
+        Clock clock, DocumentationRegistry documentationRegistry, DefaultTestFilter testFilter,
+        ExecutorFactory executorFactory
     ) {
         this.workerFactory = workerFactory;
         this.actorFactory = actorFactory;
@@ -74,6 +82,7 @@ public DefaultTestExecuter(
         this.clock = clock;
         this.documentationRegistry = documentationRegistry;
         this.testFilter = testFilter;
+        this.executorFactory = executorFactory;
     }
 
     @Override
@@ -90,7 +99,7 @@ public void execute(final JvmTestExecutionSpec testExecutionSpec, TestResultProc
             @Override
             public TestClassProcessor create() {
                 return new ForkingTestClassProcessor(workerLeaseService, workerFactory, testInstanceFactory, testExecutionSpec.getJavaForkOptions(),
-                    classpath, testFramework.getWorkerConfigurationAction(), documentationRegistry);
+                    classpath, testFramework.getWorkerConfigurationAction(), documentationRegistry, executorFactory);
             }
         };
         final Factory<TestClassProcessor> reforkingProcessorFactory = new Factory<TestClassProcessor>() {
@@ -102,7 +111,7 @@ public TestClassProcessor create() {
         processor =
             new PatternMatchTestClassProcessor(testFilter,
                 new RunPreviousFailedFirstTestClassProcessor(testExecutionSpec.getPreviousFailedTestClasses(),
-                    new MaxNParallelTestClassProcessor(getMaxParallelForks(testExecutionSpec), reforkingProcessorFactory, actorFactory)));
+                    createParallelProcessor(testExecutionSpec, reforkingProcessorFactory)));
 
         final FileTree testClassFiles = testExecutionSpec.getCandidateClassFiles();
 
@@ -126,6 +135,14 @@ public void stopNow() {
         }
     }
 
+    private TestClassProcessor createParallelProcessor(JvmTestExecutionSpec testExecutionSpec, Factory<TestClassProcessor> processorFactory) {
+        int maxParallelForks = getMaxParallelForks(testExecutionSpec);
+        if (maxParallelForks > 1 && Boolean.getBoolean(DURATION_AWARE_SCHEDULING_PROPERTY_KEY)) {
+            return new MaxNParallelTestClassProcessor(maxParallelForks, processorFactory, actorFactory, testExecutionSpec.getPreviousTestClassDurations(), clock);
+        }
+        return new MaxNParallelTestClassProcessor(maxParallelForks, processorFactory, actorFactory);
+    }
+
     private int getMaxParallelForks(JvmTestExecutionSpec testExecutionSpec) {
         int maxParallelForks = testExecutionSpec.getMaxParallelForks();
         if (maxParallelForks > maxWorkerCount) {
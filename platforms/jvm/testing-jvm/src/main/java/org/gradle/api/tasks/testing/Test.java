@@ -70,6 +70,7 @@
 import org.gradle.internal.Factory;
 import org.gradle.internal.actor.ActorFactory;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.deprecation.DeprecationLogger;
 import org.gradle.internal.jvm.DefaultModularitySpec;
 import org.gradle.internal.jvm.JavaModuleDetector;
@@ -93,7 +94,7 @@
 import javax.inject.Inject;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -659,7 +660,8 @@ protected JvmTestExecutionSpec createTestExecutionSpec() {
         boolean testIsModule = javaModuleDetector.isModule(modularity.getInferModulePath().get(), getTestClassesDirs());
         FileCollection classpath = javaModuleDetector.inferClasspath(testIsModule, stableClasspath);
         FileCollection modulePath = javaModuleDetector.inferModulePath(testIsModule, stableClasspath);
-        return new JvmTestExecutionSpec(getTestFramework(), classpath, modulePath, getCandidateClassFiles(), isScanForTestClasses(), getTestClassesDirs(), getPath(), getIdentityPath(), getForkEvery(), javaForkOptions, getMaxParallelForks(), getPreviousFailedTestClasses(), testIsModule);
+        PreviousTestResults previousResults = readPreviousTestResults();
+        return new JvmTestExecutionSpec(getTestFramework(), classpath, modulePath, getCandidateClassFiles(), isScanForTestClasses(), getTestClassesDirs(), getPath(), getIdentityPath(), getForkEvery(), javaForkOptions, getMaxParallelForks(), previousResults.failedTestClasses, previousResults.testClassDurations, testIsModule);
     }
 
     private void validateExecutableMatchesToolchain() {
@@ -670,22 +672,26 @@ private void validateExecutableMatchesToolchain() {
                 toolchainExecutable, "toolchain from `javaLauncher` property");
     }
 
-    private Set<String> getPreviousFailedTestClasses() {
+    private PreviousTestResults readPreviousTestResults() {
         TestResultSerializer serializer = new TestResultSerializer(getBinaryResultsDirectory().getAsFile().get());
+        final PreviousTestResults previousResults = new PreviousTestResults();
         if (serializer.isHasResults()) {
-            final Set<String> previousFailedTestClasses = new HashSet<String>();
             serializer.read(new Action<TestClassResult>() {
                 @Override
                 public void execute(TestClassResult testClassResult) {
                     if (testClassResult.getFailuresCount() > 0) {
-                        previousFailedTestClasses.add(testClassResult.getClassName());
+                        previousResults.failedTestClasses.add(testClassResult.getClassName());
                     }
+                    previousResults.testClassDurations.put(testClassResult.getClassName(), testClassResult.getDuration());
                 }
             });
-            return previousFailedTestClasses;
-        } else {
-            return Collections.emptySet();
         }
+        return previousResults;
+    }
+
+    private static class PreviousTestResults {
+        final Set<String> failedTestClasses = new HashSet<String>();
+        final Map<String, Long> testClassDurations = new HashMap<String, Long>();
     }
 
     @Override
@@ -726,7 +732,8 @@ protected TestExecuter<JvmTestExecutionSpec> createTestExecuter() {
                 getServices().get(StartParameter.class).getMaxWorkerCount(),
                 getServices().get(Clock.class),
                 getServices().get(DocumentationRegistry.class),
-                (DefaultTestFilter) getFilter());
+                (DefaultTestFilter) getFilter(),
+                getServices().get(ExecutorFactory.class));
         } else {
             return testExecuter;
         }
@@ -24,6 +24,7 @@
 import org.gradle.api.internal.tasks.testing.junit.result.BinaryResultBackedTestResultsProvider;
 import org.gradle.api.internal.tasks.testing.junit.result.TestResultsProvider;
 import org.gradle.api.internal.tasks.testing.report.DefaultTestReport;
+import org.gradle.api.internal.tasks.testing.report.IncrementalTestReport;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.model.ReplacedBy;
 import org.gradle.api.tasks.IgnoreEmptyDirectories;
@@ -168,8 +169,14 @@ void generateReport() {
         TestResultsProvider resultsProvider = createAggregateProvider();
         try {
             if (resultsProvider.isHasResults()) {
-                DefaultTestReport testReport = new DefaultTestReport(getBuildOperationExecutor());
-                testReport.generateReport(resultsProvider, getDestinationDirectory().get().getAsFile());
+                File reportDir = getDestinationDirectory().get().getAsFile();
+                if (IncrementalTestReport.isIncrementalEnabled()) {
+                    IncrementalTestReport testReport = new IncrementalTestReport(getBuildOperationExecutor(), new File(getTemporaryDir(), "report-index.bin"));
+                    testReport.generateReport(getTestResults().getFiles(), resultsProvider, reportDir);
+                } else {
+                    DefaultTestReport testReport = new DefaultTestReport(getBuildOperationExecutor());
+                    testReport.generateReport(resultsProvider, reportDir);
+                }
             } else {
                 getLogger().info("{} - no binary test results found in dirs: {}.", getPath(), getTestResults().getFiles());
                 setDidWork(false);
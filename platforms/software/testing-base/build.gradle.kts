@@ -1,5 +1,6 @@
 plugins {
     id("gradlebuild.distribution.api-java")
+    id("gradlebuild.jmh")
 }
 
 gradlebuildJava.usedInWorkers()
@@ -15,6 +16,7 @@ dependencies {
     implementation(project(":base-services"))
     implementation(project(":messaging"))
     implementation(project(":native"))
+    implementation(project(":hashing"))
     implementation(project(":logging"))
     implementation(project(":process-services"))
     implementation(project(":worker-processes"))
@@ -42,6 +44,9 @@ dependencies {
     testImplementation(testFixtures(project(":logging")))
     testImplementation(testFixtures(project(":base-services")))
 
+    jmhImplementation(testFixtures(project(":core")))
+    jmhImplementation(project(":internal-testing"))
+
     testFixturesImplementation(project(":base-services"))
     testFixturesImplementation(project(":model-core"))
     testFixturesImplementation(project(":internal-integ-testing"))
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.report;
+
+import org.gradle.api.internal.tasks.testing.junit.result.Binary2JUnitXmlReportGenerator;
+import org.gradle.api.internal.tasks.testing.junit.result.BinaryResultBackedTestResultsProvider;
+import org.gradle.api.internal.tasks.testing.junit.result.JUnitXmlResultOptions;
+import org.gradle.api.internal.tasks.testing.junit.result.ReportGenerationBatch;
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestOutputStore;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultSerializer;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultsProvider;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationListener;
+import org.gradle.internal.operations.DefaultBuildOperationExecutor;
+import org.gradle.internal.operations.DefaultBuildOperationIdFactory;
+import org.gradle.internal.operations.DefaultBuildOperationQueueFactory;
+import org.gradle.internal.operations.OperationFinishEvent;
+import org.gradle.internal.operations.OperationIdentifier;
+import org.gradle.internal.operations.OperationProgressEvent;
+import org.gradle.internal.operations.OperationStartEvent;
+import org.gradle.internal.progress.NoOpProgressLoggerFactory;
+import org.gradle.internal.time.Time;
+import org.gradle.test.fixtures.work.TestWorkerLeaseService;
+import org.gradle.util.internal.GFileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures generating the HTML and JUnit XML reports from a synthetic set of binary test results, with and without streaming the results.
+ * Run with {@code -prof gc} to compare the allocations of both modes.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class TestReportGenerationBenchmark {
+    private static final int METHODS_PER_CLASS = 30;
+
+    @Param({"false", "true"})
+    boolean streaming;
+
+    @Param({"2000"})
+    int classCount;
+
+    File tempDir;
+    File resultsDir;
+    File reportDir;
+    DefaultExecutorFactory executorFactory;
+    BuildOperationExecutor buildOperationExecutor;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        System.setProperty(ReportGenerationBatch.STREAMING_REPORTS_PROPERTY_KEY, String.valueOf(streaming));
+        tempDir = Files.createTempDirectory("test-report").toFile();
+        resultsDir = new File(tempDir, "results");
+        reportDir = new File(tempDir, "report");
+        resultsDir.mkdirs();
+        writeResults();
+
+        executorFactory = new DefaultExecutorFactory();
+        buildOperationExecutor = new DefaultBuildOperationExecutor(
+            new NoOpBuildOperationListener(), Time.clock(), new NoOpProgressLoggerFactory(),
+            new DefaultBuildOperationQueueFactory(new TestWorkerLeaseService()), executorFactory,
+            new DefaultParallelismConfiguration(false, Runtime.getRuntime().availableProcessors()), new DefaultBuildOperationIdFactory());
+    }
+
+    private void writeResults() {
+        List<TestClassResult> classes = new ArrayList<TestClassResult>(classCount);
+        long id = 0;
+        for (int i = 0; i < classCount; i++) {
+            TestClassResult classResult = new TestClassResult(++id, "org.gradle.package" + (i % 50) + ".SomeTest" + i, 1000);
+            for (int j = 0; j < METHODS_PER_CLASS; j++) {
+                boolean failed = j == 0 && i % 20 == 0;
+                TestMethodResult methodResult = new TestMethodResult(++id, "test" + j, failed ? TestResult.ResultType.FAILURE : TestResult.ResultType.SUCCESS, 15, 1000 + j * 15);
+                if (failed) {
+                    methodResult.addFailure("expected:<1> but was:<2>", "java.lang.AssertionError: expected:<1> but was:<2>\n\tat org.junit.Assert.fail(Assert.java:89)", "java.lang.AssertionError");
+                }
+                classResult.add(methodResult);
+            }
+            classes.add(classResult);
+        }
+        new TestResultSerializer(resultsDir).write(classes);
+        new TestOutputStore(resultsDir).writer().close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorFactory.stop();
+        GFileUtils.deleteQuietly(tempDir);
+        System.clearProperty(ReportGenerationBatch.STREAMING_REPORTS_PROPERTY_KEY);
+    }
+
+    @Benchmark
+    public void generateHtmlReport() throws IOException {
+        TestResultsProvider resultsProvider = new BinaryResultBackedTestResultsProvider(resultsDir);
+        try {
+            new DefaultTestReport(buildOperationExecutor).generateReport(resultsProvider, reportDir);
+        } finally {
+            resultsProvider.close();
+        }
+    }
+
+    @Benchmark
+    public void generateXmlReport() throws IOException {
+        TestResultsProvider resultsProvider = new BinaryResultBackedTestResultsProvider(resultsDir);
+        try {
+            reportDir.mkdirs();
+            new Binary2JUnitXmlReportGenerator(reportDir, resultsProvider, new JUnitXmlResultOptions(false, false), buildOperationExecutor, "localhost").generate();
+        } finally {
+            resultsProvider.close();
+        }
+    }
+
+    private static class NoOpBuildOperationListener implements BuildOperationListener {
+        @Override
+        public void started(BuildOperationDescriptor buildOperation, OperationStartEvent startEvent) {
+        }
+
+        @Override
+        public void progress(OperationIdentifier operationIdentifier, OperationProgressEvent progressEvent) {
+        }
+
+        @Override
+        public void finished(BuildOperationDescriptor buildOperation, OperationFinishEvent finishEvent) {
+        }
+    }
+}
@@ -78,20 +78,42 @@ public BuildOperationDescriptor.Builder description() {
             }
         });
 
-        buildOperationExecutor.runAll(new Action<BuildOperationQueue<JUnitXmlReportFileGenerator>>() {
+        if (ReportGenerationBatch.isStreamingEnabled()) {
+            generateStreaming();
+        } else {
+            buildOperationExecutor.runAll(new Action<BuildOperationQueue<JUnitXmlReportFileGenerator>>() {
+                @Override
+                public void execute(final BuildOperationQueue<JUnitXmlReportFileGenerator> queue) {
+                    testResultsProvider.visitClasses(new Action<TestClassResult>() {
+                        @Override
+                        public void execute(final TestClassResult result) {
+                            queue.add(generator(result));
+                        }
+                    });
+                }
+            });
+        }
+
+        LOG.info("Finished generating test XML results ({}) into: {}", clock.getElapsed(), testResultsDir);
+    }
+
+    /**
+     * Writes the files in bounded batches while visiting the results, so that the results of classes that have been written can be discarded.
+     */
+    private void generateStreaming() {
+        final ReportGenerationBatch<JUnitXmlReportFileGenerator> batch = new ReportGenerationBatch<JUnitXmlReportFileGenerator>(buildOperationExecutor);
+        testResultsProvider.visitClasses(new Action<TestClassResult>() {
             @Override
-            public void execute(final BuildOperationQueue<JUnitXmlReportFileGenerator> queue) {
-                testResultsProvider.visitClasses(new Action<TestClassResult>() {
-                    @Override
-                    public void execute(final TestClassResult result) {
-                        final File reportFile = new File(testResultsDir, getReportFileName(result));
-                        queue.add(new JUnitXmlReportFileGenerator(result, reportFile, xmlWriter));
-                    }
-                });
+            public void execute(TestClassResult result) {
+                batch.add(generator(result));
             }
         });
+        batch.flush();
+    }
 
-        LOG.info("Finished generating test XML results ({}) into: {}", clock.getElapsed(), testResultsDir);
+    private JUnitXmlReportFileGenerator generator(TestClassResult result) {
+        File reportFile = new File(testResultsDir, getReportFileName(result));
+        return new JUnitXmlReportFileGenerator(result, reportFile, xmlWriter);
     }
 
     private String getReportFileName(TestClassResult result) {
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit.result;
+
+import org.gradle.api.Action;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the operations that generate report files in parallel, in batches of bounded size.
+ * This allows the reports to be generated while streaming the results class by class, without retaining the results of all classes.
+ */
+public class ReportGenerationBatch<T extends RunnableBuildOperation> {
+    /**
+     * When set, test reports are generated while streaming the results class by class, instead of from a model of all results.
+     */
+    public static final String STREAMING_REPORTS_PROPERTY_KEY = "org.gradle.internal.testing.streaming-reports";
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final int maxBatchSize;
+    private List<T> operations;
+
+    public ReportGenerationBatch(BuildOperationExecutor buildOperationExecutor) {
+        this(buildOperationExecutor, DEFAULT_BATCH_SIZE);
+    }
+
+    public ReportGenerationBatch(BuildOperationExecutor buildOperationExecutor, int maxBatchSize) {
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.maxBatchSize = maxBatchSize;
+        this.operations = new ArrayList<T>(maxBatchSize);
+    }
+
+    public static boolean isStreamingEnabled() {
+        return Boolean.getBoolean(STREAMING_REPORTS_PROPERTY_KEY);
+    }
+
+    /**
+     * Adds an operation to the current batch, running the batch when it is full.
+     */
+    public void add(T operation) {
+        operations.add(operation);
+        if (operations.size() >= maxBatchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Runs the operations of the current batch and waits for them to complete.
+     */
+    public void flush() {
+        if (operations.isEmpty()) {
+            return;
+        }
+        final List<T> batch = operations;
+        operations = new ArrayList<T>(maxBatchSize);
+        buildOperationExecutor.runAll(new Action<BuildOperationQueue<T>>() {
+            @Override
+            public void execute(BuildOperationQueue<T> queue) {
+                for (T operation : batch) {
+                    queue.add(operation);
+                }
+            }
+        });
+    }
+}
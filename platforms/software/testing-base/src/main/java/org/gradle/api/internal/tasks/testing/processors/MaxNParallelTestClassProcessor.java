@@ -25,18 +25,37 @@
 import org.gradle.internal.actor.ActorFactory;
 import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.dispatch.DispatchException;
+import org.gradle.internal.time.Clock;
+import org.gradle.internal.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
  * processors.
+ *
+ * <p>When the durations of the test classes from a previous run are given, the test classes are instead collected until
+ * the processor is stopped, and then assigned longest first to the processor with the least estimated work, so that
+ * the processors finish at about the same time. Each processor still receives its test classes in the order they arrived.</p>
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MaxNParallelTestClassProcessor.class);
+
     private final int maxProcessors;
     private final Factory<TestClassProcessor> factory;
     private final ActorFactory actorFactory;
+    @Nullable
+    private final Map<String, Long> previousClassDurations;
+    private final Clock clock;
+    private final List<TestClassRunInfo> pendingTestClasses = new ArrayList<TestClassRunInfo>();
+    private final List<ScheduledProcessor> scheduledProcessors = new ArrayList<ScheduledProcessor>();
     private TestResultProcessor resultProcessor;
     private int pos;
     private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
@@ -46,9 +65,18 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     private volatile boolean stoppedNow;
 
     public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory) {
+        this(maxProcessors, factory, actorFactory, null, Time.clock());
+    }
+
+    /**
+     * @param previousClassDurations the duration in milliseconds of each test class in a previous run, or null to use round-robin.
+     */
+    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory, @Nullable Map<String, Long> previousClassDurations, Clock clock) {
         this.maxProcessors = maxProcessors;
         this.factory = factory;
         this.actorFactory = actorFactory;
+        this.previousClassDurations = previousClassDurations;
+        this.clock = clock;
     }
 
     @Override
@@ -63,16 +91,14 @@ public void processTestClass(TestClassRunInfo testClass) {
         if (stoppedNow) {
             return;
         }
+        if (previousClassDurations != null) {
+            pendingTestClasses.add(testClass);
+            return;
+        }
 
         TestClassProcessor processor;
         if (processors.size() < maxProcessors) {
-            processor = factory.create();
-            rawProcessors.add(processor);
-            Actor actor = actorFactory.createActor(processor);
-            processor = actor.getProxy(TestClassProcessor.class);
-            actors.add(actor);
-            processors.add(processor);
-            processor.startProcessing(resultProcessor);
+            processor = startProcessor(factory.create());
         } else {
             processor = processors.get(pos);
             pos = (pos + 1) % processors.size();
@@ -80,13 +106,103 @@ public void processTestClass(TestClassRunInfo testClass) {
         processor.processTestClass(testClass);
     }
 
+    private TestClassProcessor startProcessor(TestClassProcessor processor) {
+        rawProcessors.add(processor);
+        Actor actor = actorFactory.createActor(processor);
+        processor = actor.getProxy(TestClassProcessor.class);
+        actors.add(actor);
+        processors.add(processor);
+        processor.startProcessing(resultProcessor);
+        return processor;
+    }
+
+    private void scheduleByDuration() {
+        if (stoppedNow || pendingTestClasses.isEmpty()) {
+            return;
+        }
+        assert previousClassDurations != null;
+
+        // Test classes without a previous duration are assumed to take as long as an average test class
+        long knownTotal = 0;
+        int knownCount = 0;
+        for (TestClassRunInfo testClass : pendingTestClasses) {
+            Long duration = previousClassDurations.get(testClass.getTestClassName());
+            if (duration != null) {
+                knownTotal += duration;
+                knownCount++;
+            }
+        }
+        long defaultDuration = knownCount == 0 ? 1 : Math.max(1, knownTotal / knownCount);
+        final long[] estimates = new long[pendingTestClasses.size()];
+        List<Integer> longestFirst = new ArrayList<Integer>(estimates.length);
+        for (int i = 0; i < estimates.length; i++) {
+            Long duration = previousClassDurations.get(pendingTestClasses.get(i).getTestClassName());
+            estimates[i] = duration == null ? defaultDuration : duration;
+            longestFirst.add(i);
+        }
+        Collections.sort(longestFirst, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer left, Integer right) {
+                return Long.compare(estimates[right], estimates[left]);
+            }
+        });
+
+        int processorCount = Math.min(maxProcessors, estimates.length);
+        for (int i = 0; i < processorCount; i++) {
+            scheduledProcessors.add(new ScheduledProcessor());
+        }
+        int[] assignments = new int[estimates.length];
+        for (int index : longestFirst) {
+            int leastLoaded = 0;
+            for (int i = 1; i < processorCount; i++) {
+                if (scheduledProcessors.get(i).estimatedDuration < scheduledProcessors.get(leastLoaded).estimatedDuration) {
+                    leastLoaded = i;
+                }
+            }
+            ScheduledProcessor scheduled = scheduledProcessors.get(leastLoaded);
+            scheduled.estimatedDuration += estimates[index];
+            scheduled.testClassCount++;
+            assignments[index] = leastLoaded;
+        }
+
+        for (ScheduledProcessor scheduled : scheduledProcessors) {
+            scheduled.processor = startProcessor(new FinishTimeTrackingProcessor(factory.create(), scheduled));
+        }
+        for (int i = 0; i < assignments.length; i++) {
+            scheduledProcessors.get(assignments[i]).processor.processTestClass(pendingTestClasses.get(i));
+        }
+        pendingTestClasses.clear();
+    }
+
+    private void reportIdleTime() {
+        if (scheduledProcessors.size() < 2 || stoppedNow) {
+            return;
+        }
+        long lastFinishTime = 0;
+        for (ScheduledProcessor scheduled : scheduledProcessors) {
+            lastFinishTime = Math.max(lastFinishTime, scheduled.finishTime);
+        }
+        long totalIdleTime = 0;
+        for (int i = 0; i < scheduledProcessors.size(); i++) {
+            ScheduledProcessor scheduled = scheduledProcessors.get(i);
+            long idleTime = lastFinishTime - scheduled.finishTime;
+            totalIdleTime += idleTime;
+            LOGGER.info("Test executor {} ran {} test classes (estimated {}ms) and was idle for {}ms at the end of the test run.", i + 1, scheduled.testClassCount, scheduled.estimatedDuration, idleTime);
+        }
+        LOGGER.info("Test executors were idle for {}ms in total at the end of the test run.", totalIdleTime);
+    }
+
     @Override
     public void stop() {
+        if (previousClassDurations != null) {
+            scheduleByDuration();
+        }
         try {
             CompositeStoppable.stoppable(processors).add(actors).add(resultProcessorActor).stop();
         } catch (DispatchException e) {
             throw UncheckedException.throwAsUncheckedException(e.getCause());
         }
+        reportIdleTime();
     }
 
     @Override
@@ -96,4 +212,48 @@ public void stopNow() {
             processor.stopNow();
         }
     }
+
+    private static class ScheduledProcessor {
+        TestClassProcessor processor;
+        long estimatedDuration;
+        int testClassCount;
+        volatile long finishTime;
+    }
+
+    /**
+     * Records when the processor has finished its work. Runs on the actor thread of the processor.
+     */
+    private class FinishTimeTrackingProcessor implements TestClassProcessor {
+        private final TestClassProcessor delegate;
+        private final ScheduledProcessor scheduled;
+
+        FinishTimeTrackingProcessor(TestClassProcessor delegate, ScheduledProcessor scheduled) {
+            this.delegate = delegate;
+            this.scheduled = scheduled;
+        }
+
+        @Override
+        public void startProcessing(TestResultProcessor resultProcessor) {
+            delegate.startProcessing(resultProcessor);
+        }
+
+        @Override
+        public void processTestClass(TestClassRunInfo testClass) {
+            delegate.processTestClass(testClass);
+        }
+
+        @Override
+        public void stop() {
+            try {
+                delegate.stop();
+            } finally {
+                scheduled.finishTime = clock.getCurrentTime();
+            }
+        }
+
+        @Override
+        public void stopNow() {
+            delegate.stopNow();
+        }
+    }
 }
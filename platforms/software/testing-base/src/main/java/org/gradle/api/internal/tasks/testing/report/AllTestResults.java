@@ -61,11 +61,15 @@ public ClassTestResults addTestClass(long classId, String className, String clas
     }
 
     private PackageTestResults addPackageForClass(String className) {
+        return addPackage(packageNameOf(className));
+    }
+
+    static String packageNameOf(String className) {
         String packageName = StringUtils.substringBeforeLast(className, ".");
         if (packageName.equals(className)) {
             packageName = "";
         }
-        return addPackage(packageName);
+        return packageName;
     }
 
     private PackageTestResults addPackage(String packageName) {
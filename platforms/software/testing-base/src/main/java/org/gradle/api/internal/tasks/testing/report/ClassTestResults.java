@@ -91,6 +91,14 @@ public Collection<TestResult> getTestResults() {
         return results;
     }
 
+    /**
+     * Discards the results of the individual tests, once the page for this class has been rendered.
+     * The summary, and the failed and ignored tests, are kept for the package and overview pages.
+     */
+    public void discardTestResults() {
+        results.clear();
+    }
+
     public TestResult addTest(String testName, String testDisplayName, long duration) {
         TestResult test = new TestResult(testName, testDisplayName, duration, this);
         results.add(test);
@@ -20,6 +20,7 @@
 import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
 import org.gradle.api.internal.tasks.testing.junit.result.TestFailure;
 import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult;
+import org.gradle.api.internal.tasks.testing.junit.result.ReportGenerationBatch;
 import org.gradle.api.internal.tasks.testing.junit.result.TestResultsProvider;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
@@ -37,7 +38,9 @@
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.gradle.api.tasks.testing.TestResult.ResultType.SKIPPED;
 
@@ -53,9 +56,26 @@ public DefaultTestReport(BuildOperationExecutor buildOperationExecutor) {
     public void generateReport(TestResultsProvider resultsProvider, File reportDir) {
         LOG.info("Generating HTML test report...");
 
+        Timer clock = Time.startTimer();
+        if (ReportGenerationBatch.isStreamingEnabled()) {
+            generateFilesStreaming(resultsProvider, reportDir);
+        } else {
+            AllTestResults model = loadModelFromProvider(resultsProvider);
+            generateFiles(model, resultsProvider, reportDir);
+        }
+        LOG.info("Finished generating test html results ({}) into: {}", clock.getElapsed(), reportDir);
+    }
+
+    /**
+     * Regenerates the overview page and the pages of the given classes and their packages, assuming that the pages of all other classes are up-to-date.
+     * Pages of classes and packages that no longer have results are deleted.
+     */
+    public void generateReport(TestResultsProvider resultsProvider, File reportDir, Set<String> changedClasses) {
+        LOG.info("Generating HTML test report for {} changed classes...", changedClasses.size());
+
         Timer clock = Time.startTimer();
         AllTestResults model = loadModelFromProvider(resultsProvider);
-        generateFiles(model, resultsProvider, reportDir);
+        generateChangedFiles(model, resultsProvider, reportDir, changedClasses);
         LOG.info("Finished generating test html results ({}) into: {}", clock.getElapsed(), reportDir);
     }
 
@@ -64,40 +84,49 @@ private AllTestResults loadModelFromProvider(TestResultsProvider resultsProvider
         resultsProvider.visitClasses(new Action<TestClassResult>() {
             @Override
             public void execute(TestClassResult classResult) {
-                model.addTestClass(classResult.getId(), classResult.getClassName(), classResult.getClassDisplayName());
-                List<TestMethodResult> collectedResults = classResult.getResults();
-                for (TestMethodResult collectedResult : collectedResults) {
-                    final TestResult testResult = model.addTest(classResult.getId(), classResult.getClassName(), classResult.getClassDisplayName(), collectedResult.getName(), collectedResult.getDisplayName(), collectedResult.getDuration());
-                    if (collectedResult.getResultType() == SKIPPED) {
-                        testResult.setIgnored();
-                    } else {
-                        List<TestFailure> failures = collectedResult.getFailures();
-                        for (TestFailure failure : failures) {
-                            testResult.addFailure(failure);
-                        }
-                    }
-                }
+                addClass(model, classResult);
             }
         });
         return model;
     }
 
+    private static ClassTestResults addClass(AllTestResults model, TestClassResult classResult) {
+        ClassTestResults classResults = model.addTestClass(classResult.getId(), classResult.getClassName(), classResult.getClassDisplayName());
+        List<TestMethodResult> collectedResults = classResult.getResults();
+        for (TestMethodResult collectedResult : collectedResults) {
+            final TestResult testResult = model.addTest(classResult.getId(), classResult.getClassName(), classResult.getClassDisplayName(), collectedResult.getName(), collectedResult.getDisplayName(), collectedResult.getDuration());
+            if (collectedResult.getResultType() == SKIPPED) {
+                testResult.setIgnored();
+            } else {
+                List<TestFailure> failures = collectedResult.getFailures();
+                for (TestFailure failure : failures) {
+                    testResult.addFailure(failure);
+                }
+            }
+        }
+        return classResults;
+    }
+
+    private void deleteOldReports(final File reportDir) {
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                // Clean-up old HTML report directories
+                GFileUtils.deleteQuietly(new File(reportDir, "packages"));
+                GFileUtils.deleteQuietly(new File(reportDir, "classes"));
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Delete old HTML results");
+            }
+        });
+    }
+
     private void generateFiles(AllTestResults model, final TestResultsProvider resultsProvider, final File reportDir) {
         try {
             HtmlReportRenderer htmlRenderer = new HtmlReportRenderer();
-            buildOperationExecutor.run(new RunnableBuildOperation() {
-                @Override
-                public void run(BuildOperationContext context) {
-                    // Clean-up old HTML report directories
-                    GFileUtils.deleteQuietly(new File(reportDir, "packages"));
-                    GFileUtils.deleteQuietly(new File(reportDir, "classes"));
-                }
-
-                @Override
-                public BuildOperationDescriptor.Builder description() {
-                    return BuildOperationDescriptor.displayName("Delete old HTML results");
-                }
-            });
+            deleteOldReports(reportDir);
 
             htmlRenderer.render(model, new ReportRenderer<AllTestResults, HtmlReportBuilder>() {
                 @Override
@@ -121,13 +150,127 @@ public void execute(BuildOperationQueue<HtmlReportFileGenerator<? extends Compos
         }
     }
 
+    private void generateChangedFiles(AllTestResults model, final TestResultsProvider resultsProvider, final File reportDir, final Set<String> changedClasses) {
+        try {
+            HtmlReportRenderer htmlRenderer = new HtmlReportRenderer();
+            deleteStalePages(model, reportDir);
+
+            final Set<String> changedPackages = new HashSet<String>();
+            for (String className : changedClasses) {
+                changedPackages.add(AllTestResults.packageNameOf(className));
+            }
+
+            htmlRenderer.render(model, new ReportRenderer<AllTestResults, HtmlReportBuilder>() {
+                @Override
+                public void render(final AllTestResults model, final HtmlReportBuilder output) {
+                    buildOperationExecutor.runAll(new Action<BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>>>() {
+                        @Override
+                        public void execute(BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>> queue) {
+                            queue.add(generator("index.html", model, new OverviewPageRenderer(), output));
+                            for (PackageTestResults packageResults : model.getPackages()) {
+                                boolean packageChanged = changedPackages.contains(packageResults.getName()) || isMissing(reportDir, packageResults);
+                                for (ClassTestResults classResults : packageResults.getClasses()) {
+                                    if (changedClasses.contains(classResults.getName()) || isMissing(reportDir, classResults)) {
+                                        queue.add(generator(classResults.getBaseUrl(), classResults, new ClassPageRenderer(resultsProvider), output));
+                                        packageChanged = true;
+                                    }
+                                }
+                                if (packageChanged) {
+                                    queue.add(generator(packageResults.getBaseUrl(), packageResults, new PackagePageRenderer(), output));
+                                }
+                            }
+                        }
+                    });
+                }
+            }, reportDir);
+        } catch (Exception e) {
+            throw new GradleException(String.format("Could not generate test report to '%s'.", reportDir), e);
+        }
+    }
+
+    private static boolean isMissing(File reportDir, CompositeTestResults results) {
+        return !new File(reportDir, results.getBaseUrl()).isFile();
+    }
+
+    private void deleteStalePages(final AllTestResults model, final File reportDir) {
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                Set<String> pages = new HashSet<String>();
+                for (PackageTestResults packageResults : model.getPackages()) {
+                    pages.add(packageResults.getBaseUrl());
+                    for (ClassTestResults classResults : packageResults.getClasses()) {
+                        pages.add(classResults.getBaseUrl());
+                    }
+                }
+                deleteStalePages(reportDir, "packages", pages);
+                deleteStalePages(reportDir, "classes", pages);
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Delete stale HTML results");
+            }
+        });
+    }
+
+    private static void deleteStalePages(File reportDir, String pagesDir, Set<String> pages) {
+        File[] files = new File(reportDir, pagesDir).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!pages.contains(pagesDir + "/" + file.getName())) {
+                GFileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    /**
+     * Renders the class pages in bounded batches while visiting the results, discarding the results of the individual tests once a page has been rendered.
+     * The package and overview pages are rendered from the remaining summary once all classes have been visited.
+     */
+    private void generateFilesStreaming(final TestResultsProvider resultsProvider, final File reportDir) {
+        try {
+            HtmlReportRenderer htmlRenderer = new HtmlReportRenderer();
+            deleteOldReports(reportDir);
+
+            htmlRenderer.render(new AllTestResults(), new ReportRenderer<AllTestResults, HtmlReportBuilder>() {
+                @Override
+                public void render(final AllTestResults model, final HtmlReportBuilder output) {
+                    final ReportGenerationBatch<HtmlReportFileGenerator<ClassTestResults>> classPages = new ReportGenerationBatch<HtmlReportFileGenerator<ClassTestResults>>(buildOperationExecutor);
+                    resultsProvider.visitClasses(new Action<TestClassResult>() {
+                        @Override
+                        public void execute(TestClassResult classResult) {
+                            ClassTestResults classResults = addClass(model, classResult);
+                            classPages.add(new ClassPageGenerator(classResults, new ClassPageRenderer(resultsProvider), output));
+                        }
+                    });
+                    classPages.flush();
+
+                    buildOperationExecutor.runAll(new Action<BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>>>() {
+                        @Override
+                        public void execute(BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>> queue) {
+                            queue.add(generator("index.html", model, new OverviewPageRenderer(), output));
+                            for (PackageTestResults packageResults : model.getPackages()) {
+                                queue.add(generator(packageResults.getBaseUrl(), packageResults, new PackagePageRenderer(), output));
+                            }
+                        }
+                    });
+                }
+            }, reportDir);
+        } catch (Exception e) {
+            throw new GradleException(String.format("Could not generate test report to '%s'.", reportDir), e);
+        }
+    }
+
     public static <T extends CompositeTestResults> HtmlReportFileGenerator<T> generator(String fileUrl, T results, PageRenderer<T> renderer, HtmlReportBuilder output) {
         return new HtmlReportFileGenerator<T>(fileUrl, results, renderer, output);
     }
 
     private static class HtmlReportFileGenerator<T extends CompositeTestResults> implements RunnableBuildOperation {
         private final String fileUrl;
-        private final T results;
+        protected final T results;
         private final PageRenderer<T> renderer;
         private final HtmlReportBuilder output;
 
@@ -148,4 +291,16 @@ public void run(BuildOperationContext context) {
             output.renderHtmlPage(fileUrl, results, renderer);
         }
     }
+
+    private static class ClassPageGenerator extends HtmlReportFileGenerator<ClassTestResults> {
+        ClassPageGenerator(ClassTestResults results, PageRenderer<ClassTestResults> renderer, HtmlReportBuilder output) {
+            super(results.getBaseUrl(), results, renderer, output);
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            super.run(context);
+            results.discardTestResults();
+        }
+    }
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.report;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.tasks.testing.junit.result.BinaryResultBackedTestResultsProvider;
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultsProvider;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.util.GradleVersion;
+import org.gradle.util.internal.GFileUtils;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates an HTML test report from the binary results in several directories, only regenerating the pages of the classes whose results have changed since the previous report.
+ *
+ * The classes of each results directory are persisted in an index, keyed by the hash of the binary results.
+ * When the index is missing, or was written for another report directory or Gradle version, the whole report is regenerated.
+ */
+public class IncrementalTestReport {
+    /**
+     * When set, aggregated test reports only regenerate the pages of classes whose results have changed.
+     */
+    public static final String INCREMENTAL_REPORTS_PROPERTY_KEY = "org.gradle.internal.testing.incremental-reports";
+    private static final Logger LOG = Logging.getLogger(IncrementalTestReport.class);
+    private static final int INDEX_VERSION = 1;
+
+    private final DefaultTestReport report;
+    private final File indexFile;
+
+    public IncrementalTestReport(BuildOperationExecutor buildOperationExecutor, File indexFile) {
+        this.report = new DefaultTestReport(buildOperationExecutor);
+        this.indexFile = indexFile;
+    }
+
+    public static boolean isIncrementalEnabled() {
+        return Boolean.getBoolean(INCREMENTAL_REPORTS_PROPERTY_KEY);
+    }
+
+    /**
+     * Generates the report for the given provider, which aggregates the results in the given directories.
+     */
+    public void generateReport(Iterable<File> resultDirs, TestResultsProvider resultsProvider, File reportDir) {
+        Map<String, Set<String>> previousIndex = readIndex(reportDir);
+        GFileUtils.deleteQuietly(indexFile);
+
+        Map<String, Set<String>> index = new LinkedHashMap<String, Set<String>>();
+        Set<String> changedClasses = new HashSet<String>();
+        for (File resultDir : resultDirs) {
+            String resultsHash = hashResults(resultDir);
+            Set<String> classes = previousIndex == null ? null : previousIndex.remove(resultsHash);
+            if (classes == null) {
+                classes = readClassNames(resultDir);
+                changedClasses.addAll(classes);
+            }
+            index.put(resultsHash, classes);
+        }
+
+        if (previousIndex == null) {
+            report.generateReport(resultsProvider, reportDir);
+        } else {
+            // Whatever is left in the previous index are results that have been replaced or removed
+            for (Set<String> removedClasses : previousIndex.values()) {
+                changedClasses.addAll(removedClasses);
+            }
+            report.generateReport(resultsProvider, reportDir, changedClasses);
+        }
+        writeIndex(reportDir, index);
+    }
+
+    /**
+     * Hashes the binary results in the given directory. The results file records when each test started, so it changes whenever the tests are run again.
+     * The output file can be large, so only its length is hashed along with its index.
+     */
+    private static String hashResults(File resultDir) {
+        Hasher hasher = Hashing.newHasher();
+        try {
+            for (String name : new String[]{"results.bin", "output.bin.idx"}) {
+                File file = new File(resultDir, name);
+                hasher.putBoolean(file.isFile());
+                if (file.isFile()) {
+                    hasher.putHash(Hashing.hashFile(file));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        hasher.putLong(new File(resultDir, "output.bin").length());
+        return hasher.hash().toString();
+    }
+
+    private static Set<String> readClassNames(File resultDir) {
+        final Set<String> classNames = new LinkedHashSet<String>();
+        new BinaryResultBackedTestResultsProvider(resultDir).visitClasses(new Action<TestClassResult>() {
+            @Override
+            public void execute(TestClassResult classResult) {
+                classNames.add(classResult.getClassName());
+            }
+        });
+        return classNames;
+    }
+
+    @Nullable
+    private Map<String, Set<String>> readIndex(File reportDir) {
+        if (!indexFile.isFile() || !new File(reportDir, "index.html").isFile()) {
+            return null;
+        }
+        try {
+            FileInputStream inputStream = new FileInputStream(indexFile);
+            try {
+                Decoder decoder = new KryoBackedDecoder(inputStream);
+                if (decoder.readSmallInt() != INDEX_VERSION
+                    || !decoder.readString().equals(GradleVersion.current().getVersion())
+                    || !decoder.readString().equals(reportDir.getAbsolutePath())) {
+                    return null;
+                }
+                Map<String, Set<String>> index = new LinkedHashMap<String, Set<String>>();
+                int resultsCount = decoder.readSmallInt();
+                for (int i = 0; i < resultsCount; i++) {
+                    String resultsHash = decoder.readString();
+                    int classCount = decoder.readSmallInt();
+                    Set<String> classNames = new LinkedHashSet<String>(classCount);
+                    for (int j = 0; j < classCount; j++) {
+                        classNames.add(decoder.readString());
+                    }
+                    index.put(resultsHash, classNames);
+                }
+                return index;
+            } finally {
+                inputStream.close();
+            }
+        } catch (Exception e) {
+            LOG.info("Could not read test report index from {}, regenerating the whole report.", indexFile, e);
+            return null;
+        }
+    }
+
+    private void writeIndex(File reportDir, Map<String, Set<String>> index) {
+        try {
+            GFileUtils.mkdirs(indexFile.getParentFile());
+            KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(indexFile));
+            try {
+                encoder.writeSmallInt(INDEX_VERSION);
+                encoder.writeString(GradleVersion.current().getVersion());
+                encoder.writeString(reportDir.getAbsolutePath());
+                encoder.writeSmallInt(index.size());
+                for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+                    writeClassNames(encoder, entry.getKey(), entry.getValue());
+                }
+            } finally {
+                encoder.close();
+            }
+        } catch (Exception e) {
+            LOG.info("Could not write test report index to {}.", indexFile, e);
+            GFileUtils.deleteQuietly(indexFile);
+        }
+    }
+
+    private static void writeClassNames(Encoder encoder, String resultsHash, Set<String> classNames) throws IOException {
+        encoder.writeString(resultsHash);
+        encoder.writeSmallInt(classNames.size());
+        for (String className : classNames) {
+            encoder.writeString(className);
+        }
+    }
+}
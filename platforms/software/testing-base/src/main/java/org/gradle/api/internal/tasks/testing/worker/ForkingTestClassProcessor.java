@@ -22,6 +22,7 @@
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.exceptions.DefaultMultiCauseException;
 import org.gradle.internal.remote.ObjectConnection;
 import org.gradle.internal.work.WorkerLeaseRegistry;
@@ -32,12 +33,20 @@
 import org.gradle.process.internal.worker.WorkerProcessBuilder;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
 
+import javax.annotation.Nullable;
+import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 public class ForkingTestClassProcessor implements TestClassProcessor {
+    /**
+     * When set, test workers send their test events through a memory-mapped file instead of the worker connection, which is then only used for control messages.
+     * Falls back to the worker connection when the file cannot be created or mapped.
+     */
+    public static final String SHARED_MEMORY_EVENTS_PROPERTY_KEY = "org.gradle.internal.testing.shared-memory-events";
+
     private final WorkerProcessFactory workerFactory;
     private final WorkerTestClassProcessorFactory processorFactory;
     private final JavaForkOptions options;
@@ -49,7 +58,9 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private WorkerProcess workerProcess;
     private TestResultProcessor resultProcessor;
     private WorkerLeaseRegistry.WorkerLeaseCompletion completion;
+    private SharedMemoryTestEventReceiver eventReceiver;
     private final DocumentationRegistry documentationRegistry;
+    private final ExecutorFactory executorFactory;
     private boolean stoppedNow;
     private final Set<Throwable> unrecoverableExceptions = new HashSet<Throwable>();
 
@@ -61,7 +72,8 @@ public ForkingTestClassProcessor(
         JavaForkOptions options,
         ForkedTestClasspath classpath,
         Action<WorkerProcessBuilder> buildConfigAction,
-        DocumentationRegistry documentationRegistry
+        DocumentationRegistry documentationRegistry,
+        ExecutorFactory executorFactory
     ) {
         this.workerThreadRegistry = workerThreadRegistry;
         this.workerFactory = workerFactory;
@@ -70,6 +82,7 @@ public ForkingTestClassProcessor(
         this.classpath = classpath;
         this.buildConfigAction = buildConfigAction;
         this.documentationRegistry = documentationRegistry;
+        this.executorFactory = executorFactory;
     }
 
     @Override
@@ -103,7 +116,10 @@ public void processTestClass(TestClassRunInfo testClass) {
     }
 
     RemoteTestClassProcessor forkProcess() {
-        WorkerProcessBuilder builder = workerFactory.create(new TestWorker(processorFactory));
+        if (Boolean.getBoolean(SHARED_MEMORY_EVENTS_PROPERTY_KEY)) {
+            eventReceiver = SharedMemoryTestEventReceiver.create(getWorkerTemporaryDir(), executorFactory);
+        }
+        WorkerProcessBuilder builder = workerFactory.create(new TestWorker(processorFactory, eventReceiver == null ? null : eventReceiver.getFile()));
         builder.setBaseName("Gradle Test Executor");
         builder.setImplementationClasspath(classpath.getImplementationClasspath());
         builder.setImplementationModulePath(classpath.getImplementationModulepath());
@@ -132,12 +148,24 @@ public void execute(Throwable throwable) {
             }
         });
         connection.addIncoming(TestResultProcessor.class, resultProcessor);
+        if (eventReceiver != null) {
+            connection.addIncoming(SharedMemoryEventSignal.class, eventReceiver);
+        }
         RemoteTestClassProcessor remoteProcessor = connection.addOutgoing(RemoteTestClassProcessor.class);
         connection.connect();
+        if (eventReceiver != null) {
+            eventReceiver.start(resultProcessor);
+        }
         remoteProcessor.startProcessing();
         return remoteProcessor;
     }
 
+    @Nullable
+    private File getWorkerTemporaryDir() {
+        Object workerTmpDir = options.getSystemProperties().get(TestWorker.WORKER_TMPDIR_SYS_PROPERTY);
+        return workerTmpDir == null ? null : new File(workerTmpDir.toString());
+    }
+
     @Override
     public void stop() {
         try {
@@ -159,6 +187,7 @@ public void stop() {
                     + "\n" + documentationRegistry.getDocumentationRecommendationFor("on test execution", "java_testing", "sec:test_execution"), e.getCause());
             }
         } finally {
+            stopEventReceiver();
             if (completion != null) {
                 completion.leaseFinish();
             }
@@ -175,11 +204,24 @@ public void stopNow() {
             if (remoteProcessor != null) {
                 workerProcess.stopNow();
             }
+            if (eventReceiver != null) {
+                eventReceiver.stopNow();
+            }
         } finally {
             lock.unlock();
         }
     }
 
+    private void stopEventReceiver() {
+        if (eventReceiver != null) {
+            Throwable failure = eventReceiver.stop();
+            eventReceiver = null;
+            if (failure != null && !stoppedNow) {
+                unrecoverableExceptions.add(failure);
+            }
+        }
+    }
+
     /**
      * If there are communication errors while receiving test results from the test worker,
      * we can get in a situation where a test appears skipped even though it actually failed.
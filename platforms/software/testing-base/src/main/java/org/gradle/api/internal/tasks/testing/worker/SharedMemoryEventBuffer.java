@@ -0,0 +1,380 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.io.BufferCaster;
+import org.gradle.internal.io.MappedByteBuffers;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single producer, single consumer byte stream backed by a memory-mapped file, so that it can be shared between processes.
+ *
+ * <p>The file starts with a header that holds the capacity of the buffer and the positions of the producer and the consumer, followed by the data.
+ * Positions only ever increase, and the data for position {@code p} is stored at {@code p % capacity}. The two positions live in separate
+ * cache lines, so that the producer and the consumer do not contend on them. A position is published with a store fence after the data it covers
+ * has been written, and read with a load fence before that data is read, as the processes share no other synchronization.</p>
+ *
+ * <p>The consumer parks while the buffer is empty, after announcing in the header that it waits. The producer checks this flag after publishing
+ * new data, and then wakes the consumer through the action given to {@link #getOutputStream(Runnable)}, which usually ends up calling
+ * {@link #wakeConsumer()} on the buffer of the consumer. The producer waits while the buffer is full.
+ * The consumer sees the end of the stream once {@link #producerFinished()} has been called and all data has been read.</p>
+ */
+class SharedMemoryEventBuffer implements Closeable {
+    private static final long MAGIC = 0x4752544556454e54L;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int WRITE_POSITION_OFFSET = 64;
+    private static final int READ_POSITION_OFFSET = 128;
+    private static final int CONSUMER_CLOSED_OFFSET = 136;
+    private static final int CONSUMER_WAITING_OFFSET = 140;
+    private static final int DATA_OFFSET = 192;
+    // The consumer checks for data at least this often, in case a wake up gets lost
+    private static final long MAX_CONSUMER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final MethodHandle LOAD_FENCE;
+    private static final MethodHandle STORE_FENCE;
+    private static final MethodHandle FULL_FENCE;
+    private static final AtomicInteger FALLBACK_FENCE = new AtomicInteger();
+
+    static {
+        MethodHandle loadFence;
+        MethodHandle storeFence;
+        MethodHandle fullFence;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            MethodType type = MethodType.methodType(void.class);
+            loadFence = MethodHandles.lookup().findVirtual(unsafeClass, "loadFence", type).bindTo(unsafe);
+            storeFence = MethodHandles.lookup().findVirtual(unsafeClass, "storeFence", type).bindTo(unsafe);
+            fullFence = MethodHandles.lookup().findVirtual(unsafeClass, "fullFence", type).bindTo(unsafe);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // An atomic update is a full fence on the platforms Gradle runs on
+            try {
+                fullFence = MethodHandles.lookup().findStatic(SharedMemoryEventBuffer.class, "atomicUpdate", MethodType.methodType(void.class));
+            } catch (ReflectiveOperationException e2) {
+                throw UncheckedException.throwAsUncheckedException(e2);
+            }
+            loadFence = fullFence;
+            storeFence = fullFence;
+        }
+        LOAD_FENCE = loadFence;
+        STORE_FENCE = storeFence;
+        FULL_FENCE = fullFence;
+    }
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private volatile boolean producerFinished;
+    @Nullable
+    private volatile Thread consumerThread;
+
+    private SharedMemoryEventBuffer(MappedByteBuffer buffer, int capacity) {
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a new buffer with the given capacity in the given file.
+     */
+    public static SharedMemoryEventBuffer create(File file, int capacity) throws IOException {
+        MappedByteBuffer buffer = map(file, DATA_OFFSET + capacity);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putLong(WRITE_POSITION_OFFSET, 0);
+        buffer.putLong(READ_POSITION_OFFSET, 0);
+        buffer.put(CONSUMER_CLOSED_OFFSET, (byte) 0);
+        buffer.putInt(CONSUMER_WAITING_OFFSET, 0);
+        storeFence();
+        buffer.putLong(MAGIC_OFFSET, MAGIC);
+        return new SharedMemoryEventBuffer(buffer, capacity);
+    }
+
+    /**
+     * Opens a buffer previously created using {@link #create(File, int)}.
+     */
+    public static SharedMemoryEventBuffer open(File file) throws IOException {
+        long length = file.length();
+        if (length < DATA_OFFSET || length > Integer.MAX_VALUE) {
+            throw new IOException("File " + file + " is not a test event buffer.");
+        }
+        MappedByteBuffer buffer = map(file, (int) length);
+        long magic = buffer.getLong(MAGIC_OFFSET);
+        loadFence();
+        int capacity = buffer.getInt(CAPACITY_OFFSET);
+        if (magic != MAGIC || capacity <= 0 || capacity != length - DATA_OFFSET) {
+            throw new IOException("File " + file + " is not a test event buffer.");
+        }
+        return new SharedMemoryEventBuffer(buffer, capacity);
+    }
+
+    private static MappedByteBuffer map(File file, int length) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(length);
+            // The mapping remains valid once the channel is closed
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Returns the stream to write data to the buffer. Must only be used by a single thread.
+     *
+     * @param wakeConsumer called after writing data while the consumer is waiting for data.
+     */
+    public OutputStream getOutputStream(Runnable wakeConsumer) {
+        return new ProducerStream(wakeConsumer);
+    }
+
+    /**
+     * Returns the stream to read data from the buffer. Must only be used by a single thread.
+     */
+    public InputStream getInputStream() {
+        return new ConsumerStream();
+    }
+
+    /**
+     * Wakes up the consumer of this buffer when it is waiting for data.
+     */
+    public void wakeConsumer() {
+        Thread thread = consumerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Signals that no more data will be written to the buffer, so the consumer sees the end of the stream once it has read the remaining data.
+     */
+    public void producerFinished() {
+        producerFinished = true;
+        wakeConsumer();
+    }
+
+    /**
+     * Signals that no more data will be read from the buffer, so that a waiting producer gives up.
+     */
+    public void consumerFinished() {
+        buffer.put(CONSUMER_CLOSED_OFFSET, (byte) 1);
+        fullFence();
+    }
+
+    /**
+     * Unmaps the buffer. The streams of the buffer must not be used anymore once it has been closed.
+     */
+    @Override
+    public void close() {
+        MappedByteBuffers.unmap(buffer);
+    }
+
+    private long readPosition(int offset) {
+        long position = buffer.getLong(offset);
+        loadFence();
+        return position;
+    }
+
+    private void publishPosition(int offset, long position) {
+        storeFence();
+        buffer.putLong(offset, position);
+    }
+
+    private static void loadFence() {
+        try {
+            LOAD_FENCE.invokeExact();
+        } catch (Throwable t) {
+            throw UncheckedException.throwAsUncheckedException(t);
+        }
+    }
+
+    private static void storeFence() {
+        try {
+            STORE_FENCE.invokeExact();
+        } catch (Throwable t) {
+            throw UncheckedException.throwAsUncheckedException(t);
+        }
+    }
+
+    private static void fullFence() {
+        try {
+            FULL_FENCE.invokeExact();
+        } catch (Throwable t) {
+            throw UncheckedException.throwAsUncheckedException(t);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static void atomicUpdate() {
+        FALLBACK_FENCE.incrementAndGet();
+    }
+
+    private class ProducerStream extends OutputStream {
+        private final ByteBuffer data = buffer.duplicate();
+        private final Runnable wakeConsumer;
+        private long writePosition = readPosition(WRITE_POSITION_OFFSET);
+        private long consumerPosition = readPosition(READ_POSITION_OFFSET);
+
+        ProducerStream(Runnable wakeConsumer) {
+            this.wakeConsumer = wakeConsumer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                int free = awaitFreeSpace();
+                int index = (int) (writePosition % capacity);
+                int count = Math.min(length, Math.min(free, capacity - index));
+                BufferCaster.cast(data).position(DATA_OFFSET + index);
+                data.put(bytes, offset, count);
+                offset += count;
+                length -= count;
+                writePosition += count;
+                publishPosition(WRITE_POSITION_OFFSET, writePosition);
+                maybeWakeConsumer();
+            }
+        }
+
+        private void maybeWakeConsumer() {
+            // Orders the write of the position before the read of the flag, the consumer does the opposite
+            fullFence();
+            if (buffer.getInt(CONSUMER_WAITING_OFFSET) != 0) {
+                buffer.putInt(CONSUMER_WAITING_OFFSET, 0);
+                wakeConsumer.run();
+            }
+        }
+
+        private int awaitFreeSpace() throws IOException {
+            for (int attempt = 0; ; attempt++) {
+                int free = (int) (capacity - (writePosition - consumerPosition));
+                if (free > 0) {
+                    return free;
+                }
+                consumerPosition = readPosition(READ_POSITION_OFFSET);
+                if (consumerPosition == writePosition - capacity) {
+                    if (buffer.get(CONSUMER_CLOSED_OFFSET) != 0) {
+                        throw new IOException("Test event buffer has been closed by the consumer.");
+                    }
+                    // The consumer keeps up with the producer most of the time, so the buffer is rarely full for long
+                    backOff(attempt);
+                }
+            }
+        }
+
+        private void backOff(int attempt) throws InterruptedIOException {
+            if (attempt < 64) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(attempt < 1000 ? 50_000L : 1_000_000L);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    private class ConsumerStream extends InputStream {
+        private final ByteBuffer data = buffer.duplicate();
+        private long readPosition = readPosition(READ_POSITION_OFFSET);
+        private long producerPosition = readPosition(WRITE_POSITION_OFFSET);
+
+        @Override
+        public int read() throws IOException {
+            byte[] bytes = new byte[1];
+            return read(bytes, 0, 1) < 0 ? -1 : bytes[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            int available = awaitData();
+            if (available == 0) {
+                return -1;
+            }
+            int index = (int) (readPosition % capacity);
+            int count = Math.min(length, Math.min(available, capacity - index));
+            BufferCaster.cast(data).position(DATA_OFFSET + index);
+            data.get(bytes, offset, count);
+            readPosition += count;
+            publishPosition(READ_POSITION_OFFSET, readPosition);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return (int) (producerPosition - readPosition);
+        }
+
+        private int awaitData() throws IOException {
+            while (true) {
+                if (producerPosition > readPosition) {
+                    return (int) (producerPosition - readPosition);
+                }
+                // Check the flag before the position, so that all data written before the producer finished is seen
+                boolean finished = producerFinished;
+                producerPosition = readPosition(WRITE_POSITION_OFFSET);
+                if (producerPosition > readPosition) {
+                    continue;
+                }
+                if (finished) {
+                    return 0;
+                }
+                park();
+            }
+        }
+
+        private void park() throws InterruptedIOException {
+            consumerThread = Thread.currentThread();
+            buffer.putInt(CONSUMER_WAITING_OFFSET, 1);
+            // Orders the write of the flag before the read of the position, the producer does the opposite
+            fullFence();
+            if (readPosition(WRITE_POSITION_OFFSET) == readPosition && !producerFinished) {
+                LockSupport.parkNanos(this, MAX_CONSUMER_PARK_NANOS);
+            }
+            buffer.putInt(CONSUMER_WAITING_OFFSET, 0);
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException();
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Receives the test events written by a test worker to a {@link SharedMemoryEventBuffer}, and forwards them to a {@link TestResultProcessor} on a dedicated thread.
+ */
+class SharedMemoryTestEventReceiver implements Runnable, SharedMemoryEventSignal {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedMemoryTestEventReceiver.class);
+    private static final int CAPACITY = 4 * 1024 * 1024;
+
+    private final File file;
+    private final SharedMemoryEventBuffer buffer;
+    private final ExecutorFactory executorFactory;
+    private TestResultProcessor resultProcessor;
+    private ManagedExecutor executor;
+    private volatile Throwable failure;
+
+    private SharedMemoryTestEventReceiver(File file, SharedMemoryEventBuffer buffer, ExecutorFactory executorFactory) {
+        this.file = file;
+        this.buffer = buffer;
+        this.executorFactory = executorFactory;
+    }
+
+    /**
+     * Creates a receiver with a new buffer in the given directory, or returns null when the buffer cannot be created.
+     */
+    @Nullable
+    static SharedMemoryTestEventReceiver create(@Nullable File directory, ExecutorFactory executorFactory) {
+        File file = null;
+        try {
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create directory " + directory + ".");
+            }
+            file = File.createTempFile("test-events", ".bin", directory);
+            return new SharedMemoryTestEventReceiver(file, SharedMemoryEventBuffer.create(file, CAPACITY), executorFactory);
+        } catch (IOException e) {
+            LOGGER.debug("Could not create shared memory buffer for test events, using the worker connection instead.", e);
+            if (file != null) {
+                delete(file);
+            }
+            return null;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void start(TestResultProcessor resultProcessor) {
+        this.resultProcessor = resultProcessor;
+        executor = executorFactory.create("Test event receiver");
+        executor.execute(this);
+    }
+
+    @Override
+    public void run() {
+        try {
+            new SharedMemoryTestResultProcessor.Reader(new KryoBackedDecoder(buffer.getInputStream())).readAll(resultProcessor);
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            buffer.consumerFinished();
+        }
+    }
+
+    @Override
+    public void eventsAvailable() {
+        buffer.wakeConsumer();
+    }
+
+    /**
+     * Waits for the remaining events to be forwarded, once the worker has stopped.
+     *
+     * @return the failure that occurred while forwarding events, if any.
+     */
+    @Nullable
+    public Throwable stop() {
+        buffer.producerFinished();
+        if (executor != null) {
+            executor.stop();
+        }
+        // Nothing reads from the buffer anymore, so it can be unmapped, which allows deleting the file on all platforms
+        buffer.close();
+        delete(file);
+        return failure;
+    }
+
+    /**
+     * Stops forwarding events without waiting for the remaining ones. The buffer is released by {@link #stop()}.
+     */
+    public void stopNow() {
+        buffer.producerFinished();
+        buffer.consumerFinished();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void delete(File file) {
+        if (!file.delete() && file.exists()) {
+            LOGGER.debug("Could not delete test event buffer {}.", file);
+        }
+    }
+}
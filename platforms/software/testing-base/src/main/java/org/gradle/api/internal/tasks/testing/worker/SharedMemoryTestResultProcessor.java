@@ -0,0 +1,159 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestFailure;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.FlushableEncoder;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.SerializerRegistry;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import java.io.EOFException;
+
+/**
+ * A {@link TestResultProcessor} that writes the events to a {@link SharedMemoryEventBuffer}, to be replayed in the build process by a {@link Reader}.
+ */
+class SharedMemoryTestResultProcessor implements TestResultProcessor {
+    private static final byte STARTED = 0;
+    private static final byte COMPLETED = 1;
+    private static final byte OUTPUT = 2;
+    private static final byte FAILURE = 3;
+
+    private final EventSerializers serializers = new EventSerializers();
+    private final FlushableEncoder encoder;
+
+    /**
+     * @param wakeConsumer called after writing events while the consumer is waiting for events.
+     */
+    SharedMemoryTestResultProcessor(SharedMemoryEventBuffer buffer, Runnable wakeConsumer) {
+        this.encoder = new KryoBackedEncoder(buffer.getOutputStream(wakeConsumer));
+    }
+
+    @Override
+    public synchronized void started(TestDescriptorInternal test, TestStartEvent event) {
+        try {
+            encoder.writeByte(STARTED);
+            serializers.descriptor.write(encoder, test);
+            serializers.startEvent.write(encoder, event);
+            encoder.flush();
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    @Override
+    public synchronized void completed(Object testId, TestCompleteEvent event) {
+        try {
+            encoder.writeByte(COMPLETED);
+            serializers.id.write(encoder, testId);
+            serializers.completeEvent.write(encoder, event);
+            encoder.flush();
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    @Override
+    public synchronized void output(Object testId, TestOutputEvent event) {
+        try {
+            encoder.writeByte(OUTPUT);
+            serializers.id.write(encoder, testId);
+            serializers.outputEvent.write(encoder, event);
+            encoder.flush();
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    @Override
+    public synchronized void failure(Object testId, TestFailure result) {
+        try {
+            encoder.writeByte(FAILURE);
+            serializers.id.write(encoder, testId);
+            serializers.failure.write(encoder, result);
+            encoder.flush();
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    /**
+     * Reads the events written by a {@link SharedMemoryTestResultProcessor} and forwards them to a {@link TestResultProcessor}, until the end of the stream.
+     */
+    static class Reader {
+        private final EventSerializers serializers = new EventSerializers();
+        private final Decoder decoder;
+
+        Reader(Decoder decoder) {
+            this.decoder = decoder;
+        }
+
+        void readAll(TestResultProcessor processor) throws Exception {
+            while (true) {
+                byte type;
+                try {
+                    type = decoder.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                switch (type) {
+                    case STARTED:
+                        processor.started(serializers.descriptor.read(decoder), serializers.startEvent.read(decoder));
+                        break;
+                    case COMPLETED:
+                        processor.completed(serializers.id.read(decoder), serializers.completeEvent.read(decoder));
+                        break;
+                    case OUTPUT:
+                        processor.output(serializers.id.read(decoder), serializers.outputEvent.read(decoder));
+                        break;
+                    case FAILURE:
+                        processor.failure(serializers.id.read(decoder), serializers.failure.read(decoder));
+                        break;
+                    default:
+                        throw new IllegalStateException("Unexpected test event type " + type + ".");
+                }
+            }
+        }
+    }
+
+    private static class EventSerializers {
+        final Serializer<TestDescriptorInternal> descriptor;
+        final Serializer<Object> id;
+        final Serializer<TestStartEvent> startEvent;
+        final Serializer<TestCompleteEvent> completeEvent;
+        final Serializer<TestOutputEvent> outputEvent;
+        final Serializer<TestFailure> failure;
+
+        EventSerializers() {
+            SerializerRegistry registry = TestEventSerializer.create();
+            descriptor = registry.build(TestDescriptorInternal.class);
+            id = registry.build(Object.class);
+            startEvent = registry.build(TestStartEvent.class);
+            completeEvent = registry.build(TestCompleteEvent.class);
+            outputEvent = registry.build(TestOutputEvent.class);
+            failure = registry.build(TestFailure.class);
+        }
+    }
+}
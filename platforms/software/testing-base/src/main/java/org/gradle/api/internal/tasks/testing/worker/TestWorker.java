@@ -40,6 +40,9 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.security.AccessControlException;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -66,6 +69,8 @@ private enum State { INITIALIZING, STARTED, STOPPED }
     private static final String WORK_THREAD_NAME = "Test worker";
 
     private final WorkerTestClassProcessorFactory factory;
+    @Nullable
+    private final File eventBufferFile;
     private final BlockingQueue<Runnable> runQueue = new ArrayBlockingQueue<Runnable>(1);
     private TestClassProcessor processor;
     private TestResultProcessor resultProcessor;
@@ -78,7 +83,15 @@ private enum State { INITIALIZING, STARTED, STOPPED }
     private volatile State state = State.INITIALIZING;
 
     public TestWorker(WorkerTestClassProcessorFactory factory) {
+        this(factory, null);
+    }
+
+    /**
+     * @param eventBufferFile the {@link SharedMemoryEventBuffer} to send test events through, or null to send them through the worker connection.
+     */
+    public TestWorker(WorkerTestClassProcessorFactory factory, @Nullable File eventBufferFile) {
         this.factory = factory;
+        this.eventBufferFile = eventBufferFile;
     }
 
     @Override
@@ -145,11 +158,27 @@ private void startReceivingTests(WorkerProcessContext workerProcessContext, Serv
 
         ObjectConnection serverConnection = workerProcessContext.getServerConnection();
         serverConnection.useParameterSerializers(TestEventSerializer.create());
-        this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
+        this.resultProcessor = maybeUseEventBuffer(serverConnection, serverConnection.addOutgoing(TestResultProcessor.class));
         serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
         serverConnection.connect();
     }
 
+    private TestResultProcessor maybeUseEventBuffer(ObjectConnection serverConnection, TestResultProcessor remoteResultProcessor) {
+        if (eventBufferFile == null) {
+            return remoteResultProcessor;
+        }
+        SharedMemoryEventBuffer buffer;
+        try {
+            buffer = SharedMemoryEventBuffer.open(eventBufferFile);
+        } catch (IOException e) {
+            LOGGER.debug("Could not open shared memory buffer for test events, using the worker connection instead.", e);
+            return remoteResultProcessor;
+        }
+        // The build process waits for events without polling, so it is woken up through the connection
+        SharedMemoryEventSignal signal = serverConnection.addOutgoing(SharedMemoryEventSignal.class);
+        return new SharedMemoryTestResultProcessor(buffer, signal::eventsAvailable);
+    }
+
     @Override
     public void startProcessing() {
         submitToRun(new Runnable() {
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit.result
+
+import org.gradle.internal.operations.BuildOperationDescriptor
+import org.gradle.internal.operations.RunnableBuildOperation
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import spock.lang.Specification
+
+class ReportGenerationBatchTest extends Specification {
+    def buildOperationExecutor = Spy(TestBuildOperationExecutor)
+    def batch = new ReportGenerationBatch<RunnableBuildOperation>(buildOperationExecutor, 2)
+
+    def "runs operations once the batch is full"() {
+        def operation1 = operation()
+        def operation2 = operation()
+        def operation3 = operation()
+
+        when:
+        batch.add(operation1)
+
+        then:
+        0 * buildOperationExecutor.runAll(_)
+        0 * operation1.run(_)
+
+        when:
+        batch.add(operation2)
+
+        then:
+        1 * buildOperationExecutor.runAll(_)
+        1 * operation1.run(_)
+        1 * operation2.run(_)
+
+        when:
+        batch.add(operation3)
+        batch.flush()
+
+        then:
+        1 * buildOperationExecutor.runAll(_)
+        1 * operation3.run(_)
+    }
+
+    def "does nothing when flushing an empty batch"() {
+        when:
+        batch.flush()
+
+        then:
+        0 * buildOperationExecutor.runAll(_)
+    }
+
+    def operation() {
+        return Mock(RunnableBuildOperation) {
+            description() >> BuildOperationDescriptor.displayName("operation")
+        }
+    }
+}
@@ -16,11 +16,13 @@
 
 package org.gradle.api.internal.tasks.testing.processors
 
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo
 import org.gradle.api.internal.tasks.testing.TestResultProcessor
 import org.gradle.internal.actor.Actor
 import org.gradle.internal.actor.ActorFactory
+import org.gradle.internal.time.Time
 import spock.lang.Specification
 import org.gradle.internal.Factory
 
@@ -202,4 +204,51 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         1 * processor1.stopNow()
         1 * processor2.stopNow()
     }
+
+    def "assigns test classes longest first to the processor with the least estimated work"() {
+        def durations = [A: 100L, B: 60L, C: 50L, D: 10L]
+        def scheduler = new MaxNParallelTestClassProcessor(2, factory, actorFactory, durations, Time.clock())
+        def testA = new DefaultTestClassRunInfo("A")
+        def testB = new DefaultTestClassRunInfo("B")
+        def testC = new DefaultTestClassRunInfo("C")
+        def testD = new DefaultTestClassRunInfo("D")
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+        Actor actor1 = Mock()
+        Actor actor2 = Mock()
+
+        given:
+        actorFactory.createActor(resultProcessor) >> resultProcessorActor
+        resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        scheduler.startProcessing(resultProcessor)
+
+        when:
+        scheduler.processTestClass(testA)
+        scheduler.processTestClass(testB)
+        scheduler.processTestClass(testC)
+        scheduler.processTestClass(testD)
+
+        then:
+        0 * factory.create()
+
+        when:
+        scheduler.stop()
+
+        then:
+        2 * factory.create() >> processor1
+        2 * actorFactory.createActor(_) >>> [actor1, actor2]
+        actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        actor2.getProxy(TestClassProcessor) >> asyncProcessor2
+
+        then:
+        1 * asyncProcessor1.processTestClass(testA)
+        1 * asyncProcessor2.processTestClass(testB)
+        1 * asyncProcessor2.processTestClass(testC)
+        1 * asyncProcessor1.processTestClass(testD)
+
+        then:
+        1 * asyncProcessor1.stop()
+        1 * asyncProcessor2.stop()
+    }
 }
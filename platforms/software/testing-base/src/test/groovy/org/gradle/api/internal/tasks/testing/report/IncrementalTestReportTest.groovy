@@ -0,0 +1,129 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.report
+
+import org.gradle.api.internal.tasks.testing.junit.result.AggregateTestResultsProvider
+import org.gradle.api.internal.tasks.testing.junit.result.BinaryResultBackedTestResultsProvider
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult
+import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultSerializer
+import org.gradle.api.tasks.testing.TestResult
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class IncrementalTestReportTest extends Specification {
+    @Rule
+    public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    final TestFile reportDir = tmpDir.file('report')
+    final TestFile indexFile = tmpDir.file('tmp/report-index.bin')
+    final report = new IncrementalTestReport(new TestBuildOperationExecutor(), indexFile)
+    long time = 1000
+
+    def "regenerates only the pages of classes whose results have changed"() {
+        def unit = results('unit', 'org.gradle.Foo', 'org.gradle.Bar')
+        def integ = results('integ', 'org.gradle.integ.Baz')
+
+        when:
+        generate(unit, integ)
+
+        then:
+        reportDir.file('index.html').assertIsFile()
+        reportDir.file('classes/org.gradle.Foo.html').assertIsFile()
+        reportDir.file('classes/org.gradle.integ.Baz.html').assertIsFile()
+        reportDir.file('packages/org.gradle.integ.html').assertIsFile()
+        indexFile.assertIsFile()
+
+        when:
+        markAsGenerated('classes/org.gradle.Foo.html', 'packages/org.gradle.html', 'classes/org.gradle.integ.Baz.html', 'packages/org.gradle.integ.html')
+        results('integ', 'org.gradle.integ.Baz', 'org.gradle.integ.Qux')
+        generate(unit, integ)
+
+        then:
+        reportDir.file('classes/org.gradle.Foo.html').text == 'previous'
+        reportDir.file('packages/org.gradle.html').text == 'previous'
+        reportDir.file('classes/org.gradle.integ.Baz.html').text != 'previous'
+        reportDir.file('packages/org.gradle.integ.html').text.contains('Qux')
+        reportDir.file('classes/org.gradle.integ.Qux.html').assertIsFile()
+        reportDir.file('index.html').text.contains('org.gradle.integ')
+    }
+
+    def "deletes the pages of classes and packages that no longer have results"() {
+        def unit = results('unit', 'org.gradle.Foo')
+        def integ = results('integ', 'org.gradle.integ.Baz')
+        generate(unit, integ)
+
+        when:
+        markAsGenerated('classes/org.gradle.Foo.html')
+        generate(unit)
+
+        then:
+        reportDir.file('classes/org.gradle.Foo.html').text == 'previous'
+        reportDir.file('classes/org.gradle.integ.Baz.html').assertDoesNotExist()
+        reportDir.file('packages/org.gradle.integ.html').assertDoesNotExist()
+        !reportDir.file('index.html').text.contains('org.gradle.integ')
+    }
+
+    def "regenerates pages that are missing from the report"() {
+        def unit = results('unit', 'org.gradle.Foo', 'org.gradle.Bar')
+        generate(unit)
+
+        when:
+        markAsGenerated('classes/org.gradle.Foo.html')
+        reportDir.file('classes/org.gradle.Bar.html').delete()
+        generate(unit)
+
+        then:
+        reportDir.file('classes/org.gradle.Foo.html').text == 'previous'
+        reportDir.file('classes/org.gradle.Bar.html').assertIsFile()
+    }
+
+    def "regenerates the whole report when the index is missing"() {
+        def unit = results('unit', 'org.gradle.Foo')
+        generate(unit)
+
+        when:
+        markAsGenerated('classes/org.gradle.Foo.html')
+        indexFile.delete()
+        generate(unit)
+
+        then:
+        reportDir.file('classes/org.gradle.Foo.html').text != 'previous'
+        indexFile.assertIsFile()
+    }
+
+    private TestFile results(String name, String... classNames) {
+        def dir = tmpDir.createDir(name)
+        def classResults = classNames.collect { className ->
+            time++
+            new TestClassResult(time, className, time).add(new TestMethodResult(time, 'test', TestResult.ResultType.SUCCESS, 10, time))
+        }
+        new TestResultSerializer(dir).write(classResults)
+        return dir
+    }
+
+    private void generate(TestFile... resultDirs) {
+        def provider = new AggregateTestResultsProvider(resultDirs.collect { new BinaryResultBackedTestResultsProvider(it) })
+        report.generateReport(resultDirs as List, provider, reportDir)
+    }
+
+    private void markAsGenerated(String... pages) {
+        pages.each { reportDir.file(it).text = 'previous' }
+    }
+}
@@ -20,7 +20,9 @@ import com.google.common.collect.ImmutableList
 import org.gradle.api.Action
 import org.gradle.api.internal.DocumentationRegistry
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.exceptions.DefaultMultiCauseException
 import org.gradle.internal.remote.ObjectConnection
 import org.gradle.internal.work.WorkerThreadRegistry
@@ -30,9 +32,17 @@ import org.gradle.process.internal.JavaExecHandleBuilder
 import org.gradle.process.internal.worker.WorkerProcess
 import org.gradle.process.internal.worker.WorkerProcessBuilder
 import org.gradle.process.internal.worker.WorkerProcessFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
 import spock.lang.Specification
 
 class ForkingTestClassProcessorTest extends Specification {
+    @Rule
+    SetSystemProperties properties = new SetSystemProperties()
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    def executorFactory = new DefaultExecutorFactory()
     WorkerThreadRegistry workerLeaseRegistry = Mock(WorkerThreadRegistry)
     RemoteTestClassProcessor remoteProcessor = Mock(RemoteTestClassProcessor)
     ObjectConnection connection = Mock(ObjectConnection) {
@@ -45,8 +55,16 @@ class ForkingTestClassProcessorTest extends Specification {
         build() >> workerProcess
         getJavaCommand() >> Stub(JavaExecHandleBuilder)
     }
+    TestWorker testWorker
     WorkerProcessFactory workerProcessFactory = Stub(WorkerProcessFactory) {
-        create(_) >> workerProcessBuilder
+        create(_) >> { TestWorker worker ->
+            testWorker = worker
+            workerProcessBuilder
+        }
+    }
+
+    def cleanup() {
+        executorFactory.stop()
     }
 
     def "acquires worker lease and starts worker process on first test"() {
@@ -174,12 +192,74 @@ class ForkingTestClassProcessorTest extends Specification {
         noExceptionThrown()
     }
 
+    def "sends test events through a shared memory buffer when enabled"() {
+        given:
+        System.setProperty(ForkingTestClassProcessor.SHARED_MEMORY_EVENTS_PROPERTY_KEY, "true")
+        def workerTmpDir = tmpDir.file("work")
+        def processor = newProcessor(workerTmpDir)
+        processor.startProcessing(Mock(TestResultProcessor))
+
+        when:
+        processor.processTestClass(Mock(TestClassRunInfo))
+
+        then:
+        1 * connection.addIncoming(TestResultProcessor, _)
+        1 * connection.addIncoming(SharedMemoryEventSignal, { it instanceof SharedMemoryTestEventReceiver })
+        testWorker.eventBufferFile.parentFile == workerTmpDir
+        testWorker.eventBufferFile.file
+
+        when:
+        processor.stop()
+
+        then:
+        !testWorker.eventBufferFile.exists()
+    }
+
+    def "sends test events through the worker connection when the shared memory buffer cannot be created"() {
+        given:
+        System.setProperty(ForkingTestClassProcessor.SHARED_MEMORY_EVENTS_PROPERTY_KEY, "true")
+        def processor = newProcessor(tmpDir.createFile("work"))
+        processor.startProcessing(Mock(TestResultProcessor))
+
+        when:
+        processor.processTestClass(Mock(TestClassRunInfo))
+        processor.stop()
+
+        then:
+        1 * connection.addIncoming(TestResultProcessor, _)
+        0 * connection.addIncoming(SharedMemoryEventSignal, _)
+        testWorker.eventBufferFile == null
+    }
+
+    def "sends test events through the worker connection by default"() {
+        given:
+        def processor = newProcessor(tmpDir.file("work"))
+
+        when:
+        processor.processTestClass(Mock(TestClassRunInfo))
+
+        then:
+        0 * connection.addIncoming(SharedMemoryEventSignal, _)
+        testWorker.eventBufferFile == null
+    }
+
     def newProcessor(
         ForkedTestClasspath classpath = new ForkedTestClasspath(ImmutableList.of(), ImmutableList.of(), ImmutableList.of(), ImmutableList.of())
     ) {
+        return newProcessor(classpath, Stub(JavaForkOptions))
+    }
+
+    def newProcessor(File workerTmpDir) {
+        def options = Stub(JavaForkOptions) {
+            getSystemProperties() >> [(TestWorker.WORKER_TMPDIR_SYS_PROPERTY): workerTmpDir]
+        }
+        return newProcessor(new ForkedTestClasspath(ImmutableList.of(), ImmutableList.of(), ImmutableList.of(), ImmutableList.of()), options)
+    }
+
+    def newProcessor(ForkedTestClasspath classpath, JavaForkOptions options) {
         return new ForkingTestClassProcessor(
             workerLeaseRegistry, workerProcessFactory, Mock(WorkerTestClassProcessorFactory),
-            Stub(JavaForkOptions), classpath, Mock(Action), Mock(DocumentationRegistry)
+            options, classpath, Mock(Action), Mock(DocumentationRegistry), executorFactory
         )
     }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.tasks.testing.TestOutputEvent
+import org.gradle.api.tasks.testing.TestResult
+import org.gradle.internal.id.CompositeIdGenerator
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class SharedMemoryEventBufferTest extends Specification {
+    @Rule
+    public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def "reads data written to the buffer until the producer finishes"() {
+        def file = tmpDir.file("events.bin")
+        def producer = SharedMemoryEventBuffer.create(file, 1024)
+        def consumer = SharedMemoryEventBuffer.open(file)
+        def data = new byte[100_000]
+        new Random(12).nextBytes(data)
+
+        when:
+        def writer = Thread.start {
+            def output = producer.getOutputStream(consumer.&wakeConsumer)
+            for (int offset = 0; offset < data.length; offset += 777) {
+                output.write(data, offset, Math.min(777, data.length - offset))
+            }
+            consumer.producerFinished()
+        }
+        def received = consumer.getInputStream().bytes
+        writer.join()
+
+        then:
+        received == data
+    }
+
+    def "wakes up the waiting consumer when data is written"() {
+        def file = tmpDir.file("events.bin")
+        def producer = SharedMemoryEventBuffer.create(file, 1024)
+        def consumer = SharedMemoryEventBuffer.open(file)
+        def wakeUps = new AtomicInteger()
+        def output = producer.getOutputStream {
+            wakeUps.incrementAndGet()
+            consumer.wakeConsumer()
+        }
+        def input = consumer.getInputStream()
+        def received = new CompletableFuture<Integer>()
+
+        when:
+        Thread.start { received.complete(input.read()) }
+        // Give the consumer time to start waiting
+        Thread.sleep(200)
+        output.write(42)
+
+        then:
+        received.get(10, TimeUnit.SECONDS) == 42
+        wakeUps.get() == 1
+
+        cleanup:
+        consumer.producerFinished()
+    }
+
+    def "file can be deleted once the buffers are closed"() {
+        def file = tmpDir.file("events.bin")
+        def producer = SharedMemoryEventBuffer.create(file, 1024)
+        def consumer = SharedMemoryEventBuffer.open(file)
+        producer.getOutputStream {}.write(1)
+
+        when:
+        producer.close()
+        consumer.close()
+
+        then:
+        file.delete()
+    }
+
+    def "cannot open a file that is not a buffer"() {
+        def file = tmpDir.file("events.bin")
+        file.bytes = new byte[1024]
+
+        when:
+        SharedMemoryEventBuffer.open(file)
+
+        then:
+        thrown(IOException)
+    }
+
+    def "forwards test events written by the worker"() {
+        def file = tmpDir.file("events.bin")
+        def buffer = SharedMemoryEventBuffer.create(file, 256)
+        def id = new CompositeIdGenerator.CompositeId(1L, 2L)
+        def target = Mock(TestResultProcessor)
+
+        when:
+        def processor = new SharedMemoryTestResultProcessor(SharedMemoryEventBuffer.open(file), buffer.&wakeConsumer)
+        def writer = Thread.start {
+            processor.started(new DefaultTestDescriptor(id, "Class", "method", "Class", "method"), new TestStartEvent(123L, null))
+            processor.output(id, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "x" * 1000))
+            processor.completed(id, new TestCompleteEvent(456L, TestResult.ResultType.SUCCESS))
+            buffer.producerFinished()
+        }
+        new SharedMemoryTestResultProcessor.Reader(new KryoBackedDecoder(buffer.getInputStream())).readAll(target)
+        writer.join()
+
+        then:
+        1 * target.started({ it.id == id && it.name == "method" }, { it.startTime == 123L })
+        1 * target.output(id, { it.message == "x" * 1000 })
+        1 * target.completed(id, { it.endTime == 456L && it.resultType == TestResult.ResultType.SUCCESS })
+        0 * target._
+    }
+}
@@ -76,4 +76,26 @@ public class TestWorkerTest extends ConcurrentSpec {
         1 * processor.processTestClass(test)
         1 * processor.stop()
     }
+
+    def sendsTestEventsThroughWorkerConnectionWhenSharedMemoryBufferCannotBeOpened() {
+        def worker = new TestWorker(factory, new File("does-not-exist.bin"))
+
+        when:
+        async {
+            worker.execute(workerContext)
+        }
+
+        then:
+        1 * factory.create(_) >> processor
+        1 * connection.addOutgoing(TestResultProcessor) >> resultProcessor
+        0 * connection.addOutgoing(SharedMemoryEventSignal)
+        1 * connection.connect() >> {
+            start {
+                worker.startProcessing()
+                worker.stop()
+            }
+        }
+        1 * processor.startProcessing({ it.is(resultProcessor) })
+        1 * processor.stop()
+    }
 }
@@ -67,6 +67,7 @@ import org.gradle.internal.resources.DefaultResourceLockCoordinationService
 import org.gradle.internal.resources.ResourceLock
 import org.gradle.internal.service.DefaultServiceRegistry
 import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.work.AdaptiveWorkerLeaseController
 import org.gradle.internal.work.DefaultWorkerLeaseService
 import org.gradle.internal.work.WorkerLeaseService
 import org.gradle.util.Path
@@ -453,7 +454,9 @@ class DefaultIncludedBuildTaskGraphParallelTest extends AbstractIncludedBuildTas
             workerLeaseService = new DefaultWorkerLeaseService(coordinationService, configuration)
             workerLeaseService.startProjectExecution(true)
             execFactory = new DefaultExecutorFactory()
-            planExecutor = new DefaultPlanExecutor(configuration, execFactory, workerLeaseService, cancellationToken, coordinationService, new DefaultInternalOptions([:]))
+            def internalOptions = new DefaultInternalOptions([:])
+            def adaptiveWorkerLeases = new AdaptiveWorkerLeaseController(workerLeaseService, workerLeaseService, [], execFactory, new TestBuildOperationExecutor(), internalOptions)
+            planExecutor = new DefaultPlanExecutor(configuration, execFactory, workerLeaseService, cancellationToken, coordinationService, internalOptions, adaptiveWorkerLeases)
             buildTaskGraph = new DefaultIncludedBuildTaskGraph(
                 execFactory,
                 new TestBuildOperationExecutor(),
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching;
+
+import org.gradle.api.Incubating;
+
+import java.util.Set;
+
+/**
+ * A {@link BuildCacheService} that can check whether many entries exist in the cache at once.
+ *
+ * <p>
+ *     Gradle uses this to avoid a round trip to the cache for each entry that turns out to be missing.
+ *     Implementations may report entries that don't exist, but must not omit entries that do exist.
+ *     When the backend does not support looking up entries, implementations should return all the given keys.
+ * </p>
+ *
+ * @since 8.6
+ */
+@Incubating
+public interface BatchLookupBuildCacheService extends BuildCacheService {
+    /**
+     * Returns the keys among the given keys that may have an entry in the cache.
+     *
+     * @param keys the cache keys to look up.
+     * @return the keys that may have an entry in the cache.
+     * @throws BuildCacheException if the cache fails to look up the entries
+     */
+    Set<BuildCacheKey> findExisting(Set<BuildCacheKey> keys) throws BuildCacheException;
+}
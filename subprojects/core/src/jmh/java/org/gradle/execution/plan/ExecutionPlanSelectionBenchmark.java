@@ -0,0 +1,226 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.internal.tasks.NodeExecutionContext;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.Stat;
+import org.gradle.internal.resources.AbstractTrackedResourceLock;
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
+import org.gradle.internal.resources.ResourceLock;
+import org.gradle.internal.resources.ResourceLockContainer;
+import org.gradle.internal.resources.ResourceLockCoordinationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.gradle.internal.snapshot.CaseSensitivity.CASE_SENSITIVE;
+
+/**
+ * Measures how long it takes to select all nodes of a large execution plan, when the nodes compete for a small number of project locks.
+ *
+ * The workers are simulated on a single thread, so that only the cost of selecting nodes is measured.
+ * Each worker starts a node and then finishes it, so at most one node per project runs at a time.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ExecutionPlanSelectionBenchmark {
+    private static final Stat NO_STAT = new Stat() {
+        @Override
+        public int getUnixMode(File f) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileMetadata stat(File f) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    @Param({"100000"})
+    int nodeCount;
+
+    @Param({"1", "16"})
+    int projectCount;
+
+    @Param({"8"})
+    int workerCount;
+
+    ResourceLockCoordinationService coordinationService;
+    FinalizedExecutionPlan finalizedPlan;
+    int currentWorker;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        coordinationService = new DefaultResourceLockCoordinationService();
+        List<ResourceLock> projectLocks = new ArrayList<>(projectCount);
+        for (int i = 0; i < projectCount; i++) {
+            projectLocks.add(new WorkerOwnedLock("project " + i));
+        }
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add(new BenchmarkNode("node " + i, projectLocks.get(i % projectCount)));
+        }
+
+        ExecutionNodeAccessHierarchies accessHierarchies = new ExecutionNodeAccessHierarchies(CASE_SENSITIVE, NO_STAT);
+        TaskDependencyResolver dependencyResolver = new TaskDependencyResolver(Collections.emptyList());
+        DefaultExecutionPlan executionPlan = new DefaultExecutionPlan("benchmark", null, new OrdinalGroupFactory(), dependencyResolver, accessHierarchies.getOutputHierarchy(), accessHierarchies.getDestroyableHierarchy(), coordinationService);
+        coordinationService.withStateLock(() -> {
+            executionPlan.addEntryNodes(nodes);
+            executionPlan.determineExecutionPlan();
+            finalizedPlan = executionPlan.finalizePlan();
+        });
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        coordinationService.withStateLock(() -> finalizedPlan.close());
+    }
+
+    @Benchmark
+    public int selectAllNodes() {
+        WorkSource<Node> workSource = finalizedPlan.asWorkSource();
+        Node[] running = new Node[workerCount];
+        int selected = 0;
+        while (true) {
+            boolean anyRunning = false;
+            for (currentWorker = 0; currentWorker < workerCount; currentWorker++) {
+                WorkSource.Selection<Node> selection = coordinationService.withStateLock(workSource::selectNext);
+                if (selection.isNoMoreWorkToStart()) {
+                    break;
+                }
+                if (!selection.isNoWorkReadyToStart()) {
+                    running[currentWorker] = selection.getItem();
+                    anyRunning = true;
+                    selected++;
+                }
+            }
+            if (!anyRunning) {
+                if (coordinationService.withStateLock(workSource::allExecutionComplete)) {
+                    return selected;
+                }
+                throw new IllegalStateException("No nodes could be selected, but the plan is not complete.");
+            }
+            for (currentWorker = 0; currentWorker < workerCount; currentWorker++) {
+                Node node = running[currentWorker];
+                if (node != null) {
+                    running[currentWorker] = null;
+                    coordinationService.withStateLock(() -> workSource.finishedExecuting(node, null));
+                }
+            }
+        }
+    }
+
+    /**
+     * A lock owned by one of the simulated workers, rather than by a thread.
+     */
+    private class WorkerOwnedLock extends AbstractTrackedResourceLock {
+        private int owner = -1;
+
+        WorkerOwnedLock(String displayName) {
+            super(displayName, coordinationService, NoOpResourceLockContainer.INSTANCE);
+        }
+
+        @Override
+        protected boolean acquireLock() {
+            if (owner == -1) {
+                owner = currentWorker;
+            }
+            return owner == currentWorker;
+        }
+
+        @Override
+        protected void releaseLock() {
+            owner = -1;
+        }
+
+        @Override
+        protected boolean doIsLocked() {
+            return owner != -1;
+        }
+
+        @Override
+        protected boolean doIsLockedByCurrentThread() {
+            return owner == currentWorker;
+        }
+    }
+
+    private enum NoOpResourceLockContainer implements ResourceLockContainer {
+        INSTANCE;
+
+        @Override
+        public void lockAcquired(ResourceLock lock) {
+        }
+
+        @Override
+        public void lockReleased(ResourceLock lock) {
+        }
+    }
+
+    private static class BenchmarkNode extends CreationOrderedNode implements SelfExecutingNode {
+        private final String name;
+        private final ResourceLock projectLock;
+
+        BenchmarkNode(String name, ResourceLock projectLock) {
+            this.name = name;
+            this.projectLock = projectLock;
+        }
+
+        @Override
+        public ResourceLock getProjectToLock() {
+            return projectLock;
+        }
+
+        @Override
+        public Throwable getNodeFailure() {
+            return null;
+        }
+
+        @Override
+        public void resolveDependencies(TaskDependencyResolver dependencyResolver) {
+        }
+
+        @Override
+        public void execute(NodeExecutionContext context) {
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
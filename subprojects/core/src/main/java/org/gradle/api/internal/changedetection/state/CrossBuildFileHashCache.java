@@ -22,24 +22,47 @@
 import org.gradle.cache.IndexedCacheParameters;
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
 import org.gradle.cache.scopes.ScopedCacheBuilderFactory;
+import org.gradle.internal.hash.StreamHasher;
 
 import java.io.Closeable;
+import java.util.Collections;
+import java.util.Map;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class CrossBuildFileHashCache implements Closeable {
+    /**
+     * Cache property recording the algorithm of the content hashes stored in a persistent cache.
+     */
+    public static final String CONTENT_HASH_ALGORITHM_CACHE_PROPERTY = "content.hash.algorithm";
 
     private final PersistentCache cache;
     private final InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory;
 
     public CrossBuildFileHashCache(ScopedCacheBuilderFactory cacheBuilderFactory, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory, Kind cacheKind) {
+        this(cacheBuilderFactory, inMemoryCacheDecoratorFactory, cacheKind, Collections.emptyMap());
+    }
+
+    /**
+     * @param cacheProperties properties identifying the cache contents, e.g. the algorithm of the stored content hashes; the cache is invalidated when they change.
+     */
+    public CrossBuildFileHashCache(ScopedCacheBuilderFactory cacheBuilderFactory, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory, Kind cacheKind, Map<String, ?> cacheProperties) {
         this.inMemoryCacheDecoratorFactory = inMemoryCacheDecoratorFactory;
         cache = cacheBuilderFactory.createCacheBuilder(cacheKind.cacheId)
             .withDisplayName(cacheKind.description)
+            .withProperties(cacheProperties)
             .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
             .open();
     }
 
+    /**
+     * Returns the cache properties for a cache storing content hashes created by the given hasher,
+     * so the cache is invalidated when the content hash algorithm changes.
+     */
+    public static Map<String, String> contentHashCacheProperties(StreamHasher streamHasher) {
+        return Collections.singletonMap(CONTENT_HASH_ALGORITHM_CACHE_PROPERTY, streamHasher.getHashFunction().getAlgorithm());
+    }
+
     public <K, V> IndexedCache<K, V> createIndexedCache(IndexedCacheParameters<K, V> parameters, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
         return cache.createIndexedCache(parameters
             .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses))
@@ -19,6 +19,7 @@
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.scopes.ScopedCacheBuilderFactory;
 import org.gradle.internal.execution.history.ExecutionHistoryCacheAccess;
+import org.gradle.internal.hash.StreamHasher;
 
 import java.io.Closeable;
 
@@ -27,10 +28,12 @@
 public class DefaultExecutionHistoryCacheAccess implements ExecutionHistoryCacheAccess, Closeable {
     private final PersistentCache cache;
 
-    public DefaultExecutionHistoryCacheAccess(ScopedCacheBuilderFactory cacheBuilderFactory) {
+    public DefaultExecutionHistoryCacheAccess(ScopedCacheBuilderFactory cacheBuilderFactory, StreamHasher streamHasher) {
         this.cache = cacheBuilderFactory
             .createCacheBuilder("executionHistory")
             .withDisplayName("execution history cache")
+            // Stored fingerprints contain content hashes, so they must be discarded when the content hash algorithm changes
+            .withProperties(CrossBuildFileHashCache.contentHashCacheProperties(streamHasher))
             .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
             .open();
     }
@@ -28,9 +28,10 @@
 import org.gradle.caching.internal.controller.RootBuildCacheControllerRef;
 import org.gradle.caching.internal.origin.OriginMetadataFactory;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.BuildCacheEntryCompression;
+import org.gradle.caching.internal.packaging.impl.CompressingBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.DefaultTarPackerFileSystemSupport;
 import org.gradle.caching.internal.packaging.impl.FilePermissionAccess;
-import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarPackerFileSystemSupport;
 import org.gradle.caching.internal.services.BuildCacheControllerFactory;
@@ -38,7 +39,16 @@
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.caching.local.internal.DirectoryBuildCacheFileStoreFactory;
 import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory;
+import org.gradle.caching.local.internal.PackFileBuildCacheServiceFactory;
+import org.gradle.execution.plan.NodePrefetcher;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.buildoption.IntegerInternalOption;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
+import org.gradle.internal.buildoption.StringInternalOption;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
 import org.gradle.internal.file.BufferProvider;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.FileException;
@@ -61,12 +71,48 @@
 import org.gradle.util.GradleVersion;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.List;
+import java.util.zip.Deflater;
 
 /**
  * Build scoped services for build cache usage.
  */
 public final class BuildCacheServices extends AbstractPluginServiceRegistry {
+    /**
+     * When enabled, build cache entries are compressed and decompressed in parallel chunks, and unpacked files are written on multiple threads.
+     */
+    public static final InternalFlag PARALLEL_PACKING = new InternalFlag("org.gradle.internal.build-cache.parallel-packing");
+    /**
+     * The compression used for packed build cache entries, see {@link BuildCacheEntryCompression}.
+     */
+    public static final StringInternalOption COMPRESSION = new StringInternalOption("org.gradle.internal.build-cache.compression", BuildCacheEntryCompression.GZIP.getDisplayName());
+    /**
+     * The compression level for gzip compressed build cache entries, from 1 (fastest) to 9 (smallest).
+     */
+    public static final IntegerInternalOption COMPRESSION_LEVEL = new IntegerInternalOption("org.gradle.internal.build-cache.compression.level", Deflater.DEFAULT_COMPRESSION);
+    /**
+     * When enabled, entries of tasks that are about to execute are downloaded from the remote build cache into the local build cache in the background.
+     * The cache keys are taken from the previous execution of the tasks.
+     */
+    public static final InternalFlag REMOTE_PREFETCH = new InternalFlag("org.gradle.internal.build-cache.remote-prefetch");
+    /**
+     * The maximum size in megabytes of prefetched remote build cache entries that have not been loaded yet.
+     */
+    public static final IntegerInternalOption REMOTE_PREFETCH_MAX_SIZE = new IntegerInternalOption("org.gradle.internal.build-cache.remote-prefetch.max-size", 256);
+    /**
+     * How long in seconds loading an entry waits for its prefetch to complete, before loading the entry from the remote build cache directly.
+     */
+    public static final IntegerInternalOption REMOTE_PREFETCH_WAIT_TIMEOUT = new IntegerInternalOption("org.gradle.internal.build-cache.remote-prefetch.wait-timeout", 30);
+    /**
+     * The number of threads used to prefetch remote build cache entries.
+     */
+    public static final IntegerInternalOption REMOTE_PREFETCH_THREADS = new IntegerInternalOption("org.gradle.internal.build-cache.remote-prefetch.threads", 4);
+    /**
+     * When enabled, the local build cache stores its entries in pack files instead of one file per entry.
+     */
+    public static final InternalFlag LOCAL_PACK_FILES = new InternalFlag("org.gradle.internal.build-cache.local.pack-files");
+
     @Override
     public void registerGlobalServices(ServiceRegistration registration) {
         registration.addProvider(new Object() {
@@ -121,7 +167,10 @@ public PathKeyFileStore createFileStore(File baseDir) {
                 };
             }
 
-            BuildCacheServiceRegistration createDirectoryBuildCacheServiceRegistration() {
+            BuildCacheServiceRegistration createDirectoryBuildCacheServiceRegistration(InternalOptions internalOptions) {
+                if (internalOptions.getOption(LOCAL_PACK_FILES).get()) {
+                    return new DefaultBuildCacheServiceRegistration(DirectoryBuildCache.class, PackFileBuildCacheServiceFactory.class);
+                }
                 return new DefaultBuildCacheServiceRegistration(DirectoryBuildCache.class, DirectoryBuildCacheServiceFactory.class);
             }
         });
@@ -141,10 +190,28 @@ BuildCacheEntryPacker createResultPacker(
                 FileSystem fileSystem,
                 StreamHasher fileHasher,
                 StringInterner stringInterner,
-                BufferProvider bufferProvider
+                BufferProvider bufferProvider,
+                InternalOptions internalOptions,
+                ExecutorFactory executorFactory
             ) {
-                return new GZipBuildCacheEntryPacker(
-                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner, bufferProvider));
+                BuildCacheEntryCompression compression = BuildCacheEntryCompression.forName(internalOptions.getOption(COMPRESSION).get());
+                int level = internalOptions.getOption(COMPRESSION_LEVEL).get();
+                if (internalOptions.getOption(PARALLEL_PACKING).get()) {
+                    int parallelism = Runtime.getRuntime().availableProcessors();
+                    ManagedExecutor executor = executorFactory.create("Build cache packing", parallelism);
+                    return new CompressingBuildCacheEntryPacker(
+                        new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner, bufferProvider, executor),
+                        compression,
+                        level,
+                        executor,
+                        parallelism
+                    );
+                }
+                return new CompressingBuildCacheEntryPacker(
+                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner, bufferProvider),
+                    compression,
+                    level
+                );
             }
 
             BuildCacheController createBuildCacheController(
@@ -176,6 +243,18 @@ private boolean isRoot(GradleInternal gradle) {
                 return gradle.isRootBuild();
             }
 
+            NodePrefetcher createNodePrefetcher(
+                InternalOptions internalOptions,
+                ExecutionHistoryStore executionHistoryStore,
+                BuildCacheController buildCacheController,
+                ExecutorFactory executorFactory
+            ) {
+                if (!internalOptions.getOption(REMOTE_PREFETCH).get()) {
+                    return NodePrefetcher.NONE;
+                }
+                return new TaskBuildCachePrefetcher(executionHistoryStore, buildCacheController, executorFactory.create("Build cache prefetch planning", 1));
+            }
+
             BuildCacheControllerFactory createBuildCacheControllerFactory(
                 StartParameterInternal startParameter,
                 BuildOperationExecutor buildOperationExecutor,
@@ -183,7 +262,9 @@ BuildCacheControllerFactory createBuildCacheControllerFactory(
                 TemporaryFileProvider temporaryFileProvider,
                 BuildCacheEntryPacker packer,
                 OriginMetadataFactory originMetadataFactory,
-                StringInterner stringInterner
+                StringInterner stringInterner,
+                InternalOptions internalOptions,
+                ExecutorFactory executorFactory
             ) {
                 return new DefaultBuildCacheControllerFactory(
                     startParameter,
@@ -192,7 +273,11 @@ BuildCacheControllerFactory createBuildCacheControllerFactory(
                     originMetadataFactory,
                     stringInterner,
                     temporaryFileProvider,
-                    packer
+                    packer,
+                    executorFactory,
+                    internalOptions.getOption(REMOTE_PREFETCH).get() ? internalOptions.getOption(REMOTE_PREFETCH_THREADS).get() : 0,
+                    internalOptions.getOption(REMOTE_PREFETCH_MAX_SIZE).get() * 1024L * 1024L,
+                    Duration.ofSeconds(internalOptions.getOption(REMOTE_PREFETCH_WAIT_TIMEOUT).get())
                 );
             }
         });
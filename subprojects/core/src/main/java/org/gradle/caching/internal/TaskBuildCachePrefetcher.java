@@ -0,0 +1,99 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.execution.plan.LocalTaskNode;
+import org.gradle.execution.plan.Node;
+import org.gradle.execution.plan.NodePrefetcher;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+import org.gradle.internal.execution.history.PreviousExecutionState;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Prefetches the build cache entries of tasks that are about to execute, using the cache keys of their previous executions.
+ *
+ * The key of the previous execution is only a prediction, as the inputs of the task may have changed since.
+ * The entry is only prefetched when outputs of the previous execution have been removed, for example by a clean build,
+ * as otherwise the task is likely up-to-date and won't load its entry.
+ *
+ * The previous executions are loaded in the background, as the execution plan notifies the prefetcher while holding its state lock.
+ */
+public class TaskBuildCachePrefetcher implements NodePrefetcher, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskBuildCachePrefetcher.class);
+
+    private final ExecutionHistoryStore executionHistoryStore;
+    private final BuildCacheController buildCacheController;
+    private final ManagedExecutor executor;
+    private final Set<String> requestedTasks = ConcurrentHashMap.newKeySet();
+
+    public TaskBuildCachePrefetcher(ExecutionHistoryStore executionHistoryStore, BuildCacheController buildCacheController, ManagedExecutor executor) {
+        this.executionHistoryStore = executionHistoryStore;
+        this.buildCacheController = buildCacheController;
+        this.executor = executor;
+    }
+
+    @Override
+    public void prefetch(Node node) {
+        if (!(node instanceof LocalTaskNode) || !buildCacheController.isEnabled()) {
+            return;
+        }
+        // The execution history of tasks is keyed by their path
+        String taskPath = ((LocalTaskNode) node).getTask().getPath();
+        if (!requestedTasks.add(taskPath)) {
+            return;
+        }
+        try {
+            executor.execute(() -> prefetch(taskPath));
+        } catch (RejectedExecutionException e) {
+            // The build is finishing
+        }
+    }
+
+    private void prefetch(String taskPath) {
+        try {
+            executionHistoryStore.load(taskPath)
+                .filter(PreviousExecutionState::isSuccessful)
+                .filter(TaskBuildCachePrefetcher::hasRemovedOutputs)
+                .flatMap(PreviousExecutionState::getCacheKey)
+                .ifPresent(cacheKey -> buildCacheController.prefetch(new DefaultBuildCacheKey(cacheKey)));
+        } catch (Exception e) {
+            LOGGER.debug("Could not prefetch build cache entry for {}", taskPath, e);
+        }
+    }
+
+    private static boolean hasRemovedOutputs(PreviousExecutionState previousExecutionState) {
+        return previousExecutionState.getOutputFilesProducedByWork().values().stream()
+            .flatMap(FileSystemSnapshot::roots)
+            .anyMatch(root -> root.getType() != FileType.Missing && !new File(root.getAbsolutePath()).exists());
+    }
+
+    @Override
+    public void close() {
+        executor.stop();
+    }
+}
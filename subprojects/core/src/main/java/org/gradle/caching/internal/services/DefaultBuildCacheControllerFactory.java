@@ -29,17 +29,24 @@
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.caching.local.internal.DirectoryBuildCacheService;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.BuildOperationProgressEventEmitter;
 import org.gradle.util.Path;
 
 import javax.annotation.Nullable;
+import java.time.Duration;
 
 public class DefaultBuildCacheControllerFactory extends AbstractBuildCacheControllerFactory<DirectoryBuildCacheService> {
 
     private final TemporaryFileProvider temporaryFileProvider;
     private final BuildCacheEntryPacker packer;
     private final BuildOperationProgressEventEmitter buildOperationProgressEmitter;
+    private final ExecutorFactory executorFactory;
+    private final int remotePrefetchThreads;
+    private final long maxPrefetchedBytes;
+    private final Duration prefetchWaitTimeout;
 
     public DefaultBuildCacheControllerFactory(
         StartParameter startParameter,
@@ -48,7 +55,11 @@ public DefaultBuildCacheControllerFactory(
         OriginMetadataFactory originMetadataFactory,
         StringInterner stringInterner,
         TemporaryFileProvider temporaryFileProvider,
-        BuildCacheEntryPacker packer
+        BuildCacheEntryPacker packer,
+        ExecutorFactory executorFactory,
+        int remotePrefetchThreads,
+        long maxPrefetchedBytes,
+        Duration prefetchWaitTimeout
     ) {
         super(
             startParameter,
@@ -59,6 +70,10 @@ public DefaultBuildCacheControllerFactory(
         this.temporaryFileProvider = temporaryFileProvider;
         this.packer = packer;
         this.buildOperationProgressEmitter = buildOperationProgressEmitter;
+        this.executorFactory = executorFactory;
+        this.remotePrefetchThreads = remotePrefetchThreads;
+        this.maxPrefetchedBytes = maxPrefetchedBytes;
+        this.prefetchWaitTimeout = prefetchWaitTimeout;
     }
 
     @Override
@@ -75,6 +90,9 @@ protected BuildCacheController doCreateController(
 
         boolean logStackTraces = startParameter.getShowStacktrace() != ShowStacktrace.INTERNAL_EXCEPTIONS;
         boolean emitDebugLogging = startParameter.isBuildCacheDebugLogging();
+        ManagedExecutor prefetchExecutor = remoteDescribedService != null && localDescribedService != null && remotePrefetchThreads > 0
+            ? executorFactory.create("Build cache prefetch", remotePrefetchThreads)
+            : null;
 
         return new DefaultBuildCacheController(
             config,
@@ -86,7 +104,10 @@ protected BuildCacheController doCreateController(
             !Boolean.getBoolean(REMOTE_CONTINUE_ON_ERROR_PROPERTY),
             packer,
             originMetadataFactory,
-            stringInterner
+            stringInterner,
+            prefetchExecutor,
+            maxPrefetchedBytes,
+            prefetchWaitTimeout
         );
     }
 
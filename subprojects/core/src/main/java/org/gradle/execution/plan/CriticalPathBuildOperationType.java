@@ -0,0 +1,49 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Reports the predicted and the actual critical path of an execution plan, once the plan has completed.
+ */
+public final class CriticalPathBuildOperationType implements BuildOperationType<CriticalPathBuildOperationType.Details, CriticalPathBuildOperationType.Result> {
+
+    public interface Details {
+        String getPlanDisplayName();
+    }
+
+    public interface Result {
+        /**
+         * The critical path predicted from the execution times of previous builds, in milliseconds.
+         */
+        long getPredictedCriticalPathMillis();
+
+        /**
+         * The critical path calculated from the actual execution times of the nodes, in milliseconds.
+         */
+        long getActualCriticalPathMillis();
+
+        /**
+         * The number of nodes for which an execution time estimate was available.
+         */
+        int getEstimatedNodeCount();
+    }
+
+    private CriticalPathBuildOperationType() {
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
+
+import java.util.List;
+
+/**
+ * Orders the ready nodes of an execution plan by their remaining critical path, using the execution times of previous builds.
+ */
+public class CriticalPathScheduling {
+    private final TaskExecutionTimeHistory history;
+    private final BuildOperationExecutor buildOperationExecutor;
+
+    public CriticalPathScheduling(TaskExecutionTimeHistory history, BuildOperationExecutor buildOperationExecutor) {
+        this.history = history;
+        this.buildOperationExecutor = buildOperationExecutor;
+    }
+
+    CriticalPathTracker createTracker(List<Node> scheduledNodes) {
+        return new CriticalPathTracker(scheduledNodes, history);
+    }
+
+    /**
+     * Records the execution times of the completed plan for later builds, and reports its critical path.
+     */
+    void planCompleted(String displayName, CriticalPathTracker tracker) {
+        if (!tracker.hasExecutedNodes()) {
+            return;
+        }
+        history.recordExecutionTimes(tracker.getTaskExecutionTimes());
+        long predicted = tracker.getPredictedCriticalPath();
+        long actual = tracker.getActualCriticalPath();
+        int estimatedNodeCount = tracker.getEstimatedNodeCount();
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                context.setResult(new CriticalPathBuildOperationType.Result() {
+                    @Override
+                    public long getPredictedCriticalPathMillis() {
+                        return predicted;
+                    }
+
+                    @Override
+                    public long getActualCriticalPathMillis() {
+                        return actual;
+                    }
+
+                    @Override
+                    public int getEstimatedNodeCount() {
+                        return estimatedNodeCount;
+                    }
+                });
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                CriticalPathBuildOperationType.Details details = () -> displayName;
+                return BuildOperationDescriptor.displayName("Critical path of " + displayName).details(details);
+            }
+        });
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.tasks.TaskExecutionOutcome;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the critical path of an execution plan, that is the longest chain of execution times through the plan. All times are in milliseconds.
+ *
+ * <p>The remaining critical path of a node is its estimated execution time plus the longest remaining critical path of the nodes waiting for it.
+ * Starting the ready node with the longest remaining critical path first shortens the overall execution time of the plan.</p>
+ *
+ * <p>The actual execution times of the nodes are tracked too, so the predicted critical path can be compared with the actual one once the plan completes.</p>
+ */
+class CriticalPathTracker {
+    private final List<Node> scheduledNodes;
+    private final Map<Node, Long> remainingCriticalPaths = new IdentityHashMap<>();
+    private final Map<Node, Long> startTimes = new IdentityHashMap<>();
+    private final Map<Node, Long> executionTimes = new IdentityHashMap<>();
+    private final int estimatedNodeCount;
+    private final long predictedCriticalPath;
+
+    CriticalPathTracker(List<Node> scheduledNodes, TaskExecutionTimeHistory history) {
+        this.scheduledNodes = scheduledNodes;
+        List<TaskInternal> tasks = new ArrayList<>();
+        for (Node node : scheduledNodes) {
+            if (node instanceof LocalTaskNode) {
+                tasks.add(((LocalTaskNode) node).getTask());
+            }
+        }
+        Map<TaskInternal, Long> estimates = history.estimateExecutionTimes(tasks);
+        this.estimatedNodeCount = estimates.size();
+        this.predictedCriticalPath = longestPaths(scheduledNodes, node -> node instanceof LocalTaskNode ? estimates.getOrDefault(((LocalTaskNode) node).getTask(), 0L) : 0L, remainingCriticalPaths);
+    }
+
+    /**
+     * Returns the order in which ready nodes should be started, or the given default order when there are no estimates.
+     */
+    Comparator<Node> executionOrder(Comparator<Node> defaultOrder) {
+        if (estimatedNodeCount == 0) {
+            return defaultOrder;
+        }
+        return (node1, node2) -> {
+            if (node1.isPriority() != node2.isPriority()) {
+                return node1.isPriority() ? -1 : 1;
+            }
+            int result = Long.compare(getRemainingCriticalPath(node2), getRemainingCriticalPath(node1));
+            if (result != 0) {
+                return result;
+            }
+            return defaultOrder.compare(node1, node2);
+        };
+    }
+
+    private long getRemainingCriticalPath(Node node) {
+        return remainingCriticalPaths.getOrDefault(node, 0L);
+    }
+
+    /**
+     * Gives a node that was added to the plan during execution the same remaining critical path as the node it was added for.
+     */
+    void nodeAdded(Node node, Node addedFor) {
+        remainingCriticalPaths.put(node, getRemainingCriticalPath(addedFor));
+    }
+
+    void nodeStarted(Node node) {
+        startTimes.put(node, System.nanoTime());
+    }
+
+    void nodeFinished(Node node) {
+        Long startTime = startTimes.remove(node);
+        if (startTime != null) {
+            executionTimes.put(node, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
+    }
+
+    boolean hasExecutedNodes() {
+        return !executionTimes.isEmpty();
+    }
+
+    long getPredictedCriticalPath() {
+        return predictedCriticalPath;
+    }
+
+    long getActualCriticalPath() {
+        return longestPaths(scheduledNodes, node -> executionTimes.getOrDefault(node, 0L), new IdentityHashMap<>());
+    }
+
+    int getEstimatedNodeCount() {
+        return estimatedNodeCount;
+    }
+
+    /**
+     * Returns the execution times of the tasks that did their work, rather than being up-to-date or loaded from the cache.
+     */
+    Map<TaskInternal, Long> getTaskExecutionTimes() {
+        Map<TaskInternal, Long> taskExecutionTimes = new HashMap<>();
+        executionTimes.forEach((node, executionTime) -> {
+            if (node instanceof LocalTaskNode) {
+                TaskInternal task = ((LocalTaskNode) node).getTask();
+                if (task.getState().getOutcome() == TaskExecutionOutcome.EXECUTED && task.getState().getFailure() == null) {
+                    taskExecutionTimes.put(task, executionTime);
+                }
+            }
+        });
+        return taskExecutionTimes;
+    }
+
+    private interface ExecutionTime {
+        long of(Node node);
+    }
+
+    /**
+     * Calculates the longest path starting at each node, and returns the longest path overall.
+     * Relies on the scheduled nodes being ordered so that each node comes after the nodes it depends on.
+     */
+    private static long longestPaths(List<Node> scheduledNodes, ExecutionTime executionTime, Map<Node, Long> longestPaths) {
+        long longestPath = 0;
+        for (int i = scheduledNodes.size() - 1; i >= 0; i--) {
+            Node node = scheduledNodes.get(i);
+            long longestDependentPath = 0;
+            for (Node dependent : node.getDependencyPredecessors()) {
+                longestDependentPath = Math.max(longestDependentPath, longestPaths.getOrDefault(dependent, 0L));
+            }
+            for (Node finalizer : node.getFinalizers()) {
+                longestDependentPath = Math.max(longestDependentPath, longestPaths.getOrDefault(finalizer, 0L));
+            }
+            long path = executionTime.of(node) + longestDependentPath;
+            longestPaths.put(node, path);
+            longestPath = Math.max(longestPath, path);
+        }
+        return longestPath;
+    }
+}
@@ -24,6 +24,7 @@
 import org.gradle.api.specs.Specs;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 
+import javax.annotation.Nullable;
 import java.util.AbstractCollection;
 import java.util.Collection;
 import java.util.Collections;
@@ -61,8 +62,11 @@ public class DefaultExecutionPlan implements ExecutionPlan, QueryableExecutionPl
     private final Set<Node> filteredNodes = newIdentityHashSet();
     private final Set<Node> finalizers = new LinkedHashSet<>();
     private final OrdinalNodeAccess ordinalNodeAccess;
+    @Nullable
+    private final CriticalPathScheduling criticalPathScheduling;
     private Consumer<LocalTaskNode> completionHandler = localTaskNode -> {
     };
+    private NodePrefetcher nodePrefetcher = NodePrefetcher.NONE;
 
     private DefaultFinalizedExecutionPlan finalizedPlan;
     // An immutable copy of the final plan
@@ -76,6 +80,19 @@ public DefaultExecutionPlan(
         ExecutionNodeAccessHierarchy outputHierarchy,
         ExecutionNodeAccessHierarchy destroyableHierarchy,
         ResourceLockCoordinationService lockCoordinator
+    ) {
+        this(displayName, taskNodeFactory, ordinalGroupFactory, dependencyResolver, outputHierarchy, destroyableHierarchy, lockCoordinator, null);
+    }
+
+    public DefaultExecutionPlan(
+        String displayName,
+        TaskNodeFactory taskNodeFactory,
+        OrdinalGroupFactory ordinalGroupFactory,
+        TaskDependencyResolver dependencyResolver,
+        ExecutionNodeAccessHierarchy outputHierarchy,
+        ExecutionNodeAccessHierarchy destroyableHierarchy,
+        ResourceLockCoordinationService lockCoordinator,
+        @Nullable CriticalPathScheduling criticalPathScheduling
     ) {
         this.displayName = displayName;
         this.taskNodeFactory = taskNodeFactory;
@@ -84,6 +101,7 @@ public DefaultExecutionPlan(
         this.destroyableHierarchy = destroyableHierarchy;
         this.lockCoordinator = lockCoordinator;
         this.ordinalNodeAccess = new OrdinalNodeAccess(ordinalGroupFactory);
+        this.criticalPathScheduling = criticalPathScheduling;
     }
 
     @Override
@@ -233,7 +251,7 @@ public FinalizedExecutionPlan finalizePlan() {
         if (finalizedPlan == null) {
             dependencyResolver.clear();
             // Should make an immutable copy of the contents to pass to the finalized plan and also to use in this instance
-            finalizedPlan = new DefaultFinalizedExecutionPlan(displayName, ordinalNodeAccess, outputHierarchy, destroyableHierarchy, lockCoordinator, scheduledNodes, continueOnFailure, this, completionHandler);
+            finalizedPlan = new DefaultFinalizedExecutionPlan(displayName, ordinalNodeAccess, outputHierarchy, destroyableHierarchy, lockCoordinator, scheduledNodes, continueOnFailure, this, completionHandler, criticalPathScheduling, nodePrefetcher);
         }
         return finalizedPlan;
     }
@@ -251,6 +269,7 @@ public void close() {
         }
         completionHandler = localTaskNode -> {
         };
+        nodePrefetcher = NodePrefetcher.NONE;
         entryNodes.clear();
         nodeMapping.clear();
         filteredNodes.clear();
@@ -269,6 +288,11 @@ public void onComplete(Consumer<LocalTaskNode> handler) {
         };
     }
 
+    @Override
+    public void setNodePrefetcher(NodePrefetcher prefetcher) {
+        this.nodePrefetcher = prefetcher;
+    }
+
     @Override
     public Set<Task> getTasks() {
         return nodeMapping.getTasks();
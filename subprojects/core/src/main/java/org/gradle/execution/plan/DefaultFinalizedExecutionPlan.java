@@ -36,8 +36,10 @@
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.BiFunction;
@@ -67,7 +69,9 @@ public int compare(Node node1, Node node2) {
     };
 
     private final Set<Node> waitingToStartNodes = new HashSet<>();
-    private final ExecutionQueue readyNodes = new ExecutionQueue();
+    private final ExecutionQueue readyNodes;
+    // Ready nodes that could not acquire a lock, by that lock, in execution order. These are returned to the ready queue one at a time, when the lock is available.
+    private final Map<ResourceLock, NavigableSet<Node>> nodesWaitingForLock = new LinkedHashMap<>();
     private final List<Throwable> failures = new ArrayList<>();
     private final List<DiagnosticEvent> diagnosticEvents = new ArrayList<>();
     private final String displayName;
@@ -84,6 +88,11 @@ public int compare(Node node1, Node node2) {
     private final Map<Pair<Node, Node>, Boolean> reachableCache = new HashMap<>();
     private final OrdinalNodeAccess ordinalNodeAccess;
     private final Consumer<LocalTaskNode> completionHandler;
+    @Nullable
+    private final CriticalPathScheduling criticalPathScheduling;
+    @Nullable
+    private final CriticalPathTracker criticalPathTracker;
+    private final NodePrefetcher nodePrefetcher;
 
     // When true, there may be nodes that are both ready and "selectable", which means their project and resources are able to be locked
     // When false, there are definitely no nodes that are "selectable"
@@ -101,6 +110,22 @@ public DefaultFinalizedExecutionPlan(
         boolean continueOnFailure,
         QueryableExecutionPlan contents,
         Consumer<LocalTaskNode> completionHandler
+    ) {
+        this(displayName, ordinalNodeAccess, outputHierarchy, destroyableHierarchy, lockCoordinator, scheduledNodes, continueOnFailure, contents, completionHandler, null, NodePrefetcher.NONE);
+    }
+
+    public DefaultFinalizedExecutionPlan(
+        String displayName,
+        OrdinalNodeAccess ordinalNodeAccess,
+        ExecutionNodeAccessHierarchy outputHierarchy,
+        ExecutionNodeAccessHierarchy destroyableHierarchy,
+        ResourceLockCoordinationService lockCoordinator,
+        List<Node> scheduledNodes,
+        boolean continueOnFailure,
+        QueryableExecutionPlan contents,
+        Consumer<LocalTaskNode> completionHandler,
+        @Nullable CriticalPathScheduling criticalPathScheduling,
+        NodePrefetcher nodePrefetcher
     ) {
         this.displayName = displayName;
         this.outputHierarchy = outputHierarchy;
@@ -110,6 +135,15 @@ public DefaultFinalizedExecutionPlan(
         this.continueOnFailure = continueOnFailure;
         this.contents = contents;
         this.completionHandler = completionHandler;
+        this.criticalPathScheduling = criticalPathScheduling;
+        this.nodePrefetcher = nodePrefetcher;
+        if (criticalPathScheduling != null) {
+            this.criticalPathTracker = criticalPathScheduling.createTracker(scheduledNodes);
+            this.readyNodes = new ExecutionQueue(criticalPathTracker.executionOrder(NODE_EXECUTION_ORDER));
+        } else {
+            this.criticalPathTracker = null;
+            this.readyNodes = new ExecutionQueue(NODE_EXECUTION_ORDER);
+        }
 
         SetMultimap<FinalizerGroup, FinalizerGroup> reachableGroups = LinkedHashMultimap.create();
         for (Node node : scheduledNodes) {
@@ -147,24 +181,62 @@ public WorkSource<Node> asWorkSource() {
     @Override
     public void close() {
         lockCoordinator.removeLockReleaseListener(resourceUnlockListener);
+        if (criticalPathScheduling != null) {
+            criticalPathScheduling.planCompleted(displayName, criticalPathTracker);
+        }
         waitingToStartNodes.clear();
         readyNodes.clear();
+        nodesWaitingForLock.clear();
         runningNodes.clear();
         reachableCache.clear();
     }
 
     private void resourceUnlocked(ResourceLock resourceLock) {
-        if (!(resourceLock instanceof WorkerLeaseRegistry.WorkerLease) && !readyNodes.isEmpty()) {
+        if (!(resourceLock instanceof WorkerLeaseRegistry.WorkerLease) && hasReadyNodes()) {
             maybeNodesSelectable = true;
         }
     }
 
+    private boolean hasReadyNodes() {
+        return !readyNodes.isEmpty() || !nodesWaitingForLock.isEmpty();
+    }
+
+    /**
+     * Returns the first node waiting for each lock that is not held to the ready queue, so that each selection attempts to start at most one node per lock.
+     *
+     * Some locks can only be acquired when some other lock is also available, such as a task execution lock and the state lock of its project.
+     * A lock that is not held may still be unavailable for this reason, in which case the node waits again.
+     */
+    private void nodesWaitingForLockMaybeReady() {
+        Iterator<Map.Entry<ResourceLock, NavigableSet<Node>>> iterator = nodesWaitingForLock.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ResourceLock, NavigableSet<Node>> entry = iterator.next();
+            if (!entry.getKey().isLocked()) {
+                NavigableSet<Node> nodes = entry.getValue();
+                readyNodes.insert(nodes.pollFirst());
+                if (nodes.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private void stopWaitingForLock(Node node) {
+        Iterator<NavigableSet<Node>> iterator = nodesWaitingForLock.values().iterator();
+        while (iterator.hasNext()) {
+            NavigableSet<Node> nodes = iterator.next();
+            if (nodes.remove(node) && nodes.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
     @Override
     public State executionState() {
         lockCoordinator.assertHasStateLock();
         if (waitingToStartNodes.isEmpty()) {
             return State.NoMoreWorkToStart;
-        } else if (!readyNodes.isEmpty() && maybeNodesSelectable) {
+        } else if (hasReadyNodes() && maybeNodesSelectable) {
             return State.MaybeWorkReadyToStart;
         } else {
             return State.NoWorkReadyToStart;
@@ -188,6 +260,11 @@ public Diagnostics healthDiagnostics() {
         for (Node node : readyNodes.nodes) {
             readyToStartItems.add(node.toString());
         }
+        for (Set<Node> nodes : nodesWaitingForLock.values()) {
+            for (Node node : nodes) {
+                readyToStartItems.add(node.toString());
+            }
+        }
         List<String> otherWaitingItems = new ArrayList<>();
         visitWaitingNodes(node -> {
             if (!waitingToStartNodes.contains(node)) {
@@ -233,10 +310,11 @@ public Selection<Node> selectNext() {
         if (waitingToStartNodes.isEmpty()) {
             return Selection.noMoreWorkToStart();
         }
-        if (readyNodes.isEmpty() || !maybeNodesSelectable) {
+        if (!hasReadyNodes() || !maybeNodesSelectable) {
             return Selection.noWorkReadyToStart();
         }
 
+        nodesWaitingForLockMaybeReady();
         List<ResourceLock> resources = new ArrayList<>();
         readyNodes.restart();
         while (readyNodes.hasNext()) {
@@ -262,6 +340,9 @@ public Selection<Node> selectNext() {
                     // The node is ready to execute and its pre-execution nodes have not been scheduled, so do this now
                     node.visitPreExecutionNodes(prepareNode -> {
                         prepareNode.setIndex(node.getIndex());
+                        if (criticalPathTracker != null) {
+                            criticalPathTracker.nodeAdded(prepareNode, node);
+                        }
                         prepareNode.require();
                         prepareNode.updateAllDependenciesComplete();
                         node.addDependencySuccessor(prepareNode);
@@ -307,10 +388,16 @@ private void addNodeToPlan(Node node) {
         maybeWaitingForNewNode(node, "runtime");
     }
 
+    /**
+     * Attempts to start the current node of the ready queue. When the node cannot acquire its locks, it is moved from the ready queue to wait for the lock.
+     */
     private boolean attemptToStart(Node node, List<ResourceLock> resources) {
         resources.clear();
-        if (!tryAcquireLocksForNode(node, resources)) {
+        ResourceLock unavailableLock = tryAcquireLocksForNode(node, resources);
+        if (unavailableLock != null) {
             releaseLocks(resources);
+            readyNodes.remove();
+            nodesWaitingForLock.computeIfAbsent(unavailableLock, lock -> new TreeSet<>(readyNodes.getOrder())).add(node);
             return false;
         }
 
@@ -334,15 +421,20 @@ private void releaseLocks(List<ResourceLock> resources) {
         }
     }
 
-    private boolean tryAcquireLocksForNode(Node node, List<ResourceLock> resources) {
+    /**
+     * Returns the lock that could not be acquired, or null when all locks for the node were acquired.
+     */
+    @Nullable
+    private ResourceLock tryAcquireLocksForNode(Node node, List<ResourceLock> resources) {
         if (!tryLockProjectFor(node, resources)) {
             LOGGER.debug("Cannot acquire project lock for node {}", node);
-            return false;
-        } else if (!tryLockSharedResourceFor(node, resources)) {
+            return node.getProjectToLock();
+        }
+        ResourceLock unavailableSharedResource = tryLockSharedResourceFor(node, resources);
+        if (unavailableSharedResource != null) {
             LOGGER.debug("Cannot acquire shared resource lock for node {}", node);
-            return false;
         }
-        return true;
+        return unavailableSharedResource;
     }
 
     private boolean conflictsWithOtherNodes(Node node, MutationInfo mutations) {
@@ -384,14 +476,15 @@ private void unlockProjectFor(Node node) {
         }
     }
 
-    private boolean tryLockSharedResourceFor(Node node, List<ResourceLock> resources) {
+    @Nullable
+    private ResourceLock tryLockSharedResourceFor(Node node, List<ResourceLock> resources) {
         for (ResourceLock resource : node.getResourcesToLock()) {
             if (!resource.tryLock()) {
-                return false;
+                return resource;
             }
             resources.add(resource);
         }
-        return true;
+        return null;
     }
 
     private void unlockSharedResourcesFor(Node node) {
@@ -506,6 +599,34 @@ private boolean doesConsumerDependOnDestroyer(Node consumer, Node destroyer) {
 
     private void recordNodeExecutionStarted(Node node) {
         runningNodes.add(node);
+        if (criticalPathTracker != null) {
+            criticalPathTracker.nodeStarted(node);
+        }
+        prefetchNodesWaitingFor(node);
+    }
+
+    /**
+     * Notifies the prefetcher of the nodes waiting for the given node, whose dependencies have all started executing.
+     * These nodes are likely to become ready soon.
+     */
+    private void prefetchNodesWaitingFor(Node node) {
+        if (nodePrefetcher == NodePrefetcher.NONE) {
+            return;
+        }
+        for (Node predecessor : node.getDependencyPredecessors()) {
+            if (predecessor.isRequired() && allDependenciesStarted(predecessor)) {
+                nodePrefetcher.prefetch(predecessor);
+            }
+        }
+    }
+
+    private static boolean allDependenciesStarted(Node node) {
+        for (Node successor : node.getDependencySuccessors()) {
+            if (!successor.isExecuting() && !successor.isComplete()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private void recordNodeCompleted(Node node) {
@@ -547,6 +668,9 @@ public void finishedExecuting(Node node, @Nullable Throwable failure) {
         lockCoordinator.assertHasStateLock();
         try {
             runningNodes.remove(node);
+            if (criticalPathTracker != null) {
+                criticalPathTracker.nodeFinished(node);
+            }
 
             if (failure != null) {
                 node.setExecutionFailure(failure);
@@ -555,7 +679,7 @@ public void finishedExecuting(Node node, @Nullable Throwable failure) {
                 throw new IllegalStateException(format("Cannot finish executing %s as it is in an unexpected state %s.", node, node.getState()));
             }
 
-            if (!readyNodes.isEmpty()) {
+            if (hasReadyNodes()) {
                 maybeNodesSelectable = true;
             }
 
@@ -567,6 +691,9 @@ public void finishedExecuting(Node node, @Nullable Throwable failure) {
                 LOGGER.debug("Node {} finished executing", node);
                 node.visitPostExecutionNodes(postNode -> {
                     postNode.setIndex(node.getIndex());
+                    if (criticalPathTracker != null) {
+                        criticalPathTracker.nodeAdded(postNode, node);
+                    }
                     postNode.require();
                     postNode.updateAllDependenciesComplete();
                     addNodeToPlan(postNode);
@@ -575,6 +702,7 @@ public void finishedExecuting(Node node, @Nullable Throwable failure) {
                         predecessor.forceAllDependenciesCompleteUpdate();
                         if (!predecessor.allDependenciesComplete()) {
                             readyNodes.removeAndRestart(predecessor);
+                            stopWaitingForLock(predecessor);
                         }
                     }
                 });
@@ -590,6 +718,7 @@ private void maybeNodeReady(Node node) {
         if (node.allDependenciesComplete()) {
             maybeNodesSelectable = true;
             readyNodes.insert(node);
+            nodePrefetcher.prefetch(node);
         }
     }
 
@@ -679,12 +808,22 @@ public boolean allExecutionComplete() {
     }
 
     /**
-     * An ordered queue of nodes, sorted by {@link #NODE_EXECUTION_ORDER}.
+     * An ordered queue of nodes, sorted by {@link #NODE_EXECUTION_ORDER} or by the remaining critical path.
      */
     static class ExecutionQueue {
-        private final Set<Node> nodes = new TreeSet<>(NODE_EXECUTION_ORDER);
+        private final Comparator<Node> order;
+        private final Set<Node> nodes;
         private Iterator<Node> current;
 
+        ExecutionQueue(Comparator<Node> order) {
+            this.order = order;
+            this.nodes = new TreeSet<>(order);
+        }
+
+        public Comparator<Node> getOrder() {
+            return order;
+        }
+
         public void clear() {
             nodes.clear();
             current = null;
@@ -34,6 +34,7 @@
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.logging.text.TreeFormatter;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
+import org.gradle.internal.work.AdaptiveWorkerLeaseController;
 import org.gradle.internal.work.WorkerLeaseRegistry.WorkerLease;
 import org.gradle.internal.work.WorkerLeaseService;
 
@@ -70,6 +71,7 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
     private final MergedQueues queue;
     private final ExecutorState state = new ExecutorState();
     private final ExecutorStats stats;
+    private final AdaptiveWorkerLeaseController adaptiveWorkerLeases;
 
     public DefaultPlanExecutor(
         ParallelismConfiguration parallelismConfiguration,
@@ -77,7 +79,8 @@ public DefaultPlanExecutor(
         WorkerLeaseService workerLeaseService,
         BuildCancellationToken cancellationToken,
         ResourceLockCoordinationService coordinationService,
-        InternalOptions internalOptions
+        InternalOptions internalOptions,
+        AdaptiveWorkerLeaseController adaptiveWorkerLeases
     ) {
         this.cancellationToken = cancellationToken;
         this.coordinationService = coordinationService;
@@ -91,6 +94,7 @@ public DefaultPlanExecutor(
         this.stats = internalOptions.getOption(STATS).get() ? new CollectingExecutorStats(state) : state;
         this.queue = new MergedQueues(coordinationService, false);
         this.executor = executorFactory.create("Execution worker");
+        this.adaptiveWorkerLeases = adaptiveWorkerLeases;
     }
 
     @Override
@@ -107,6 +111,7 @@ public <T> ExecutionResult<Void> process(WorkSource<T> workSource, Action<T> wor
         PlanDetails planDetails = new PlanDetails(Cast.uncheckedCast(workSource), Cast.uncheckedCast(worker));
         queue.add(planDetails);
 
+        adaptiveWorkerLeases.start();
         maybeStartWorkers(queue, executor);
 
         // Run the work from the source from this thread as well, given that it will be blocked waiting for that work to complete anyway
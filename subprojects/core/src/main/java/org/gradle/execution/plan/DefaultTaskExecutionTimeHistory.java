@@ -0,0 +1,124 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.cache.IndexedCache;
+import org.gradle.cache.IndexedCacheParameters;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
+import org.gradle.cache.scopes.BuildScopedCacheBuilderFactory;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.gradle.cache.FileLockManager.LockMode.OnDemand;
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * Keeps the execution time of each task, and a moving average of the execution times of tasks of each type.
+ *
+ * The average by type is used for tasks that have not been executed before, for example in a new project.
+ * The cache is only opened when it is first used.
+ */
+public class DefaultTaskExecutionTimeHistory implements TaskExecutionTimeHistory, Closeable {
+    private static final String TASK_PREFIX = "task:";
+    private static final String TYPE_PREFIX = "type:";
+
+    private final BuildScopedCacheBuilderFactory cacheBuilderFactory;
+    private final InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory;
+    private PersistentCache cacheAccess;
+    private IndexedCache<String, Long> executionTimes;
+
+    public DefaultTaskExecutionTimeHistory(BuildScopedCacheBuilderFactory cacheBuilderFactory, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
+        this.cacheBuilderFactory = cacheBuilderFactory;
+        this.inMemoryCacheDecoratorFactory = inMemoryCacheDecoratorFactory;
+    }
+
+    @Override
+    public synchronized Map<TaskInternal, Long> estimateExecutionTimes(Collection<TaskInternal> tasks) {
+        IndexedCache<String, Long> executionTimes = getExecutionTimes();
+        return cacheAccess.useCache(() -> {
+            Map<TaskInternal, Long> estimates = new HashMap<>();
+            Map<String, Long> estimatesByType = new HashMap<>();
+            for (TaskInternal task : tasks) {
+                Long estimate = executionTimes.getIfPresent(taskKey(task));
+                if (estimate == null) {
+                    estimate = estimatesByType.computeIfAbsent(typeKey(task), key -> valueOrNegative(executionTimes.getIfPresent(key)));
+                }
+                if (estimate >= 0) {
+                    estimates.put(task, estimate);
+                }
+            }
+            return estimates;
+        });
+    }
+
+    @Override
+    public synchronized void recordExecutionTimes(Map<TaskInternal, Long> executionTimes) {
+        if (executionTimes.isEmpty()) {
+            return;
+        }
+        IndexedCache<String, Long> cache = getExecutionTimes();
+        cacheAccess.useCache(() -> {
+            for (Map.Entry<TaskInternal, Long> entry : executionTimes.entrySet()) {
+                long executionTime = entry.getValue();
+                cache.put(taskKey(entry.getKey()), executionTime);
+                String typeKey = typeKey(entry.getKey());
+                Long previousAverage = cache.getIfPresent(typeKey);
+                cache.put(typeKey, previousAverage == null ? executionTime : (previousAverage + executionTime) / 2);
+            }
+        });
+    }
+
+    private IndexedCache<String, Long> getExecutionTimes() {
+        if (executionTimes == null) {
+            cacheAccess = cacheBuilderFactory
+                .createCacheBuilder("taskExecutionTimes")
+                .withDisplayName("Task execution times")
+                .withLockOptions(mode(OnDemand))
+                .open();
+            executionTimes = cacheAccess.createIndexedCache(
+                IndexedCacheParameters.of("executionTimes", String.class, Long.class)
+                    .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(10000, true))
+            );
+        }
+        return executionTimes;
+    }
+
+    private static long valueOrNegative(@Nullable Long value) {
+        return value == null ? -1 : value;
+    }
+
+    private static String taskKey(TaskInternal task) {
+        return TASK_PREFIX + task.getIdentityPath().getPath();
+    }
+
+    private static String typeKey(TaskInternal task) {
+        return TYPE_PREFIX + task.getTaskIdentity().getTaskType().getName();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (cacheAccess != null) {
+            cacheAccess.close();
+        }
+    }
+}
@@ -69,6 +69,11 @@ public interface ExecutionPlan extends Describable, Closeable {
      */
     void onComplete(Consumer<LocalTaskNode> handler);
 
+    /**
+     * Sets the prefetcher that is notified of nodes that are about to execute. Must be called before {@link #finalizePlan()}.
+     */
+    void setNodePrefetcher(NodePrefetcher prefetcher);
+
     /**
      * Overridden to remove IOException.
      */
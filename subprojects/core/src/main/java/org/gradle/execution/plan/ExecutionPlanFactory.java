@@ -16,12 +16,20 @@
 
 package org.gradle.execution.plan;
 
+import org.gradle.internal.buildoption.InternalFlag;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.service.scopes.Scopes;
 import org.gradle.internal.service.scopes.ServiceScope;
 
+import javax.annotation.Nullable;
+
 @ServiceScope(Scopes.Build.class)
 public class ExecutionPlanFactory {
+    /**
+     * Starts the ready nodes with the longest remaining critical path first, using the task execution times of previous builds.
+     */
+    public static final InternalFlag CRITICAL_PATH_SCHEDULING = new InternalFlag("org.gradle.internal.scheduling.critical-path");
+
     private final String displayName;
     private final TaskNodeFactory taskNodeFactory;
     private final OrdinalGroupFactory ordinalGroupFactory;
@@ -29,6 +37,8 @@ public class ExecutionPlanFactory {
     private final ExecutionNodeAccessHierarchy outputHierarchy;
     private final ExecutionNodeAccessHierarchy destroyableHierarchy;
     private final ResourceLockCoordinationService lockCoordinationService;
+    @Nullable
+    private final CriticalPathScheduling criticalPathScheduling;
 
     public ExecutionPlanFactory(
         String displayName,
@@ -37,7 +47,8 @@ public ExecutionPlanFactory(
         TaskDependencyResolver dependencyResolver,
         ExecutionNodeAccessHierarchy outputHierarchy,
         ExecutionNodeAccessHierarchy destroyableHierarchy,
-        ResourceLockCoordinationService lockCoordinationService
+        ResourceLockCoordinationService lockCoordinationService,
+        @Nullable CriticalPathScheduling criticalPathScheduling
     ) {
         this.displayName = displayName;
         this.taskNodeFactory = taskNodeFactory;
@@ -46,9 +57,10 @@ public ExecutionPlanFactory(
         this.outputHierarchy = outputHierarchy;
         this.destroyableHierarchy = destroyableHierarchy;
         this.lockCoordinationService = lockCoordinationService;
+        this.criticalPathScheduling = criticalPathScheduling;
     }
 
     public ExecutionPlan createPlan() {
-        return new DefaultExecutionPlan(displayName, taskNodeFactory, ordinalGroupFactory, dependencyResolver, outputHierarchy, destroyableHierarchy, lockCoordinationService);
+        return new DefaultExecutionPlan(displayName, taskNodeFactory, ordinalGroupFactory, dependencyResolver, outputHierarchy, destroyableHierarchy, lockCoordinationService, criticalPathScheduling);
     }
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+
+/**
+ * Prepares nodes of an execution plan ahead of their execution, for example by fetching their outputs from a build cache.
+ *
+ * The plan notifies the prefetcher when a node becomes ready to execute, and when all of its dependencies have at least started executing.
+ * A node may be passed more than once.
+ * The prefetcher is called while holding the state lock of the plan, so it should only schedule work and return quickly.
+ */
+@ServiceScope(Scopes.Gradle.class)
+public interface NodePrefetcher {
+    NodePrefetcher NONE = node -> {
+    };
+
+    void prefetch(Node node);
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Execution times of tasks in previous builds, used to estimate how long tasks will take in the current build.
+ */
+@ServiceScope(Scopes.Build.class)
+public interface TaskExecutionTimeHistory {
+    /**
+     * Returns the estimated execution times in milliseconds of the given tasks.
+     * Tasks for which no estimate is available are omitted.
+     */
+    Map<TaskInternal, Long> estimateExecutionTimes(Collection<TaskInternal> tasks);
+
+    /**
+     * Records the execution times in milliseconds of the given tasks.
+     */
+    void recordExecutionTimes(Map<TaskInternal, Long> executionTimes);
+}
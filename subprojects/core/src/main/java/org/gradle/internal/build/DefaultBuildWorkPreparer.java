@@ -20,6 +20,7 @@
 import org.gradle.execution.plan.ExecutionPlan;
 import org.gradle.execution.plan.ExecutionPlanFactory;
 import org.gradle.execution.plan.FinalizedExecutionPlan;
+import org.gradle.execution.plan.NodePrefetcher;
 import org.gradle.execution.taskgraph.TaskExecutionGraphInternal;
 import org.gradle.internal.execution.BuildOutputCleanupRegistry;
 
@@ -49,6 +50,7 @@ public FinalizedExecutionPlan finalizeWorkGraph(GradleInternal gradle, Execution
         if (gradle.getStartParameter().isContinueOnFailure()) {
             plan.setContinueOnFailure(true);
         }
+        plan.setNodePrefetcher(gradle.getServices().get(NodePrefetcher.class));
         FinalizedExecutionPlan finalizedExecutionPlan = plan.finalizePlan();
         taskGraph.populate(finalizedExecutionPlan);
         BuildOutputCleanupRegistry buildOutputCleanupRegistry = gradle.getServices().get(BuildOutputCleanupRegistry.class);
@@ -86,6 +86,7 @@
 import org.gradle.api.services.internal.DefaultBuildServicesRegistry;
 import org.gradle.cache.UnscopedCacheBuilderFactory;
 import org.gradle.cache.internal.BuildScopeCacheDir;
+import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
 import org.gradle.cache.internal.scopes.DefaultBuildScopedCacheBuilderFactory;
 import org.gradle.cache.scopes.BuildScopedCacheBuilderFactory;
 import org.gradle.cache.scopes.GlobalScopedCacheBuilderFactory;
@@ -103,11 +104,14 @@
 import org.gradle.configuration.project.DefaultCompileOperationFactory;
 import org.gradle.configuration.project.PluginsProjectConfigureActions;
 import org.gradle.execution.ProjectConfigurer;
+import org.gradle.execution.plan.CriticalPathScheduling;
 import org.gradle.execution.plan.DefaultNodeValidator;
+import org.gradle.execution.plan.DefaultTaskExecutionTimeHistory;
 import org.gradle.execution.plan.ExecutionNodeAccessHierarchies;
 import org.gradle.execution.plan.ExecutionPlanFactory;
 import org.gradle.execution.plan.OrdinalGroupFactory;
 import org.gradle.execution.plan.TaskDependencyResolver;
+import org.gradle.execution.plan.TaskExecutionTimeHistory;
 import org.gradle.execution.plan.TaskNodeDependencyResolver;
 import org.gradle.execution.plan.TaskNodeFactory;
 import org.gradle.execution.plan.ToPlannedNodeConverterRegistry;
@@ -174,6 +178,7 @@
 import org.gradle.internal.build.PublicBuildPath;
 import org.gradle.internal.buildevents.BuildStartedTime;
 import org.gradle.internal.buildoption.FeatureFlags;
+import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.buildtree.BuildInclusionCoordinator;
 import org.gradle.internal.buildtree.BuildModelParameters;
 import org.gradle.internal.classloader.ClassLoaderFactory;
@@ -264,8 +269,14 @@ ExecutionPlanFactory createExecutionPlanFactory(
         OrdinalGroupFactory ordinalGroupFactory,
         TaskDependencyResolver dependencyResolver,
         ExecutionNodeAccessHierarchies executionNodeAccessHierarchies,
-        ResourceLockCoordinationService lockCoordinationService
+        ResourceLockCoordinationService lockCoordinationService,
+        InternalOptions internalOptions,
+        TaskExecutionTimeHistory taskExecutionTimeHistory,
+        BuildOperationExecutor buildOperationExecutor
     ) {
+        CriticalPathScheduling criticalPathScheduling = internalOptions.getOption(ExecutionPlanFactory.CRITICAL_PATH_SCHEDULING).get()
+            ? new CriticalPathScheduling(taskExecutionTimeHistory, buildOperationExecutor)
+            : null;
         return new ExecutionPlanFactory(
             build.getDisplayName().getDisplayName(),
             taskNodeFactory,
@@ -273,10 +284,15 @@ ExecutionPlanFactory createExecutionPlanFactory(
             dependencyResolver,
             executionNodeAccessHierarchies.getOutputHierarchy(),
             executionNodeAccessHierarchies.getDestroyableHierarchy(),
-            lockCoordinationService
+            lockCoordinationService,
+            criticalPathScheduling
         );
     }
 
+    TaskExecutionTimeHistory createTaskExecutionTimeHistory(BuildScopedCacheBuilderFactory cacheBuilderFactory, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
+        return new DefaultTaskExecutionTimeHistory(cacheBuilderFactory, inMemoryCacheDecoratorFactory);
+    }
+
     ExecutionNodeAccessHierarchies createExecutionNodeAccessHierarchies(FileSystem fileSystem, Stat stat) {
         return new ExecutionNodeAccessHierarchies(fileSystem.isCaseSensitive() ? CaseSensitivity.CASE_SENSITIVE : CaseSensitivity.CASE_INSENSITIVE, stat);
     }
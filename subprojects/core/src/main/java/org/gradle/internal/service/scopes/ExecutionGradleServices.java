@@ -25,6 +25,10 @@
 import org.gradle.cache.scopes.BuildScopedCacheBuilderFactory;
 import org.gradle.caching.internal.controller.BuildCacheController;
 import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.internal.buildoption.IntegerInternalOption;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.enterprise.core.GradleEnterprisePluginManager;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.BuildOutputCleanupRegistry;
@@ -41,6 +45,7 @@
 import org.gradle.internal.execution.history.changes.ExecutionStateChangeDetector;
 import org.gradle.internal.execution.history.impl.DefaultExecutionHistoryStore;
 import org.gradle.internal.execution.history.impl.DefaultOutputFilesRepository;
+import org.gradle.internal.execution.history.impl.WriteBehindExecutionHistoryStore;
 import org.gradle.internal.execution.impl.DefaultExecutionEngine;
 import org.gradle.internal.execution.steps.AssignImmutableWorkspaceStep;
 import org.gradle.internal.execution.steps.AssignMutableWorkspaceStep;
@@ -81,6 +86,7 @@
 import org.gradle.internal.execution.timeout.TimeoutHandler;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.id.UniqueId;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.CurrentBuildOperationRef;
@@ -96,22 +102,40 @@
 import static org.gradle.internal.execution.steps.AfterExecutionOutputFilter.NO_FILTER;
 
 public class ExecutionGradleServices {
-    ExecutionHistoryCacheAccess createCacheAccess(BuildScopedCacheBuilderFactory cacheBuilderFactory) {
-        return new DefaultExecutionHistoryCacheAccess(cacheBuilderFactory);
+    /**
+     * When enabled, execution history is written by a background writer instead of on the thread that executed the work.
+     */
+    public static final InternalFlag EXECUTION_HISTORY_WRITE_BEHIND = new InternalFlag("org.gradle.internal.execution-history.write-behind");
+    public static final IntegerInternalOption EXECUTION_HISTORY_MAX_PENDING_WRITES = new IntegerInternalOption("org.gradle.internal.execution-history.write-behind.max-pending", 10000);
+
+    ExecutionHistoryCacheAccess createCacheAccess(BuildScopedCacheBuilderFactory cacheBuilderFactory, StreamHasher streamHasher) {
+        return new DefaultExecutionHistoryCacheAccess(cacheBuilderFactory, streamHasher);
     }
 
     ExecutionHistoryStore createExecutionHistoryStore(
         ExecutionHistoryCacheAccess executionHistoryCacheAccess,
         InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory,
         StringInterner stringInterner,
-        ClassLoaderHierarchyHasher classLoaderHasher
+        ClassLoaderHierarchyHasher classLoaderHasher,
+        InternalOptions internalOptions,
+        ExecutorFactory executorFactory,
+        BuildOperationExecutor buildOperationExecutor
     ) {
-        return new DefaultExecutionHistoryStore(
+        ExecutionHistoryStore executionHistoryStore = new DefaultExecutionHistoryStore(
             executionHistoryCacheAccess,
             inMemoryCacheDecoratorFactory,
             stringInterner,
             classLoaderHasher
         );
+        if (internalOptions.getOption(EXECUTION_HISTORY_WRITE_BEHIND).get()) {
+            return new WriteBehindExecutionHistoryStore(
+                executionHistoryStore,
+                executorFactory.create("Execution history writer"),
+                buildOperationExecutor,
+                internalOptions.getOption(EXECUTION_HISTORY_MAX_PENDING_WRITES).get()
+            );
+        }
+        return executionHistoryStore;
     }
 
     OutputFilesRepository createOutputFilesRepository(BuildScopedCacheBuilderFactory cacheBuilderFactory, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
@@ -18,15 +18,19 @@
 
 import org.gradle.execution.plan.DefaultPlanExecutor;
 import org.gradle.internal.service.ServiceRegistration;
+import org.gradle.internal.work.AdaptiveWorkerLeaseController;
+import org.gradle.internal.work.SystemLoadWorkerLoadSource;
 
 public class ExecutionServices extends AbstractPluginServiceRegistry {
     @Override
     public void registerGlobalServices(ServiceRegistration registration) {
         registration.addProvider(new ExecutionGlobalServices());
+        registration.add(SystemLoadWorkerLoadSource.class);
     }
 
     @Override
     public void registerBuildTreeServices(ServiceRegistration registration) {
+        registration.add(AdaptiveWorkerLeaseController.class);
         registration.add(DefaultPlanExecutor.class);
     }
 
@@ -20,6 +20,7 @@
 import net.rubygrapefruit.platform.NativeIntegrationUnavailableException;
 import net.rubygrapefruit.platform.file.FileSystems;
 import org.apache.tools.ant.DirectoryScanner;
+import org.gradle.StartParameter;
 import org.gradle.api.internal.DocumentationRegistry;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.state.BuildSessionScopeFileTimeStampInspector;
@@ -44,10 +45,15 @@
 import org.gradle.cache.scopes.GlobalScopedCacheBuilderFactory;
 import org.gradle.initialization.RootBuildLifecycleListener;
 import org.gradle.internal.build.BuildAddedListener;
+import org.gradle.internal.buildoption.DefaultInternalOptions;
 import org.gradle.internal.buildoption.IntegerInternalOption;
 import org.gradle.internal.buildoption.InternalFlag;
 import org.gradle.internal.buildoption.InternalOptions;
+import org.gradle.internal.buildoption.StringInternalOption;
 import org.gradle.internal.classloader.ClasspathHasher;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedForkJoinPool;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.FileCollectionFingerprinterRegistry;
 import org.gradle.internal.execution.FileCollectionSnapshotter;
@@ -66,8 +72,10 @@
 import org.gradle.internal.fingerprint.impl.DefaultFileCollectionSnapshotter;
 import org.gradle.internal.fingerprint.impl.FileCollectionFingerprinterRegistrations;
 import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeintegration.NativeCapabilities;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
@@ -97,8 +105,10 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 
 import static org.gradle.internal.snapshot.CaseSensitivity.CASE_INSENSITIVE;
@@ -118,6 +128,18 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
     public static final IntegerInternalOption MAX_HIERARCHIES_TO_WATCH_PROPERTY = new IntegerInternalOption("org.gradle.vfs.watch.hierarchies.max", DEFAULT_MAX_HIERARCHIES_TO_WATCH);
     private static final int FILE_HASHER_MEMORY_CACHE_SIZE = 400000;
 
+    /**
+     * When this flag is set, unfiltered directory trees are walked and hashed in parallel, using up to max workers threads.
+     *
+     * @see org.gradle.internal.snapshot.impl.DirectorySnapshotter
+     */
+    public static final InternalFlag PARALLEL_SNAPSHOTTING_PROPERTY = new InternalFlag("org.gradle.vfs.snapshot.parallel");
+
+    /**
+     * Selects the algorithm used to hash the contents of files outside the global caches, see {@link Hashing#forAlgorithm(String)}.
+     */
+    public static final StringInternalOption CONTENT_HASH_ALGORITHM_PROPERTY = new StringInternalOption("org.gradle.internal.hash.content-algorithm", Hashing.defaultFunction().getAlgorithm());
+
     public static boolean isDropVfs(InternalOptions options) {
         return options.getOption(VFS_DROP_PROPERTY).get();
     }
@@ -242,6 +264,7 @@ FileSystemAccess createFileSystemAccess(
                 virtualFileSystem,
                 writeListener,
                 statisticsCollector,
+                null,
                 DirectoryScanner.getDefaultExcludes()
             );
             listenerManager.addListener(defaultFileSystemAccess);
@@ -303,8 +326,16 @@ FileSystemDefaultExcludesProvider createFileSystemDefaultExcludesProvider(Listen
             return new DefaultFileSystemDefaultExcludesProvider(listenerManager);
         }
 
-        CrossBuildFileHashCache createCrossBuildFileHashCache(BuildTreeScopedCacheBuilderFactory cacheBuilderFactory, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
-            return new CrossBuildFileHashCache(cacheBuilderFactory, inMemoryCacheDecoratorFactory, CrossBuildFileHashCache.Kind.FILE_HASHES);
+        /**
+         * Hashes file contents with the algorithm selected for the build, replacing the global hasher for the services of the build session.
+         */
+        StreamHasher createStreamHasher(StartParameter startParameter) {
+            InternalOptions options = new DefaultInternalOptions(startParameter.getSystemPropertiesArgs());
+            return new DefaultStreamHasher(Hashing.forAlgorithm(options.getOption(CONTENT_HASH_ALGORITHM_PROPERTY).get()));
+        }
+
+        CrossBuildFileHashCache createCrossBuildFileHashCache(BuildTreeScopedCacheBuilderFactory cacheBuilderFactory, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory, StreamHasher streamHasher) {
+            return new CrossBuildFileHashCache(cacheBuilderFactory, inMemoryCacheDecoratorFactory, CrossBuildFileHashCache.Kind.FILE_HASHES, CrossBuildFileHashCache.contentHashCacheProperties(streamHasher));
         }
 
         FileHasher createFileHasher(
@@ -321,6 +352,13 @@ FileHasher createFileHasher(
             return new SplitFileHasher(globalHasher, localHasher, globalCacheLocations);
         }
 
+        ParallelSnapshottingPool createParallelSnapshottingPool(StartParameter startParameter, ExecutorFactory executorFactory) {
+            InternalOptions options = new DefaultInternalOptions(startParameter.getSystemPropertiesArgs());
+            return new ParallelSnapshottingPool(options.getOption(PARALLEL_SNAPSHOTTING_PROPERTY).get()
+                ? executorFactory.createForkJoinPool("Directory snapshotting", startParameter.getMaxWorkerCount())
+                : null);
+        }
+
         FileSystemAccess createFileSystemAccess(
             FileHasher hasher,
             ListenerManager listenerManager,
@@ -328,7 +366,8 @@ FileSystemAccess createFileSystemAccess(
             StringInterner stringInterner,
             VirtualFileSystem root,
             FileSystemAccess.WriteListener writeListener,
-            DirectorySnapshotterStatistics.Collector statisticsCollector
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            ParallelSnapshottingPool parallelSnapshottingPool
         ) {
             DefaultFileSystemAccess buildSessionsScopedVirtualFileSystem = new DefaultFileSystemAccess(
                 hasher,
@@ -337,6 +376,7 @@ FileSystemAccess createFileSystemAccess(
                 root,
                 writeListener,
                 statisticsCollector,
+                parallelSnapshottingPool.getPool(),
                 DirectoryScanner.getDefaultExcludes()
             );
 
@@ -391,4 +431,29 @@ ResourceSnapshotterCacheService createResourceSnapshotterCacheService(
             return new SplitResourceSnapshotterCacheService(globalCache, localCache, globalCacheLocations);
         }
     }
+
+    /**
+     * Holds the pool used to snapshot directory trees in parallel for the build session, if parallel snapshotting is enabled.
+     */
+    @VisibleForTesting
+    static class ParallelSnapshottingPool implements Stoppable {
+        @Nullable
+        private final ManagedForkJoinPool pool;
+
+        ParallelSnapshottingPool(@Nullable ManagedForkJoinPool pool) {
+            this.pool = pool;
+        }
+
+        @Nullable
+        ForkJoinPool getPool() {
+            return pool;
+        }
+
+        @Override
+        public void stop() {
+            if (pool != null) {
+                pool.stop();
+            }
+        }
+    }
 }
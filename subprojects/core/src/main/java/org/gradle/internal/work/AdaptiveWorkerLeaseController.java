@@ -0,0 +1,189 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.work;
+
+import com.google.common.collect.ImmutableMap;
+import org.gradle.internal.buildoption.IntegerInternalOption;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedScheduledExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapts the number of worker leases to the load reported by the {@link WorkerLoadSource}s, when enabled.
+ *
+ * <p>The load is sampled periodically once work starts executing. The number of leases is reduced by one when some source reports a load above {@link #HIGH_LOAD},
+ * and increased by one when all leases are in use and every source reports a load below {@link #LOW_LOAD}.
+ * The number of leases stays between {@link #MIN_WORKER_LEASES} and the maximum number of workers, and is restored to the maximum when the build tree completes.</p>
+ */
+@ServiceScope(Scopes.BuildTree.class)
+public class AdaptiveWorkerLeaseController implements Stoppable {
+    public static final InternalFlag ADAPTIVE_WORKER_LEASES = new InternalFlag("org.gradle.internal.workers.adaptive");
+
+    /**
+     * The minimum number of worker leases to use when adapting to the load.
+     */
+    public static final IntegerInternalOption MIN_WORKER_LEASES = new IntegerInternalOption("org.gradle.internal.workers.adaptive.min", 1);
+
+    static final double HIGH_LOAD = 1.0;
+    static final double LOW_LOAD = 0.75;
+    private static final long SAMPLE_INTERVAL_MILLIS = 1000;
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveWorkerLeaseController.class);
+    private static final AdjustWorkerLeasesBuildOperationType.Result RESULT = new AdjustWorkerLeasesBuildOperationType.Result() {
+    };
+
+    private final WorkerLeaseLimit workerLeaseLimit;
+    private final List<WorkerLoadSource> loadSources;
+    private final ExecutorFactory executorFactory;
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    @Nullable
+    private ManagedScheduledExecutor scheduler;
+
+    public AdaptiveWorkerLeaseController(
+        WorkerLeaseService workerLeaseService,
+        WorkerLeaseLimit workerLeaseLimit,
+        List<WorkerLoadSource> loadSources,
+        ExecutorFactory executorFactory,
+        BuildOperationExecutor buildOperationExecutor,
+        InternalOptions internalOptions
+    ) {
+        this.workerLeaseLimit = workerLeaseLimit;
+        this.loadSources = loadSources;
+        this.executorFactory = executorFactory;
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.maxLimit = workerLeaseService.getMaxWorkerCount();
+        this.minLimit = Math.max(1, Math.min(maxLimit, internalOptions.getOption(MIN_WORKER_LEASES).get()));
+        this.enabled = internalOptions.getOption(ADAPTIVE_WORKER_LEASES).get() && minLimit < maxLimit && !loadSources.isEmpty();
+    }
+
+    /**
+     * Starts sampling the load, when enabled and not already started.
+     */
+    public synchronized void start() {
+        if (!enabled || scheduler != null) {
+            return;
+        }
+        scheduler = executorFactory.createScheduled("Adaptive worker leases", 1);
+        scheduler.scheduleWithFixedDelay(this::sample, SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.stop();
+            scheduler = null;
+            workerLeaseLimit.setWorkerLeaseLimit(maxLimit);
+        }
+    }
+
+    private void sample() {
+        try {
+            adjust();
+        } catch (Exception e) {
+            // Keep sampling, the load may be known the next time
+            LOGGER.debug("Could not adjust the number of worker leases.", e);
+        }
+    }
+
+    /**
+     * Samples the load and adjusts the number of worker leases, when required.
+     */
+    public void adjust() {
+        ImmutableMap.Builder<String, Double> loads = ImmutableMap.builder();
+        double maxLoad = -1;
+        for (WorkerLoadSource source : loadSources) {
+            double load = source.getLoad();
+            if (load >= 0) {
+                loads.put(source.getDisplayName(), load);
+                maxLoad = Math.max(maxLoad, load);
+            }
+        }
+        if (maxLoad < 0) {
+            // Nothing is known about the load
+            return;
+        }
+
+        int previousLimit = workerLeaseLimit.getWorkerLeaseLimit();
+        int limit = previousLimit;
+        if (maxLoad > HIGH_LOAD) {
+            limit = Math.max(minLimit, previousLimit - 1);
+        } else if (maxLoad < LOW_LOAD && workerLeaseLimit.getWorkerLeasesInUse() >= previousLimit) {
+            limit = Math.min(maxLimit, previousLimit + 1);
+        }
+        if (limit != previousLimit) {
+            adjustLimit(previousLimit, limit, loads.build());
+        }
+    }
+
+    private void adjustLimit(int previousLimit, int limit, Map<String, Double> loads) {
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                workerLeaseLimit.setWorkerLeaseLimit(limit);
+                context.setResult(RESULT);
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                AdjustWorkerLeasesBuildOperationType.Details details = new AdjustWorkerLeasesBuildOperationType.Details() {
+                    @Override
+                    public int getPreviousLimit() {
+                        return previousLimit;
+                    }
+
+                    @Override
+                    public int getLimit() {
+                        return limit;
+                    }
+
+                    @Override
+                    public int getMinLimit() {
+                        return minLimit;
+                    }
+
+                    @Override
+                    public int getMaxLimit() {
+                        return maxLimit;
+                    }
+
+                    @Override
+                    public Map<String, Double> getLoads() {
+                        return loads;
+                    }
+                };
+                return BuildOperationDescriptor.displayName("Adjust worker leases from " + previousLimit + " to " + limit).details(details);
+            }
+        });
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.work;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+import java.util.Map;
+
+/**
+ * Changes the number of worker leases in response to the load reported by the {@link WorkerLoadSource}s.
+ */
+public final class AdjustWorkerLeasesBuildOperationType implements BuildOperationType<AdjustWorkerLeasesBuildOperationType.Details, AdjustWorkerLeasesBuildOperationType.Result> {
+
+    public interface Details {
+        int getPreviousLimit();
+
+        int getLimit();
+
+        int getMinLimit();
+
+        int getMaxLimit();
+
+        /**
+         * The load reported by each source, by the display name of the source.
+         */
+        Map<String, Double> getLoads();
+    }
+
+    public interface Result {
+    }
+
+    private AdjustWorkerLeasesBuildOperationType() {
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.work;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the number of runnable threads per available processor.
+ *
+ * <p>On Linux, the number of runnable threads is read from {@code /proc/loadavg} each time the load is sampled, and averaged over the last few seconds,
+ * so the load follows the changes made to the number of worker leases.
+ * On other platforms, the one minute system load average is used. The load is not known on platforms that do not provide a load average, such as Windows.</p>
+ */
+public class SystemLoadWorkerLoadSource implements WorkerLoadSource {
+    private static final File LOADAVG_FILE = new File("/proc/loadavg");
+    private static final long AVERAGE_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+    private boolean runnableThreadsAvailable = LOADAVG_FILE.isFile();
+    private double averageRunnableThreads = -1;
+    private long lastSampleNanos;
+
+    @Override
+    public String getDisplayName() {
+        return "system load";
+    }
+
+    @Override
+    public synchronized double getLoad() {
+        if (runnableThreadsAvailable) {
+            try {
+                String loadavg = Files.asCharSource(LOADAVG_FILE, StandardCharsets.US_ASCII).read();
+                return sample(loadavg, System.nanoTime()) / operatingSystem.getAvailableProcessors();
+            } catch (IOException | RuntimeException e) {
+                runnableThreadsAvailable = false;
+            }
+        }
+        double loadAverage = operatingSystem.getSystemLoadAverage();
+        if (loadAverage < 0) {
+            return -1;
+        }
+        return loadAverage / operatingSystem.getAvailableProcessors();
+    }
+
+    /**
+     * Adds the number of runnable threads reported by the given {@code /proc/loadavg} content to the average, and returns the new average.
+     *
+     * @param loadavg the content of {@code /proc/loadavg}, for example {@code "0.52 0.58 0.59 3/1234 5678"}, where 3 is the number of runnable threads.
+     */
+    @VisibleForTesting
+    double sample(String loadavg, long nanos) {
+        String[] fields = loadavg.trim().split("\\s+");
+        String runnable = fields[3].substring(0, fields[3].indexOf('/'));
+        // Do not count the thread reading the file
+        int runnableThreads = Math.max(0, Integer.parseInt(runnable) - 1);
+        if (averageRunnableThreads < 0) {
+            averageRunnableThreads = runnableThreads;
+        } else {
+            double decay = Math.exp(-(double) (nanos - lastSampleNanos) / AVERAGE_PERIOD_NANOS);
+            averageRunnableThreads = averageRunnableThreads * decay + runnableThreads * (1 - decay);
+        }
+        lastSampleNanos = nanos;
+        return averageRunnableThreads;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal
+
+import com.google.common.collect.ImmutableSortedMap
+import org.gradle.api.internal.TaskInternal
+import org.gradle.caching.internal.controller.BuildCacheController
+import org.gradle.execution.plan.LocalTaskNode
+import org.gradle.internal.concurrent.ManagedExecutor
+import org.gradle.internal.execution.history.ExecutionHistoryStore
+import org.gradle.internal.execution.history.PreviousExecutionState
+import org.gradle.internal.file.FileType
+import org.gradle.internal.hash.TestHashCodes
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.FileSystemSnapshot
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.stream.Stream
+
+@CleanupTestDirectory
+class TaskBuildCachePrefetcherTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def cacheKey = TestHashCodes.hashCodeFrom(1234)
+    def executionHistoryStore = Mock(ExecutionHistoryStore)
+    def buildCacheController = Mock(BuildCacheController) {
+        isEnabled() >> true
+    }
+    def executor = Stub(ManagedExecutor) {
+        execute(_ as Runnable) >> { Runnable action -> action.run() }
+    }
+    def prefetcher = new TaskBuildCachePrefetcher(executionHistoryStore, buildCacheController, executor)
+
+    def "prefetches entry of previous execution when its outputs have been removed"() {
+        def node = taskNode(":compile")
+        def previousExecution = previousExecution(true, temporaryFolder.file("build/removed"))
+
+        when:
+        prefetcher.prefetch(node)
+        prefetcher.prefetch(node)
+
+        then:
+        1 * executionHistoryStore.load(":compile") >> Optional.of(previousExecution)
+        1 * buildCacheController.prefetch(new DefaultBuildCacheKey(cacheKey))
+    }
+
+    def "does not prefetch entry of previous execution when its outputs still exist"() {
+        def node = taskNode(":compile")
+        def output = temporaryFolder.file("build/output").createFile()
+        def previousExecution = previousExecution(true, output)
+
+        when:
+        prefetcher.prefetch(node)
+
+        then:
+        1 * executionHistoryStore.load(":compile") >> Optional.of(previousExecution)
+        0 * buildCacheController.prefetch(_)
+    }
+
+    def "does not prefetch entry of failed previous execution"() {
+        def node = taskNode(":compile")
+        def previousExecution = previousExecution(false, temporaryFolder.file("build/removed"))
+
+        when:
+        prefetcher.prefetch(node)
+
+        then:
+        1 * executionHistoryStore.load(":compile") >> Optional.of(previousExecution)
+        0 * buildCacheController.prefetch(_)
+    }
+
+    private LocalTaskNode taskNode(String path) {
+        def task = Stub(TaskInternal) {
+            getPath() >> path
+        }
+        return Stub(LocalTaskNode) {
+            getTask() >> task
+        }
+    }
+
+    private PreviousExecutionState previousExecution(boolean successful, File output) {
+        def root = Stub(FileSystemLocationSnapshot) {
+            getType() >> FileType.RegularFile
+            getAbsolutePath() >> output.absolutePath
+        }
+        def snapshot = Stub(FileSystemSnapshot) {
+            roots() >> { Stream.of(root) }
+        }
+        return Stub(PreviousExecutionState) {
+            isSuccessful() >> successful
+            getOutputFilesProducedByWork() >> ImmutableSortedMap.of("output", snapshot)
+            getCacheKey() >> Optional.of(cacheKey)
+        }
+    }
+}
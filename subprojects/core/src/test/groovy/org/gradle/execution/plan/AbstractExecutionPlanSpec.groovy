@@ -56,6 +56,10 @@ abstract class AbstractExecutionPlanSpec extends Specification {
         return locks.findAll { it.locked }.collect { it.project } as Set
     }
 
+    protected int getLockAttempts(ProjectInternal project) {
+        return locks.find { it.project.is(project) }.attempts
+    }
+
     protected void recordLocks(Closure cl) {
         acquired.clear()
         cl()
@@ -163,6 +167,7 @@ abstract class AbstractExecutionPlanSpec extends Specification {
         final Thread owner = Thread.currentThread()
         final ProjectInternal project
         boolean locked
+        int attempts
         final Collection<MockLock> locks
 
         MockLock(ProjectInternal project, Collection<MockLock> locks) {
@@ -177,6 +182,7 @@ abstract class AbstractExecutionPlanSpec extends Specification {
 
         @Override
         boolean tryLock() {
+            attempts++
             if (!locks.contains(this) && locked) {
                 return false
             }
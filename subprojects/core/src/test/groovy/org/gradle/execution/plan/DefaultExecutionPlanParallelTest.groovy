@@ -23,6 +23,7 @@ import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.internal.project.taskfactory.TestTaskIdentities
 import org.gradle.api.internal.tasks.NodeExecutionContext
+import org.gradle.api.internal.tasks.TaskExecutionOutcome
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.api.tasks.Destroys
 import org.gradle.api.tasks.InputDirectory
@@ -59,6 +60,11 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
         executionPlan = new DefaultExecutionPlan(Path.ROOT.toString(), taskNodeFactory, new OrdinalGroupFactory(), dependencyResolver, accessHierarchies.outputHierarchy, accessHierarchies.destroyableHierarchy, coordinator)
     }
 
+    void useCriticalPathScheduling(TaskExecutionTimeHistory history, TestBuildOperationExecutor buildOperationExecutor) {
+        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
+        executionPlan = new DefaultExecutionPlan(Path.ROOT.toString(), taskNodeFactory, new OrdinalGroupFactory(), dependencyResolver, accessHierarchies.outputHierarchy, accessHierarchies.destroyableHierarchy, coordinator, new CriticalPathScheduling(history, buildOperationExecutor))
+    }
+
     Node priorityNode(Map<String, ?> options = [:]) {
         return new TestPriorityNode(options.failure)
     }
@@ -973,6 +979,60 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
         !taskNode3.task.project.is(taskNode4.task.project)
     }
 
+    def "tasks waiting for the project lock are started in execution order when the lock is released"() {
+        given:
+        def otherProject = project(project, "other")
+        def a = task("a")
+        def b = task("b")
+        def c = task("c")
+        def d = task("d", project: otherProject)
+
+        when:
+        addToGraphAndPopulate(a, b, c, d)
+        def first = selectNextTask()
+        def other = selectNextTask()
+
+        then:
+        first == a
+        other == d
+        getLockAttempts(project) == 3
+        assertNoWorkReadyToStartAfterSelect()
+        // Tasks waiting for a lock that is held are not attempted again
+        getLockAttempts(project) == 3
+
+        when:
+        finishedExecuting(d)
+
+        then:
+        assertNoWorkReadyToStartAfterSelect()
+        getLockAttempts(project) == 3
+
+        when:
+        finishedExecuting(a)
+        def second = selectNextTask()
+
+        then:
+        second == b
+        // Only the first task waiting for the released lock is attempted
+        getLockAttempts(project) == 4
+        assertNoWorkReadyToStartAfterSelect()
+        getLockAttempts(project) == 4
+
+        when:
+        finishedExecuting(b)
+        def third = selectNextTask()
+
+        then:
+        third == c
+        getLockAttempts(project) == 5
+
+        when:
+        finishedExecuting(c)
+
+        then:
+        assertAllWorkComplete()
+    }
+
     def "a non-async task can start while an async task from the same project is waiting for work to complete"() {
         given:
         def bar = task("bar", type: Async)
@@ -1078,6 +1138,93 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
 
     }
 
+    def "starts the task with the longest remaining critical path first when critical path scheduling is enabled"() {
+        given:
+        def history = Mock(TaskExecutionTimeHistory)
+        def buildOperationExecutor = new TestBuildOperationExecutor()
+        useCriticalPathScheduling(history, buildOperationExecutor)
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async)
+        Task c = task("c", type: Async, dependsOn: [b])
+        a.state.outcome >> TaskExecutionOutcome.EXECUTED
+        b.state.outcome >> TaskExecutionOutcome.EXECUTED
+        c.state.outcome >> TaskExecutionOutcome.EXECUTED
+        history.estimateExecutionTimes(_) >> [(a): 50L, (b): 10L, (c): 100L]
+
+        when:
+        addToGraphAndPopulate(a, c)
+        def firstTaskNode = selectNextTaskNode()
+        def secondTaskNode = selectNextTaskNode()
+
+        then:
+        firstTaskNode.task == b
+        secondTaskNode.task == a
+
+        when:
+        finishedExecuting(firstTaskNode)
+        finishedExecuting(secondTaskNode)
+        finishedExecuting(selectNextTaskNode())
+        finalizedPlan.close()
+
+        then:
+        1 * history.recordExecutionTimes({ it.keySet() == [a, b, c] as Set })
+        def result = buildOperationExecutor.log.mostRecentResult(CriticalPathBuildOperationType)
+        result.predictedCriticalPathMillis == 110
+        result.estimatedNodeCount == 3
+    }
+
+    def "uses the default execution order when there is no execution time history"() {
+        given:
+        def history = Mock(TaskExecutionTimeHistory)
+        useCriticalPathScheduling(history, new TestBuildOperationExecutor())
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async)
+        Task c = task("c", type: Async, dependsOn: [b])
+        history.estimateExecutionTimes(_) >> [:]
+
+        when:
+        addToGraphAndPopulate(a, c)
+
+        then:
+        selectNextTask() == a
+        selectNextTask() == b
+    }
+
+    def "notifies prefetcher of tasks that are ready or whose dependencies have all started"() {
+        given:
+        def prefetched = []
+        executionPlan.setNodePrefetcher { Node node ->
+            if (node instanceof LocalTaskNode) {
+                prefetched << node.task
+            }
+        }
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async, dependsOn: [a])
+        Task c = task("c", type: Async, dependsOn: [b])
+
+        when:
+        addToGraphAndPopulate(c)
+
+        then:
+        prefetched == [a]
+
+        when:
+        def nodeA = selectNextTaskNode()
+
+        then:
+        nodeA.task == a
+        prefetched == [a, b]
+
+        when:
+        finishedExecuting(nodeA)
+        def nodeB = selectNextTaskNode()
+
+        then:
+        nodeB.task == b
+        prefetched as Set == [a, b, c] as Set
+        prefetched.last() == c
+    }
+
     def "two tasks that have the same file in outputs are not executed in parallel"() {
         def sharedFile = file("output")
 
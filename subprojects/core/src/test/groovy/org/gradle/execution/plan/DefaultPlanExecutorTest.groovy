@@ -26,6 +26,7 @@ import org.gradle.internal.buildoption.DefaultInternalOptions
 import org.gradle.internal.concurrent.DefaultParallelismConfiguration
 import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.resources.DefaultResourceLockCoordinationService
+import org.gradle.internal.work.AdaptiveWorkerLeaseController
 import org.gradle.internal.work.WorkerLeaseRegistry
 import org.gradle.internal.work.WorkerLeaseService
 import spock.lang.Specification
@@ -38,7 +39,7 @@ class DefaultPlanExecutorTest extends Specification {
     def coordinationService = new DefaultResourceLockCoordinationService()
     def workerLeaseService = Mock(WorkerLeaseService)
     def workerLease = Mock(WorkerLeaseRegistry.WorkerLease)
-    def executor = new DefaultPlanExecutor(new DefaultParallelismConfiguration(false, 1), executorFactory, workerLeaseService, cancellationHandler, coordinationService, new DefaultInternalOptions([:]))
+    def executor = new DefaultPlanExecutor(new DefaultParallelismConfiguration(false, 1), executorFactory, workerLeaseService, cancellationHandler, coordinationService, new DefaultInternalOptions([:]), Stub(AdaptiveWorkerLeaseController))
 
     def "executes tasks until no further tasks remain"() {
         def gradle = Mock(Gradle)
@@ -65,6 +65,7 @@ import org.gradle.internal.file.Stat
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.service.ServiceRegistry
 import org.gradle.internal.service.scopes.Scopes
+import org.gradle.internal.work.AdaptiveWorkerLeaseController
 import org.gradle.internal.work.DefaultWorkerLeaseService
 import org.gradle.internal.work.WorkerLeaseRegistry
 import org.gradle.util.Path
@@ -89,7 +90,7 @@ class DefaultTaskExecutionGraphSpec extends AbstractExecutionPlanSpec {
     def projectStateRegistry = Stub(ProjectStateRegistry)
     def executionPlan = newExecutionPlan()
     def taskGraph = new DefaultTaskExecutionGraph(
-        new DefaultPlanExecutor(parallelismConfiguration, executorFactory, workerLeases, cancellationToken, coordinator, new DefaultInternalOptions([:])),
+        new DefaultPlanExecutor(parallelismConfiguration, executorFactory, workerLeases, cancellationToken, coordinator, new DefaultInternalOptions([:]), Stub(AdaptiveWorkerLeaseController)),
         [nodeExecutor],
         buildOperationExecutor,
         listenerBuildOperationDecorator,
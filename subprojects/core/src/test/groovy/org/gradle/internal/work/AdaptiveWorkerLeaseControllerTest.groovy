@@ -0,0 +1,144 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.work
+
+import org.gradle.internal.buildoption.DefaultInternalOptions
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import spock.lang.Specification
+
+class AdaptiveWorkerLeaseControllerTest extends Specification {
+    def workerLeaseService = Stub(WorkerLeaseService) {
+        getMaxWorkerCount() >> 4
+    }
+    def workerLeaseLimit = new TestWorkerLeaseLimit(workerLeaseLimit: 4, workerLeasesInUse: 4)
+    def buildOperationExecutor = new TestBuildOperationExecutor()
+    def executorFactory = new DefaultExecutorFactory()
+    double load
+    def loadSource = Stub(WorkerLoadSource) {
+        getDisplayName() >> "test load"
+        getLoad() >> { load }
+    }
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "reduces the number of leases when the load is high"() {
+        def controller = controller()
+        load = 1.5
+
+        when:
+        controller.adjust()
+
+        then:
+        workerLeaseLimit.workerLeaseLimit == 3
+        def details = buildOperationExecutor.log.mostRecentDetails(AdjustWorkerLeasesBuildOperationType)
+        details.previousLimit == 4
+        details.limit == 3
+        details.minLimit == 1
+        details.maxLimit == 4
+        details.loads == ["test load": 1.5d]
+    }
+
+    def "does not reduce the number of leases below the minimum"() {
+        def controller = controller("org.gradle.internal.workers.adaptive.min": "3")
+        workerLeaseLimit.workerLeaseLimit = 3
+        load = 2
+
+        when:
+        controller.adjust()
+
+        then:
+        workerLeaseLimit.workerLeaseLimit == 3
+        buildOperationExecutor.log.all(AdjustWorkerLeasesBuildOperationType).empty
+    }
+
+    def "increases the number of leases when the load is low and all leases are in use"() {
+        def controller = controller()
+        workerLeaseLimit.workerLeaseLimit = 2
+        workerLeaseLimit.workerLeasesInUse = 2
+        load = 0.5
+
+        when:
+        controller.adjust()
+
+        then:
+        workerLeaseLimit.workerLeaseLimit == 3
+        buildOperationExecutor.log.mostRecentDetails(AdjustWorkerLeasesBuildOperationType).limit == 3
+    }
+
+    def "does not increase the number of leases when some leases are not in use"() {
+        def controller = controller()
+        workerLeaseLimit.workerLeaseLimit = 2
+        workerLeaseLimit.workerLeasesInUse = 1
+        load = 0.5
+
+        when:
+        controller.adjust()
+
+        then:
+        workerLeaseLimit.workerLeaseLimit == 2
+        buildOperationExecutor.log.all(AdjustWorkerLeasesBuildOperationType).empty
+    }
+
+    def "does not change the number of leases when the load is not known"() {
+        def controller = controller()
+        load = -1
+
+        when:
+        controller.adjust()
+
+        then:
+        workerLeaseLimit.workerLeaseLimit == 4
+        buildOperationExecutor.log.all(AdjustWorkerLeasesBuildOperationType).empty
+    }
+
+    def "restores the number of leases when stopped"() {
+        def controller = controller()
+
+        when:
+        controller.start()
+        workerLeaseLimit.workerLeaseLimit = 2
+        controller.stop()
+
+        then:
+        workerLeaseLimit.workerLeaseLimit == 4
+    }
+
+    def "does nothing when not enabled"() {
+        def controller = new AdaptiveWorkerLeaseController(workerLeaseService, workerLeaseLimit, [loadSource], executorFactory, buildOperationExecutor, new DefaultInternalOptions([:]))
+
+        when:
+        controller.start()
+        workerLeaseLimit.workerLeaseLimit = 2
+        controller.stop()
+
+        then:
+        workerLeaseLimit.workerLeaseLimit == 2
+    }
+
+    private AdaptiveWorkerLeaseController controller(Map<String, String> options = [:]) {
+        def internalOptions = new DefaultInternalOptions(["org.gradle.internal.workers.adaptive": "true"] + options)
+        return new AdaptiveWorkerLeaseController(workerLeaseService, workerLeaseLimit, [loadSource], executorFactory, buildOperationExecutor, internalOptions)
+    }
+
+    private static class TestWorkerLeaseLimit implements WorkerLeaseLimit {
+        int workerLeaseLimit
+        int workerLeasesInUse
+    }
+}
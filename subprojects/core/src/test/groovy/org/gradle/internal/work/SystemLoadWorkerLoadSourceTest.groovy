@@ -0,0 +1,47 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.work
+
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class SystemLoadWorkerLoadSourceTest extends Specification {
+    def source = new SystemLoadWorkerLoadSource()
+
+    def "does not count the sampling thread as runnable"() {
+        expect:
+        source.sample("0.52 0.58 0.59 5/1234 5678\n", 0) == 4
+    }
+
+    def "averages the runnable threads over the last few seconds"() {
+        source.sample("8.00 4.00 2.00 9/1234 5678", 0)
+
+        when:
+        def load = source.sample("8.00 4.00 2.00 1/1234 5678", TimeUnit.SECONDS.toNanos(1))
+
+        then:
+        load < 8
+        load > 4
+
+        when:
+        load = source.sample("8.00 4.00 2.00 1/1234 5678", TimeUnit.SECONDS.toNanos(30))
+
+        then:
+        load < 0.1
+    }
+}
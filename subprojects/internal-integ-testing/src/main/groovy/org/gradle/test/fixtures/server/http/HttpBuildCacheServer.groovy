@@ -40,6 +40,7 @@ class HttpBuildCacheServer extends ExternalResource implements HttpServerFixture
     private TestFile cacheDir
     private int blockIncomingConnectionsForSeconds = 0
     private final List<Responder> responders = []
+    private boolean lookupSupported = true
 
     HttpBuildCacheServer(TestDirectoryProvider provider) {
         this.provider = provider
@@ -83,6 +84,14 @@ class HttpBuildCacheServer extends ExternalResource implements HttpServerFixture
                         return
                     }
                 }
+                if ((request as HttpServletRequest).method == "POST") {
+                    if (lookupSupported) {
+                        respondToLookup(request as HttpServletRequest, response as HttpServletResponse)
+                    } else {
+                        (response as HttpServletResponse).sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED)
+                    }
+                    return
+                }
                 chain.doFilter(request, response)
             }
 
@@ -97,6 +106,27 @@ class HttpBuildCacheServer extends ExternalResource implements HttpServerFixture
         this.webapp.addFilter(RestFilter, "/*", EnumSet.of(DispatcherType.REQUEST))
     }
 
+    /**
+     * Responds to a batch lookup with the keys of the requested entries that exist in the cache directory, one per line.
+     */
+    private void respondToLookup(HttpServletRequest request, HttpServletResponse response) {
+        def existing = request.reader.readLines()*.trim().findAll { key ->
+            key ==~ /\p{XDigit}+/ && cacheDir.file(key).isFile()
+        }
+        response.status = HttpServletResponse.SC_OK
+        response.contentType = "application/vnd.gradle.build-cache-keys.v1"
+        response.writer.withWriter { writer ->
+            existing.each { writer.write(it + "\n") }
+        }
+    }
+
+    /**
+     * Makes the server reject batch lookups, like servers that only support loading and storing single entries.
+     */
+    void withoutLookup() {
+        lookupSupported = false
+    }
+
     interface Responder {
         /**
          * Return false to prevent further processing.